@@ -0,0 +1,483 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+ 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnManagerPNames;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HTTP client backed by a single Apache HttpClient shared by all the instances.
+ * <p>
+ * The connections are kept alive and reused per host (route), gzip and deflate
+ * responses are transparently decoded and the copy buffers are pooled. Instances
+ * are cheap, they only hold the listener and the cancel state, {@link #cancel()}
+ * aborts every request in flight on the instance.
+ * 
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+final class ApacheHttpClient implements HttpClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApacheHttpClient.class);
+
+    private static final int DEFAULT_TIMEOUT = 10000;
+    private static final String DEFAULT_USER_AGENT = UserAgentGenerator.getUserAgent();
+
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+    private static final int MAX_TOTAL_CONNECTIONS = 100;
+    private static final int IDLE_CONNECTION_TIMEOUT = 30; // seconds
+
+    private static final int BUFFER_SIZE = 16384;
+    private static final int MAX_POOLED_BUFFERS = 32;
+
+    private static final ConnPerRouteBean CONN_PER_ROUTE = new ConnPerRouteBean(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+    private static final ConcurrentLinkedQueue<byte[]> BUFFERS = new ConcurrentLinkedQueue<byte[]>();
+
+    private static final DefaultHttpClient CLIENT = setupHttpClient();
+
+    private HttpClientListener listener;
+
+    private volatile boolean canceled;
+    private final Set<HttpGet> requests = Collections.newSetFromMap(new ConcurrentHashMap<HttpGet, Boolean>());
+
+    public static void setMaxConnectionsPerHost(int max) {
+        CONN_PER_ROUTE.setDefaultMaxPerRoute(max);
+    }
+
+    @Override
+    public String get(String url) {
+        return get(url, DEFAULT_TIMEOUT, DEFAULT_USER_AGENT);
+    }
+
+    @Override
+    public String get(String url, int timeout) {
+        return get(url, timeout, DEFAULT_USER_AGENT);
+    }
+
+    @Override
+    public String get(String url, int timeout, String userAgent) {
+        return get(url, timeout, userAgent, null, null);
+    }
+
+    @Override
+    public String get(String url, int timeout, String userAgent, String referrer, String cookie) {
+        String result = null;
+
+        ByteArrayOutputStream baos = null;
+
+        try {
+            baos = new ByteArrayOutputStream();
+            get(url, baos, timeout, userAgent, referrer, cookie, -1);
+
+            result = baos.toString("UTF-8");
+        } catch (RequestCanceledException e) {
+            // stopped on purpose, nothing to report
+        } catch (Throwable e) {
+            LOG.error("Error getting string from http body response: " + e.getMessage(), e);
+        } finally {
+            closeQuietly(baos);
+        }
+
+        return result;
+    }
+
+    @Override
+    public byte[] getBytes(String url, int timeout, String userAgent, String referrer) {
+        byte[] result = null;
+
+        ByteArrayOutputStream baos = null;
+
+        try {
+            baos = new ByteArrayOutputStream();
+            get(url, baos, timeout, userAgent, referrer, null, -1);
+
+            result = baos.toByteArray();
+        } catch (RequestCanceledException e) {
+            // stopped on purpose, nothing to report
+        } catch (Throwable e) {
+            LOG.error("Error getting bytes from http body response: " + e.getMessage(), e);
+        } finally {
+            closeQuietly(baos);
+        }
+
+        return result;
+    }
+
+    @Override
+    public void get(String url, OutputStream out, int timeout, String userAgent, String referrer, String cookie) throws IOException {
+        get(url, out, timeout, userAgent, referrer, cookie, -1);
+    }
+
+    @Override
+    public void save(String url, File file, boolean resume) throws IOException {
+        save(url, file, resume, DEFAULT_TIMEOUT, DEFAULT_USER_AGENT);
+    }
+
+    @Override
+    public void save(String url, File file, boolean resume, int timeout, String userAgent) throws IOException {
+        FileOutputStream fos = null;
+        long rangeStart;
+
+        try {
+            if (resume && file.exists()) {
+                fos = new FileOutputStream(file, true);
+                rangeStart = file.length();
+            } else {
+                fos = new FileOutputStream(file, false);
+                rangeStart = -1;
+            }
+
+            get(url, fos, timeout, userAgent, null, null, rangeStart);
+        } finally {
+            closeQuietly(fos);
+        }
+    }
+
+    @Override
+    public void setListener(HttpClientListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public HttpClientListener getListener() {
+        return listener;
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+
+        for (HttpGet r : requests) {
+            r.abort();
+        }
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * The body is only complete when this method returns normally, a read failure is
+     * rethrown and a cancel ends with {@link RequestCanceledException}, in both cases
+     * whatever was written to the output stream must be discarded.
+     */
+    private void get(String url, OutputStream out, int timeout, String userAgent, String referrer, String cookie, long rangeStart) throws IOException {
+        HttpGet httpGet = new HttpGet(url);
+
+        HttpParams params = httpGet.getParams();
+        // waiting for a pooled connection of a busy host is bounded too
+        ConnManagerParams.setTimeout(params, timeout);
+        HttpConnectionParams.setConnectionTimeout(params, timeout);
+        HttpConnectionParams.setSoTimeout(params, timeout);
+        // the check costs a blocking read per request, a stale pooled connection is retried instead
+        HttpConnectionParams.setStaleCheckingEnabled(params, false);
+        HttpConnectionParams.setTcpNoDelay(params, true);
+        HttpClientParams.setRedirecting(params, true);
+        HttpProtocolParams.setUseExpectContinue(params, false);
+        HttpProtocolParams.setUserAgent(params, userAgent);
+
+        if (referrer != null) {
+            httpGet.addHeader("Referer", referrer);
+        }
+
+        if (cookie != null) {
+            httpGet.addHeader("Cookie", cookie);
+        }
+
+        if (rangeStart > 0) {
+            httpGet.addHeader("Range", "bytes=" + rangeStart + "-");
+        }
+
+        requests.add(httpGet);
+
+        // checked after the registration, a concurrent cancel() either sees the request or is seen here
+        if (canceled) {
+            requests.remove(httpGet);
+            onCancel();
+            throw new RequestCanceledException();
+        }
+
+        InputStream in = null;
+        byte[] b = null;
+
+        try {
+            HttpResponse response;
+            try {
+                response = CLIENT.execute(httpGet);
+            } catch (IOException e) {
+                if (canceled) {
+                    onCancel();
+                    throw new RequestCanceledException();
+                }
+                throw e;
+            }
+
+            int httpResponseCode = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+
+            if (httpResponseCode != HttpStatus.SC_OK && httpResponseCode != HttpStatus.SC_PARTIAL_CONTENT) {
+                httpGet.abort();
+                throw new ResponseCodeNotSupportedException(httpResponseCode);
+            }
+
+            onHeaders(response.getAllHeaders());
+
+            if (rangeStart > 0 && httpResponseCode != HttpStatus.SC_PARTIAL_CONTENT) {
+                httpGet.abort();
+                RangeNotSupportedException rangeNotSupportedException = new RangeNotSupportedException("Server does not support bytes range request");
+                onError(rangeNotSupportedException);
+                throw rangeNotSupportedException;
+            }
+
+            try {
+                if (entity != null) {
+                    in = entity.getContent();
+                    in = decompress(entity, in);
+                }
+
+                if (in != null) {
+                    b = acquireBuffer();
+                    int n = 0;
+                    while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
+                        out.write(b, 0, n);
+                        onData(b, 0, n);
+                    }
+                }
+            } catch (IOException e) {
+                // the connection is in an unknown state, don't return it to the pool
+                httpGet.abort();
+                if (!canceled) {
+                    onError(e);
+                    throw e;
+                }
+            }
+
+            if (canceled) {
+                httpGet.abort();
+                onCancel();
+                throw new RequestCanceledException();
+            }
+
+            closeQuietly(out);
+            onComplete();
+        } finally {
+            // fully read, this returns the connection to the pool
+            closeQuietly(in);
+            releaseBuffer(b);
+            requests.remove(httpGet);
+        }
+    }
+
+    private void onHeaders(Header[] headers) {
+        if (getListener() != null) {
+            try {
+                Map<String, List<String>> headerFields = new HashMap<String, List<String>>();
+                for (Header h : headers) {
+                    List<String> values = headerFields.get(h.getName());
+                    if (values == null) {
+                        values = new ArrayList<String>(1);
+                        headerFields.put(h.getName(), values);
+                    }
+                    values.add(h.getValue());
+                }
+                getListener().onHeaders(this, headerFields);
+            } catch (Exception e) {
+                LOG.warn(e.getMessage(), e);
+            }
+        }
+    }
+
+    private void onCancel() {
+        if (getListener() != null) {
+            try {
+                getListener().onCancel(this);
+            } catch (Exception e) {
+                LOG.warn(e.getMessage(), e);
+            }
+        }
+    }
+
+    private void onData(byte[] b, int i, int n) {
+        if (getListener() != null) {
+            try {
+                getListener().onData(this, b, i, n);
+            } catch (Exception e) {
+                LOG.warn(e.getMessage(), e);
+            }
+        }
+    }
+
+    private void onError(Exception e) {
+        if (getListener() != null) {
+            try {
+                getListener().onError(this, e);
+            } catch (Exception e2) {
+                LOG.warn(e2.getMessage(), e2);
+            }
+        }
+    }
+
+    private void onComplete() {
+        if (getListener() != null) {
+            try {
+                getListener().onComplete(this);
+            } catch (Exception e) {
+                LOG.warn(e.getMessage(), e);
+            }
+        }
+    }
+
+    private static byte[] acquireBuffer() {
+        byte[] b = BUFFERS.poll();
+        return b != null ? b : new byte[BUFFER_SIZE];
+    }
+
+    private static void releaseBuffer(byte[] b) {
+        // the size check is racy, going a bit over the limit is harmless
+        if (b != null && BUFFERS.size() < MAX_POOLED_BUFFERS) {
+            BUFFERS.offer(b);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException ioe) {
+            // ignore
+        }
+    }
+
+    private static DefaultHttpClient setupHttpClient() {
+        SSLSocketFactory.getSocketFactory().setHostnameVerifier(SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+        schemeRegistry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+        BasicHttpParams params = new BasicHttpParams();
+        params.setParameter(ConnManagerPNames.MAX_CONNECTIONS_PER_ROUTE, CONN_PER_ROUTE);
+        params.setIntParameter(ConnManagerPNames.MAX_TOTAL_CONNECTIONS, MAX_TOTAL_CONNECTIONS);
+        final ThreadSafeClientConnManager cm = new ThreadSafeClientConnManager(params, schemeRegistry);
+
+        DefaultHttpClient httpClient = new DefaultHttpClient(cm, new BasicHttpParams());
+        // once, for the pooled connections the server closed while idle
+        httpClient.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(1, false));
+
+        httpClient.addRequestInterceptor(new HttpRequestInterceptor() {
+            public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+                if (!request.containsHeader("Accept-Encoding")) {
+                    request.addHeader("Accept-Encoding", "gzip, deflate");
+                }
+            }
+        });
+
+        Thread idleConnectionsCleaner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    try {
+                        Thread.sleep(IDLE_CONNECTION_TIMEOUT * 1000);
+                        closeIdleConnections(cm);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "ApacheHttpClient-IdleConnectionsCleaner");
+        idleConnectionsCleaner.setDaemon(true);
+        idleConnectionsCleaner.start();
+
+        return httpClient;
+    }
+
+    /**
+     * Decodes gzip and deflate bodies. It's done on the stream and not with a
+     * decompressing entity, the length of the original entity is what tells the
+     * connection manager that the connection can be reused.
+     */
+    private static InputStream decompress(HttpEntity entity, InputStream in) throws IOException {
+        Header ceheader = entity.getContentEncoding();
+        if (ceheader != null) {
+            HeaderElement[] codecs = ceheader.getElements();
+            for (int i = 0; i < codecs.length; i++) {
+                if (codecs[i].getName().equalsIgnoreCase("gzip")) {
+                    return new GZIPInputStream(in, BUFFER_SIZE);
+                } else if (codecs[i].getName().equalsIgnoreCase("deflate")) {
+                    return new InflaterInputStream(in);
+                }
+            }
+        }
+        return in;
+    }
+
+    private static void closeIdleConnections(ClientConnectionManager cm) {
+        try {
+            cm.closeExpiredConnections();
+            cm.closeIdleConnections(IDLE_CONNECTION_TIMEOUT, TimeUnit.SECONDS);
+        } catch (Throwable e) {
+            LOG.warn("Error closing idle http connections", e);
+        }
+    }
+}
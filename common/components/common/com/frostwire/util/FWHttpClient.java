@@ -103,6 +103,10 @@ final class FWHttpClient implements HttpClient {
         return result;
     }
 
+    public void get(String url, OutputStream out, int timeout, String userAgent, String referrer, String cookie) throws IOException {
+        get(url, out, timeout, userAgent, referrer, cookie, -1);
+    }
+
     public void save(String url, File file, boolean resume) throws IOException {
         save(url, file, resume, DEFAULT_TIMEOUT, DEFAULT_USER_AGENT);
     }
@@ -19,6 +19,7 @@ package com.frostwire.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -44,6 +45,12 @@ public interface HttpClient {
 
     public byte[] getBytes(String url, int timeout, String userAgent, String referrer);
 
+    /**
+     * Writes the body of the response to the output stream as it arrives. If the stream
+     * throws an exception while writing, the download is aborted.
+     */
+    public void get(String url, OutputStream out, int timeout, String userAgent, String referrer, String cookie) throws IOException;
+
     public void save(String url, File file, boolean resume) throws IOException;
 
     public void save(String url, File file, boolean resume, int timeout, String userAgent) throws IOException;
@@ -92,6 +99,18 @@ public interface HttpClient {
 
     }
 
+    /**
+     * Thrown by the blocking calls that were interrupted by {@link HttpClient#cancel()}.
+     */
+    public static final class RequestCanceledException extends IOException {
+
+        private static final long serialVersionUID = 4510827466123580191L;
+
+        public RequestCanceledException() {
+            super("Request canceled");
+        }
+    }
+
     public static final class ResponseCodeNotSupportedException extends IOException {
         private final int responseCode;
 
@@ -31,7 +31,7 @@ public class HttpClientFactory {
     public static HttpClient newInstance(HttpClientType type) {
         switch (type) {
         case Apache:
-            throw new UnsupportedOperationException();
+            return new ApacheHttpClient();
         case PureJava:
             return new FWHttpClient();
         default:
@@ -42,4 +42,12 @@ public class HttpClientFactory {
     public static HttpClient newDefaultInstance() {
         return newInstance(HttpClientType.PureJava);
     }
+
+    /**
+     * Instances of the {@link HttpClientType#Apache} type share a pool of keep-alive
+     * connections, this sets how many connections to the same host can be open at once.
+     */
+    public static void setMaxConnectionsPerHost(int max) {
+        ApacheHttpClient.setMaxConnectionsPerHost(max);
+    }
 }
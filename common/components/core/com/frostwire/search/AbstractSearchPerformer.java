@@ -35,7 +35,7 @@ public abstract class AbstractSearchPerformer implements SearchPerformer {
     private final long token;
 
     private SearchListener listener;
-    private boolean stopped;
+    private volatile boolean stopped;
 
     public AbstractSearchPerformer(long token) {
         this.token = token;
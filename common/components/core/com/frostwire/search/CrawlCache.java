@@ -18,6 +18,8 @@
 package com.frostwire.search;
 
 /**
+ * Implementations must be safe to use from several crawling threads at
+ * the same time, no external synchronization is performed.
  * 
  * @author gubatron
  * @author aldenml
@@ -18,7 +18,9 @@
 
 package com.frostwire.search;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +38,8 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
     private static final int DEFAULT_CRAWL_TIMEOUT = 10000; // 10 seconds
     private static final int DEFAULT_MAGNET_DOWNLOAD_TIMEOUT = 4000; // 4 seconds
 
+    private static final SingleFlight<String, byte[]> fetches = new SingleFlight<String, byte[]>();
+
     private static CrawlCache cache = null;
     private static MagnetDownloader magnetDownloader = null;
 
@@ -73,39 +77,17 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
                 String url = getCrawlUrl(obj);
 
                 if (url != null) {
-                    byte[] data = cacheGet(url);
-
-                    if (data == null) { // not a big deal about synchronization here
-                        LOG.debug("Downloading data for: " + url);
+                    String key = getFetchKey(url);
+                    byte[] data = cacheGet(key);
 
-                        if (url.startsWith("magnet")) {
-                            data = fetchMagnet(url);
-                        } else {
-                            data = fetchBytes(url, sr.getDetailsUrl(), DEFAULT_CRAWL_TIMEOUT);
-                        }
-
-                        //we put this here optimistically hoping this is actually
-                        //valid data. if no data can be crawled from this we remove it
-                        //from the cache. we do this because this same data may come
-                        //from another search engine and this way we avoid the
-                        //expense of performing another download.
-                        if (data != null) {
-                            cachePut(url, data);
-                        } else {
-                            LOG.warn("Failed to download data: " + url);
-                        }
+                    if (data == null) {
+                        data = fetchShared(url, sr.getDetailsUrl());
                     }
 
-                    try {
-                        if (data != null) {
-                            List<? extends SearchResult> results = crawlResult(obj, data);
-                            if (results != null) {
-                                onResults(this, results);
-                            }
-                        }
-                    } catch (Throwable e) {
-                        LOG.warn("Error creating crawled results from downloaded data: " + e.getMessage());
-                        cacheRemove(url); // invalidating cache data
+                    if (data != null) {
+                        onCrawlData(obj, key, data);
+                    } else if (url.startsWith("magnet")) {
+                        crawlLater(obj, url, key);
                     }
                 } else {
                     try {
@@ -125,20 +107,114 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
 
     protected abstract List<? extends SearchResult> crawlResult(T sr, byte[] data) throws Exception;
 
+    /**
+     * The torrent of the magnet if found within the timeout. A torrent found later
+     * is still cached, for the next crawls of the same info-hash, unless the search
+     * was stopped before the lookup could start.
+     */
     protected byte[] fetchMagnet(String magnet) {
         if (magnetDownloader != null) {
-            return magnetDownloader.download(magnet, DEFAULT_MAGNET_DOWNLOAD_TIMEOUT);
+            final String key = getFetchKey(magnet);
+            return magnetDownloader.download(magnet, DEFAULT_MAGNET_DOWNLOAD_TIMEOUT, new MagnetDownloader.Listener() {
+                @Override
+                public void onData(String magnet, byte[] data) {
+                    cachePut(key, data);
+                }
+
+                @Override
+                public boolean isStopped() {
+                    return CrawlPagedWebSearchPerformer.this.isStopped();
+                }
+            });
         } else {
             LOG.warn("Magnet downloader not set, download not supported: " + magnet);
             return null;
         }
     }
 
+    private void onCrawlData(T sr, String key, byte[] data) {
+        try {
+            List<? extends SearchResult> results = crawlResult(sr, data);
+            if (results != null) {
+                onResults(this, results);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error creating crawled results from downloaded data: " + e.getMessage());
+            cacheRemove(key); // invalidating cache data
+        }
+    }
+
+    /**
+     * The magnet was not resolved in time for the crawl, the results are sent once
+     * the lookup completes in the background, unless the search was stopped.
+     */
+    private void crawlLater(final T sr, String magnet, final String key) {
+        if (magnetDownloader == null || isStopped()) {
+            return;
+        }
+
+        byte[] data = magnetDownloader.download(magnet, 0, new MagnetDownloader.Listener() {
+            @Override
+            public void onData(String magnet, byte[] data) {
+                if (!isStopped()) {
+                    LOG.debug("Late magnet data for: " + magnet);
+                    onCrawlData(sr, key, data);
+                }
+            }
+
+            @Override
+            public boolean isStopped() {
+                return CrawlPagedWebSearchPerformer.this.isStopped();
+            }
+        });
+
+        // resolved in the meantime
+        if (data != null) {
+            onCrawlData(sr, key, data);
+        }
+    }
+
+    /**
+     * Downloads the data of the crawl url, sharing the download with any other
+     * performer crawling the same resource (url or magnet info-hash) at the same time.
+     * <p>
+     * A shared http download runs on the client of the performer that started it,
+     * if it fails, maybe because that performer was stopped, this one tries once
+     * more on its own.
+     */
+    private byte[] fetchShared(String url, String referrer) {
+        Fetch fetch = new Fetch(url, referrer);
+        byte[] data = null;
+
+        try {
+            data = fetches.execute(getFetchKey(url), fetch);
+        } catch (Throwable e) {
+            LOG.warn("Error downloading data: " + url + ", e=" + e.getMessage());
+        }
+
+        if (data == null && !fetch.executed && !url.startsWith("magnet") && !isStopped()) {
+            LOG.debug("Shared download failed, retrying: " + url);
+            try {
+                data = fetch.call();
+            } catch (Throwable e) {
+                LOG.warn("Error downloading data: " + url + ", e=" + e.getMessage());
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * The key of the crawl data, the info-hash for magnets.
+     */
+    private static String getFetchKey(String url) {
+        String hash = PerformersHelper.getInfoHash(url);
+        return hash != null ? hash : url;
+    }
+
     private byte[] cacheGet(String key) {
         if (cache != null) {
-            synchronized (cache) {
-                return cache.get(key);
-            }
+            return cache.get(key);
         } else {
             return null;
         }
@@ -146,17 +222,13 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
 
     private void cachePut(String key, byte[] data) {
         if (cache != null) {
-            synchronized (cache) {
-                cache.put(key, data);
-            }
+            cache.put(key, data);
         }
     }
 
     private void cacheRemove(String key) {
         if (cache != null) {
-            synchronized (cache) {
-                cache.remove(key);
-            }
+            cache.remove(key);
         }
     }
 
@@ -173,19 +245,78 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
 
     public static void clearCache() {
         if (cache != null) {
-            synchronized (cache) {
-                cache.clear();
-            }
+            cache.clear();
         }
     }
 
+    /**
+     * Number of crawl downloads actually performed.
+     */
+    public static long getNumCrawlFetches() {
+        return fetches.getExecuted();
+    }
+
+    /**
+     * Number of crawl downloads avoided because the same resource was already being downloaded.
+     */
+    public static long getNumSavedCrawlFetches() {
+        return fetches.getShared();
+    }
+
     public static long getCacheSize() {
         long result = 0;
         if (cache != null) {
-            synchronized (cache) {
-                result = cache.size();
-            }
+            result = cache.size();
         }
         return result;
     }
+
+    private final class Fetch implements Callable<byte[]> {
+
+        private final String url;
+        private final String referrer;
+
+        private boolean executed;
+
+        public Fetch(String url, String referrer) {
+            this.url = url;
+            this.referrer = referrer;
+        }
+
+        @Override
+        public byte[] call() throws Exception {
+            executed = true;
+
+            // another crawl could have completed just before this one got in flight
+            byte[] data = cacheGet(getFetchKey(url));
+
+            if (data == null) {
+                LOG.debug("Downloading data for: " + url);
+
+                if (url.startsWith("magnet")) {
+                    data = fetchMagnet(url);
+                } else {
+                    data = fetchBytes(url, referrer, DEFAULT_CRAWL_TIMEOUT);
+
+                    if (data == null && isStopped()) {
+                        // canceled by stop(), not a failure of the url, the waiters download it with their own clients
+                        throw new IOException("Performer stopped, download canceled: " + url);
+                    }
+                }
+
+                //we put this here optimistically hoping this is actually
+                //valid data. if no data can be crawled from this we remove it
+                //from the cache. we do this because this same data may come
+                //from another search engine and this way we avoid the
+                //expense of performing another download.
+                if (data != null) {
+                    cachePut(getFetchKey(url), data);
+                } else {
+                    LOG.warn("Failed to download data: " + url);
+                }
+            }
+
+            return data;
+        }
+    }
 }
@@ -18,6 +18,7 @@
 
 package com.frostwire.search;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -35,6 +36,15 @@ public abstract class CrawlRegexSearchPerformer<T extends CrawlableSearchResult>
         this.regexMaxResults = regexMaxResults;
     }
 
+    /**
+     * Matches the page as it downloads, emitting the results as soon as they are found.
+     */
+    @Override
+    protected List<? extends SearchResult> searchPage(int page) {
+        PerformersHelper.searchPageStreaming(this, getUrl(page, getEncodedKeywords()), regexMaxResults);
+        return Collections.emptyList();
+    }
+
     @Override
     protected final List<? extends SearchResult> searchPage(String page) {
         return PerformersHelper.searchPageHelper(this, page, regexMaxResults);
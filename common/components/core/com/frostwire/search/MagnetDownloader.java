@@ -18,6 +18,9 @@
 package com.frostwire.search;
 
 /**
+ * Gets the torrent of a magnet link. Looking up the metadata in the DHT can take
+ * much longer than a search is willing to wait, so implementations keep resolving
+ * after the timeout and report the late torrent to the listener.
  * 
  * @author gubatron
  * @author aldenml
@@ -25,5 +28,23 @@ package com.frostwire.search;
  */
 public interface MagnetDownloader {
 
-    public byte[] download(String magnet, int timeout);
+    /**
+     * Waits up to the timeout for the torrent of the magnet.
+     * 
+     * @param listener notified from a background thread if the torrent is found after
+     * the timeout, never if it's returned, can be null
+     * @return the torrent data, null if not available within the timeout
+     */
+    public byte[] download(String magnet, int timeout, Listener listener);
+
+    public interface Listener {
+
+        public void onData(String magnet, byte[] data);
+
+        /**
+         * A lookup still waiting to start is dropped if all its listeners are stopped
+         * and nobody is waiting on it.
+         */
+        public boolean isStopped();
+    }
 }
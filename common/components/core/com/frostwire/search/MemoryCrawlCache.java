@@ -0,0 +1,181 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+ 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory crawl cache bounded by the total number of bytes of the cached data.
+ * <p>
+ * The keys are spread over a fixed number of independently locked LRU segments,
+ * so concurrent crawls only contend when they hash to the same segment. The
+ * byte budget is shared by all the segments, when it's exceeded the eldest
+ * entries of the segment that grew go first, then the ones of the others.
+ * 
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public final class MemoryCrawlCache implements CrawlCache {
+
+    private static final int NUM_SEGMENTS = 16;
+
+    private final long maxBytes;
+    private final Segment[] segments;
+
+    private final AtomicLong numEntries;
+    private final AtomicLong numBytes;
+    private final AtomicInteger nextEviction;
+
+    public MemoryCrawlCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.segments = new Segment[NUM_SEGMENTS];
+        for (int i = 0; i < NUM_SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+
+        this.numEntries = new AtomicLong(0);
+        this.numBytes = new AtomicLong(0);
+        this.nextEviction = new AtomicInteger(0);
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return segmentFor(key).get(key);
+    }
+
+    @Override
+    public void put(String key, byte[] data) {
+        Segment segment = segmentFor(key);
+
+        if (data == null || data.length > maxBytes) {
+            segment.remove(key);
+            return;
+        }
+
+        segment.put(key, data);
+
+        if (numBytes.get() > maxBytes) {
+            evict(segment, key);
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        segmentFor(key).remove(key);
+    }
+
+    @Override
+    public void clear() {
+        for (Segment s : segments) {
+            s.clear();
+        }
+    }
+
+    @Override
+    public long size() {
+        return numEntries.get();
+    }
+
+    public long sizeInBytes() {
+        return numBytes.get();
+    }
+
+    /**
+     * Brings the cache back under the budget, one segment lock at a time, keeping
+     * the entry just added.
+     */
+    private void evict(Segment full, String keep) {
+        full.evict(keep);
+
+        for (int i = 0; i < NUM_SEGMENTS && numBytes.get() > maxBytes; i++) {
+            segments[(nextEviction.getAndIncrement() & Integer.MAX_VALUE) % NUM_SEGMENTS].evict(keep);
+        }
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return segments[h & (NUM_SEGMENTS - 1)];
+    }
+
+    private final class Segment {
+
+        private final LinkedHashMap<String, byte[]> map;
+
+        public Segment() {
+            this.map = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+        }
+
+        public synchronized byte[] get(String key) {
+            return map.get(key);
+        }
+
+        public synchronized void put(String key, byte[] data) {
+            byte[] old = map.put(key, data);
+            if (old != null) {
+                removed(old);
+            }
+            added(data);
+        }
+
+        /**
+         * Removes the least recently used entries, except for the given key,
+         * while the whole cache is over the budget.
+         */
+        public synchronized void evict(String keep) {
+            Iterator<Entry<String, byte[]>> it = map.entrySet().iterator();
+            while (numBytes.get() > maxBytes && it.hasNext()) {
+                Entry<String, byte[]> eldest = it.next();
+                if (!eldest.getKey().equals(keep)) {
+                    it.remove();
+                    removed(eldest.getValue());
+                }
+            }
+        }
+
+        public synchronized void remove(String key) {
+            byte[] old = map.remove(key);
+            if (old != null) {
+                removed(old);
+            }
+        }
+
+        public synchronized void clear() {
+            for (byte[] data : map.values()) {
+                removed(data);
+            }
+            map.clear();
+        }
+
+        private void added(byte[] data) {
+            numEntries.incrementAndGet();
+            numBytes.addAndGet(data.length);
+        }
+
+        private void removed(byte[] data) {
+            numEntries.decrementAndGet();
+            numBytes.addAndGet(-data.length);
+        }
+    }
+}
@@ -18,6 +18,7 @@
 
 package com.frostwire.search;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -31,10 +32,25 @@ public abstract class PagedRegexSearchPerformer<T extends SearchResult> extends
     private final int regexMaxResults;
 
     public PagedRegexSearchPerformer(long token, String keywords, int timeout, int pages, int regexMaxResults) {
-        super(token, keywords, timeout, pages);
+        this(token, keywords, timeout, pages, 1, regexMaxResults);
+    }
+
+    public PagedRegexSearchPerformer(long token, String keywords, int timeout, int pages, int concurrentPages, int regexMaxResults) {
+        super(token, keywords, timeout, pages, concurrentPages);
         this.regexMaxResults = regexMaxResults;
     }
 
+    /**
+     * Matches the page as it downloads, emitting the results as soon as they are found.
+     * With concurrent pages only the ones not downloaded ahead come here, the others
+     * are matched once complete.
+     */
+    @Override
+    protected List<? extends SearchResult> searchPage(int page) {
+        PerformersHelper.searchPageStreaming(this, getUrl(page, getEncodedKeywords()), regexMaxResults);
+        return Collections.emptyList();
+    }
+
     @Override
     protected final List<? extends SearchResult> searchPage(String page) {
         return PerformersHelper.searchPageHelper(this, page, regexMaxResults);
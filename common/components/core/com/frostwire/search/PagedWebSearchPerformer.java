@@ -18,13 +18,37 @@
 
 package com.frostwire.search;
 
+import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Searches an engine one results page at a time.
+ * <p>
+ * By default the pages are requested one after the other. With more than one
+ * concurrent page the next pages are downloaded ahead while the current one is
+ * searched, the results are still delivered in page order. A page that was not
+ * downloaded ahead, always the first one, is searched with {@link #searchPage(int)},
+ * which streams for the regex performers. The ones downloaded ahead are parsed
+ * once complete, by then there is nothing left to stream. In both modes the number
+ * of pages is reduced for engines whose pages are too slow to fit in the timeout.
+ * 
  * @author gubatron
  * @author aldenml
  *
@@ -33,20 +57,61 @@ public abstract class PagedWebSearchPerformer extends WebSearchPerformer {
 
     private static final Logger LOG = LoggerFactory.getLogger(PagedWebSearchPerformer.class);
 
+    /**
+     * Page requests in flight to the same host, all the performers together.
+     */
+    private static final int MAX_PAGES_PER_HOST = 4;
+
+    /**
+     * Threads downloading pages ahead of the one being parsed, all the performers together.
+     */
+    private static final int MAX_PAGE_FETCH_THREADS = 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<String, Semaphore>();
+    private static final ConcurrentMap<Class<?>, PageLatency> latencies = new ConcurrentHashMap<Class<?>, PageLatency>();
+
+    private static final ExecutorService pageFetcher = newPageFetcher();
+
+    private final int timeout;
     private final int pages;
+    private final int concurrentPages;
 
     public PagedWebSearchPerformer(long token, String keywords, int timeout, int pages) {
+        this(token, keywords, timeout, pages, 1);
+    }
+
+    public PagedWebSearchPerformer(long token, String keywords, int timeout, int pages, int concurrentPages) {
         super(token, keywords, timeout);
+        this.timeout = timeout;
         this.pages = pages;
+        this.concurrentPages = Math.max(1, concurrentPages);
     }
 
     @Override
     public void perform() {
-        for (int i = 1; !isStopped() && i <= pages; i++) {
-            onResults(this, searchPage(i));
+        int n = getPageCount();
+
+        if (concurrentPages > 1 && n > 1) {
+            performConcurrent(n);
+        } else {
+            for (int i = 1; !isStopped() && i <= n; i++) {
+                long start = System.currentTimeMillis();
+                List<? extends SearchResult> results = searchPage(i);
+                getLatency().record(System.currentTimeMillis() - start);
+                onResults(this, results);
+            }
         }
     }
 
+    /**
+     * The average time it takes to get a page of this engine, 0 if not known yet.
+     */
+    public long getAveragePageLatency() {
+        return getLatency().average();
+    }
+
     protected List<? extends SearchResult> searchPage(int page) {
         String url = getUrl(page, getEncodedKeywords());
         String text = fetch(url);
@@ -61,4 +126,258 @@ public abstract class PagedWebSearchPerformer extends WebSearchPerformer {
     protected abstract String getUrl(int page, String encodedKeywords);
 
     protected abstract List<? extends SearchResult> searchPage(String page);
+
+    /**
+     * The configured pages, less if at the average page latency of this engine
+     * they would not be done within the timeout. Always at least one.
+     */
+    private int getPageCount() {
+        long latency = getAveragePageLatency();
+
+        if (latency <= 0 || pages <= 1) {
+            return pages;
+        }
+
+        int rounds = (int) (timeout / latency);
+        int n = Math.max(1, Math.min(pages, rounds * concurrentPages));
+
+        if (n < pages) {
+            LOG.info("Down-paging " + getClass().getSimpleName() + " to " + n + " of " + pages + " pages, page latency: " + latency + "ms");
+        }
+
+        return n;
+    }
+
+    private PageLatency getLatency() {
+        PageLatency latency = latencies.get(getClass());
+        if (latency == null) {
+            PageLatency newLatency = new PageLatency();
+            latency = latencies.putIfAbsent(getClass(), newLatency);
+            if (latency == null) {
+                latency = newLatency;
+            }
+        }
+        return latency;
+    }
+
+    /**
+     * Keeps up to concurrentPages pages in flight and searches them in order. A page
+     * downloaded ahead without results means there are no more, the requests still
+     * pending are cancelled, the same as when the performer is stopped. A streamed
+     * page reports its results as it goes, so it can't end the search early.
+     */
+    private void performConcurrent(int n) {
+        PageFetch[] fetches = new PageFetch[n + 1];
+        int issued = 0;
+
+        try {
+            for (int page = 1; page <= n && !isStopped(); page++) {
+                if (issued < page) {
+                    issued = page; // not downloaded ahead, searched right here
+                }
+
+                // the pages after it are downloaded ahead, only if the host has room
+                while (issued < n && issued < page - 1 + concurrentPages) {
+                    PageFetch fetch = startPage(issued + 1);
+                    if (fetch == null) {
+                        break;
+                    }
+                    fetches[++issued] = fetch;
+                }
+
+                if (fetches[page] == null) {
+                    List<? extends SearchResult> results = searchPageStreaming(page);
+                    if (!isStopped()) {
+                        onResults(this, results);
+                    }
+                    continue;
+                }
+
+                byte[] body = fetches[page].await(timeout);
+
+                if (isStopped()) {
+                    break;
+                }
+
+                if (body == null) {
+                    LOG.warn("Page content empty for url: " + fetches[page].url);
+                    onResults(this, Collections.<SearchResult> emptyList());
+                    continue;
+                }
+
+                List<? extends SearchResult> results = searchPage(new String(body, UTF_8));
+                onResults(this, results);
+
+                if (results.isEmpty()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopping
+        } finally {
+            for (int i = 1; i <= issued; i++) {
+                if (fetches[i] != null) {
+                    fetches[i].cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches the page on this thread with {@link #searchPage(int)}, holding a
+     * permit of the host like the pages downloaded ahead.
+     */
+    private List<? extends SearchResult> searchPageStreaming(int page) throws InterruptedException {
+        String url = getUrl(page, getEncodedKeywords());
+        Semaphore permits = getHostPermits(url);
+
+        if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            // busy with other searches, don't wait forever for a slot
+            LOG.warn("Page skipped, host busy: " + url);
+            return Collections.emptyList();
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            List<? extends SearchResult> results = searchPage(page);
+            getLatency().record(System.currentTimeMillis() - start);
+            return results;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * @return the request in flight, null if the host is busy
+     */
+    private PageFetch startPage(int page) {
+        String url = getUrl(page, getEncodedKeywords());
+        Semaphore permits = getHostPermits(url);
+
+        if (!permits.tryAcquire()) {
+            return null;
+        }
+
+        PageFetch fetch = new PageFetch(url, permits);
+        fetch.start();
+        return fetch;
+    }
+
+    private static ExecutorService newPageFetcher() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PAGE_FETCH_THREADS, MAX_PAGE_FETCH_THREADS, 5L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "PageFetcher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static Semaphore getHostPermits(String url) {
+        String host = url;
+        int start = url.indexOf("://");
+        if (start != -1) {
+            start += 3;
+            int end = url.indexOf('/', start);
+            host = end != -1 ? url.substring(start, end) : url.substring(start);
+        }
+
+        Semaphore permits = hostPermits.get(host);
+        if (permits == null) {
+            Semaphore newPermits = new Semaphore(MAX_PAGES_PER_HOST);
+            permits = hostPermits.putIfAbsent(host, newPermits);
+            if (permits == null) {
+                permits = newPermits;
+            }
+        }
+        return permits;
+    }
+
+    /**
+     * One page request, runs on the page fetcher with the pooled client of the
+     * performer, so stopping the performer aborts it. Holds a host permit until
+     * it's done or cancelled.
+     */
+    private final class PageFetch implements Callable<byte[]> {
+
+        private final String url;
+        private final Semaphore permits;
+        private final AtomicBoolean released;
+
+        private FutureTask<byte[]> future;
+
+        public PageFetch(String url, Semaphore permits) {
+            this.url = url;
+            this.permits = permits;
+            this.released = new AtomicBoolean();
+        }
+
+        public void start() {
+            future = new FutureTask<byte[]>(this) {
+                @Override
+                protected void done() {
+                    release();
+                }
+            };
+            pageFetcher.execute(future);
+        }
+
+        @Override
+        public byte[] call() {
+            long started = System.currentTimeMillis();
+            try {
+                return fetchBytes(url);
+            } finally {
+                getLatency().record(System.currentTimeMillis() - started);
+            }
+        }
+
+        /**
+         * @return the page body, null if the request failed
+         */
+        public byte[] await(int timeout) throws InterruptedException {
+            try {
+                // the client enforces the timeout, this only guards against a stuck request
+                return future.get(timeout * 2L, TimeUnit.MILLISECONDS);
+            } catch (CancellationException e) {
+                return null;
+            } catch (TimeoutException e) {
+                cancel();
+                getLatency().record(timeout);
+                return null;
+            } catch (Throwable e) {
+                return null;
+            }
+        }
+
+        public void cancel() {
+            future.cancel(true);
+            release();
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Moving average of the page latency of an engine, the recent pages weigh more.
+     */
+    private static final class PageLatency {
+
+        private long average;
+
+        public synchronized void record(long millis) {
+            average = average == 0 ? millis : (average * 3 + millis) / 4;
+        }
+
+        public synchronized long average() {
+            return average;
+        }
+    }
 }
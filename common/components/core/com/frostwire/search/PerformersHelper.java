@@ -18,10 +18,15 @@
 package com.frostwire.search;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.regex.Matcher;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.frostwire.search.torrent.TorrentCrawlableSearchResult;
 import com.frostwire.search.torrent.TorrentCrawledSearchResult;
 import com.frostwire.torrent.TOTorrent;
@@ -37,6 +42,8 @@ import com.frostwire.torrent.TorrentUtils;
  */
 public final class PerformersHelper {
 
+    private static final Logger LOG = LoggerFactory.getLogger(PerformersHelper.class);
+
     private PerformersHelper() {
     }
 
@@ -60,12 +67,64 @@ public final class PerformersHelper {
         return result;
     }
 
+    /**
+     * Downloads the page and emits the matches to the performer listener as they are found,
+     * stopping the download once regexMaxResults are found.
+     * <p>
+     * If the download fails the matches already emitted stand, the text left in the window
+     * is not matched since it's not the end of the page.
+     */
+    static <P extends WebSearchPerformer & RegexSearchPerformer<?>> void searchPageStreaming(P performer, String url, int regexMaxResults) {
+        RegexStreamMatcher matcher = new RegexStreamMatcher(performer, regexMaxResults);
+
+        try {
+            performer.fetch(url, matcher);
+        } catch (IOException e) {
+            // the matcher aborts the download itself once done, that's not an error
+            if (!matcher.isDone()) {
+                LOG.warn("Error streaming page: " + url + ", e=" + e.getMessage());
+            }
+            return;
+        }
+
+        matcher.finish();
+    }
+
+    /**
+     * The info-hash of a BitTorrent magnet, lower case if hex encoded, null if it's not one.
+     */
+    static String getInfoHash(String magnet) {
+        if (magnet.startsWith("magnet")) {
+            int start = magnet.indexOf("urn:btih:");
+            if (start != -1) {
+                start += 9;
+                int end = magnet.indexOf('&', start);
+                String hash = end != -1 ? magnet.substring(start, end) : magnet.substring(start);
+                // hex encoded hashes are case insensitive
+                return hash.length() == 40 ? hash.toLowerCase(Locale.US) : hash;
+            }
+        }
+        return null;
+    }
+
     /**
      * This method is only public allow reuse inside the package search, consider it a private API
      */
     public static List<? extends SearchResult> crawlTorrent(SearchPerformer performer, TorrentCrawlableSearchResult sr, byte[] data) throws TOTorrentException {
         List<TorrentCrawledSearchResult> list = new LinkedList<TorrentCrawledSearchResult>();
 
+        // only the file list is needed, avoid building the whole torrent when possible
+        List<TorrentUtils.FileEntry> entries = TorrentUtils.readFileList(data);
+
+        if (entries != null) {
+            for (int i = 0; !performer.isStopped() && i < entries.size(); i++) {
+                TorrentUtils.FileEntry entry = entries.get(i);
+                list.add(new TorrentCrawledSearchResult(sr, entry.relativePath, entry.length));
+            }
+
+            return list;
+        }
+
         TOTorrent torrent = TorrentUtils.readFromBEncodedInputStream(new ByteArrayInputStream(data));
 
         if (torrent != null) {
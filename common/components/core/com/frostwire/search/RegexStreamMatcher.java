@@ -0,0 +1,187 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+ 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * Runs the pattern of a regex performer over an HTTP body while it downloads.
+ * <p>
+ * The bytes are decoded incrementally into a bounded sliding window of chars,
+ * after each chunk the new matches are sent to the performer listener and the
+ * consumed text is discarded. A match touching the end of the window is only
+ * accepted once more input arrives or the body ends, since it could still change,
+ * the window is kept from its start. Without a pending match only the last
+ * {@link #MAX_MATCH_SIZE} chars are kept, so each chunk rescans a bounded amount
+ * of text.
+ * When the maximum number of results is reached or the performer is stopped the
+ * writes fail, aborting the download.
+ * 
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+final class RegexStreamMatcher extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Maximum chars of a match, longer ones are dropped. Several times the size of a
+     * result of any of the engines.
+     */
+    private static final int MAX_MATCH_SIZE = 64 * 1024;
+
+    private final AbstractSearchPerformer performer;
+    private final RegexSearchPerformer<?> regex;
+    private final int maxResults;
+
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+    private final StringBuilder window;
+
+    private int numResults;
+
+    public <P extends AbstractSearchPerformer & RegexSearchPerformer<?>> RegexStreamMatcher(P performer, int maxResults) {
+        this.performer = performer;
+        this.regex = performer;
+        this.maxResults = maxResults;
+
+        this.decoder = Charset.forName("UTF-8").newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        this.chars = CharBuffer.allocate(BUFFER_SIZE);
+        this.window = new StringBuilder(BUFFER_SIZE * 4);
+    }
+
+    public int getNumResults() {
+        return numResults;
+    }
+
+    public boolean isDone() {
+        return numResults >= maxResults || performer.isStopped();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (isDone()) {
+            throw new IOException("Enough results or performer stopped, aborting download");
+        }
+
+        while (len > 0) {
+            int n = Math.min(len, bytes.remaining());
+            bytes.put(b, off, n);
+            off += n;
+            len -= n;
+
+            bytes.flip();
+            decoder.decode(bytes, chars, false);
+            bytes.compact();
+            drainChars();
+        }
+
+        match(false);
+    }
+
+    /**
+     * Matches the remaining text once the body is completely downloaded.
+     */
+    public void finish() {
+        if (!isDone()) {
+            bytes.flip();
+            decoder.decode(bytes, chars, true);
+            decoder.flush(chars);
+            drainChars();
+
+            match(true);
+        }
+
+        window.setLength(0);
+    }
+
+    private void drainChars() {
+        chars.flip();
+        window.append(chars);
+        chars.clear();
+    }
+
+    private void match(boolean endOfInput) {
+        List<SearchResult> results = new LinkedList<SearchResult>();
+
+        Matcher matcher = regex.getPattern().matcher(window);
+
+        int length = window.length();
+        int consumed = 0;
+        int pending = -1;
+        boolean found;
+
+        while ((found = matcher.find()) && numResults < maxResults && !performer.isStopped()) {
+            if (!endOfInput && matcher.hitEnd()) {
+                // more input could change this match
+                pending = matcher.start();
+                break;
+            }
+
+            SearchResult sr = regex.fromMatcher(matcher);
+            if (sr != null) {
+                results.add(sr);
+                numResults++;
+            }
+
+            consumed = matcher.end();
+        }
+
+        // the next match starts after this, it's where the next chunk resumes
+        int resume;
+
+        if (pending != -1) {
+            resume = pending;
+        } else if (!found) {
+            // with more input, only a match starting near the end can still happen
+            resume = matcher.hitEnd() ? Math.max(consumed, length - MAX_MATCH_SIZE) : length;
+        } else {
+            resume = consumed;
+        }
+
+        if (length - resume > MAX_MATCH_SIZE) {
+            // the pending match is too long, give up on it
+            resume = Math.max(resume + 1, length - MAX_MATCH_SIZE);
+        }
+
+        if (resume > 0) {
+            window.delete(0, resume);
+        }
+
+        if (!results.isEmpty()) {
+            performer.onResults(performer, results);
+        }
+    }
+}
@@ -17,19 +17,30 @@
 
 package com.frostwire.search;
 
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Runs the search performers in two separate lanes, one for the search pages
+ * (perform) and one for the crawls, so slow crawls don't hold back the engines.
+ * Each lane serves the active searches in round robin, giving an extra turn to
+ * the newest search, and limits how many tasks of the same engine run at once for
+ * each search.
  * 
  * @author gubatron
  * @author aldenml
@@ -40,15 +51,24 @@ public class SearchManagerImpl implements SearchManager {
     private static final Logger LOG = LoggerFactory.getLogger(SearchManagerImpl.class);
 
     private static final int DEFAULT_NTHREADS = 4;
+    private static final int DEFAULT_MAX_TASKS_PER_ENGINE = 2;
 
-    private final ExecutorService executor;
-    private final List<SearchTask> tasks;
+    private final Lane performLane;
+    private final Lane crawlLane;
+    private final ConcurrentMap<Long, TokenTasks> tasks;
 
     private SearchManagerListener listener;
+    private volatile long newestToken;
+
+    public SearchManagerImpl(int performThreads, int crawlThreads, int maxTasksPerEngine) {
+        this.performLane = new Lane(this, performThreads, maxTasksPerEngine);
+        this.crawlLane = new Lane(this, crawlThreads, maxTasksPerEngine);
+        this.tasks = new ConcurrentHashMap<Long, TokenTasks>();
+        this.newestToken = -1L;
+    }
 
     public SearchManagerImpl(int nThreads) {
-        this.executor = newFixedThreadPool(nThreads);
-        this.tasks = Collections.synchronizedList(new LinkedList<SearchTask>());
+        this(nThreads, nThreads, DEFAULT_MAX_TASKS_PER_ENGINE);
     }
 
     public SearchManagerImpl() {
@@ -69,10 +89,7 @@ public class SearchManagerImpl implements SearchManager {
 
             performer.registerListener(new PerformerResultListener(this));
 
-            SearchTask task = new PerformTask(this, performer, getOrder(performer.getToken()));
-
-            tasks.add(task);
-            executor.execute(task);
+            schedule(new PerformTask(this, performer), performLane);
         } else {
             LOG.warn("Search performer is null, review your logic");
         }
@@ -91,21 +108,9 @@ public class SearchManagerImpl implements SearchManager {
     @Override
     public boolean shutdown(long timeout, TimeUnit unit) {
         stop();
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(timeout, unit)) {
-                executor.shutdownNow();
-                // wait a while for tasks to respond to being cancelled
-                if (!executor.awaitTermination(timeout, unit)) {
-                    LOG.error("Pool did not terminate");
-                    return false;
-                }
-            }
-        } catch (InterruptedException ie) {
-            // (re-)cancel if current thread also interrupted
-            executor.shutdownNow();
-            // preserve interrupt status
-            Thread.currentThread().interrupt();
+
+        if (!shutdown(performLane.executor, timeout, unit) || !shutdown(crawlLane.executor, timeout, unit)) {
+            return false;
         }
 
         return tasks.isEmpty();
@@ -132,13 +137,14 @@ public class SearchManagerImpl implements SearchManager {
     }
 
     private void stopTasks(long token) {
-        synchronized (tasks) {
-            Iterator<SearchTask> it = tasks.iterator();
-            while (it.hasNext()) {
-                SearchTask task = it.next();
-                if (token == -1L || task.getToken() == token) {
-                    task.stop();
-                }
+        if (token == -1L) {
+            for (TokenTasks tt : tasks.values()) {
+                tt.stop();
+            }
+        } else {
+            TokenTasks tt = tasks.get(token);
+            if (tt != null) {
+                tt.stop();
             }
         }
     }
@@ -146,9 +152,7 @@ public class SearchManagerImpl implements SearchManager {
     private void crawl(SearchPerformer performer, CrawlableSearchResult sr) {
         if (performer != null && !performer.isStopped()) {
             try {
-                SearchTask task = new CrawlTask(this, performer, sr, getOrder(performer.getToken()));
-                tasks.add(task);
-                executor.execute(task);
+                schedule(new CrawlTask(this, performer, sr), crawlLane);
             } catch (Throwable e) {
                 LOG.warn("Error scheduling crawling of search result: " + sr);
             }
@@ -157,44 +161,70 @@ public class SearchManagerImpl implements SearchManager {
         }
     }
 
-    private void checkIfFinished(SearchPerformer performer) {
-        SearchTask pendingTask = null;
-
-        synchronized (tasks) {
-            Iterator<SearchTask> it = tasks.iterator();
-            while (it.hasNext() && pendingTask == null) {
-                SearchTask task = it.next();
-                if (task.getToken() == performer.getToken() && !task.isStopped()) {
-                    pendingTask = task;
+    private void schedule(SearchTask task, Lane lane) {
+        long token = task.getToken();
+
+        TokenTasks tt;
+        while (true) {
+            tt = tasks.get(token);
+            if (tt == null) {
+                TokenTasks newTT = new TokenTasks();
+                tt = tasks.putIfAbsent(token, newTT);
+                if (tt == null) {
+                    tt = newTT;
+                    newestToken = token;
                 }
+            }
 
-                if (task.isStopped()) {
-                    it.remove();
-                }
+            if (tt.add(task)) {
+                break;
             }
+
+            // the registry for this token was just closed by a finishing task, discard and retry
+            tasks.remove(token, tt);
         }
 
-        if (pendingTask == null) {
-            onFinished(performer.getToken());
+        try {
+            lane.submit(task);
+        } catch (RuntimeException e) {
+            complete(task);
+            throw e;
+        }
+    }
+
+    private void complete(SearchTask task) {
+        long token = task.getToken();
+        TokenTasks tt = tasks.get(token);
+
+        if (tt != null && tt.remove(task)) {
+            tasks.remove(token, tt);
+            onFinished(token);
         }
     }
 
-    private int getOrder(long token) {
-        int order = 0;
-        synchronized (tasks) {
-            Iterator<SearchTask> it = tasks.iterator();
-            while (it.hasNext()) {
-                SearchTask task = it.next();
-                if (task.getToken() == token) {
-                    order = order + 1;
+    private static boolean shutdown(ExecutorService executor, long timeout, TimeUnit unit) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeout, unit)) {
+                executor.shutdownNow();
+                // wait a while for tasks to respond to being cancelled
+                if (!executor.awaitTermination(timeout, unit)) {
+                    LOG.error("Pool did not terminate");
+                    return false;
                 }
             }
+        } catch (InterruptedException ie) {
+            // (re-)cancel if current thread also interrupted
+            executor.shutdownNow();
+            // preserve interrupt status
+            Thread.currentThread().interrupt();
         }
-        return order;
+
+        return true;
     }
 
     private static ExecutorService newFixedThreadPool(int nThreads) {
-        return new ThreadPoolExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>());
+        return new ThreadPoolExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
     }
 
     private static final class PerformerResultListener implements SearchListener {
@@ -229,16 +259,19 @@ public class SearchManagerImpl implements SearchManager {
         }
     }
 
-    private static abstract class SearchTask implements Runnable, Comparable<SearchTask> {
+    private static abstract class SearchTask implements Runnable {
 
         protected final SearchManagerImpl manager;
         protected final SearchPerformer performer;
-        private final int order;
 
-        public SearchTask(SearchManagerImpl manager, SearchPerformer performer, int order) {
+        // links of the list of the registry the task is pending in, guarded by it
+        private TokenTasks owner;
+        private SearchTask prev;
+        private SearchTask next;
+
+        public SearchTask(SearchManagerImpl manager, SearchPerformer performer) {
             this.manager = manager;
             this.performer = performer;
-            this.order = order;
         }
 
         public long getToken() {
@@ -253,16 +286,18 @@ public class SearchManagerImpl implements SearchManager {
             performer.stop();
         }
 
-        @Override
-        public int compareTo(SearchTask o) {
-            return order - o.order;
+        /**
+         * The engine is identified by the performer class.
+         */
+        public Class<?> getEngine() {
+            return performer.getClass();
         }
     }
 
     private static final class PerformTask extends SearchTask {
 
-        public PerformTask(SearchManagerImpl manager, SearchPerformer performer, int order) {
-            super(manager, performer, order);
+        public PerformTask(SearchManagerImpl manager, SearchPerformer performer) {
+            super(manager, performer);
         }
 
         @Override
@@ -274,9 +309,7 @@ public class SearchManagerImpl implements SearchManager {
             } catch (Throwable e) {
                 LOG.warn("Error performing search: " + performer + ", e=" + e.getMessage());
             } finally {
-                if (manager.tasks.remove(this)) {
-                    manager.checkIfFinished(performer);
-                }
+                manager.complete(this);
             }
         }
     }
@@ -285,8 +318,8 @@ public class SearchManagerImpl implements SearchManager {
 
         private final CrawlableSearchResult sr;
 
-        public CrawlTask(SearchManagerImpl manager, SearchPerformer performer, CrawlableSearchResult sr, int order) {
-            super(manager, performer, order);
+        public CrawlTask(SearchManagerImpl manager, SearchPerformer performer, CrawlableSearchResult sr) {
+            super(manager, performer);
             this.sr = sr;
         }
 
@@ -299,10 +332,363 @@ public class SearchManagerImpl implements SearchManager {
             } catch (Throwable e) {
                 LOG.warn("Error performing crawling of: " + sr + ", e=" + e.getMessage());
             } finally {
-                if (manager.tasks.remove(this)) {
-                    manager.checkIfFinished(performer);
+                manager.complete(this);
+            }
+        }
+    }
+
+    /**
+     * Per token bookkeeping of the pending tasks, a list linked through the tasks
+     * themselves so scheduling and completing a task allocates nothing. The monitor is
+     * per token, searches don't contend with each other. Once the last task completes
+     * the registry is closed and must be discarded.
+     */
+    private static final class TokenTasks {
+
+        private SearchTask head;
+        private boolean closed;
+
+        /**
+         * Returns false if the registry is closed.
+         */
+        public synchronized boolean add(SearchTask task) {
+            if (closed) {
+                return false;
+            }
+            task.owner = this;
+            task.next = head;
+            if (head != null) {
+                head.prev = task;
+            }
+            head = task;
+            return true;
+        }
+
+        /**
+         * Returns true if this was the last pending task, closing the registry.
+         */
+        public synchronized boolean remove(SearchTask task) {
+            if (task.owner != this) {
+                return false;
+            }
+            if (task.prev != null) {
+                task.prev.next = task.next;
+            } else {
+                head = task.next;
+            }
+            if (task.next != null) {
+                task.next.prev = task.prev;
+            }
+            task.owner = null;
+            task.prev = null;
+            task.next = null;
+
+            closed = head == null;
+            return closed;
+        }
+
+        public void stop() {
+            List<SearchTask> pending = new ArrayList<SearchTask>();
+            synchronized (this) {
+                for (SearchTask t = head; t != null; t = t.next) {
+                    pending.add(t);
+                }
+            }
+            // outside the monitor, stopping a performer aborts its downloads
+            for (SearchTask task : pending) {
+                task.stop();
+            }
+        }
+    }
+
+    /**
+     * A pool of threads serving the active searches in round robin.
+     * <p>
+     * Each search keeps a FIFO queue per engine and a queue of its ready engines, the
+     * ones with pending tasks and under the limit of tasks running at once for that
+     * search. An engine at its limit is out of the ready queue until one of its tasks
+     * completes, picking a task never goes through blocked ones. The searches with ready
+     * engines take turns in a lock free queue, the only monitors are per search.
+     * <p>
+     * Every submitted task adds a ticket to the executor, running a ticket picks the
+     * next ready task. When no task is ready the ticket is saved and reissued once a
+     * running task completes.
+     */
+    private static final class Lane {
+
+        private final SearchManagerImpl manager;
+        private final ExecutorService executor;
+        private final int maxTasksPerEngine;
+
+        private final ConcurrentMap<Long, SearchQueue> searches;
+        private final ConcurrentLinkedQueue<SearchQueue> rotation;
+        private final AtomicInteger savedTickets;
+        private final AtomicInteger turns;
+
+        private final Runnable ticket = new Runnable() {
+            @Override
+            public void run() {
+                runNext();
+            }
+        };
+
+        public Lane(SearchManagerImpl manager, int nThreads, int maxTasksPerEngine) {
+            this.manager = manager;
+            this.executor = newFixedThreadPool(nThreads);
+            this.maxTasksPerEngine = maxTasksPerEngine;
+
+            this.searches = new ConcurrentHashMap<Long, SearchQueue>();
+            this.rotation = new ConcurrentLinkedQueue<SearchQueue>();
+            this.savedTickets = new AtomicInteger(0);
+            this.turns = new AtomicInteger(0);
+        }
+
+        public void submit(SearchTask task) {
+            Long token = task.getToken();
+
+            SearchQueue sq;
+            while (true) {
+                sq = searches.get(token);
+                if (sq == null) {
+                    SearchQueue newSQ = new SearchQueue(token);
+                    sq = searches.putIfAbsent(token, newSQ);
+                    if (sq == null) {
+                        sq = newSQ;
+                    }
+                }
+
+                if (sq.add(task)) {
+                    break;
+                }
+
+                // the queue of this search was just closed by a completing task, discard and retry
+                searches.remove(token, sq);
+            }
+
+            try {
+                executor.execute(ticket);
+            } catch (RuntimeException e) {
+                // if it's not queued anymore a saved ticket took it, it runs and completes as usual
+                if (sq.remove(task)) {
+                    throw e;
+                }
+            }
+        }
+
+        private void runNext() {
+            SearchTask task = poll();
+
+            while (task == null) {
+                savedTickets.incrementAndGet();
+
+                // a task made ready in the meantime could have missed the saved ticket
+                if (rotation.isEmpty() || !takeSavedTicket()) {
+                    return;
+                }
+
+                task = poll();
+            }
+
+            try {
+                task.run();
+            } finally {
+                release(task);
+            }
+        }
+
+        private SearchTask poll() {
+            SearchTask task = null;
+
+            // every other turn goes first to the newest search
+            if ((turns.incrementAndGet() & 1) == 0) {
+                SearchQueue newest = searches.get(manager.newestToken);
+                if (newest != null) {
+                    task = newest.poll(false);
+                }
+            }
+
+            while (task == null) {
+                SearchQueue sq = rotation.poll();
+                if (sq == null) {
+                    break;
+                }
+                task = sq.poll(true);
+            }
+
+            return task;
+        }
+
+        private void release(SearchTask task) {
+            // the queue can't be closed while one of its tasks is running
+            SearchQueue sq = searches.get(task.getToken());
+            if (sq != null) {
+                sq.release(task);
+            }
+
+            if (!rotation.isEmpty() && takeSavedTicket()) {
+                try {
+                    executor.execute(ticket);
+                } catch (Throwable e) {
+                    LOG.warn("Unable to reschedule search task: " + e.getMessage());
+                }
+            }
+        }
+
+        private boolean takeSavedTicket() {
+            while (true) {
+                int n = savedTickets.get();
+                if (n <= 0) {
+                    return false;
+                }
+                if (savedTickets.compareAndSet(n, n - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * The queues of the tasks of a search in the lane, the search is in the
+         * rotation while it has ready engines. Once it has no tasks queued nor
+         * running it's closed and must be discarded.
+         */
+        private final class SearchQueue {
+
+            private final Long token;
+            private final Map<Class<?>, EngineQueue> engines;
+            private final ArrayDeque<EngineQueue> ready;
+
+            private int pending; // queued and running
+            private boolean inRotation;
+            private boolean closed;
+
+            public SearchQueue(Long token) {
+                this.token = token;
+                this.engines = new HashMap<Class<?>, EngineQueue>();
+                this.ready = new ArrayDeque<EngineQueue>();
+            }
+
+            /**
+             * Returns false if the queue is closed.
+             */
+            public synchronized boolean add(SearchTask task) {
+                if (closed) {
+                    return false;
+                }
+
+                EngineQueue eq = engines.get(task.getEngine());
+                if (eq == null) {
+                    eq = new EngineQueue();
+                    engines.put(task.getEngine(), eq);
                 }
+                eq.tasks.addLast(task);
+                pending++;
+
+                makeReady(eq);
+
+                return true;
             }
+
+            /**
+             * The next task of the next ready engine, engines take turns too.
+             * 
+             * @param turn true if the search was taken from the rotation, then it's put
+             *        back if it still has ready engines
+             */
+            public synchronized SearchTask poll(boolean turn) {
+                SearchTask task = null;
+
+                EngineQueue eq = ready.pollFirst();
+                if (eq != null) {
+                    task = eq.tasks.pollFirst();
+                    eq.running++;
+
+                    if (!eq.tasks.isEmpty() && !isFull(eq)) {
+                        ready.addLast(eq);
+                    } else {
+                        eq.ready = false;
+                    }
+                }
+
+                if (turn) {
+                    if (ready.isEmpty()) {
+                        inRotation = false;
+                    } else {
+                        rotation.add(this);
+                    }
+                }
+
+                return task;
+            }
+
+            public synchronized void release(SearchTask task) {
+                EngineQueue eq = engines.get(task.getEngine());
+                eq.running--;
+                pending--;
+
+                if (eq.tasks.isEmpty() && eq.running == 0) {
+                    engines.remove(task.getEngine());
+                } else {
+                    makeReady(eq);
+                }
+
+                closeIfDone();
+            }
+
+            /**
+             * Returns false if the task is not queued anymore.
+             */
+            public synchronized boolean remove(SearchTask task) {
+                EngineQueue eq = engines.get(task.getEngine());
+                if (eq == null || !eq.tasks.remove(task)) {
+                    return false;
+                }
+                pending--;
+
+                if (eq.tasks.isEmpty()) {
+                    ready.remove(eq);
+                    eq.ready = false;
+                    if (eq.running == 0) {
+                        engines.remove(task.getEngine());
+                    }
+                }
+
+                closeIfDone();
+
+                return true;
+            }
+
+            private boolean isFull(EngineQueue eq) {
+                return maxTasksPerEngine > 0 && eq.running >= maxTasksPerEngine;
+            }
+
+            private void makeReady(EngineQueue eq) {
+                if (!eq.ready && !eq.tasks.isEmpty() && !isFull(eq)) {
+                    eq.ready = true;
+                    ready.addLast(eq);
+
+                    if (!inRotation) {
+                        inRotation = true;
+                        rotation.add(this);
+                    }
+                }
+            }
+
+            private void closeIfDone() {
+                if (pending == 0) {
+                    closed = true;
+                    searches.remove(token, this);
+                }
+            }
+        }
+
+        /**
+         * The tasks of one engine in a search, guarded by the search queue.
+         */
+        private static final class EngineQueue {
+
+            private final ArrayDeque<SearchTask> tasks = new ArrayDeque<SearchTask>();
+            private int running;
+            private boolean ready;
         }
     }
 }
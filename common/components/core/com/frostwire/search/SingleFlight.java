@@ -0,0 +1,93 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+ 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses concurrent calls for the same key into a single execution.
+ * <p>
+ * The first caller for a key runs the work in its own thread, callers arriving
+ * while it's in flight wait for it and share the same result. Once the work is done
+ * the key is forgotten, results are not cached here.
+ * 
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, FutureTask<V>> calls;
+
+    private final AtomicLong executed;
+    private final AtomicLong shared;
+
+    public SingleFlight() {
+        this.calls = new ConcurrentHashMap<K, FutureTask<V>>();
+
+        this.executed = new AtomicLong(0);
+        this.shared = new AtomicLong(0);
+    }
+
+    public V execute(K key, Callable<V> callable) throws Exception {
+        FutureTask<V> task = new FutureTask<V>(callable);
+        FutureTask<V> inflight = calls.putIfAbsent(key, task);
+
+        if (inflight == null) {
+            executed.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                calls.remove(key, task);
+            }
+            inflight = task;
+        } else {
+            shared.incrementAndGet();
+        }
+
+        try {
+            return inflight.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Number of times the work was actually executed.
+     */
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    /**
+     * Number of calls served by an execution already in flight, that is, the work saved.
+     */
+    public long getShared() {
+        return shared.get();
+    }
+}
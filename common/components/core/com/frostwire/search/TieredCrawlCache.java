@@ -0,0 +1,79 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+ 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+/**
+ * Two level crawl cache, a fast (usually in memory) cache in front of
+ * a slower persistent one. Writes go through both levels and hits in
+ * the second level are promoted to the first one.
+ * 
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public final class TieredCrawlCache implements CrawlCache {
+
+    private final CrawlCache first;
+    private final CrawlCache second;
+
+    public TieredCrawlCache(CrawlCache first, CrawlCache second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public byte[] get(String key) {
+        byte[] data = first.get(key);
+
+        if (data == null) {
+            data = second.get(key);
+            if (data != null) {
+                first.put(key, data);
+            }
+        }
+
+        return data;
+    }
+
+    @Override
+    public void put(String key, byte[] data) {
+        first.put(key, data);
+        second.put(key, data);
+    }
+
+    @Override
+    public void remove(String key) {
+        first.remove(key);
+        second.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        first.clear();
+        second.clear();
+    }
+
+    /**
+     * The first level only holds a subset of the second one, so this is
+     * the size of the persistent level.
+     */
+    @Override
+    public long size() {
+        return second.size();
+    }
+}
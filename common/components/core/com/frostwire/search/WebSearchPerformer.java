@@ -17,11 +17,15 @@
 
 package com.frostwire.search;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.frostwire.util.HttpClient;
 import com.frostwire.util.HttpClientFactory;
+import com.frostwire.util.HttpClientType;
 import com.frostwire.util.URLUtils;
 import com.frostwire.util.UserAgentGenerator;
 
@@ -47,7 +51,8 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
         this.keywords = keywords;
         this.encodedKeywords = URLUtils.encode(keywords);
         this.timeout = timeout;
-        this.client = HttpClientFactory.newDefaultInstance();
+        // pooled client, the engines and crawls hit the same hosts over and over
+        this.client = HttpClientFactory.newInstance(HttpClientType.Apache);
     }
 
     public final String getKeywords() {
@@ -58,6 +63,16 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
         return encodedKeywords;
     }
 
+    /**
+     * Aborts the requests in flight along with stopping the performer.
+     */
+    @Override
+    public void stop() {
+        super.stop();
+
+        client.cancel();
+    }
+
     @Override
     public void crawl(CrawlableSearchResult sr) {
         LOG.warn("Review your logic, calling deep search without implementation for: " + sr);
@@ -70,13 +85,33 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
      * @return the web page (html)
      */
     public String fetch(String url) {
-        return fetch(url, null);
+        return fetch(url, getCookie());
     }
 
     public String fetch(String url, String cookie) {
         return client.get(url, timeout, DEFAULT_USER_AGENT, null, cookie);
     }
 
+    /**
+     * Allow to perform the HTTP operation using the same internal http client,
+     * writing the body to the output stream as it arrives.
+     * 
+     * @param url
+     * @param out
+     * @throws IOException if the download failed, was canceled or the output stream
+     *         aborted it, what was written is then only part of the body
+     */
+    public void fetch(String url, OutputStream out) throws IOException {
+        client.get(url, out, timeout, DEFAULT_USER_AGENT, null, getCookie());
+    }
+
+    /**
+     * The cookie sent with the page requests, none by default.
+     */
+    protected String getCookie() {
+        return null;
+    }
+
     /**
      * Allow to perform the HTTP operation using the same internal http client.
      * 
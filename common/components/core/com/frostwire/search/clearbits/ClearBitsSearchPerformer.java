@@ -18,10 +18,7 @@
 
 package com.frostwire.search.clearbits;
 
-import java.util.List;
-
 import com.frostwire.search.torrent.TorrentJsonSearchPerformer;
-import com.frostwire.util.JsonUtils;
 
 /**
  * @author gubatron
@@ -31,7 +28,7 @@ import com.frostwire.util.JsonUtils;
 public class ClearBitsSearchPerformer extends TorrentJsonSearchPerformer<ClearBitsItem, ClearBitsSearchResult> {
 
     public ClearBitsSearchPerformer(long token, String keywords, int timeout) {
-        super(token, keywords, timeout, 1);
+        super(token, keywords, timeout, 1, ClearBitsItem.class, "results");
     }
 
     @Override
@@ -40,10 +37,9 @@ public class ClearBitsSearchPerformer extends TorrentJsonSearchPerformer<ClearBi
     }
 
     @Override
-    protected List<ClearBitsItem> parseJson(String json) {
-        ClearBitsResponse response = JsonUtils.toObject(json, ClearBitsResponse.class);
-        response.fixItems();
-        return response.results;
+    protected ClearBitsItem fixItem(ClearBitsItem item) {
+        item.fixItem();
+        return item;
     }
 
     @Override
@@ -18,10 +18,7 @@
 
 package com.frostwire.search.extratorrent;
 
-import java.util.List;
-
 import com.frostwire.search.torrent.TorrentJsonSearchPerformer;
-import com.frostwire.util.JsonUtils;
 
 /**
  * @author gubatron
@@ -33,7 +30,7 @@ public class ExtratorrentSearchPerformer extends TorrentJsonSearchPerformer<Extr
 
     
     public ExtratorrentSearchPerformer(long token, String keywords, int timeout) {
-        super(token, keywords, timeout, 1);
+        super(token, keywords, timeout, 1, ExtratorrentItem.class, "list");
     }
 
     @Override
@@ -41,12 +38,6 @@ public class ExtratorrentSearchPerformer extends TorrentJsonSearchPerformer<Extr
         return "http://extratorrent.com/json/?search=" + encodedKeywords;
     }
 
-    @Override
-    protected List<ExtratorrentItem> parseJson(String json) {
-        ExtratorrentResponse response = JsonUtils.toObject(json, ExtratorrentResponse.class);
-        return response.list;
-    }
-
     @Override
     protected ExtratorrentSearchResult fromItem(ExtratorrentItem item) {
         return new ExtratorrentSearchResult(item);
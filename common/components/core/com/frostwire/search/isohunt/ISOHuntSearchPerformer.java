@@ -18,10 +18,7 @@
 
 package com.frostwire.search.isohunt;
 
-import java.util.List;
-
 import com.frostwire.search.torrent.TorrentJsonSearchPerformer;
-import com.frostwire.util.JsonUtils;
 
 /**
  * @author gubatron
@@ -31,7 +28,7 @@ import com.frostwire.util.JsonUtils;
 public class ISOHuntSearchPerformer extends TorrentJsonSearchPerformer<ISOHuntItem, ISOHuntSearchResult> {
 
     public ISOHuntSearchPerformer(long token, String keywords, int timeout) {
-        super(token, keywords, timeout, 1);
+        super(token, keywords, timeout, 1, ISOHuntItem.class, "items", "list");
     }
 
     @Override
@@ -39,12 +36,6 @@ public class ISOHuntSearchPerformer extends TorrentJsonSearchPerformer<ISOHuntIt
         return "http://isohunt.com/js/json.php?ihq=" + encodedKeywords + "&start=1&rows=100&sort=seeds";
     }
 
-    @Override
-    protected List<ISOHuntItem> parseJson(String json) {
-        ISOHuntResponse response = JsonUtils.toObject(json, ISOHuntResponse.class);
-        return response.items.list;
-    }
-
     @Override
     protected ISOHuntSearchResult fromItem(ISOHuntItem item) {
         return new ISOHuntSearchResult(item);
@@ -18,10 +18,8 @@
 
 package com.frostwire.search.kat;
 
-import java.util.List;
-
 import com.frostwire.search.torrent.TorrentJsonSearchPerformer;
-import com.frostwire.util.JsonUtils;
+import com.frostwire.util.StringUtils;
 
 /**
  * 
@@ -32,7 +30,7 @@ import com.frostwire.util.JsonUtils;
 public class KATSearchPerformer extends TorrentJsonSearchPerformer<KATItem, KATSearchResult> {
 
     public KATSearchPerformer(long token, String keywords, int timeout) {
-        super(token, keywords, timeout, 1);
+        super(token, keywords, timeout, 1, KATItem.class, "list");
     }
 
     @Override
@@ -40,11 +38,17 @@ public class KATSearchPerformer extends TorrentJsonSearchPerformer<KATItem, KATS
         return "http://www.kat.ph/json.php?q=" + encodedKeywords;
     }
 
+    /**
+     * Include only verified results to keep users safe.
+     */
     @Override
-    protected List<KATItem> parseJson(String json) {
-        KATResponse response = JsonUtils.toObject(json, KATResponse.class);
-        response.fixItems();
-        return response.list;
+    protected KATItem fixItem(KATItem item) {
+        //Take out non-verified results and
+        //elements missing mandatory data
+        if (item.verified == 0 || StringUtils.isNullOrEmpty(item.title) || StringUtils.isNullOrEmpty(item.hash) || StringUtils.isNullOrEmpty(item.torrentLink) || StringUtils.isNullOrEmpty(item.link) || item.size <= 0) {
+            return null;
+        }
+        return item;
     }
 
     @Override
@@ -18,10 +18,7 @@
 
 package com.frostwire.search.mininova;
 
-import java.util.List;
-
 import com.frostwire.search.torrent.TorrentJsonSearchPerformer;
-import com.frostwire.util.JsonUtils;
 
 /**
  * @author gubatron
@@ -31,7 +28,7 @@ import com.frostwire.util.JsonUtils;
 public class MininovaSearchPerformer extends TorrentJsonSearchPerformer<MininovaVuzeItem, MininovaVuzeSearchResult> {
 
     public MininovaSearchPerformer(long token, String keywords, int timeout) {
-        super(token, keywords, timeout, 1);
+        super(token, keywords, timeout, 1, MininovaVuzeItem.class, "results");
     }
 
     @Override
@@ -39,14 +36,6 @@ public class MininovaSearchPerformer extends TorrentJsonSearchPerformer<Mininova
         return "http://www.mininova.org/vuze.php?search=" + encodedKeywords;
     }
 
-    @Override
-    protected List<MininovaVuzeItem> parseJson(String json) {
-        //fix what seems to be an intentional JSON syntax typo put ther by mininova
-        json = json.replace("\"hash\":", ", \"hash\":");
-        MininovaVuzeResponse response = JsonUtils.toObject(json, MininovaVuzeResponse.class);
-        return response.results;
-    }
-
     @Override
     protected MininovaVuzeSearchResult fromItem(MininovaVuzeItem item) {
         return new MininovaVuzeSearchResult(item);
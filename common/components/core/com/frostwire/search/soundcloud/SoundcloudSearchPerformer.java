@@ -35,13 +35,15 @@ public class SoundcloudSearchPerformer extends PagedRegexSearchPerformer<Soundcl
 
     private static final int MAX_RESULTS = 16;
 
+    private static final int CONCURRENT_PAGES = 2;
+
     private static final String DATE_FORMAT = "MMMM, dd yyyy HH:mm:ss Z";
 
     private static final String REGEX = "(?is)<a href=\"http://i1.sndcdn.com/artworks-(.*?)\" class=\"artwork\".*?<abbr title='(.*?)'.*?window.SC.bufferTracks.push\\((.*?)\\);";
     private static final Pattern PATTERN = Pattern.compile(REGEX);
 
     public SoundcloudSearchPerformer(long token, String keywords, int timeout) {
-        super(token, keywords, timeout, MAX_RESULTS / 4, MAX_RESULTS);
+        super(token, keywords, timeout, MAX_RESULTS / 4, CONCURRENT_PAGES, MAX_RESULTS);
     }
 
     @Override
@@ -62,8 +64,8 @@ public class SoundcloudSearchPerformer extends PagedRegexSearchPerformer<Soundcl
     }
 
     @Override
-    public String fetch(String url) {
-        return fetch(url, "enablev2=false");
+    protected String getCookie() {
+        return "enablev2=false";
     }
 
     @Override
@@ -0,0 +1,484 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search.torrent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reads the items of a JSON search response while it downloads, keeping only the
+ * ones with more seeds.
+ * <p>
+ * The bytes are decoded incrementally and scanned token by token, nothing but the
+ * items in the array found under the given path of keys is materialized. Each item
+ * object is bound to a new instance of the item class by its public fields, the same
+ * names gson would use, and offered to a bounded heap of the best items. Nested
+ * values inside an item are skipped.
+ * <p>
+ * The scanner is lenient like the responses of some engines require, a missing comma
+ * between members is tolerated and malformed input ends with the items read so far.
+ * When the performer is stopped the writes fail, aborting the download.
+ * 
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+final class JsonItemCollector<T extends ComparableTorrentJsonItem> extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Maximum chars of a single string or number kept, longer ones are truncated.
+     */
+    private static final int MAX_TOKEN_SIZE = 64 * 1024;
+
+    private static final int MAX_DEPTH = 64;
+
+    private static final ConcurrentMap<Class<?>, Field[]> fieldsCache = new ConcurrentHashMap<Class<?>, Field[]>();
+
+    private static final Comparator<Entry<?>> WORST_FIRST = new Comparator<Entry<?>>() {
+        @Override
+        public int compare(Entry<?> a, Entry<?> b) {
+            if (a.seeds != b.seeds) {
+                return a.seeds < b.seeds ? -1 : 1;
+            }
+            // on ties the later one is worse, keeps the order of the response
+            return a.index > b.index ? -1 : (a.index < b.index ? 1 : 0);
+        }
+    };
+
+    private final TorrentJsonSearchPerformer<T, ?> performer;
+    private final Class<T> itemClass;
+    private final Field[] fields;
+    private final String[] path;
+    private final int maxItems;
+
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+
+    private final PriorityQueue<Entry<T>> heap;
+    private int numItems;
+
+    // scanner state
+    private final char[] containers; // per depth, '{' or '['
+    private final int[] stack; // per depth, the path keys matched to get there, -1 if off path
+    private int depth;
+
+    private final StringBuilder token;
+    private int state;
+    private int unicode;
+    private int unicodeDigits;
+    private boolean expectValue;
+    private int pendingPathLevel;
+
+    private int itemDepth;
+    private T item;
+    private Field field;
+
+    private static final int STATE_VALUE = 0;
+    private static final int STATE_STRING = 1;
+    private static final int STATE_ESCAPE = 2;
+    private static final int STATE_UNICODE = 3;
+    private static final int STATE_LITERAL = 4;
+    private static final int STATE_ERROR = 5;
+
+    public JsonItemCollector(TorrentJsonSearchPerformer<T, ?> performer, Class<T> itemClass, String[] path, int maxItems) {
+        this.performer = performer;
+        this.itemClass = itemClass;
+        this.fields = getFields(itemClass);
+        this.path = path;
+        this.maxItems = maxItems;
+
+        this.decoder = Charset.forName("UTF-8").newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        this.chars = CharBuffer.allocate(BUFFER_SIZE);
+
+        this.heap = new PriorityQueue<Entry<T>>(Math.min(maxItems, 64) + 1, WORST_FIRST);
+
+        this.stack = new int[MAX_DEPTH];
+        this.containers = new char[MAX_DEPTH];
+        this.token = new StringBuilder();
+        this.pendingPathLevel = 0; // the root is always on the path
+        this.itemDepth = -1;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (performer.isStopped()) {
+            throw new IOException("Performer stopped, aborting download");
+        }
+
+        while (len > 0) {
+            int n = Math.min(len, bytes.remaining());
+            bytes.put(b, off, n);
+            off += n;
+            len -= n;
+
+            bytes.flip();
+            decoder.decode(bytes, chars, false);
+            bytes.compact();
+            drainChars();
+        }
+    }
+
+    /**
+     * Scans text already decoded, for responses not read as a stream.
+     */
+    public void write(CharSequence s) {
+        int n = s.length();
+        for (int i = 0; i < n && !performer.isStopped(); i++) {
+            scan(s.charAt(i));
+        }
+    }
+
+    /**
+     * Processes the rest of the input once the body is completely downloaded.
+     */
+    public void finish() {
+        bytes.flip();
+        decoder.decode(bytes, chars, true);
+        decoder.flush(chars);
+        drainChars();
+
+        if (state == STATE_LITERAL) {
+            scan(' ');
+        }
+    }
+
+    /**
+     * The items kept, more seeds first.
+     */
+    public List<T> getItems() {
+        List<Entry<T>> entries = new ArrayList<Entry<T>>(heap);
+        Collections.sort(entries, Collections.reverseOrder(WORST_FIRST));
+
+        List<T> items = new ArrayList<T>(entries.size());
+        for (Entry<T> e : entries) {
+            items.add(e.item);
+        }
+        return items;
+    }
+
+    private void drainChars() {
+        chars.flip();
+        while (chars.hasRemaining()) {
+            scan(chars.get());
+        }
+        chars.clear();
+    }
+
+    private void scan(char c) {
+        switch (state) {
+        case STATE_STRING:
+            if (c == '"') {
+                state = STATE_VALUE;
+                onString();
+            } else if (c == '\\') {
+                state = STATE_ESCAPE;
+            } else {
+                append(c);
+            }
+            return;
+        case STATE_ESCAPE:
+            state = STATE_STRING;
+            switch (c) {
+            case 'b':
+                append('\b');
+                break;
+            case 'f':
+                append('\f');
+                break;
+            case 'n':
+                append('\n');
+                break;
+            case 'r':
+                append('\r');
+                break;
+            case 't':
+                append('\t');
+                break;
+            case 'u':
+                state = STATE_UNICODE;
+                unicode = 0;
+                unicodeDigits = 0;
+                break;
+            default:
+                append(c);
+            }
+            return;
+        case STATE_UNICODE:
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                state = STATE_ERROR;
+                return;
+            }
+            unicode = unicode * 16 + digit;
+            if (++unicodeDigits == 4) {
+                append((char) unicode);
+                state = STATE_STRING;
+            }
+            return;
+        case STATE_LITERAL:
+            if (c == ',' || c == '}' || c == ']' || c == ':' || c == '"' || c == '{' || c == '[' || Character.isWhitespace(c)) {
+                state = STATE_VALUE;
+                onLiteral();
+                break; // the delimiter is handled below
+            }
+            append(c);
+            return;
+        case STATE_ERROR:
+            return;
+        }
+
+        switch (c) {
+        case '{':
+        case '[':
+            push(c);
+            break;
+        case '}':
+        case ']':
+            pop();
+            break;
+        case ':':
+            expectValue = true;
+            break;
+        case ',':
+            expectValue = false;
+            break;
+        case '"':
+            state = STATE_STRING;
+            token.setLength(0);
+            break;
+        default:
+            if (!Character.isWhitespace(c)) {
+                state = STATE_LITERAL;
+                token.setLength(0);
+                append(c);
+            }
+        }
+    }
+
+    private void append(char c) {
+        if (token.length() < MAX_TOKEN_SIZE) {
+            token.append(c);
+        }
+    }
+
+    private void push(char c) {
+        if (depth == MAX_DEPTH) {
+            state = STATE_ERROR;
+            return;
+        }
+
+        boolean parentIsArray = depth > 0 && containers[depth - 1] == '[';
+
+        if (c == '{' && item == null && parentIsArray && stack[depth - 1] == path.length) {
+            // a direct child of the items array
+            itemDepth = depth + 1;
+            item = newItem();
+        }
+
+        containers[depth] = c;
+        stack[depth] = parentIsArray ? -1 : pendingPathLevel;
+        depth++;
+
+        pendingPathLevel = -1;
+        expectValue = false;
+        field = null;
+    }
+
+    private void pop() {
+        if (depth == 0) {
+            state = STATE_ERROR;
+            return;
+        }
+
+        if (depth == itemDepth) {
+            if (item != null) {
+                offer(item);
+            }
+            item = null;
+            itemDepth = -1;
+        }
+
+        depth--;
+
+        expectValue = false;
+        field = null;
+        pendingPathLevel = -1;
+    }
+
+    private void onString() {
+        if (depth > 0 && containers[depth - 1] == '{' && !expectValue) {
+            onKey();
+        } else {
+            onValue(false);
+        }
+    }
+
+    private void onLiteral() {
+        onValue(true);
+    }
+
+    private void onKey() {
+        field = null;
+        pendingPathLevel = -1;
+
+        if (item != null && depth == itemDepth) {
+            field = findField(token);
+        } else {
+            int level = stack[depth - 1];
+            if (level >= 0 && level < path.length && contentEquals(token, path[level])) {
+                pendingPathLevel = level + 1;
+            }
+        }
+    }
+
+    private void onValue(boolean literal) {
+        if (field != null && item != null && depth == itemDepth) {
+            if (!literal || !contentEquals(token, "null")) {
+                setField(item, field, token.toString());
+            }
+        }
+
+        field = null;
+        pendingPathLevel = -1;
+        expectValue = false;
+    }
+
+    private T newItem() {
+        try {
+            return itemClass.newInstance();
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private void offer(T item) {
+        try {
+            item = performer.fixItem(item);
+        } catch (Throwable e) {
+            // incomplete item, same as a missing one
+            item = null;
+        }
+
+        if (item == null) {
+            return;
+        }
+
+        Entry<T> e = new Entry<T>(item, item.getSeeds(), numItems++);
+
+        if (heap.size() < maxItems) {
+            heap.offer(e);
+        } else if (WORST_FIRST.compare(e, heap.peek()) > 0) {
+            heap.poll();
+            heap.offer(e);
+        }
+    }
+
+    private Field findField(CharSequence name) {
+        for (Field f : fields) {
+            if (contentEquals(name, f.getName())) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    private static void setField(Object obj, Field f, String value) {
+        try {
+            Class<?> type = f.getType();
+            if (type == String.class) {
+                f.set(obj, value);
+            } else if (type == int.class) {
+                f.setInt(obj, Integer.parseInt(value.trim()));
+            } else if (type == long.class) {
+                f.setLong(obj, Long.parseLong(value.trim()));
+            } else if (type == boolean.class) {
+                f.setBoolean(obj, Boolean.parseBoolean(value.trim()));
+            }
+        } catch (Throwable e) {
+            // not of the expected type, left with the default value
+        }
+    }
+
+    private static boolean contentEquals(CharSequence a, String b) {
+        int n = a.length();
+        if (n != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Field[] getFields(Class<?> clazz) {
+        Field[] fields = fieldsCache.get(clazz);
+
+        if (fields == null) {
+            List<Field> list = new ArrayList<Field>();
+            for (Field f : clazz.getFields()) {
+                int modifiers = f.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers) && !Modifier.isTransient(modifiers)) {
+                    list.add(f);
+                }
+            }
+            fields = list.toArray(new Field[list.size()]);
+            fieldsCache.put(clazz, fields);
+        }
+
+        return fields;
+    }
+
+    private static final class Entry<T> {
+
+        private final T item;
+        private final int seeds;
+        private final int index;
+
+        public Entry(T item, int seeds, int index) {
+            this.item = item;
+            this.seeds = seeds;
+            this.index = index;
+        }
+    }
+}
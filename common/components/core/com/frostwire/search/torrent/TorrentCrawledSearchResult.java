@@ -37,11 +37,15 @@ public class TorrentCrawledSearchResult extends AbstractCrawledSearchResult impl
     private final long size;
 
     public TorrentCrawledSearchResult(TorrentCrawlableSearchResult sr, TOTorrentFile file) {
+        this(sr, file.getRelativePath(), file.getLength());
+    }
+
+    public TorrentCrawledSearchResult(TorrentCrawlableSearchResult sr, String relativePath, long size) {
         super(sr);
         this.sr = sr;
-        this.relativePath = file.getRelativePath();
+        this.relativePath = relativePath;
         this.filename = FilenameUtils.getName(this.relativePath);
-        this.size = file.getLength();
+        this.size = size;
         this.displayName = FilenameUtils.getBaseName(this.filename);
     }
 
@@ -18,54 +18,104 @@
 
 package com.frostwire.search.torrent;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.frostwire.search.SearchResult;
 
 /**
+ * Performer for the engines answering with a JSON list of torrents.
+ * <p>
+ * The response is read as it downloads, only the items under the given path of
+ * keys are bound and only the ones with more seeds are kept.
+ * 
  * @author gubatron
  * @author aldenml
  *
  */
 public abstract class TorrentJsonSearchPerformer<T extends ComparableTorrentJsonItem, R extends TorrentSearchResult> extends TorrentSearchPerformer {
 
-    private final Comparator<T> itemComparator;
-    
-    public TorrentJsonSearchPerformer(long token, String keywords, int timeout, int pages) {
+    /**
+     * Items kept per page, the ones with more seeds.
+     */
+    private static final int MAX_ITEMS = 100;
+
+    private static final Logger LOG = LoggerFactory.getLogger(TorrentJsonSearchPerformer.class);
+
+    private final Class<T> itemClass;
+    private final String[] itemsPath;
+
+    /**
+     * @param itemClass the class the items are bound to, by its public fields
+     * @param itemsPath the keys leading to the array of items, from the root object
+     */
+    public TorrentJsonSearchPerformer(long token, String keywords, int timeout, int pages, Class<T> itemClass, String... itemsPath) {
         super(token, keywords, timeout, pages);
-        itemComparator = new Comparator<T>() {
-            @Override
-            public int compare(T a, T b) {
-                return b.getSeeds() - a.getSeeds();
-            }
-            
-        };
+        this.itemClass = itemClass;
+        this.itemsPath = itemsPath;
     }
 
     @Override
-    protected final List<? extends SearchResult> searchPage(String page) {
-        List<SearchResult> result = new LinkedList<SearchResult>();
-
-        List<T> items = parseJson(page);
-
-        if (items != null) {
-            Collections.sort(items,itemComparator);
-            
-            for (T item : items) {
-                if (!isStopped()) {
-                    SearchResult sr = fromItem(item);
-                    result.add(sr);
-                }
+    protected final List<? extends SearchResult> searchPage(int page) {
+        String url = getUrl(page, getEncodedKeywords());
+        JsonItemCollector<T> collector = newCollector();
+
+        try {
+            fetch(url, collector);
+        } catch (IOException e) {
+            // the collector aborts the download once the performer is stopped, otherwise the
+            // page failed and, like a page that couldn't be downloaded, it has no results
+            if (!isStopped()) {
+                LOG.warn("Error downloading page: " + url + ", e=" + e.getMessage());
             }
+            return Collections.emptyList();
         }
 
-        return result;
+        collector.finish();
+
+        return toResults(collector.getItems());
     }
 
-    protected abstract List<T> parseJson(String json);
+    @Override
+    protected final List<? extends SearchResult> searchPage(String page) {
+        JsonItemCollector<T> collector = newCollector();
+
+        collector.write(page);
+        collector.finish();
+
+        return toResults(collector.getItems());
+    }
+
+    /**
+     * Fixes the missing data of an item as read from the response.
+     * 
+     * @return the item, or null to leave it out of the results
+     */
+    protected T fixItem(T item) {
+        return item;
+    }
 
     protected abstract R fromItem(T item);
+
+    private JsonItemCollector<T> newCollector() {
+        return new JsonItemCollector<T>(this, itemClass, itemsPath, MAX_ITEMS);
+    }
+
+    private List<SearchResult> toResults(List<T> items) {
+        List<SearchResult> result = new ArrayList<SearchResult>(items.size());
+
+        for (T item : items) {
+            if (!isStopped()) {
+                SearchResult sr = fromItem(item);
+                result.add(sr);
+            }
+        }
+
+        return result;
+    }
 }
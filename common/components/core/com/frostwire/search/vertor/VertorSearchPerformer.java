@@ -18,10 +18,7 @@
 
 package com.frostwire.search.vertor;
 
-import java.util.List;
-
 import com.frostwire.search.torrent.TorrentJsonSearchPerformer;
-import com.frostwire.util.JsonUtils;
 
 /**
  * @author gubatron
@@ -31,7 +28,7 @@ import com.frostwire.util.JsonUtils;
 public class VertorSearchPerformer extends TorrentJsonSearchPerformer<VertorItem, VertorSearchResult> {
 
     public VertorSearchPerformer(long token, String keywords, int timeout) {
-        super(token, keywords, timeout, 1);
+        super(token, keywords, timeout, 1, VertorItem.class, "results");
     }
 
     @Override
@@ -39,12 +36,6 @@ public class VertorSearchPerformer extends TorrentJsonSearchPerformer<VertorItem
         return "http://www.vertor.com/index.php?mod=json&search=&words=" + encodedKeywords;
     }
 
-    @Override
-    protected List<VertorItem> parseJson(String json) {
-        VertorResponse response = JsonUtils.toObject(json, VertorResponse.class);
-        return response.results;
-    }
-
     @Override
     protected VertorSearchResult fromItem(VertorItem item) {
         return new VertorSearchResult(item);
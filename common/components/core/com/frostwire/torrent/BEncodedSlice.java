@@ -0,0 +1,426 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.torrent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A read only view of one bencoded value inside a buffer.
+ *
+ * Unlike {@link BDecoder}, nothing is copied and no maps or lists are built: byte
+ * strings are offset/length slices of the original buffer and the entries of a
+ * dictionary or list are only located, one level at a time, the first time they
+ * are accessed. The whole input is validated once by {@link #parse(ByteBuffer)},
+ * so the accessors never fail on malformed data.
+ *
+ * Since the raw span of every value is kept, {@link #sha1()} of the "info"
+ * dictionary is the info hash of a torrent as it was serialized.
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public final class BEncodedSlice {
+
+    public static final byte TYPE_BYTES = 0;
+    public static final byte TYPE_INTEGER = 1;
+    public static final byte TYPE_LIST = 2;
+    public static final byte TYPE_DICTIONARY = 3;
+
+    private static final int MAX_DEPTH = 128;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+
+    /**
+     * For a list, the start of every element followed by the end of the last one.
+     * For a dictionary, the start of every key followed by the end of the last value,
+     * the value of a key starts where the key ends.
+     */
+    private int[] offsets;
+    private int count;
+
+    private BEncodedSlice(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+    }
+
+    public static BEncodedSlice parse(byte[] data) throws IOException {
+        return parse(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Validates the value at the buffer position and returns a view of it. The
+     * buffer content must not change while views of it are in use, its position
+     * and limit are not touched.
+     */
+    public static BEncodedSlice parse(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        int end = skip(buffer, start, buffer.limit(), 0);
+
+        return new BEncodedSlice(buffer, start, end);
+    }
+
+    public byte getType() {
+        switch (buffer.get(start)) {
+        case 'd':
+            return TYPE_DICTIONARY;
+        case 'l':
+            return TYPE_LIST;
+        case 'i':
+            return TYPE_INTEGER;
+        default:
+            return TYPE_BYTES;
+        }
+    }
+
+    public boolean isDictionary() {
+        return getType() == TYPE_DICTIONARY;
+    }
+
+    public boolean isList() {
+        return getType() == TYPE_LIST;
+    }
+
+    public boolean isInteger() {
+        return getType() == TYPE_INTEGER;
+    }
+
+    public boolean isBytes() {
+        return getType() == TYPE_BYTES;
+    }
+
+    /**
+     * Number of elements of a list or entries of a dictionary, 0 for other values.
+     */
+    public int size() {
+        index();
+        return count;
+    }
+
+    /**
+     * The element at the given position of a list, or <code>null</code> if this is
+     * not a list or the index is out of range.
+     */
+    public BEncodedSlice get(int index) {
+        if (!isList()) {
+            return null;
+        }
+
+        index();
+
+        if (index < 0 || index >= count) {
+            return null;
+        }
+
+        return new BEncodedSlice(buffer, offsets[index], offsets[index + 1]);
+    }
+
+    /**
+     * The value of the given key of a dictionary, or <code>null</code> if this is
+     * not a dictionary or the key is not present.
+     */
+    public BEncodedSlice get(String key) {
+        if (!isDictionary()) {
+            return null;
+        }
+
+        index();
+
+        for (int i = 0; i < count; i++) {
+            int valueStart = valueStart(i);
+            if (keyEquals(offsets[i], valueStart, key)) {
+                return new BEncodedSlice(buffer, valueStart, offsets[i + 1]);
+            }
+        }
+
+        return null;
+    }
+
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    /**
+     * The value of an integer, or 0 for other values.
+     */
+    public long asLong() {
+        if (!isInteger()) {
+            return 0;
+        }
+
+        long n = 0;
+        boolean negative = buffer.get(start + 1) == '-';
+
+        for (int i = negative ? start + 2 : start + 1; i < end - 1; i++) {
+            n = n * 10 + (buffer.get(i) - '0');
+        }
+
+        return negative ? -n : n;
+    }
+
+    /**
+     * The content of a byte string, without copying. The returned buffer is read
+     * only and independent of the source buffer position and limit.
+     */
+    public ByteBuffer asByteBuffer() {
+        ByteBuffer b = buffer.asReadOnlyBuffer();
+        b.limit(end);
+        b.position(isBytes() ? contentStart(start) : start);
+        return b.slice();
+    }
+
+    /**
+     * A copy of the content of a byte string, the raw encoding for other values.
+     */
+    public byte[] asBytes() {
+        ByteBuffer b = asByteBuffer();
+        byte[] data = new byte[b.remaining()];
+        b.get(data);
+        return data;
+    }
+
+    public String asString(Charset charset) {
+        return charset.decode(asByteBuffer()).toString();
+    }
+
+    public String asString() {
+        return asString(UTF_8);
+    }
+
+    /**
+     * Whether the content of a byte string is 7 bit ASCII, the same text
+     * with any of the charsets used for torrents.
+     */
+    public boolean isAscii() {
+        for (int i = isBytes() ? contentStart(start) : start; i < end; i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * SHA-1 of the raw encoding of this value.
+     */
+    public byte[] sha1() {
+        ByteBuffer b = buffer.asReadOnlyBuffer();
+        b.limit(end);
+        b.position(start);
+        return new SHA1Hasher().calculateHash(b);
+    }
+
+    /**
+     * Length of the raw encoding of this value.
+     */
+    public int getEncodedLength() {
+        return end - start;
+    }
+
+    @Override
+    public String toString() {
+        switch (getType()) {
+        case TYPE_INTEGER:
+            return String.valueOf(asLong());
+        case TYPE_BYTES:
+            return asString();
+        default:
+            return (isList() ? "list" : "dictionary") + "(" + size() + ")";
+        }
+    }
+
+    /**
+     * Locates the direct children, only done once and only one level deep.
+     */
+    private void index() {
+        if (offsets != null) {
+            return;
+        }
+
+        byte type = getType();
+
+        if (type != TYPE_LIST && type != TYPE_DICTIONARY) {
+            offsets = new int[0];
+            return;
+        }
+
+        int[] result = new int[9];
+        int n = 0;
+        int pos = start + 1;
+
+        try {
+            while (buffer.get(pos) != 'e') {
+                if (n + 1 >= result.length) {
+                    int[] t = new int[result.length * 2];
+                    System.arraycopy(result, 0, t, 0, n);
+                    result = t;
+                }
+                result[n++] = pos;
+                if (type == TYPE_DICTIONARY) {
+                    pos = skip(buffer, pos, end, 0); // key
+                }
+                pos = skip(buffer, pos, end, 0); // value or element
+            }
+        } catch (IOException e) {
+            // can't happen, the buffer was validated by parse
+            throw new IllegalStateException(e);
+        }
+
+        result[n] = pos;
+
+        count = n;
+        offsets = result;
+    }
+
+    private int valueStart(int entry) {
+        int keyStart = offsets[entry];
+        int contentStart = contentStart(keyStart);
+        return contentStart + parseLength(keyStart);
+    }
+
+    private boolean keyEquals(int keyStart, int keyEnd, String key) {
+        int pos = contentStart(keyStart);
+        int n = key.length();
+
+        for (int i = 0; i < n; i++) {
+            if (key.charAt(i) > 0x7f) {
+                // rare non ASCII key, compare the encoded form
+                return bytesEqual(pos, keyEnd, key.getBytes(UTF_8));
+            }
+        }
+
+        if (keyEnd - pos != n) {
+            return false;
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (buffer.get(pos + i) != key.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean bytesEqual(int from, int to, byte[] data) {
+        if (to - from != data.length) {
+            return false;
+        }
+
+        for (int i = 0; i < data.length; i++) {
+            if (buffer.get(from + i) != data[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int contentStart(int stringStart) {
+        int pos = stringStart;
+        while (buffer.get(pos) != ':') {
+            pos++;
+        }
+        return pos + 1;
+    }
+
+    private int parseLength(int stringStart) {
+        int n = 0;
+        for (int pos = stringStart; buffer.get(pos) != ':'; pos++) {
+            n = n * 10 + (buffer.get(pos) - '0');
+        }
+        return n;
+    }
+
+    /**
+     * Validates the value at <code>pos</code> and returns the position after it,
+     * without allocating anything.
+     */
+    private static int skip(ByteBuffer b, int pos, int limit, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new BEncodingException("BEncodedSlice: nesting too deep");
+        }
+        if (pos >= limit) {
+            throw new BEncodingException("BEncodedSlice: truncated input");
+        }
+
+        byte c = b.get(pos);
+
+        switch (c) {
+        case 'd':
+        case 'l':
+            pos++;
+            while (true) {
+                if (pos >= limit) {
+                    throw new BEncodingException("BEncodedSlice: unterminated " + (c == 'd' ? "dictionary" : "list"));
+                }
+                if (b.get(pos) == 'e') {
+                    return pos + 1;
+                }
+                if (c == 'd') {
+                    if (b.get(pos) < '0' || b.get(pos) > '9') {
+                        throw new BEncodingException("BEncodedSlice: dictionary key is not a string");
+                    }
+                    pos = skip(b, pos, limit, depth + 1);
+                }
+                pos = skip(b, pos, limit, depth + 1);
+            }
+        case 'i':
+            pos++;
+            if (pos < limit && b.get(pos) == '-') {
+                pos++;
+            }
+            int digits = 0;
+            while (pos < limit && b.get(pos) >= '0' && b.get(pos) <= '9') {
+                pos++;
+                digits++;
+            }
+            if (digits == 0 || digits > 19 || pos >= limit || b.get(pos) != 'e') {
+                throw new BEncodingException("BEncodedSlice: invalid integer");
+            }
+            return pos + 1;
+        default:
+            if (c < '0' || c > '9') {
+                throw new BEncodingException("BEncodedSlice: unknown type '" + (char) c + "'");
+            }
+            long length = 0;
+            while (pos < limit && b.get(pos) >= '0' && b.get(pos) <= '9') {
+                length = length * 10 + (b.get(pos) - '0');
+                if (length > Integer.MAX_VALUE) {
+                    throw new BEncodingException("BEncodedSlice: string too long");
+                }
+                pos++;
+            }
+            if (pos >= limit || b.get(pos) != ':') {
+                throw new BEncodingException("BEncodedSlice: invalid string length");
+            }
+            pos++;
+            if (length > limit - pos) {
+                throw new BEncodingException("BEncodedSlice: truncated string");
+            }
+            return pos + (int) length;
+        }
+    }
+}
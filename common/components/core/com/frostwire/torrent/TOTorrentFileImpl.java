@@ -327,7 +327,7 @@ final class TOTorrentFileImpl implements TOTorrentFile {
         return file_map;
     }
 
-    private static String convertOSSpecificChars(String file_name_in, boolean is_folder) {
+    static String convertOSSpecificChars(String file_name_in, boolean is_folder) {
         // this rule originally from DiskManager
 
         char[] chars = file_name_in.toCharArray();
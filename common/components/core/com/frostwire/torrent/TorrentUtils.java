@@ -29,10 +29,12 @@ package com.frostwire.torrent;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -45,6 +47,8 @@ import java.util.zip.GZIPInputStream;
 
 public final class TorrentUtils {
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     public static final int TORRENT_FLAG_LOW_NOISE = 0x00000001;
     public static final int TORRENT_FLAG_METADATA_TORRENT = 0x00000002;
 
@@ -72,6 +76,142 @@ public final class TorrentUtils {
         return torrent;
     }
 
+    /**
+     * Reads only the relative paths and lengths of the files of a bencoded torrent,
+     * straight from the raw bytes, without building the maps of the whole torrent
+     * or validating the pieces. The paths are the same {@link TOTorrentFile#getRelativePath()}
+     * returns.
+     * 
+     * @return the files, or <code>null</code> if a path needs the locale detection of
+     * {@link #readFromBEncodedInputStream(InputStream)} to be decoded
+     */
+    public static List<FileEntry> readFileList(byte[] data) throws TOTorrentException {
+        BEncodedSlice root;
+
+        try {
+            root = BEncodedSlice.parse(data);
+        } catch (IOException e) {
+            throw new TOTorrentException("Error reading torrent: " + e.getMessage(), TOTorrentException.RT_DECODE_FAILS, e);
+        }
+
+        BEncodedSlice info = root.get("info");
+        if (info == null || !info.isDictionary()) {
+            throw new TOTorrentException("Decode fails, 'info' element not found'", TOTorrentException.RT_DECODE_FAILS);
+        }
+
+        BEncodedSlice encodingValue = root.get("encoding");
+        String encoding = encodingValue != null && encodingValue.isBytes() ? encodingValue.asString() : null;
+
+        // same rules TOTorrentDeserialiseImpl follows, null means only ASCII can be decoded here
+        Charset charset = null;
+        if (encoding != null) {
+            if (TOTorrent.ENCODING_ACTUALLY_UTF8_KEYS.equals(encoding)) {
+                charset = UTF_8;
+            } else {
+                try {
+                    if (Charset.forName(encoding).equals(UTF_8)) {
+                        charset = UTF_8;
+                    }
+                } catch (Throwable e) {
+                    // unknown encoding, leave it to the locale decoders
+                }
+            }
+        }
+
+        boolean hasUTF8Keys = info.containsKey("name.utf-8") && (encoding == null || encoding.equals(TOTorrent.ENCODING_ACTUALLY_UTF8_KEYS));
+
+        BEncodedSlice simpleLength = info.get("length");
+
+        if (simpleLength != null) {
+            BEncodedSlice name = info.get("name");
+            if (name == null || !simpleLength.isInteger()) {
+                throw new TOTorrentException("Decode fails, invalid single file torrent", TOTorrentException.RT_DECODE_FAILS);
+            }
+
+            String path = decodePath(new BEncodedSlice[] { name }, hasUTF8Keys ? UTF_8 : charset, null);
+            if (path == null) {
+                return null;
+            }
+
+            List<FileEntry> result = new ArrayList<FileEntry>(1);
+            result.add(new FileEntry(path, simpleLength.asLong()));
+            return result;
+        }
+
+        BEncodedSlice files = info.get("files");
+        if (files == null || !files.isList()) {
+            throw new TOTorrentException("Decode fails, 'files' element not found'", TOTorrentException.RT_DECODE_FAILS);
+        }
+
+        int n = files.size();
+
+        for (int i = 0; hasUTF8Keys && i < n; i++) {
+            hasUTF8Keys = files.get(i).containsKey("path.utf-8");
+        }
+
+        List<FileEntry> result = new ArrayList<FileEntry>(n);
+
+        // folder names repeat a lot and converting them touches the file system
+        Map<String, String> folders = new HashMap<String, String>();
+
+        for (int i = 0; i < n; i++) {
+            BEncodedSlice file = files.get(i);
+            BEncodedSlice length = file.get("length");
+            BEncodedSlice paths = file.get(hasUTF8Keys ? "path.utf-8" : "path");
+
+            if (length == null || !length.isInteger() || paths == null || !paths.isList()) {
+                throw new TOTorrentException("Decode fails, invalid file entry", TOTorrentException.RT_DECODE_FAILS);
+            }
+
+            BEncodedSlice[] components = new BEncodedSlice[paths.size()];
+            for (int j = 0; j < components.length; j++) {
+                components[j] = paths.get(j);
+            }
+
+            String path = decodePath(components, hasUTF8Keys ? UTF_8 : charset, folders);
+            if (path == null) {
+                return null;
+            }
+
+            result.add(new FileEntry(path, length.asLong()));
+        }
+
+        return result;
+    }
+
+    private static String decodePath(BEncodedSlice[] components, Charset charset, Map<String, String> folders) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int j = 0; j < components.length; j++) {
+            BEncodedSlice component = components[j];
+
+            if (charset == null && !component.isAscii()) {
+                return null;
+            }
+
+            String comp = component.asString(charset != null ? charset : UTF_8);
+            boolean isFolder = j != components.length - 1;
+
+            if (isFolder && folders != null) {
+                String converted = folders.get(comp);
+                if (converted == null) {
+                    converted = TOTorrentFileImpl.convertOSSpecificChars(comp, true);
+                    folders.put(comp, converted);
+                }
+                comp = converted;
+            } else {
+                comp = TOTorrentFileImpl.convertOSSpecificChars(comp, isFolder);
+            }
+
+            if (j > 0) {
+                sb.append(File.separator);
+            }
+            sb.append(comp);
+        }
+
+        return sb.toString();
+    }
+
     public static void writeToFile(final TOTorrent torrent) throws TOTorrentException {
         writeToFile(torrent, false);
     }
@@ -1115,6 +1255,17 @@ public final class TorrentUtils {
         return (ByteFormatter.nicePrint(hash, tight));
     }
 
+    public static final class FileEntry {
+
+        public final String relativePath;
+        public final long length;
+
+        public FileEntry(String relativePath, long length) {
+            this.relativePath = relativePath;
+            this.length = length;
+        }
+    }
+
     private final static class UrlUtils {
 
         public static boolean containsPasskey(URI url) {
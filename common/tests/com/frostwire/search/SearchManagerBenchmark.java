@@ -0,0 +1,112 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per task of the {@link SearchManagerImpl} bookkeeping with N tasks of the
+ * same search in flight.
+ * <p>
+ * Each round schedules N performers under a new token, every perform() waits on a
+ * gate opened once all of them are scheduled, and the round ends with the
+ * onFinished of the token. The first pass is the warm-up. -Dtasks sets the tasks
+ * per size, 200000 by default.
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class SearchManagerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = { 10, 100, 1000 };
+        int total = Integer.getInteger("tasks", 200000);
+
+        SearchManagerImpl manager = new SearchManagerImpl(4);
+        final Object lock = new Object();
+        final long[] finished = { -1 };
+        manager.registerListener(new SearchManagerListener() {
+            @Override
+            public void onResults(SearchPerformer performer, List<? extends SearchResult> results) {
+            }
+
+            @Override
+            public void onFinished(long token) {
+                synchronized (lock) {
+                    // a late duplicate must not hide a newer token
+                    finished[0] = Math.max(finished[0], token);
+                    lock.notifyAll();
+                }
+            }
+        });
+
+        long token = 1;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int n : sizes) {
+                int rounds = Math.max(20, total / n);
+                long t0 = System.nanoTime();
+                for (int r = 0; r < rounds; r++) {
+                    CountDownLatch gate = new CountDownLatch(1);
+                    long tk = token++;
+                    for (int i = 0; i < n; i++) {
+                        manager.perform(new GatedPerformer(tk, gate));
+                    }
+                    gate.countDown();
+                    synchronized (lock) {
+                        while (finished[0] < tk) {
+                            lock.wait();
+                        }
+                    }
+                }
+                long ns = System.nanoTime() - t0;
+                if (pass == 1) {
+                    System.out.printf("in-flight=%4d tasks=%7d  %7.2f us/task  %9.0f tasks/s%n", n, rounds * n, ns / 1000.0 / (rounds * n), rounds * n * 1e9 / ns);
+                }
+            }
+        }
+
+        manager.shutdown(5, TimeUnit.SECONDS);
+        System.exit(0);
+    }
+
+    private static final class GatedPerformer extends AbstractSearchPerformer {
+
+        private final CountDownLatch gate;
+
+        public GatedPerformer(long token, CountDownLatch gate) {
+            super(token);
+            this.gate = gate;
+        }
+
+        @Override
+        public void perform() {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void crawl(CrawlableSearchResult sr) {
+        }
+    }
+}
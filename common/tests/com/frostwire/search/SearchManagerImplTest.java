@@ -0,0 +1,216 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class SearchManagerImplTest extends TestCase {
+
+    private SearchManagerImpl manager;
+    private Map<Long, AtomicInteger> finished;
+
+    public SearchManagerImplTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SearchManagerImplTest.class);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        manager = new SearchManagerImpl(4, 4, 2);
+        finished = new ConcurrentHashMap<Long, AtomicInteger>();
+        manager.registerListener(new SearchManagerListener() {
+            @Override
+            public void onResults(SearchPerformer performer, List<? extends SearchResult> results) {
+            }
+
+            @Override
+            public void onFinished(long token) {
+                finished.putIfAbsent(token, new AtomicInteger());
+                finished.get(token).incrementAndGet();
+                synchronized (finished) {
+                    finished.notifyAll();
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        manager.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    public void testRunsEveryTaskAndFinishesEverySearchOnce() throws Exception {
+        AtomicInteger performed = new AtomicInteger();
+        // a search is finished every time it runs out of tasks, all are scheduled first
+        CountDownLatch gate = new CountDownLatch(1);
+
+        for (long token = 1; token <= 3; token++) {
+            for (int i = 0; i < 10; i++) {
+                manager.perform(new EngineA(token, performed, gate));
+                manager.perform(new EngineB(token, performed, gate));
+            }
+        }
+
+        gate.countDown();
+        awaitFinished(1, 2, 3);
+        assertEquals(60, performed.get());
+        for (long token = 1; token <= 3; token++) {
+            assertEquals(1, finished.get(token).get());
+        }
+    }
+
+    public void testLimitsTheTasksOfAnEngineWithinASearch() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger performed = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            manager.perform(new EngineA(1, performed, gate));
+        }
+
+        Thread.sleep(200);
+        // 4 threads but only 2 tasks of the engine for the search
+        assertEquals(2, EngineA.running.get());
+
+        // the same engine in another search is not held back by the first one
+        manager.perform(new EngineA(2, performed, gate));
+        Thread.sleep(200);
+        assertEquals(3, EngineA.running.get());
+
+        // nor is another engine of the same search
+        manager.perform(new EngineB(1, performed, gate));
+        Thread.sleep(200);
+        assertEquals(1, EngineB.running.get());
+
+        gate.countDown();
+        awaitFinished(1, 2);
+        assertEquals(6, performed.get());
+    }
+
+    public void testStopEndsTheSearch() throws Exception {
+        AtomicInteger performed = new AtomicInteger();
+        CountDownLatch never = new CountDownLatch(1);
+
+        for (int i = 0; i < 5; i++) {
+            manager.perform(new EngineA(7, performed, never));
+        }
+
+        Thread.sleep(200);
+        manager.stop(7);
+
+        awaitFinished(7);
+        assertEquals(1, finished.get(7L).get());
+        assertEquals(0, EngineA.running.get());
+    }
+
+    private void awaitFinished(long... tokens) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        synchronized (finished) {
+            for (long token : tokens) {
+                while (!finished.containsKey(token)) {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) {
+                        fail("Search not finished: " + token);
+                    }
+                    finished.wait(left);
+                }
+            }
+        }
+    }
+
+    private static abstract class TestPerformer extends AbstractSearchPerformer {
+
+        private final AtomicInteger performed;
+        private final CountDownLatch gate;
+
+        public TestPerformer(long token, AtomicInteger performed, CountDownLatch gate) {
+            super(token);
+            this.performed = performed;
+            this.gate = gate;
+        }
+
+        protected abstract AtomicInteger running();
+
+        @Override
+        public void perform() {
+            running().incrementAndGet();
+            try {
+                while (gate != null && !isStopped() && !gate.await(10, TimeUnit.MILLISECONDS)) {
+                }
+                performed.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running().decrementAndGet();
+            }
+        }
+
+        @Override
+        public void crawl(CrawlableSearchResult sr) {
+        }
+    }
+
+    private static final class EngineA extends TestPerformer {
+
+        static final AtomicInteger running = new AtomicInteger();
+
+        public EngineA(long token, AtomicInteger performed, CountDownLatch gate) {
+            super(token, performed, gate);
+        }
+
+        @Override
+        protected AtomicInteger running() {
+            return running;
+        }
+    }
+
+    private static final class EngineB extends TestPerformer {
+
+        static final AtomicInteger running = new AtomicInteger();
+
+        public EngineB(long token, AtomicInteger performed, CountDownLatch gate) {
+            super(token, performed, gate);
+        }
+
+        @Override
+        protected AtomicInteger running() {
+            return running;
+        }
+    }
+}
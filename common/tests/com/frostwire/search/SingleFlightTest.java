@@ -0,0 +1,197 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class SingleFlightTest extends TestCase {
+
+    private SingleFlight<String, String> flight;
+    private ExecutorService executor;
+
+    public SingleFlightTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SingleFlightTest.class);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        flight = new SingleFlight<String, String>();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    public void testRunsTheWorkOfASingleCall() throws Exception {
+        assertEquals("a", flight.execute("k", value("a")));
+        assertEquals(1, flight.getExecuted());
+        assertEquals(0, flight.getShared());
+    }
+
+    public void testConcurrentCallsShareOneExecution() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        Callable<String> work = new Callable<String>() {
+            public String call() throws Exception {
+                runs.incrementAndGet();
+                release.await();
+                return "shared";
+            }
+        };
+
+        List<Future<String>> calls = new ArrayList<Future<String>>();
+        for (int i = 0; i < 5; i++) {
+            calls.add(call("k", work));
+        }
+
+        // every caller but the one running the work is waiting on it
+        awaitShared(4);
+        release.countDown();
+
+        for (Future<String> f : calls) {
+            assertEquals("shared", f.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, runs.get());
+        assertEquals(1, flight.getExecuted());
+        assertEquals(4, flight.getShared());
+    }
+
+    public void testDifferentKeysRunIndependently() throws Exception {
+        final CountDownLatch both = new CountDownLatch(2);
+        Callable<String> work = new Callable<String>() {
+            public String call() throws Exception {
+                both.countDown();
+                // only returns when the other key is running at the same time
+                return both.await(5, TimeUnit.SECONDS) ? "ok" : "alone";
+            }
+        };
+
+        Future<String> a = call("a", work);
+        Future<String> b = call("b", work);
+
+        assertEquals("ok", a.get(10, TimeUnit.SECONDS));
+        assertEquals("ok", b.get(10, TimeUnit.SECONDS));
+        assertEquals(2, flight.getExecuted());
+    }
+
+    public void testTheKeyIsForgottenOnceDone() throws Exception {
+        assertEquals("a", flight.execute("k", value("a")));
+        assertEquals("b", flight.execute("k", value("b")));
+        assertEquals(2, flight.getExecuted());
+    }
+
+    public void testFailuresReachEveryCaller() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        Callable<String> work = new Callable<String>() {
+            public String call() throws Exception {
+                release.await();
+                throw new IOException("boom");
+            }
+        };
+
+        List<Future<String>> calls = new ArrayList<Future<String>>();
+        calls.add(call("k", work));
+        calls.add(call("k", work));
+        awaitShared(1);
+        release.countDown();
+
+        for (Future<String> f : calls) {
+            try {
+                f.get(5, TimeUnit.SECONDS);
+                fail("Expected the failure");
+            } catch (ExecutionException e) {
+                // the exception of the work itself, not a wrapper
+                assertTrue(e.getCause() instanceof IOException);
+                assertEquals("boom", e.getCause().getMessage());
+            }
+        }
+
+        // a failed call is not kept either
+        assertEquals("a", flight.execute("k", value("a")));
+    }
+
+    public void testErrorsAreWrapped() throws Exception {
+        try {
+            flight.execute("k", new Callable<String>() {
+                public String call() throws Exception {
+                    throw new AssertionError("error");
+                }
+            });
+            fail("Expected the failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+    }
+
+    private Future<String> call(final String key, final Callable<String> work) {
+        return executor.submit(new Callable<String>() {
+            public String call() throws Exception {
+                return flight.execute(key, work);
+            }
+        });
+    }
+
+    private void awaitShared(long n) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (flight.getShared() < n) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Callers not sharing: " + flight.getShared());
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static Callable<String> value(final String value) {
+        return new Callable<String>() {
+            public String call() throws Exception {
+                return value;
+            }
+        };
+    }
+}
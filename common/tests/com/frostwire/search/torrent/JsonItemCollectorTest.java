@@ -0,0 +1,252 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search.torrent;
+
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class JsonItemCollectorTest extends TestCase {
+
+    public JsonItemCollectorTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(JsonItemCollectorTest.class);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public void testBindsTheItemsByTheirPublicFields() throws Exception {
+        List<Item> items = collect("{\"total\":2,\"list\":[{\"title\":\"a\",\"seeds\":3,\"size\":5000000000,\"verified\":true,\"ignored\":\"x\"},{\"title\":\"b\",\"seeds\":7}]}", "list");
+
+        assertEquals(2, items.size());
+        // more seeds first
+        assertEquals("b", items.get(0).title);
+        assertEquals(7, items.get(0).seeds);
+        assertFalse(items.get(0).verified);
+
+        Item a = items.get(1);
+        assertEquals("a", a.title);
+        assertEquals(3, a.seeds);
+        assertEquals(5000000000L, a.size);
+        assertTrue(a.verified);
+    }
+
+    public void testFollowsThePathOfKeys() throws Exception {
+        String json = "{\"list\":[{\"title\":\"top\"}],\"response\":{\"other\":[{\"title\":\"other\"}],\"docs\":{\"list\":[{\"title\":\"wanted\"}]}},\"docs\":[{\"title\":\"shallow\"}]}";
+
+        List<Item> items = collect(json, "response", "docs", "list");
+
+        assertEquals(1, items.size());
+        assertEquals("wanted", items.get(0).title);
+    }
+
+    public void testSkipsValuesNestedInAnItem() throws Exception {
+        List<Item> items = collect("{\"list\":[{\"title\":\"t\",\"meta\":{\"title\":\"inner\",\"seeds\":99},\"tags\":[\"a\",{\"seeds\":98}],\"seeds\":4,\"list\":[{\"title\":\"nested\"}]}]}", "list");
+
+        assertEquals(1, items.size());
+        assertEquals("t", items.get(0).title);
+        assertEquals(4, items.get(0).seeds);
+    }
+
+    public void testStringEscapes() throws Exception {
+        List<Item> items = collect("{\"list\":[{\"title\":\"q\\\"b\\\\s\\/n\\n\\u00e9\\u4E2D\"}]}", "list");
+
+        assertEquals("q\"b\\s/n\n\u00e9\u4e2d", items.get(0).title);
+    }
+
+    public void testNullAndMistypedValuesKeepTheDefault() throws Exception {
+        List<Item> items = collect("{\"list\":[{\"title\":null,\"seeds\":\"many\",\"size\":null,\"hash\":\"h\"}]}", "list");
+
+        Item item = items.get(0);
+        assertNull(item.title);
+        assertEquals(0, item.seeds);
+        assertEquals(0, item.size);
+        assertEquals("h", item.hash);
+    }
+
+    public void testKeepsOnlyTheItemsWithMoreSeeds() throws Exception {
+        StringBuilder sb = new StringBuilder("{\"list\":[");
+        int[] seeds = { 5, 1, 9, 5, 3, 9, 0, 5 };
+        for (int i = 0; i < seeds.length; i++) {
+            sb.append(i > 0 ? "," : "").append("{\"title\":\"").append(i).append("\",\"seeds\":").append(seeds[i]).append("}");
+        }
+        sb.append("]}");
+
+        List<Item> items = collect(sb.toString(), 4, new TestPerformer(), "list");
+
+        assertEquals(4, items.size());
+        // ties keep the order of the response
+        assertEquals("2", items.get(0).title);
+        assertEquals("5", items.get(1).title);
+        assertEquals("0", items.get(2).title);
+        assertEquals("3", items.get(3).title);
+    }
+
+    public void testFixItemCanLeaveItemsOut() throws Exception {
+        TestPerformer performer = new TestPerformer();
+        performer.requireHash = true;
+
+        List<Item> items = collect("{\"list\":[{\"title\":\"a\",\"hash\":\"h\"},{\"title\":\"b\"}]}", 100, performer, "list");
+
+        assertEquals(1, items.size());
+        assertEquals("a", items.get(0).title);
+    }
+
+    public void testByteByByteGivesTheSameItems() throws Exception {
+        String json = "{\"list\" : [ {\"title\" : \"ni\u00f1o \u4e2d\u6587\", \"seeds\" : 12 } , {\"title\":\"b\",\"seeds\":true} ] }";
+        byte[] data = json.getBytes("UTF-8");
+
+        JsonItemCollector<Item> collector = new JsonItemCollector<Item>(new TestPerformer(), Item.class, new String[] { "list" }, 100);
+        for (byte b : data) {
+            collector.write(b);
+        }
+        collector.finish();
+
+        List<Item> items = collector.getItems();
+        assertEquals(2, items.size());
+        assertEquals("ni\u00f1o \u4e2d\u6587", items.get(0).title);
+        assertEquals(12, items.get(0).seeds);
+        assertEquals("b", items.get(1).title);
+    }
+
+    public void testToleratesAMissingComma() throws Exception {
+        List<Item> items = collect("{\"list\":[{\"title\":\"a\" \"seeds\":2}]}", "list");
+
+        assertEquals("a", items.get(0).title);
+        assertEquals(2, items.get(0).seeds);
+    }
+
+    public void testMalformedInputEndsWithTheItemsReadSoFar() throws Exception {
+        List<Item> items = collect("{\"list\":[{\"title\":\"a\"}]}]]]{\"title\":\"b\"}", "list");
+        assertEquals(1, items.size());
+        assertEquals("a", items.get(0).title);
+
+        items = collect("{\"list\":[{\"title\":\"a\"},{\"title\":\"\\uZZZZ\"},{\"title\":\"c\"}]}", "list");
+        assertEquals(1, items.size());
+        assertEquals("a", items.get(0).title);
+
+        // a truncated item is not offered
+        items = collect("{\"list\":[{\"title\":\"a\"},{\"title\":\"b\",\"seeds\":3", "list");
+        assertEquals(1, items.size());
+    }
+
+    public void testWritesFailOnceThePerformerIsStopped() throws Exception {
+        TestPerformer performer = new TestPerformer();
+        JsonItemCollector<Item> collector = new JsonItemCollector<Item>(performer, Item.class, new String[] { "list" }, 100);
+
+        collector.write("{\"list\":[{\"title\":\"a\"}".getBytes("UTF-8"));
+        performer.stop();
+
+        try {
+            collector.write(",{\"title\":\"b\"}]}".getBytes("UTF-8"));
+            fail("Expected the download to be aborted");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static List<Item> collect(String json, String... path) throws Exception {
+        return collect(json, 100, new TestPerformer(), path);
+    }
+
+    /**
+     * Scans the json as a download, in chunks of a few bytes, and as text, expecting
+     * the same items.
+     */
+    private static List<Item> collect(String json, int maxItems, TestPerformer performer, String... path) throws Exception {
+        JsonItemCollector<Item> collector = new JsonItemCollector<Item>(performer, Item.class, path, maxItems);
+        byte[] data = json.getBytes("UTF-8");
+        for (int off = 0; off < data.length; off += 7) {
+            collector.write(data, off, Math.min(7, data.length - off));
+        }
+        collector.finish();
+
+        JsonItemCollector<Item> text = new JsonItemCollector<Item>(performer, Item.class, path, maxItems);
+        text.write(json);
+        text.finish();
+
+        List<Item> items = collector.getItems();
+        List<Item> textItems = text.getItems();
+        assertEquals(items.size(), textItems.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(items.get(i).toString(), textItems.get(i).toString());
+        }
+
+        return items;
+    }
+
+    public static class Item implements ComparableTorrentJsonItem {
+
+        public String title;
+        public int seeds;
+        public long size;
+        public boolean verified;
+        public String hash;
+
+        public static int ignoredStatic;
+        public final String ignoredFinal = "final";
+
+        @Override
+        public int getSeeds() {
+            return seeds;
+        }
+
+        @Override
+        public String toString() {
+            return title + "/" + seeds + "/" + size + "/" + verified + "/" + hash;
+        }
+    }
+
+    private static final class TestPerformer extends TorrentJsonSearchPerformer<Item, TorrentSearchResult> {
+
+        boolean requireHash;
+
+        public TestPerformer() {
+            super(1, "test", 5000, 1, Item.class);
+        }
+
+        @Override
+        protected String getUrl(int page, String encodedKeywords) {
+            return null;
+        }
+
+        @Override
+        protected Item fixItem(Item item) {
+            return requireHash && item.hash == null ? null : item;
+        }
+
+        @Override
+        protected TorrentSearchResult fromItem(Item item) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.torrent;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Time and allocation of reading the file list of a crawled torrent with
+ * {@link TorrentUtils#readFileList(byte[])} against the full {@link TOTorrent}
+ * deserialization, and of walking the structure with {@link BEncodedSlice} against
+ * the maps of {@link BDecoder}.
+ * <p>
+ * The torrent is synthetic, -Dfiles sets its number of files, 20000 by default, and
+ * -Drounds the rounds of every case. The first pass is the warm-up.
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class BEncodedSliceBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int files = Integer.getInteger("files", 20000);
+        int rounds = Integer.getInteger("rounds", 10);
+
+        final byte[] data = newTorrent(files, 1);
+        System.out.println("torrent " + files + " files, " + data.length / 1024 + " KB");
+
+        Case[] cases = { new Case("TOTorrent file list") {
+            long run() throws Exception {
+                TOTorrent torrent = TorrentUtils.readFromBEncodedInputStream(new ByteArrayInputStream(data));
+                long n = 0;
+                for (TOTorrentFile f : torrent.getFiles()) {
+                    n += f.getRelativePath().length() + f.getLength();
+                }
+                return n;
+            }
+        }, new Case("readFileList") {
+            long run() throws Exception {
+                long n = 0;
+                for (TorrentUtils.FileEntry e : TorrentUtils.readFileList(data)) {
+                    n += e.relativePath.length() + e.length;
+                }
+                return n;
+            }
+        }, new Case("BDecoder walk") {
+            @SuppressWarnings("unchecked")
+            long run() throws Exception {
+                Map<String, Object> info = (Map<String, Object>) BDecoder.decode(data).get("info");
+                long n = 0;
+                for (Object o : (List<Object>) info.get("files")) {
+                    Map<String, Object> file = (Map<String, Object>) o;
+                    n += (Long) file.get("length") + ((List<Object>) file.get("path")).size();
+                }
+                return n;
+            }
+        }, new Case("BEncodedSlice walk") {
+            long run() throws Exception {
+                BEncodedSlice list = BEncodedSlice.parse(data).get("info").get("files");
+                long n = 0;
+                for (int i = 0; i < list.size(); i++) {
+                    BEncodedSlice file = list.get(i);
+                    n += file.get("length").asLong() + file.get("path").size();
+                }
+                return n;
+            }
+        } };
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (Case c : cases) {
+                long bytes0 = allocatedBytes();
+                long t0 = System.nanoTime();
+                for (int r = 0; r < rounds; r++) {
+                    c.run();
+                }
+                long ms = (System.nanoTime() - t0) / 1000000 / rounds;
+                long mb = (allocatedBytes() - bytes0) / rounds / (1 << 20);
+                if (pass == 1) {
+                    System.out.printf("%-20s %5d ms  %5d MB allocated%n", c.name, ms, mb);
+                }
+            }
+        }
+    }
+
+    /**
+     * A multi file torrent with a few levels of folders, plain ASCII paths.
+     */
+    static byte[] newTorrent(int files, long seed) throws Exception {
+        Random rnd = new Random(seed);
+        List<Object> list = new ArrayList<Object>(files);
+        long total = 0;
+        for (int i = 0; i < files; i++) {
+            List<Object> path = new ArrayList<Object>();
+            path.add("Folder " + rnd.nextInt(10));
+            path.add("Sub folder " + rnd.nextInt(100));
+            path.add("file_" + i + ".mp3");
+
+            long length = rnd.nextInt(10000000);
+            total += length;
+
+            Map<String, Object> file = new HashMap<String, Object>();
+            file.put("length", length);
+            file.put("path", path);
+            list.add(file);
+        }
+
+        long pieceLength = 4L * 1024 * 1024;
+        byte[] pieces = new byte[20 * (int) ((total + pieceLength - 1) / pieceLength)];
+        rnd.nextBytes(pieces);
+
+        Map<String, Object> info = new HashMap<String, Object>();
+        info.put("name", "Synthetic torrent");
+        info.put("piece length", pieceLength);
+        info.put("pieces", pieces);
+        info.put("files", list);
+
+        Map<String, Object> torrent = new HashMap<String, Object>();
+        torrent.put("announce", "http://localhost/announce");
+        torrent.put("info", info);
+
+        return BEncoder.encode(torrent);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static abstract class Case {
+
+        final String name;
+
+        Case(String name) {
+            this.name = name;
+        }
+
+        abstract long run() throws Exception;
+    }
+}
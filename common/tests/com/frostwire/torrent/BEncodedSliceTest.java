@@ -0,0 +1,208 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.torrent;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class BEncodedSliceTest extends TestCase {
+
+    public BEncodedSliceTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(BEncodedSliceTest.class);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public void testScalars() throws Exception {
+        BEncodedSlice n = BEncodedSlice.parse(bytes("i42e"));
+        assertTrue(n.isInteger());
+        assertEquals(42, n.asLong());
+
+        assertEquals(-7, BEncodedSlice.parse(bytes("i-7e")).asLong());
+        assertEquals(Long.MAX_VALUE, BEncodedSlice.parse(bytes("i9223372036854775807e")).asLong());
+
+        BEncodedSlice s = BEncodedSlice.parse(bytes("5:hello"));
+        assertTrue(s.isBytes());
+        assertEquals("hello", s.asString());
+        assertTrue(Arrays.equals(bytes("hello"), s.asBytes()));
+        assertEquals(0, s.size());
+        assertEquals(0, s.asLong());
+
+        assertEquals("", BEncodedSlice.parse(bytes("0:")).asString());
+    }
+
+    public void testListsAndDictionaries() throws Exception {
+        BEncodedSlice d = BEncodedSlice.parse(bytes("d1:ai1e1:bl3:one3:twoe1:cdee"));
+
+        assertTrue(d.isDictionary());
+        assertEquals(3, d.size());
+        assertEquals(1, d.get("a").asLong());
+        assertTrue(d.containsKey("c"));
+        assertEquals(0, d.get("c").size());
+        assertNull(d.get("x"));
+        assertNull(d.get(0));
+
+        BEncodedSlice l = d.get("b");
+        assertTrue(l.isList());
+        assertEquals(2, l.size());
+        assertEquals("one", l.get(0).asString());
+        assertEquals("two", l.get(1).asString());
+        assertNull(l.get(2));
+        assertNull(l.get(-1));
+        assertNull(l.get("one"));
+
+        // the raw encoding for values other than strings
+        assertEquals("l3:one3:twoe", new String(l.asBytes(), "US-ASCII"));
+        assertEquals(12, l.getEncodedLength());
+    }
+
+    public void testKeysAreMatchedByTheirWholeContent() throws Exception {
+        BEncodedSlice d = BEncodedSlice.parse(bytes("d4:namei1e10:name.utf-8i2ee"));
+
+        assertEquals(1, d.get("name").asLong());
+        assertEquals(2, d.get("name.utf-8").asLong());
+        assertNull(d.get("nam"));
+    }
+
+    public void testParsesAtThePositionWithoutMovingTheBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes("xxl1:ae-trailing"));
+        buffer.position(2);
+
+        BEncodedSlice l = BEncodedSlice.parse(buffer);
+
+        assertEquals(2, buffer.position());
+        assertEquals(buffer.capacity(), buffer.limit());
+        assertEquals(5, l.getEncodedLength());
+        assertEquals("a", l.get(0).asString());
+
+        ByteBuffer content = l.get(0).asByteBuffer();
+        assertTrue(content.isReadOnly());
+        assertEquals(1, content.remaining());
+        assertEquals('a', content.get(0));
+    }
+
+    public void testRejectsMalformedInput() {
+        String[] invalid = { "", "i42", "ie", "i-e", "i12345678901234567890e", "5:abc", "l", "d1:a", "di1ei2ee", "x", "3x:abc" };
+
+        for (String s : invalid) {
+            try {
+                BEncodedSlice.parse(bytes(s));
+                fail("Parsed '" + s + "'");
+            } catch (BEncodingException e) {
+                // expected
+            } catch (Exception e) {
+                fail("Unexpected " + e + " for '" + s + "'");
+            }
+        }
+
+        StringBuilder deep = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            deep.append('l');
+        }
+        for (int i = 0; i < 200; i++) {
+            deep.append('e');
+        }
+        try {
+            BEncodedSlice.parse(bytes(deep.toString()));
+            fail("Parsed too deep nesting");
+        } catch (Exception e) {
+            assertTrue(e instanceof BEncodingException);
+        }
+    }
+
+    public void testSha1OfInfoIsTheInfoHash() throws Exception {
+        byte[] data = BEncodedSliceBenchmark.newTorrent(50, 2);
+        TOTorrent torrent = TorrentUtils.readFromBEncodedInputStream(new ByteArrayInputStream(data));
+
+        assertTrue(Arrays.equals(torrent.getHash(), BEncodedSlice.parse(data).get("info").sha1()));
+    }
+
+    public void testReadFileListMatchesTheTorrent() throws Exception {
+        byte[] data = BEncodedSliceBenchmark.newTorrent(50, 3);
+        TOTorrentFile[] files = TorrentUtils.readFromBEncodedInputStream(new ByteArrayInputStream(data)).getFiles();
+
+        List<TorrentUtils.FileEntry> entries = TorrentUtils.readFileList(data);
+
+        assertEquals(files.length, entries.size());
+        for (int i = 0; i < files.length; i++) {
+            assertEquals(files[i].getRelativePath(), entries.get(i).relativePath);
+            assertEquals(files[i].getLength(), entries.get(i).length);
+        }
+    }
+
+    public void testReadFileListOfASingleFileTorrent() throws Exception {
+        List<TorrentUtils.FileEntry> entries = TorrentUtils.readFileList(singleFileTorrent(bytes("song.mp3"), null));
+
+        assertEquals(1, entries.size());
+        assertEquals("song.mp3", entries.get(0).relativePath);
+        assertEquals(1234, entries.get(0).length);
+    }
+
+    public void testReadFileListLeavesUnknownEncodingsToTheTorrent() throws Exception {
+        byte[] name = "canci\u00F3n.mp3".getBytes("UTF-8");
+
+        // no declared encoding, the locale detection of the full deserializer decides
+        assertNull(TorrentUtils.readFileList(singleFileTorrent(name, null)));
+
+        // a declared utf-8 is decoded here, the same way the full deserializer does
+        byte[] data = singleFileTorrent(name, "UTF-8");
+        TOTorrentFile file = TorrentUtils.readFromBEncodedInputStream(new ByteArrayInputStream(data)).getFiles()[0];
+        assertEquals(file.getRelativePath(), TorrentUtils.readFileList(data).get(0).relativePath);
+    }
+
+    private static byte[] singleFileTorrent(byte[] name, String encoding) throws Exception {
+        Map<String, Object> info = new HashMap<String, Object>();
+        info.put("name", name);
+        info.put("length", 1234L);
+        info.put("piece length", 16384L);
+        info.put("pieces", new byte[20]);
+
+        Map<String, Object> torrent = new HashMap<String, Object>();
+        torrent.put("announce", "http://localhost/announce");
+        torrent.put("info", info);
+        if (encoding != null) {
+            torrent.put("encoding", encoding);
+        }
+
+        return BEncoder.encode(torrent);
+    }
+
+    private static byte[] bytes(String s) throws Exception {
+        return s.getBytes("US-ASCII");
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Requests per second of the {@link HttpClientType#PureJava} and {@link HttpClientType#Apache}
+ * clients against a local server answering a 64 KB search results page, one client per
+ * thread as the performers use them.
+ * <p>
+ * The server gzips the page when asked to, unless -Dnogzip is set, and -Dkbps limits the
+ * rate at which it writes every body to simulate a real link. Run it with
+ * -Dsun.net.httpserver.nodelay=true, otherwise Nagle's algorithm adds 40 ms stalls that
+ * have nothing to do with the clients.
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class HttpClientBenchmark {
+
+    private static final int PORT = 18096;
+
+    private static final Set<String> connections = Collections.synchronizedSet(new HashSet<String>());
+    private static final AtomicInteger gzipped = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        final byte[] page = newResultsPage();
+        final byte[] pageGz = gzip(page);
+        final int kbps = Integer.getInteger("kbps", 0);
+        int requests = Integer.getInteger("requests", 2000);
+        int passes = Integer.getInteger("passes", 2);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", PORT), 64);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange ex) throws IOException {
+                connections.add(ex.getRemoteAddress().toString());
+                String ae = ex.getRequestHeaders().getFirst("Accept-Encoding");
+                byte[] body = page;
+                if (ae != null && ae.contains("gzip") && System.getProperty("nogzip") == null) {
+                    ex.getResponseHeaders().set("Content-Encoding", "gzip");
+                    body = pageGz;
+                    gzipped.incrementAndGet();
+                }
+                ex.getResponseHeaders().set("Content-Type", "text/html");
+                ex.sendResponseHeaders(200, body.length);
+                OutputStream os = ex.getResponseBody();
+                write(os, body, kbps);
+                os.close();
+            }
+        });
+        server.start();
+
+        System.out.println("page " + page.length / 1024 + " KB, gzipped " + pageGz.length / 1024 + " KB" + (kbps > 0 ? ", " + kbps + " kbps per connection" : ""));
+        for (int pass = 0; pass < passes; pass++) {
+            for (int threads : new int[] { 1, 4 }) {
+                for (HttpClientType type : new HttpClientType[] { HttpClientType.PureJava, HttpClientType.Apache }) {
+                    run(type, threads, requests, pass == passes - 1, page.length);
+                }
+            }
+        }
+        server.stop(0);
+        System.exit(0);
+    }
+
+    private static void run(final HttpClientType type, int threads, final int requests, boolean print, final int expected) throws Exception {
+        connections.clear();
+        gzipped.set(0);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final AtomicInteger left = new AtomicInteger(requests);
+        final AtomicInteger errors = new AtomicInteger();
+        long t0 = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            pool.execute(new Runnable() {
+                public void run() {
+                    HttpClient client = HttpClientFactory.newInstance(type);
+                    while (left.getAndDecrement() > 0) {
+                        byte[] b = client.getBytes("http://127.0.0.1:" + PORT + "/search?q=" + left.get(), 5000, "benchmark", null);
+                        if (b == null || b.length != expected) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(30, TimeUnit.MINUTES);
+        long ns = System.nanoTime() - t0;
+        if (print) {
+            System.out.printf("%-8s threads=%d requests=%d  %7.0f req/s  %6.1f MB/s of html  %4d connections  gzip=%d errors=%d%n", type, threads, requests, requests * 1e9 / ns, requests * (double) expected / (1 << 20) * 1e9 / ns, connections.size(), gzipped.get(), errors.get());
+        }
+    }
+
+    private static void write(OutputStream os, byte[] body, int kbps) throws IOException {
+        if (kbps <= 0) {
+            os.write(body);
+            return;
+        }
+        int chunk = 4096;
+        long nanosPerChunk = chunk * 8L * 1000000L / kbps;
+        for (int off = 0; off < body.length; off += chunk) {
+            int n = Math.min(chunk, body.length - off);
+            os.write(body, off, n);
+            os.flush();
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanosPerChunk * n / chunk);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * A search results page, compressible html.
+     */
+    private static byte[] newResultsPage() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Random rnd = new Random(1);
+        while (sb.length() < 64 * 1024) {
+            sb.append("<tr class=\"r\"><td><a href=\"/torrent/").append(rnd.nextInt(1000000)).append("\">Some result name ").append(rnd.nextInt()).append("</a></td><td>").append(rnd.nextInt(5000)).append(" MB</td></tr>\n");
+        }
+        return sb.toString().getBytes("UTF-8");
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        GZIPOutputStream gzos = new GZIPOutputStream(baos);
+        gzos.write(data);
+        gzos.close();
+        return baos.toByteArray();
+    }
+}
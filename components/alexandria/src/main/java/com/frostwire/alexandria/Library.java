@@ -5,6 +5,8 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+import com.frostwire.alexandria.db.FileArtworkDB;
+import com.frostwire.alexandria.db.FileTagsDB;
 import com.frostwire.alexandria.db.InternetRadioStationDB;
 import com.frostwire.alexandria.db.LibraryDB;
 import com.frostwire.alexandria.db.LibraryDatabase;
@@ -100,6 +102,26 @@ public class Library extends LibraryDatabaseEntity {
         PlaylistDB.updatePlaylistItemProperties(db, filePath, title, artist, album, comment, genre, track, year);
     }
 
+    public void updatePlaylistItemProperties(List<FileTags> tags) {
+        PlaylistDB.updatePlaylistItemProperties(db, tags);
+    }
+
+    public FileTags getFileTags(String filePath, long fileSize, long lastModified) {
+        return FileTagsDB.get(db, filePath, fileSize, lastModified);
+    }
+
+    public void saveFileTags(List<FileTags> tags) {
+        FileTagsDB.save(db, tags);
+    }
+
+    public String getArtworkHash(String filePath, long fileSize, long lastModified) {
+        return FileArtworkDB.getArtworkHash(db, filePath, fileSize, lastModified);
+    }
+
+    public void saveArtworkHash(String filePath, long fileSize, long lastModified, String artworkHash) {
+        FileArtworkDB.saveArtworkHash(db, filePath, fileSize, lastModified, artworkHash);
+    }
+
     public long getTotalRadioStations() {
         return InternetRadioStationDB.getTotalRadioStations(db);
     }
@@ -100,6 +100,24 @@ public class Playlist extends LibraryDatabaseEntity {
         }
     }
 
+    /**
+     * Saves the items in one transaction, much faster than saving them one by one.
+     */
+    public void saveItems(List<PlaylistItem> items) {
+        if (db != null) {
+            PlaylistItemDB.save(db, items);
+        }
+    }
+
+    /**
+     * Writes only the sort indexes of the already saved items, in one batch.
+     */
+    public void saveSortIndexes(List<PlaylistItem> items) {
+        if (db != null) {
+            PlaylistItemDB.saveSortIndexes(db, items);
+        }
+    }
+
     public synchronized void delete() {
         if (db != null) {
             PlaylistDB.delete(db, this);
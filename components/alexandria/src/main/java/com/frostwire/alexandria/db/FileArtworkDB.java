@@ -0,0 +1,56 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, 2013, FrostWire(R). All rights reserved.
+ 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.alexandria.db;
+
+import java.util.List;
+
+/**
+ * The hash of the artwork embedded in each file, one row per file path. As
+ * with the cached tags, a row is only valid for the size and modification time
+ * the file had when it was read.
+ * 
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class FileArtworkDB {
+
+    private FileArtworkDB() {
+    } // don't allow instantiation of this class
+
+    /**
+     * @return the hash of the artwork, empty if the file has none, or null if it's unknown for this version of the file
+     */
+    public static String getArtworkHash(LibraryDatabase db, String filePath, long fileSize, long lastModified) {
+        if (filePath.length() > 10000) {
+            return null;
+        }
+
+        List<List<Object>> result = db.query("SELECT artworkHash FROM FileArtwork WHERE filePath = ? AND fileSize = ? AND lastModified = ?", filePath, fileSize, lastModified);
+
+        return result.size() > 0 ? (String) result.get(0).get(0) : null;
+    }
+
+    public static void saveArtworkHash(LibraryDatabase db, String filePath, long fileSize, long lastModified, String artworkHash) {
+        if (filePath.length() > 10000) {
+            return; // it would never be found
+        }
+
+        db.update("MERGE INTO FileArtwork (filePath, fileSize, lastModified, artworkHash) KEY (filePath) VALUES (?, ?, ?, ?)", filePath, fileSize, lastModified, artworkHash);
+    }
+}
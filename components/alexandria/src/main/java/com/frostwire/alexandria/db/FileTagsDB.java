@@ -0,0 +1,80 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, 2013, FrostWire(R). All rights reserved.
+ 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.alexandria.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.frostwire.alexandria.FileTags;
+
+/**
+ * The cached tags, one row per file path. A row is only valid while the file
+ * keeps the size and modification time it had when its tags were read.
+ * 
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class FileTagsDB {
+
+    private static final String FILE_TAGS_QUERY = "SELECT filePath, fileSize, lastModified, duration, bitrate, title, artist, album, comment, genre, track, year FROM FileTags WHERE filePath = ? AND fileSize = ? AND lastModified = ?";
+
+    private static final String FILE_TAGS_MERGE = "MERGE INTO FileTags (filePath, fileSize, lastModified, duration, bitrate, title, artist, album, comment, genre, track, year) KEY (filePath) "
+            + " VALUES (?, ?, ?, ?, LEFT(?, 10), LEFT(?, 500), LEFT(?, 500), LEFT(?, 500), LEFT(?, 500), LEFT(?, 500), LEFT(?, 20), LEFT(?, 20))";
+
+    private static final RowMapper<FileTags> MAPPER = new RowMapper<FileTags>() {
+        public FileTags map(ResultSet rs) throws SQLException {
+            return new FileTags(rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getInt(4), rs.getString(5), rs.getString(6), rs.getString(7), rs.getString(8), rs.getString(9), rs.getString(10), rs.getString(11), rs.getString(12));
+        }
+    };
+
+    private FileTagsDB() {
+    } // don't allow instantiation of this class
+
+    /**
+     * @return the cached tags, or null if there are none for this version of the file
+     */
+    public static FileTags get(LibraryDatabase db, String filePath, long fileSize, long lastModified) {
+        if (filePath.length() > 10000) {
+            return null;
+        }
+
+        List<FileTags> result = db.query(MAPPER, FILE_TAGS_QUERY, filePath, fileSize, lastModified);
+
+        return result.size() > 0 ? result.get(0) : null;
+    }
+
+    /**
+     * Inserts or replaces the rows of all the files in a single batch.
+     */
+    public static void save(LibraryDatabase db, List<FileTags> tags) {
+        List<Object[]> argumentsList = new ArrayList<Object[]>(tags.size());
+
+        for (FileTags t : tags) {
+            if (t.getFilePath().length() > 10000) {
+                continue; // it would never be found
+            }
+
+            argumentsList.add(new Object[] { t.getFilePath(), t.getFileSize(), t.getLastModified(), t.getDuration(), t.getBitrate(), t.getTitle(), t.getArtist(), t.getAlbum(), t.getComment(), t.getGenre(), t.getTrack(), t.getYear() });
+        }
+
+        db.batch(FILE_TAGS_MERGE, argumentsList);
+    }
+}
@@ -1,6 +1,7 @@
 package com.frostwire.alexandria.db;
 
-import java.util.ArrayList;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.List;
 
 import com.frostwire.alexandria.InternetRadioStation;
@@ -61,21 +62,9 @@ public class InternetRadioStationDB {
     }
     
     public static List<InternetRadioStation> getInternetRadioStations(LibraryDatabase db) {
-        List<List<Object>> result = db.query("SELECT internetRadioStationId, name, description, url, bitrate, type, website, genre, pls, bookmarked FROM InternetRadioStations");
-
-        List<InternetRadioStation> internetRadioStations = new ArrayList<InternetRadioStation>(result.size());
-
-        for (List<Object> row : result) {
-            InternetRadioStation internetRadioStation = new InternetRadioStation(db);
-            InternetRadioStationDB.fill(row, internetRadioStation);
-            internetRadioStations.add(internetRadioStation);
-        }
-
-        return internetRadioStations;
+        return db.query(new InternetRadioStationMapper(db), "SELECT internetRadioStationId, name, description, url, bitrate, type, website, genre, pls, bookmarked FROM InternetRadioStations");
     }
 
-    
-
     public static long getTotalRadioStations(LibraryDatabase db) {
         List<List<Object>> query = db.query("SELECT COUNT(*) FROM InternetRadioStations");
         return query.size() > 0 ? (Long) query.get(0).get(0) : 0;
@@ -108,4 +97,31 @@ public class InternetRadioStationDB {
         Object[] values = new Object[] { obj.getName(), obj.getDescription(), obj.getUrl(), obj.getBitrate(), obj.getType(), obj.getWebsite(), obj.getGenre(), obj.getPls(), obj.isBookmarked(), obj.getId() };
         return new Object[] { sql, values };
     }
+
+    private static final class InternetRadioStationMapper implements RowMapper<InternetRadioStation> {
+
+        private final LibraryDatabase db;
+
+        public InternetRadioStationMapper(LibraryDatabase db) {
+            this.db = db;
+        }
+
+        @Override
+        public InternetRadioStation map(ResultSet rs) throws SQLException {
+            InternetRadioStation obj = new InternetRadioStation(db);
+
+            obj.setId(rs.getInt(1));
+            obj.setName(rs.getString(2));
+            obj.setDescription(rs.getString(3));
+            obj.setUrl(rs.getString(4));
+            obj.setBitrate(rs.getString(5));
+            obj.setType(rs.getString(6));
+            obj.setWebsite(rs.getString(7));
+            obj.setGenre(rs.getString(8));
+            obj.setPls(rs.getString(9));
+            obj.setBookmarked(rs.getBoolean(10));
+
+            return obj;
+        }
+    }
 }
@@ -9,8 +9,9 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.frostwire.alexandria.Playlist;
 import com.frostwire.alexandria.PlaylistItem;
@@ -22,7 +23,11 @@ public class LibraryDatabase {
     public static final int STARRED_PLAYLIST_ID = -3;
 
     public static final int LIBRARY_VERSION_PLAYLIST_SORT_INDEXES = 4; // indicates db version when playlist sort indexes were added
-    public static final int LIBRARY_DATABASE_VERSION = 4;
+    public static final int LIBRARY_VERSION_FILE_TAGS = 5; // indicates db version when the file tags cache was added
+    public static final int LIBRARY_VERSION_FILE_ARTWORK = 6; // indicates db version when the file artwork hashes were added
+    public static final int LIBRARY_DATABASE_VERSION = 6;
+
+    private static final int MAX_CACHED_STATEMENTS = 64;
     
     private final File _databaseFile;
     private final String _name;
@@ -30,6 +35,14 @@ public class LibraryDatabase {
     private Connection _connection;
 
     private boolean _closed;
+    private boolean _inTransaction;
+    private int _mappingDepth;
+
+    /**
+     * Prepared statements of the main connection, by sql. Only touched while
+     * holding the database monitor.
+     */
+    private final Map<String, PreparedStatement> _statements;
 
     static {
         try {
@@ -45,6 +58,19 @@ public class LibraryDatabase {
         File path = databaseFile;
         _name = databaseFile.getName();
 
+        _statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 2571036440239165147L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > MAX_CACHED_STATEMENTS) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+
         _connection = openOrCreateDatabase(path, _name);
     }
 
@@ -68,6 +94,52 @@ public class LibraryDatabase {
         return query(_connection, statementSql, arguments);
     }
 
+    /**
+     * Maps each row directly to an object, without the intermediate lists.
+     * 
+     * @param mapper
+     * @param statementSql
+     * @param arguments
+     * @return the mapped rows
+     */
+    public synchronized <T> List<T> query(RowMapper<T> mapper, String statementSql, Object... arguments) {
+        if (isClosed()) {
+            return new ArrayList<T>();
+        }
+
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            statement = prepare(_connection, statementSql);
+
+            setArguments(statement, arguments);
+
+            resultSet = statement.executeQuery();
+
+            List<T> result = new ArrayList<T>();
+
+            // the mapper could run queries of its own, don't let them reuse this statement
+            _mappingDepth++;
+            try {
+                while (resultSet.next()) {
+                    result.add(mapper.map(resultSet));
+                }
+            } finally {
+                _mappingDepth--;
+            }
+
+            return result;
+        } catch (Exception e) {
+            onError(_connection, e);
+        } finally {
+            closeQuietly(resultSet);
+            release(_connection, statementSql, statement);
+        }
+
+        return new ArrayList<T>();
+    }
+
     /**
      * This method is synchronized due to possible concurrent issues, specially
      * during recently generated id retrieval.
@@ -104,6 +176,94 @@ public class LibraryDatabase {
         return OBJECT_INVALID_ID;
     }
 
+    /**
+     * Executes the same statement once per arguments array, as a single batch
+     * inside one transaction, nothing is applied if any of them fails. As part of
+     * an outer {@link #transaction(Runnable)} the failure is thrown to roll that
+     * one back.
+     * 
+     * @param statementSql
+     * @param argumentsList
+     * @return the update counts, or an empty array if the batch failed
+     */
+    public synchronized int[] batch(String statementSql, List<Object[]> argumentsList) {
+        if (isClosed() || argumentsList.isEmpty()) {
+            return new int[0];
+        }
+
+        boolean outermost = beginTransaction();
+
+        try {
+            PreparedStatement statement = prepare(_connection, statementSql);
+
+            try {
+                for (Object[] arguments : argumentsList) {
+                    setArguments(statement, arguments);
+                    statement.addBatch();
+                }
+
+                int[] result = statement.executeBatch();
+
+                if (outermost) {
+                    _connection.commit();
+                }
+
+                return result;
+            } finally {
+                release(_connection, statementSql, statement);
+            }
+        } catch (Exception e) {
+            if (!outermost) {
+                throw propagate(e);
+            }
+            e.printStackTrace();
+            rollbackQuietly(outermost);
+        } finally {
+            endTransaction(outermost);
+        }
+
+        return new int[0];
+    }
+
+    /**
+     * Runs all the queries, updates and batches done by the runnable in a single
+     * transaction, it's committed once the runnable returns. Nested calls join
+     * the outermost transaction.
+     * <p>
+     * Inside the transaction a failed statement throws instead of returning its
+     * error value, the runnable is aborted and nothing it wrote is applied.
+     * 
+     * @param runnable
+     * @return true if committed, false if rolled back
+     */
+    public synchronized boolean transaction(Runnable runnable) {
+        if (isClosed()) {
+            return false;
+        }
+
+        boolean outermost = beginTransaction();
+
+        try {
+            runnable.run();
+
+            if (outermost) {
+                _connection.commit();
+            }
+
+            return true;
+        } catch (Exception e) {
+            if (!outermost) {
+                throw propagate(e);
+            }
+            e.printStackTrace();
+            rollbackQuietly(outermost);
+        } finally {
+            endTransaction(outermost);
+        }
+
+        return false;
+    }
+
     public synchronized void close() {
         if (isClosed()) {
             return;
@@ -111,6 +271,11 @@ public class LibraryDatabase {
 
         _closed = true;
 
+        for (PreparedStatement statement : _statements.values()) {
+            closeQuietly(statement);
+        }
+        _statements.clear();
+
         try {
             Statement statement = _connection.createStatement();
             statement.execute("SHUTDOWN");
@@ -143,10 +308,18 @@ public class LibraryDatabase {
             setupLuceneIndex(connection);
         }
         
-        if (newVersion == 4) {
+        if (oldVersion < LIBRARY_VERSION_PLAYLIST_SORT_INDEXES) {
             setupPlaylistIndexes(connection);
         }
 
+        if (oldVersion < LIBRARY_VERSION_FILE_TAGS) {
+            setupFileTagsTable(connection);
+        }
+
+        if (oldVersion < LIBRARY_VERSION_FILE_ARTWORK) {
+            setupFileArtworkTable(connection);
+        }
+
         update(connection, "UPDATE Library SET version = ?", LIBRARY_DATABASE_VERSION);
     }
 
@@ -187,6 +360,10 @@ public class LibraryDatabase {
 
         setupLuceneIndex(connection);
 
+        setupFileTagsTable(connection);
+
+        setupFileArtworkTable(connection);
+
         // INITIAL DATA
         update(connection, "INSERT INTO Library (name , version) VALUES (?, ?)", name, LIBRARY_DATABASE_VERSION);
 
@@ -212,7 +389,7 @@ public class LibraryDatabase {
         int numColums = meta.getColumnCount();
         int i;
 
-        List<List<Object>> result = new LinkedList<List<Object>>();
+        List<List<Object>> result = new ArrayList<List<Object>>();
 
         while (resultSet.next()) {
             List<Object> row = new ArrayList<Object>(numColums);
@@ -229,28 +406,9 @@ public class LibraryDatabase {
             return OBJECT_INVALID_ID;
         }
 
-        Statement statement = null;
-        ResultSet resultSet = null;
-
-        try {
-            statement = _connection.createStatement();
-            resultSet = statement.executeQuery("CALL IDENTITY()");
-
-            resultSet.next();
-
-            return resultSet.getInt(1);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                } catch (SQLException e) {
-                }
-            }
-        }
+        List<List<Object>> result = query(_connection, "CALL IDENTITY()");
 
-        return OBJECT_INVALID_ID;
+        return result.size() > 0 ? ((Number) result.get(0).get(0)).intValue() : OBJECT_INVALID_ID;
     }
 
     private List<List<Object>> query(Connection connection, String statementSql, Object... arguments) {
@@ -258,26 +416,18 @@ public class LibraryDatabase {
         ResultSet resultSet = null;
 
         try {
-            statement = connection.prepareStatement(statementSql);
+            statement = prepare(connection, statementSql);
 
-            if (arguments != null) {
-                for (int i = 0; i < arguments.length; i++) {
-                    statement.setObject(i + 1, arguments[i]);
-                }
-            }
+            setArguments(statement, arguments);
 
             resultSet = statement.executeQuery();
 
             return convertResultSetToList(resultSet);
         } catch (Exception e) {
-            e.printStackTrace();
+            onError(connection, e);
         } finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                } catch (SQLException e) {
-                }
-            }
+            closeQuietly(resultSet);
+            release(connection, statementSql, statement);
         }
 
         return new ArrayList<List<Object>>();
@@ -288,29 +438,138 @@ public class LibraryDatabase {
         PreparedStatement statement = null;
 
         try {
-            statement = connection.prepareStatement(statementSql);
+            statement = prepare(connection, statementSql);
 
-            if (arguments != null) {
-                for (int i = 0; i < arguments.length; i++) {
-                    statement.setObject(i + 1, arguments[i]);
-                }
-            }
+            setArguments(statement, arguments);
 
             return statement.executeUpdate();
         } catch (Exception e) {
-            e.printStackTrace();
+            onError(connection, e);
         } finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                } catch (SQLException e) {
-                }
-            }
+            release(connection, statementSql, statement);
         }
 
         return -1;
     }
 
+    /**
+     * Statements of the main connection are cached and reused, the ones of the
+     * connection being created or upgraded are not. Neither are the ones run while
+     * mapping rows, the cached one could be the statement whose rows are being mapped.
+     */
+    private PreparedStatement prepare(Connection connection, String statementSql) throws SQLException {
+        if (connection != _connection || _mappingDepth > 0) {
+            return connection.prepareStatement(statementSql);
+        }
+
+        PreparedStatement statement = _statements.get(statementSql);
+        if (statement == null) {
+            statement = connection.prepareStatement(statementSql);
+            _statements.put(statementSql, statement);
+        }
+
+        return statement;
+    }
+
+    private void release(Connection connection, String statementSql, PreparedStatement statement) {
+        if (statement == null) {
+            return;
+        }
+
+        if (connection != _connection || _statements.get(statementSql) != statement) {
+            closeQuietly(statement);
+        } else {
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+            } catch (SQLException e) {
+                // broken statement, don't reuse it
+                _statements.remove(statementSql);
+                closeQuietly(statement);
+            }
+        }
+    }
+
+    /**
+     * Outside a transaction a failed statement is only reported and the caller gets
+     * the error value. Inside one it's thrown, otherwise the transaction would
+     * commit the writes done before the failure.
+     */
+    private void onError(Connection connection, Exception e) {
+        if (_inTransaction && connection == _connection) {
+            throw propagate(e);
+        }
+        e.printStackTrace();
+    }
+
+    private static RuntimeException propagate(Exception e) {
+        return e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+    }
+
+    private static void setArguments(PreparedStatement statement, Object[] arguments) throws SQLException {
+        if (arguments != null) {
+            for (int i = 0; i < arguments.length; i++) {
+                statement.setObject(i + 1, arguments[i]);
+            }
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+        }
+    }
+
+    private static void closeQuietly(ResultSet resultSet) {
+        if (resultSet != null) {
+            try {
+                resultSet.close();
+            } catch (SQLException e) {
+            }
+        }
+    }
+
+    private boolean beginTransaction() {
+        if (_inTransaction) {
+            return false;
+        }
+
+        try {
+            _connection.setAutoCommit(false);
+            _inTransaction = true;
+            return true;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void endTransaction(boolean outermost) {
+        if (!outermost) {
+            return;
+        }
+
+        _inTransaction = false;
+
+        try {
+            _connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void rollbackQuietly(boolean outermost) {
+        if (!outermost) {
+            return;
+        }
+
+        try {
+            _connection.rollback();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
     private int getDatabaseVersion(Connection connection) {
         List<List<Object>> query = query(connection, "SELECT version FROM Library");
         return query.size() > 0 ? (Integer) query.get(0).get(0) : -1;
@@ -335,6 +594,14 @@ public class LibraryDatabase {
         update(connection, "CALL FTL_CREATE_INDEX('PUBLIC', 'INTERNETRADIOSTATIONS', 'NAME, DESCRIPTION, GENRE')");
     }
     
+    private void setupFileTagsTable(final Connection connection) {
+        update(connection, "CREATE TABLE FileTags (filePath VARCHAR(10000) PRIMARY KEY, fileSize BIGINT, lastModified BIGINT, duration INTEGER, bitrate VARCHAR(10), title VARCHAR(500), artist VARCHAR(500), album VARCHAR(500), comment VARCHAR(500), genre VARCHAR(500), track VARCHAR(20), year VARCHAR(20))");
+    }
+
+    private void setupFileArtworkTable(final Connection connection) {
+        update(connection, "CREATE TABLE FileArtwork (filePath VARCHAR(10000) PRIMARY KEY, fileSize BIGINT, lastModified BIGINT, artworkHash VARCHAR(40))");
+    }
+
     private void setupPlaylistIndexes(final Connection connection) {
         
         // add new column
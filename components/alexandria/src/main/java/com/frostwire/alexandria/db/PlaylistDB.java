@@ -5,6 +5,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import com.frostwire.alexandria.FileTags;
 import com.frostwire.alexandria.Playlist;
 import com.frostwire.alexandria.PlaylistItem;
 
@@ -49,8 +50,9 @@ public class PlaylistDB {
 
         for (PlaylistItem item : items) {
             item.setId(LibraryDatabase.OBJECT_NOT_SAVED_ID);
-            item.save();
         }
+
+        PlaylistItemDB.save(db, items);
     }
 
     public static void delete(LibraryDatabase db, Playlist obj) {
@@ -86,16 +88,14 @@ public class PlaylistDB {
     public static Playlist getStarredPlaylist(LibraryDatabase db) {
         String query = "SELECT playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred " + "FROM PlaylistItems WHERE starred = ?";
 
-        List<List<Object>> result = db.query(query, true);
-
         Playlist playlist = new Playlist(db, LibraryDatabase.STARRED_PLAYLIST_ID, "starred", "starred");
 
+        List<PlaylistItem> result = db.query(PlaylistItemDB.newMapper(playlist), query, true);
+
         List<PlaylistItem> items = new ArrayList<PlaylistItem>(result.size());
         Set<String> paths = new HashSet<String>();
 
-        for (List<Object> row : result) {
-            PlaylistItem item = new PlaylistItem(playlist);
-            PlaylistItemDB.fill(row, item);
+        for (PlaylistItem item : result) {
             if (!paths.contains(item.getFilePath())) {
                 items.add(item);
                 paths.add(item.getFilePath());
@@ -112,6 +112,26 @@ public class PlaylistDB {
         db.update((String) sqlAndValues[0], (Object[]) sqlAndValues[1]);
     }
 
+    /**
+     * Updates the properties of the items of all the files in a single batch.
+     */
+    public static void updatePlaylistItemProperties(LibraryDatabase db, List<FileTags> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+
+        String sql = null;
+        List<Object[]> argumentsList = new ArrayList<Object[]>(tags.size());
+
+        for (FileTags t : tags) {
+            Object[] sqlAndValues = createPlaylistItemPropertiesUpdate(t.getFilePath(), t.getTitle(), t.getArtist(), t.getAlbum(), t.getComment(), t.getGenre(), t.getTrack(), t.getYear());
+            sql = (String) sqlAndValues[0];
+            argumentsList.add((Object[]) sqlAndValues[1]);
+        }
+
+        db.batch(sql, argumentsList);
+    }
+
     private static Object[] createPlaylistItemPropertiesUpdate(String filePath, String title, String artist, String album, String comment, String genre, String track, String year) {
         String sql = "UPDATE PlaylistItems SET trackTitle = LEFT(?, 500), trackArtist = LEFT(?, 500), trackAlbum = LEFT(?, 500), trackComment = LEFT(?, 500), trackGenre = LEFT(?, 20), trackNumber = LEFT(?, 6), trackYear = LEFT(?, 6) WHERE filePath = LEFT(?, 10000)";
 
@@ -1,5 +1,7 @@
 package com.frostwire.alexandria.db;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -8,6 +10,9 @@ import com.frostwire.alexandria.PlaylistItem;
 
 public class PlaylistItemDB {
 
+    private static final String PLAYLIST_ITEMS_QUERY = "SELECT playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred, sortIndex "
+            + "FROM PlaylistItems WHERE playlistId = ? ORDER BY sortIndex ASC";
+
     private PlaylistItemDB() {} // don't construct this direclty
 
     public static void fill(LibraryDatabase db, PlaylistItem obj) {
@@ -79,27 +84,93 @@ public class PlaylistItemDB {
         }
     }
 
-    public static void delete(LibraryDatabase db, PlaylistItem obj) {
-        db.update("DELETE FROM PlaylistItems WHERE playlistItemId = ?", obj.getId());
+    /**
+     * Saves all the items in a single transaction, the updates and the starred
+     * flags are sent in batches. New items are inserted one by one to get their ids.
+     * If the transaction is rolled back the new items are left unsaved.
+     */
+    public static void save(final LibraryDatabase db, final List<PlaylistItem> items) {
+        final List<PlaylistItem> inserted = new ArrayList<PlaylistItem>();
+
+        boolean committed = db.transaction(new Runnable() {
+            @Override
+            public void run() {
+                List<Object[]> updates = new ArrayList<Object[]>(items.size());
+                List<Object[]> starredUpdates = new ArrayList<Object[]>(items.size());
+                String updateSql = null;
+                String starredSql = null;
+
+                for (PlaylistItem obj : items) {
+                    if (obj.getId() == LibraryDatabase.OBJECT_INVALID_ID || obj.getPlaylist() == null) {
+                        continue;
+                    }
+
+                    Object[] sqlAndValues;
+
+                    if (obj.getId() == LibraryDatabase.OBJECT_NOT_SAVED_ID) {
+                        obj.setStarred(isStarred(db, obj) || obj.isStarred());
+                        sqlAndValues = createPlaylistItemInsert(obj);
+                        int id = db.insert((String) sqlAndValues[0], (Object[]) sqlAndValues[1]);
+                        obj.setId(id);
+                        inserted.add(obj);
+                    } else {
+                        sqlAndValues = createPlaylistItemUpdate(obj);
+                        updateSql = (String) sqlAndValues[0];
+                        updates.add((Object[]) sqlAndValues[1]);
+                    }
+
+                    sqlAndValues = updateStarred(obj);
+                    starredSql = (String) sqlAndValues[0];
+                    starredUpdates.add((Object[]) sqlAndValues[1]);
+                }
+
+                if (updateSql != null) {
+                    db.batch(updateSql, updates);
+                }
+
+                if (starredSql != null) {
+                    db.batch(starredSql, starredUpdates);
+                }
+            }
+        });
+
+        if (!committed) {
+            for (PlaylistItem obj : inserted) {
+                obj.setId(LibraryDatabase.OBJECT_NOT_SAVED_ID);
+            }
+        }
     }
-    
-    public static List<PlaylistItem> getPlaylistItems(LibraryDatabase db, Playlist playlist) {
-        String query = "SELECT playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred, sortIndex "
-                + "FROM PlaylistItems WHERE playlistId = ? ORDER BY sortIndex ASC";
 
-        List<List<Object>> result = db.query(query, playlist.getId());
+    /**
+     * Writes only the sort index of the items, in a single batch.
+     */
+    public static void saveSortIndexes(LibraryDatabase db, List<PlaylistItem> items) {
+        List<Object[]> values = new ArrayList<Object[]>(items.size());
 
-        List<PlaylistItem> items = new ArrayList<PlaylistItem>(result.size());
-
-        for (List<Object> row : result) {
-            PlaylistItem item = new PlaylistItem(playlist);
-            PlaylistItemDB.fill(row, item);
-            items.add(item);
+        for (PlaylistItem obj : items) {
+            if (obj.getId() >= 0) {
+                values.add(new Object[] { obj.getSortIndex(), obj.getId() });
+            }
         }
 
-        return items;
+        db.batch("UPDATE PlaylistItems SET sortIndex = ? WHERE playlistItemId = ?", values);
+    }
+
+    public static void delete(LibraryDatabase db, PlaylistItem obj) {
+        db.update("DELETE FROM PlaylistItems WHERE playlistItemId = ?", obj.getId());
     }
     
+    public static List<PlaylistItem> getPlaylistItems(LibraryDatabase db, Playlist playlist) {
+        return db.query(new PlaylistItemMapper(playlist), PLAYLIST_ITEMS_QUERY, playlist.getId());
+    }
+
+    /**
+     * Maps the rows of the playlist item queries, the sort index column is optional.
+     */
+    public static RowMapper<PlaylistItem> newMapper(Playlist playlist) {
+        return new PlaylistItemMapper(playlist);
+    }
+
     private static Object[] createPlaylistItemInsert(PlaylistItem item) {
         String sql = "INSERT INTO PlaylistItems (playlistId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred, sortIndex) "
                 + " VALUES (?, LEFT(?, 10000), LEFT(?, 500), ?, LEFT(?, 10), LEFT(?, 500), ?, LEFT(?, 500), LEFT(?, 500), LEFT(?, 10000), LEFT(?, 10), LEFT(?, 500), LEFT(?, 20), LEFT(?, 6), LEFT(?, 6), ?, ?)";
@@ -138,4 +209,44 @@ public class PlaylistItemDB {
         
         return false;
     }
+
+    private static final class PlaylistItemMapper implements RowMapper<PlaylistItem> {
+
+        private final Playlist playlist;
+        private int numColumns;
+
+        public PlaylistItemMapper(Playlist playlist) {
+            this.playlist = playlist;
+            this.numColumns = -1;
+        }
+
+        @Override
+        public PlaylistItem map(ResultSet rs) throws SQLException {
+            if (numColumns == -1) {
+                numColumns = rs.getMetaData().getColumnCount();
+            }
+
+            PlaylistItem obj = new PlaylistItem(playlist);
+
+            obj.setId(rs.getInt(1));
+            obj.setFilePath(rs.getString(2));
+            obj.setFileName(rs.getString(3));
+            obj.setFileSize(rs.getLong(4));
+            obj.setFileExtension(rs.getString(5));
+            obj.setTrackTitle(rs.getString(6));
+            obj.setTrackDurationInSecs(rs.getFloat(7));
+            obj.setTrackArtist(rs.getString(8));
+            obj.setTrackAlbum(rs.getString(9));
+            obj.setCoverArtPath(rs.getString(10));
+            obj.setTrackBitrate(rs.getString(11));
+            obj.setTrackComment(rs.getString(12));
+            obj.setTrackGenre(rs.getString(13));
+            obj.setTrackNumber(rs.getString(14));
+            obj.setTrackYear(rs.getString(15));
+            obj.setStarred(rs.getBoolean(16));
+            obj.setSortIndex(numColumns < 17 ? 0 : rs.getInt(17)); // a null sort index reads as 0
+
+            return obj;
+        }
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.alexandria;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.frostwire.alexandria.db.LibraryDatabase;
+
+/**
+ * Time to import a folder of N items into a new playlist and to rewrite all their
+ * sort indexes, saving them one by one as before ("single") or with
+ * {@link Playlist#saveItems(List)} and {@link Playlist#saveSortIndexes(List)} ("batch").
+ * <p>
+ * Each mode runs on a new database in a temporary folder. -Ditems sets N, 10000 by
+ * default, -Dmode runs only one of the modes.
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class PlaylistSaveBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int n = Integer.getInteger("items", 10000);
+        String only = System.getProperty("mode");
+
+        for (String mode : new String[] { "single", "batch" }) {
+            if (only != null && !only.equals(mode)) {
+                continue;
+            }
+
+            File dir = File.createTempFile("library", "");
+            dir.delete();
+            dir.mkdirs();
+
+            LibraryDatabase db = new LibraryDatabase(new File(dir, "lib"));
+            Playlist playlist = new Playlist(db, LibraryDatabase.OBJECT_NOT_SAVED_ID, "benchmark", "benchmark");
+            playlist.save();
+
+            List<PlaylistItem> items = new ArrayList<PlaylistItem>(n);
+            for (int i = 0; i < n; i++) {
+                PlaylistItem item = playlist.newItem("/music/f" + i + ".mp3", "f" + i + ".mp3", 1000 + i, "mp3", "title " + i, 100f, "artist", "album", "", "128", "", "genre", "1", "2000", false);
+                item.setSortIndex(i + 1);
+                items.add(item);
+            }
+
+            long t0 = System.currentTimeMillis();
+            if (mode.equals("single")) {
+                for (PlaylistItem item : items) {
+                    item.save();
+                }
+            } else {
+                playlist.saveItems(items);
+            }
+            long importMs = System.currentTimeMillis() - t0;
+
+            for (int i = 0; i < n; i++) {
+                items.get(i).setSortIndex(n - i);
+            }
+
+            t0 = System.currentTimeMillis();
+            if (mode.equals("single")) {
+                for (PlaylistItem item : items) {
+                    item.save();
+                }
+            } else {
+                playlist.saveSortIndexes(items);
+            }
+            long reindexMs = System.currentTimeMillis() - t0;
+
+            List<List<Object>> check = db.query("SELECT COUNT(*), MIN(sortIndex), MAX(sortIndex) FROM PlaylistItems WHERE playlistId = ?", playlist.getId());
+            System.out.printf("%-6s items=%d  import %6d ms  reindex %6d ms  saved (count, min, max)=%s%n", mode, n, importMs, reindexMs, check.get(0));
+
+            db.close();
+            deleteAll(dir);
+        }
+    }
+
+    private static void deleteAll(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                deleteAll(c);
+            }
+        }
+        f.delete();
+    }
+}
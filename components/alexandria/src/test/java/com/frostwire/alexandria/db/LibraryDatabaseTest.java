@@ -0,0 +1,131 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.alexandria.db;
+
+import java.io.File;
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class LibraryDatabaseTest extends TestCase {
+
+    private File dir;
+    private LibraryDatabase db;
+
+    public LibraryDatabaseTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(LibraryDatabaseTest.class);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("library", "");
+        dir.delete();
+        dir.mkdirs();
+        db = new LibraryDatabase(new File(dir, "lib"));
+        db.update("CREATE TABLE Numbers (n INTEGER PRIMARY KEY)");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        deleteAll(dir);
+    }
+
+    public void testTransactionCommits() {
+        boolean committed = db.transaction(new Runnable() {
+            @Override
+            public void run() {
+                db.update("INSERT INTO Numbers (n) VALUES (?)", 1);
+                db.batch("INSERT INTO Numbers (n) VALUES (?)", Arrays.asList(new Object[] { 2 }, new Object[] { 3 }));
+            }
+        });
+
+        assertTrue(committed);
+        assertEquals(3, count());
+    }
+
+    public void testFailedUpdateRollsBackTheTransaction() {
+        boolean committed = db.transaction(new Runnable() {
+            @Override
+            public void run() {
+                db.update("INSERT INTO Numbers (n) VALUES (?)", 1);
+                db.update("INSERT INTO Numbers (n) VALUES (?)", 1);
+                fail("The duplicate insert must abort the transaction");
+            }
+        });
+
+        assertFalse(committed);
+        assertEquals(0, count());
+    }
+
+    public void testFailedBatchRollsBackTheTransaction() {
+        boolean committed = db.transaction(new Runnable() {
+            @Override
+            public void run() {
+                db.update("INSERT INTO Numbers (n) VALUES (?)", 1);
+                db.batch("INSERT INTO Numbers (n) VALUES (?)", Arrays.asList(new Object[] { 2 }, new Object[] { 2 }));
+            }
+        });
+
+        assertFalse(committed);
+        assertEquals(0, count());
+    }
+
+    public void testFailedBatchAppliesNothing() {
+        int[] result = db.batch("INSERT INTO Numbers (n) VALUES (?)", Arrays.asList(new Object[] { 1 }, new Object[] { 1 }));
+
+        assertEquals(0, result.length);
+        assertEquals(0, count());
+    }
+
+    public void testFailedUpdateOutsideTransactionReturnsError() {
+        assertEquals(1, db.update("INSERT INTO Numbers (n) VALUES (?)", 1));
+        assertEquals(-1, db.update("INSERT INTO Numbers (n) VALUES (?)", 1));
+        assertEquals(1, count());
+    }
+
+    private int count() {
+        return ((Number) db.query("SELECT COUNT(*) FROM Numbers").get(0).get(0)).intValue();
+    }
+
+    private static void deleteAll(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                deleteAll(c);
+            }
+        }
+        f.delete();
+    }
+}
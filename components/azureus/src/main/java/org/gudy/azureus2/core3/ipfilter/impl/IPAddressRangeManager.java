@@ -45,12 +45,12 @@ IPAddressRangeManager
 
 	protected ArrayList entries = new ArrayList();
 	
-	protected long		total_span;
+	protected volatile boolean	rebuild_required;
+	protected long				last_rebuild_time;
 	
-	protected boolean	rebuild_required;
-	protected long		last_rebuild_time;
+		// immutable, replaced as a whole on rebuild so lookups never lock
 	
-	protected IpRange[] mergedRanges = new IpRange[0];
+	protected volatile RangeTable	table = new RangeTable( new int[0], new int[0], new IpRange[0], 0 );
 	
 	protected AEMonitor	this_mon	= new AEMonitor( "IPAddressRangeManager" );
 
@@ -104,26 +104,14 @@ IPAddressRangeManager
 			return( null );
 		}
 		
-		try{
-			this_mon.enter();
-			
-			long address_long = addressToInt( ip );
-			
-			if ( address_long < 0 ){
-				
-				address_long += 0x100000000L;
-			}
-			
-			Object res = isInRange( address_long );
-			
-			// LGLogger.log( "IPAddressRangeManager: checking '" + ip + "' against " + entries.size() + "/" + merged_entries.length + " -> " + res );
-			
-			return( res );
-						
-		}finally{
+		long address_long = addressToInt( ip );
+		
+		if ( address_long < 0 ){
 			
-			this_mon.exit();
+			address_long += 0x100000000L;
 		}
+		
+		return( isInRange( address_long ));
 	}
 	
 	public Object
@@ -137,126 +125,26 @@ IPAddressRangeManager
 			return( null );
 		}
 		
-		try{
-			this_mon.enter();
-			
-			long address_long = addressToInt( ip );
-			
-			if ( address_long < 0 ){
-				
-				address_long += 0x100000000L;
-			}
-			
-			Object res = isInRange( address_long );
-			
-			// LGLogger.log( "IPAddressRangeManager: checking '" + ip + "' against " + entries.size() + "/" + merged_entries.length + " -> " + res );
-			
-			return( res );
-						
-		}finally{
+		long address_long = addressToInt( ip );
+		
+		if ( address_long < 0 ){
 			
-			this_mon.exit();
+			address_long += 0x100000000L;
 		}
+		
+		return( isInRange( address_long ));
 	}
 	
 	protected Object
 	isInRange(
 		long	address_long )
 	{
-		try{
-			this_mon.enter();
+		if ( rebuild_required ){
 			
 			checkRebuild();
-			
-			if ( mergedRanges.length == 0 ){
-				
-				return( null );
-			}
-				
-				// assisted binary chop 
-			
-			int	bottom 	= 0;
-			int	top		= mergedRanges.length-1;
-			
-			int	current	= -1;
-			
-			while( top >= 0 && bottom < mergedRanges.length && bottom <= top){
-				
-				current = (bottom+top)/2;
-				
-				IpRange	e = mergedRanges[current];
-				
-				long	this_start 	= e.getStartIpLong();
-				long 	this_end	= e.getMergedEndLong();
-				
-				if ( address_long == this_start ){
-					
-					break;
-					
-				}else if ( address_long > this_start ){
-					
-					if ( address_long <= this_end ){
-						
-						break;
-					}
-					
-						// lies to the right of this entry
-					
-					bottom	= current + 1;
-					
-				}else if ( address_long == this_end ){
-					
-					break;
-					
-				}else{
-					// < this_end
-					
-					if ( address_long >= this_start ){
-						
-						break;
-					}
-					
-					top = current - 1;
-				}
-			}
-			
-			if ( top >= 0 && bottom < mergedRanges.length && bottom <= top ){
-	
-				IpRange	e = mergedRanges[current];
-			
-				if ( address_long <= e.getEndIpLong()){
-					
-					return( e );
-				}
-				
-				IpRange[]	merged = e.getMergedEntries();
-				
-				if ( merged == null ){
-					
-					Debug.out( "IPAddressRangeManager: inconsistent merged details - no entries" );
-					
-					return( null );
-				}
-				
-				for (int i=0;i<merged.length;i++){
-					
-					IpRange	me = merged[i];
-					
-					if ( me.getStartIpLong() <= address_long && me.getEndIpLong() >= address_long ){
-						
-						return( me );
-					}
-				}
-				
-				Debug.out( "IPAddressRangeManager: inconsistent merged details - entry not found" );
-			}
-			
-			return( null );
-			
-		}finally{
-			
-			this_mon.exit();
 		}
+		
+		return( table.find( address_long ));
 	}
 	
 	protected int
@@ -323,11 +211,6 @@ IPAddressRangeManager
 		
 		entries.toArray(ents);
 		
-		for (int i=0;i<ents.length;i++){
-			
-			ents[i].resetMergeInfo();
-		}
-		
 			// sort based on start address
 		
 		Arrays.sort( 
@@ -357,75 +240,59 @@ IPAddressRangeManager
 				}
 			});
 		
-			// now merge overlapping ranges
+			// keep only the ranges that reach past every range before them, the
+			// rest are covered by those. Ends of the kept ranges grow strictly, so
+			// the first one ending at or after an address is the only candidate
 		
-		List me = new ArrayList( ents.length );
+		int[]		starts	= new int[ents.length];
+		int[]		ends	= new int[ents.length];
+		IpRange[]	ranges	= new IpRange[ents.length];
+		
+		int		count		= 0;
+		long	max_end		= -1;
+		long	span		= 0;
 		
 		for (int i=0;i<ents.length;i++){
 			
 			IpRange	entry = ents[i];
 			
-			if ( entry.getMerged()){
+			long	start 	= entry.getStartIpLong();
+			long	end		= entry.getEndIpLong();
+			
+			if ( start < 0 || end < start || end <= max_end ){
 				
 				continue;
 			}
 			
-			me.add( entry );
+				// span is inclusive
 			
-			int	pos = i+1;
+			span += end - Math.max( start, max_end + 1 ) + 1;
 			
-			while( pos < ents.length ){
-				
-				long	end_pos = entry.getMergedEndLong();
-				
-				IpRange	e2 = ents[pos++];
-				
-				if (!e2.getMerged()){
-					
-					if ( end_pos >= e2.getStartIpLong()){
-						
-						e2.setMerged();
-						
-						if ( e2.getEndIpLong() > end_pos ){
-							
-							entry.setMergedEnd( e2.getEndIpLong() );
-							
-							entry.addMergedEntry( e2 );
-						}
-					}else{
-						
-						break;
-					}	
-				}
-			}
-		}
-		
-		/*
-		for (int i=0;i<ents.length;i++){
+			starts[count]	= RangeTable.toKey( start );
+			ends[count]		= RangeTable.toKey( end );
+			ranges[count]	= entry;
 			
-			entry	e = ents[i];
+			count++;
 			
-			System.out.println( Long.toHexString(e.getStart()) + " - " + Long.toHexString(e.getEnd()) + ": " + e.getMerged() + "/" + Long.toHexString(e.getMergedEnd()));
+			max_end = end;
 		}
-		*/
 		
-		mergedRanges = new IpRange[me.size()];
-		
-		me.toArray( mergedRanges );
-		
-		total_span	= 0;
-		
-		for (int i=0;i<mergedRanges.length;i++){
-			
-			IpRange	e = mergedRanges[i];
+		if ( count < ents.length ){
 			
-				// span is inclusive
+			int[]		s = new int[count];
+			int[]		e = new int[count];
+			IpRange[]	r = new IpRange[count];
 			
-			long	span = ( e.getMergedEndLong() - e.getStartIpLong()) + 1;
+			System.arraycopy( starts, 0, s, 0, count );
+			System.arraycopy( ends, 0, e, 0, count );
+			System.arraycopy( ranges, 0, r, 0, count );
 			
-			total_span	+= span;
+			starts	= s;
+			ends	= e;
+			ranges	= r;
 		}
-			//	System.out.println( "non_merged = " + merged_entries.length );
+		
+		table = new RangeTable( starts, ends, ranges, span );
 		
 		if (Logger.isEnabled())
 			Logger.log(new LogEvent(LOGID, "IPAddressRangeManager: rebuilding "
@@ -454,7 +321,7 @@ IPAddressRangeManager
 	{
 		checkRebuild();
 		
-		return( total_span );
+		return( table.total_span );
 	}
 	
 	
@@ -584,4 +451,71 @@ IPAddressRangeManager
 			this_mon.exit();
 		}
 	}
+	
+		/**
+		 * Sorted, non overlapping view of the ranges as parallel arrays. Addresses are
+		 * stored with the sign bit flipped so plain int comparison follows unsigned order
+		 */
+	
+	protected static final class
+	RangeTable
+	{
+		protected final int[]		starts;
+		protected final int[]		ends;
+		protected final IpRange[]	ranges;
+		protected final long		total_span;
+		
+		protected
+		RangeTable(
+			int[]		_starts,
+			int[]		_ends,
+			IpRange[]	_ranges,
+			long		_total_span )
+		{
+			starts		= _starts;
+			ends		= _ends;
+			ranges		= _ranges;
+			total_span	= _total_span;
+		}
+		
+		protected static int
+		toKey(
+			long	address_long )
+		{
+			return(((int)address_long) ^ 0x80000000 );
+		}
+		
+		protected IpRange
+		find(
+			long	address_long )
+		{
+			int	key = toKey( address_long );
+			
+			int	bottom 	= 0;
+			int	top		= ends.length;
+			
+				// first range ending at or after the address
+			
+			while( bottom < top ){
+				
+				int	current = ( bottom + top ) >>> 1;
+				
+				if ( ends[current] < key ){
+					
+					bottom = current + 1;
+					
+				}else{
+					
+					top = current;
+				}
+			}
+			
+			if ( bottom < ends.length && starts[bottom] <= key ){
+				
+				return( ranges[bottom] );
+			}
+			
+			return( null );
+		}
+	}
 }
@@ -26,7 +26,6 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
@@ -91,7 +90,9 @@ public class IpFilterAutoLoaderImpl
 			InputStreamReader streamReader = null;
 			BufferedReader reader = null;
 			try {
-				Pattern pattern = Pattern.compile("^(.*):([0-9\\.]+)[^0-9]+([0-9\\.]+).*");
+				// String.split would compile the pattern again for every line
+				Pattern datSeparator = Pattern.compile(" *[-,] *");
+				String[] p2pSections = new String[3];
 				int parseMode = -1;
 
 				//open the file
@@ -120,14 +121,13 @@ public class IpFilterAutoLoaderImpl
 					int level = 0;
 
 					if (parseMode <= 0 || parseMode == 1) {
-						Matcher matcher = pattern.matcher(line);
-						if (matcher.find()) {
+						if (parseP2PLine(line, p2pSections)) {
 							if (parseMode != 1) {
 								parseMode = 1;
 							}
-							description = matcher.group(1);
-							startIp = matcher.group(2);
-							endIp = matcher.group(3);
+							description = p2pSections[0];
+							startIp = p2pSections[1];
+							endIp = p2pSections[2];
 						} else {
 							Logger.log(new LogEvent(LOGID, LogEvent.LT_WARNING,
 									"unrecognized line while reading ip filter: " + line));
@@ -144,7 +144,7 @@ public class IpFilterAutoLoaderImpl
 						// but I've seen dash format, such as
 						//    1.1.1.1 - 1.1.1.2, 100, moo
 						// so 	 for both
-						String[] sections = line.split(" *[-,] *", 4);
+						String[] sections = datSeparator.split(line, 4);
 
 						if (sections.length >= 2) {
 							if (sections[0].indexOf('.') < 0 || sections[1].indexOf('.') < 0
@@ -233,6 +233,54 @@ public class IpFilterAutoLoaderImpl
 		}
 	}
 
+	/**
+	 * Splits a P2P format line, "description:startip-endip", into the three
+	 * sections. Same result as matching "^(.*):([0-9\.]+)[^0-9]+([0-9\.]+).*"
+	 * against well formed lines, without the backtracking on the description.
+	 * 
+	 * @return false if the line is not in P2P format
+	 */
+	static boolean parseP2PLine(String line, String[] sections) {
+		int len = line.length();
+
+		// the description may contain ':' itself, the last usable one wins
+		for (int colon = line.lastIndexOf(':'); colon >= 0; colon = line.lastIndexOf(
+				':', colon - 1)) {
+			int pos = colon + 1;
+			int startIpEnd = skipIp(line, pos);
+			if (startIpEnd == pos) {
+				continue;
+			}
+
+			int endIpStart = startIpEnd;
+			while (endIpStart < len && !isDigit(line.charAt(endIpStart))) {
+				endIpStart++;
+			}
+			if (endIpStart == startIpEnd || endIpStart == len) {
+				continue;
+			}
+
+			sections[0] = line.substring(0, colon);
+			sections[1] = line.substring(pos, startIpEnd);
+			sections[2] = line.substring(endIpStart, skipIp(line, endIpStart));
+			return true;
+		}
+
+		return false;
+	}
+
+	private static int skipIp(String line, int pos) {
+		int len = line.length();
+		while (pos < len && (isDigit(line.charAt(pos)) || line.charAt(pos) == '.')) {
+			pos++;
+		}
+		return pos;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
 	private int getP2BFileVersion(InputStream is) {
 		try {
 			// first 4 are 255
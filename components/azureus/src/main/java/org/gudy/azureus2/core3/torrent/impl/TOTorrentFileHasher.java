@@ -25,21 +25,42 @@ package org.gudy.azureus2.core3.torrent.impl;
 
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
 
 import org.gudy.azureus2.core3.torrent.*;
 import org.gudy.azureus2.core3.util.*;
 
+	/**
+	 * Pieces are read with plain FileChannel reads into a small pool of piece sized
+	 * buffers and, when more than one processor is available, hashed on the
+	 * ConcurrentHasher while the next pieces are being read. Results are collected
+	 * in piece order on the calling thread, so the listener still sees piece numbers
+	 * in sequence.
+	 */
+
 public class 
 TOTorrentFileHasher 
 {
+		// upper bound for the memory held by in flight pieces
+	
+	private static final int	MAX_BUFFER_MEMORY	= 64*1024*1024;
+	
 	protected boolean	do_other_per_file_hash;
 	protected int		piece_length;
 	
 	protected Vector	pieces = new Vector();
 	
-	protected byte[]	buffer;
-	protected int		buffer_pos;
+	protected ByteBuffer	buffer;
+	
+	protected boolean							concurrent;
+	protected SHA1Hasher						piece_hasher;
+	
+	protected LinkedList<PendingPiece>			pending			= new LinkedList<PendingPiece>();
+	protected LinkedList<ByteBuffer>			free_buffers	= new LinkedList<ByteBuffer>();
+	protected int								buffers_allocated;
+	protected int								max_buffers;
 	 
 	protected SHA1Hasher					overall_sha1_hash;
 	protected ED2KHasher					overall_ed2k_hash;
@@ -52,7 +73,7 @@ TOTorrentFileHasher
 	
 	protected TOTorrentFileHasherListener	listener;
 		
-	protected boolean						cancelled;
+	protected volatile boolean				cancelled;
 	
 	protected
 	TOTorrentFileHasher(
@@ -71,7 +92,22 @@ TOTorrentFileHasher
 		piece_length			= _piece_length;
 		listener				= _listener;
 		
-		buffer = new byte[piece_length];
+		concurrent = ConcurrentHasher.concurrentHashingAvailable();
+		
+		if ( concurrent ){
+			
+				// enough for every hashing thread plus the piece being read
+			
+			max_buffers = Runtime.getRuntime().availableProcessors() + 3;
+			
+			max_buffers = Math.max( 2, Math.min( max_buffers, MAX_BUFFER_MEMORY / piece_length ));
+			
+		}else{
+			
+			max_buffers = 1;
+			
+			piece_hasher = new SHA1Hasher();
+		}
 	}
 		
 	long
@@ -82,7 +118,7 @@ TOTorrentFileHasher
 	{
 		long		file_length = 0;
 		
-		InputStream is = null;
+		FileInputStream is = null;
 		
 		SHA1Hasher	sha1_hash		= null;
 		ED2KHasher	ed2k_hash		= null;
@@ -94,7 +130,9 @@ TOTorrentFileHasher
 				ed2k_hash		= new ED2KHasher();
 			}
 			
-			is = new BufferedInputStream(new FileInputStream( _file ), 65536);
+			is = new FileInputStream( _file );
+			
+			FileChannel	fc = is.getChannel();
 
 			while(true){
 	
@@ -104,41 +142,33 @@ TOTorrentFileHasher
 													TOTorrentException.RT_CANCELLED ));
 				}
 				
-				int	len = is.read( buffer, buffer_pos, piece_length - buffer_pos );
+				if ( buffer == null ){
+					
+					buffer = getBuffer();
+				}
+				
+				int	pos = buffer.position();
+				
+				int	len = fc.read( buffer );
 				
 				if ( len > 0 ){
 					
 					if ( do_other_per_file_hash ){
 						
-						sha1_hash.update( buffer, buffer_pos, len );
-						ed2k_hash.update( buffer, buffer_pos, len );
+						sha1_hash.update( buffer.array(), pos, len );
+						ed2k_hash.update( buffer.array(), pos, len );
 					}
 					
 					
 					file_length += len;
 					
-					buffer_pos += len;
-					
-					if ( buffer_pos == piece_length ){
+					if ( !buffer.hasRemaining()){
 						
 						// hash this piece
 						
-						byte[] hash = new SHA1Hasher().calculateHash(buffer);
-
-						if ( overall_sha1_hash != null ){
-							
-							overall_sha1_hash.update( buffer );
-							overall_ed2k_hash.update( buffer );
-						}
-						
-						pieces.add( hash );
-						
-						if ( listener != null ){
-							
-							listener.pieceHashed( pieces.size() );
-						}
+						hashPiece( buffer );
 						
-						buffer_pos = 0;					
+						buffer = null;
 					}
 				}else{
 					
@@ -154,10 +184,14 @@ TOTorrentFileHasher
 			
 		}catch( TOTorrentException e ){
 			
+			cancelPending();
+			
 			throw( e );
 			
 		}catch( Throwable e ){
 			
+			cancelPending();
+			
 			throw( new TOTorrentException( 	"TOTorrentFileHasher: file read fails '" + e.toString() + "'",
 											TOTorrentException.RT_READ_FAILS ));
 		}finally {
@@ -173,6 +207,128 @@ TOTorrentFileHasher
 		return( file_length );
 	}
 	
+	protected ByteBuffer
+	getBuffer()
+	
+		throws TOTorrentException
+	{
+		while( free_buffers.isEmpty() && buffers_allocated >= max_buffers && !pending.isEmpty()){
+			
+				// all buffers are in flight, wait for the oldest one
+			
+			collectPieces( true );
+		}
+		
+		if ( !free_buffers.isEmpty()){
+			
+			return( free_buffers.removeFirst());
+		}
+		
+		buffers_allocated++;
+		
+		return( ByteBuffer.allocate( piece_length ));
+	}
+	
+	protected void
+	hashPiece(
+		ByteBuffer	piece )
+	
+		throws TOTorrentException
+	{
+		piece.flip();
+		
+		if ( overall_sha1_hash != null ){
+			
+			overall_sha1_hash.update( piece.array(), 0, piece.limit());
+			overall_ed2k_hash.update( piece.array(), 0, piece.limit());
+		}
+		
+		if ( concurrent ){
+			
+			PendingPiece	pp = new PendingPiece( piece );
+			
+			pending.add( pp );
+			
+			pp.request = ConcurrentHasher.getSingleton().addRequest( piece, pp, false );
+			
+			collectPieces( false );
+			
+		}else{
+			
+			pieceHashed( piece_hasher.calculateHash( piece ));
+			
+			piece.clear();
+			
+			free_buffers.add( piece );
+		}
+	}
+	
+		/**
+		 * Moves finished hashes to the piece list in order, stops at the first
+		 * unfinished piece unless told to wait for it
+		 */
+	
+	protected void
+	collectPieces(
+		boolean	wait )
+	
+		throws TOTorrentException
+	{
+		while( !pending.isEmpty()){
+			
+			PendingPiece	pp = pending.getFirst();
+			
+			if ( !( pp.done || wait )){
+				
+				break;
+			}
+			
+			byte[] hash = pp.request.getResult();
+			
+			if ( hash == null ){
+				
+				throw( new TOTorrentException( 	"TOTorrentCreate: operation cancelled",
+												TOTorrentException.RT_CANCELLED ));
+			}
+			
+			pending.removeFirst();
+			
+			pieceHashed( hash );
+			
+			pp.buffer.clear();
+			
+			free_buffers.add( pp.buffer );
+			
+			wait = false;
+		}
+	}
+	
+	protected void
+	pieceHashed(
+		byte[]	hash )
+	{
+		pieces.add( hash );
+		
+		if ( listener != null ){
+			
+			listener.pieceHashed( pieces.size() );
+		}
+	}
+	
+	protected void
+	cancelPending()
+	{
+		for ( PendingPiece pp: pending ){
+			
+			if ( pp.request != null ){
+				
+				pp.request.cancel();
+			}
+		}
+		
+		pending.clear();
+	}
+	
 	protected byte[]
 	getPerFileSHA1Digest()
 	{
@@ -191,26 +347,16 @@ TOTorrentFileHasher
 		throws TOTorrentException
 	{
 		try{
-			if ( buffer_pos > 0 ){
-								
-				byte[] rem = new byte[buffer_pos];
-				
-				System.arraycopy( buffer, 0, rem, 0, buffer_pos );
+			if ( buffer != null && buffer.position() > 0 ){
 				
-				pieces.addElement(new SHA1Hasher().calculateHash(rem));
+				hashPiece( buffer );
 				
-				if ( overall_sha1_hash != null ){
-					
-					overall_sha1_hash.update( rem );
-					overall_ed2k_hash.update( rem );
-				}
-				
-				if ( listener != null ){
-							
-					listener.pieceHashed( pieces.size() );
-				}
+				buffer = null;
+			}
+			
+			while( !pending.isEmpty()){
 				
-				buffer_pos = 0;
+				collectPieces( true );
 			}
 		
 			if ( overall_sha1_hash != null && sha1_digest == null ){
@@ -225,8 +371,16 @@ TOTorrentFileHasher
 		
 			return( res );
 			
+		}catch( TOTorrentException e ){
+			
+			cancelPending();
+			
+			throw( e );
+			
 		}catch( Throwable e ){
 			
+			cancelPending();
+			
 			throw( new TOTorrentException( 	"TOTorrentFileHasher: file read fails '" + e.toString() + "'",
 											TOTorrentException.RT_READ_FAILS ));
 		}
@@ -263,4 +417,27 @@ TOTorrentFileHasher
 	{
 		cancelled	= true;
 	}
+	
+	protected static class
+	PendingPiece
+		implements ConcurrentHasherRequestListener
+	{
+		protected final ByteBuffer			buffer;
+		protected ConcurrentHasherRequest	request;
+		protected volatile boolean			done;
+		
+		protected
+		PendingPiece(
+			ByteBuffer	_buffer )
+		{
+			buffer	= _buffer;
+		}
+		
+		public void
+		complete(
+			ConcurrentHasherRequest	_request )
+		{
+			done	= true;
+		}
+	}
 }
@@ -39,6 +39,15 @@ PRHelpers
 	
 		throws UnknownHostException
 	{
+			// ip filters convert millions of literal addresses, skip the resolver for those
+		
+		long	literal = parseIPv4( address );
+		
+		if ( literal >= 0 ){
+			
+			return((int)literal );
+		}
+		
 		InetAddress i_address = HostNameToIPResolver.syncResolve(address);
 		
 		byte[]	bytes = i_address.getAddress();
@@ -50,6 +59,56 @@ PRHelpers
 		return( resp );
 	}
 	
+		/**
+		 * @return the dotted quad as an unsigned value, -1 if it isn't one
+		 */
+	
+	public static long
+	parseIPv4(
+		String		address )
+	{
+		int		len = address.length();
+		
+		long	result	= 0;
+		int		octet	= 0;
+		int		digits	= 0;
+		int		dots	= 0;
+		
+		for (int i=0;i<len;i++){
+			
+			char	c = address.charAt(i);
+			
+			if ( c >= '0' && c <= '9' ){
+				
+				octet = octet*10 + ( c - '0' );
+				
+				if ( octet > 255 || ++digits > 3 ){
+					
+					return( -1 );
+				}
+			}else if ( c == '.' && digits > 0 && dots < 3 ){
+				
+				result = ( result << 8 ) | octet;
+				
+				octet	= 0;
+				digits	= 0;
+				
+				dots++;
+				
+			}else{
+				
+				return( -1 );
+			}
+		}
+		
+		if ( dots != 3 || digits == 0 ){
+			
+			return( -1 );
+		}
+		
+		return(( result << 8 ) | octet );
+	}
+	
 	public static int
 	addressToInt(
 		InetAddress		i_address )
@@ -19,22 +19,44 @@
 package com.frostwire;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.imageio.ImageIO;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.limewire.concurrent.ExecutorsHelper;
 import org.limewire.util.OSUtils;
 
 import com.limegroup.gnutella.settings.SharingSettings;
 import com.limegroup.gnutella.util.FrostWireUtils;
 
 /**
+ * Loads images in the background, keeping the decoded images in memory and
+ * the original files on disk, both within a size budget and evicting the least
+ * recently used ones first.
+ * <p>
+ * Requests for an image that is already being loaded wait for that load
+ * instead of starting another one.
+ * 
  * @author gubatron
  * @author aldenml
  *
@@ -43,6 +65,11 @@ public class ImageCache {
 
     private static final Log LOG = LogFactory.getLog(ImageCache.class);
 
+    private static final int NUM_LOADER_THREADS = 4;
+
+    private static final long MAX_MEMORY_SIZE = 32 * 1024 * 1024; // decoded pixel bytes
+    private static final long MAX_DISK_SIZE = 64 * 1024 * 1024;
+
     private static ImageCache instance;
 
     public synchronized static ImageCache instance() {
@@ -52,18 +79,53 @@ public class ImageCache {
         return instance;
     }
 
+    private final ExecutorService executor;
+
+    private final Map<String, BufferedImage> memory;
+    private long memorySize;
+
+    private final Map<String, List<OnLoadedListener>> loading;
+
+    private final AtomicLong diskSize;
+    private final AtomicBoolean pruning;
+
     private ImageCache() {
+        this.executor = ExecutorsHelper.newFixedSizeThreadPool(NUM_LOADER_THREADS, "ImageCache-Loader");
+        this.memory = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true);
+        this.loading = new HashMap<String, List<OnLoadedListener>>();
+        this.diskSize = new AtomicLong(-1);
+        this.pruning = new AtomicBoolean(false);
     }
 
+    /**
+     * Returns the image right away if it's in memory, otherwise it's loaded in
+     * the background and the listener is notified from a loader thread.
+     */
     public BufferedImage getImage(URL url, OnLoadedListener listener) {
-        if (isCached(url)) {
-            return loadFromCache(url, listener);
-        } else if (!url.getProtocol().equals("http")) {
-            return loadFromResource(url, listener);
-        } else {
-            loadFromUrl(url, listener);
-            return null;
+        String key = url.toString();
+
+        BufferedImage image = getFromMemory(key);
+        if (image != null) {
+            notifyLoaded(listener, url, image, true, false);
+            return image;
+        }
+
+        synchronized (loading) {
+            List<OnLoadedListener> listeners = loading.get(key);
+            if (listeners != null) {
+                // already on its way
+                listeners.add(listener);
+                return null;
+            }
+
+            listeners = new LinkedList<OnLoadedListener>();
+            listeners.add(listener);
+            loading.put(key, listeners);
         }
+
+        executor.execute(new LoadTask(url, key));
+
+        return null;
     }
 
     private File getCacheFile(URL url) {
@@ -99,88 +161,295 @@ public class ImageCache {
         return file.exists();
     }
 
-    private BufferedImage loadFromCache(URL url, OnLoadedListener listener) {
+    private BufferedImage load(URL url) throws Exception {
+        if (isCached(url)) {
+            return loadFromCache(url);
+        } else if (!url.getProtocol().equals("http")) {
+            return loadFromResource(url);
+        } else {
+            return loadFromUrl(url);
+        }
+    }
+
+    private BufferedImage loadFromCache(URL url) throws IOException {
+        File file = getCacheFile(url);
+        BufferedImage image = ImageIO.read(file);
+        file.setLastModified(System.currentTimeMillis()); // recently used, see prune()
+        return image;
+    }
+
+    private BufferedImage loadFromResource(URL url) throws IOException {
+        BufferedImage image = ImageIO.read(url);
+        if (image != null) {
+            saveToCache(url, image);
+        }
+        return image;
+    }
+
+    private BufferedImage loadFromUrl(URL url) throws Exception {
+        String userAgent = "FrostWire/" + OSUtils.getOS() + "/" + FrostWireUtils.getFrostWireVersion();
+        HttpFetcher fetcher = new HttpFetcher(url.toURI(), userAgent);
+        Object[] result = fetcher.fetch(false);
+
+        if (result == null || result[0] == null) {
+            throw new IOException("HttpFetcher.fetch() got nothing at " + url.toString());
+        }
+
+        byte[] data = (byte[]) result[0];
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+        if (image != null) {
+            // the original bytes, no need to encode the image again
+            saveToCache(url, data);
+        }
+        return image;
+    }
+
+    private void saveToCache(URL url, BufferedImage image) {
         try {
-            File file = getCacheFile(url);
-            BufferedImage image = ImageIO.read(file);
-            listener.onLoaded(url, image, true, false);
-            return image;
+            File file = prepareCacheFile(url);
+
+            String filename = file.getName();
+            int dotIndex = filename.lastIndexOf('.');
+            String ext = filename.substring(dotIndex + 1);
+
+            String formatName = ImageIO.getImageReadersBySuffix(ext).next().getFormatName();
+
+            ImageIO.write(image, formatName, file);
+
+            onSavedToCache(file);
         } catch (Throwable e) {
-            LOG.error("Failed to load image from cache: " + url, e);
-            if (e instanceof OutOfMemoryError) {
-                e.printStackTrace(); // this is a special condition
+            LOG.error("Failed to save image to cache: " + url, e);
+        }
+    }
+
+    private void saveToCache(URL url, byte[] data) {
+        FileOutputStream fos = null;
+        try {
+            File file = prepareCacheFile(url);
+
+            fos = new FileOutputStream(file);
+            fos.write(data);
+            fos.close();
+            fos = null;
+
+            onSavedToCache(file);
+        } catch (Throwable e) {
+            LOG.error("Failed to save image to cache: " + url, e);
+        } finally {
+            if (fos != null) {
+                try {
+                    fos.close();
+                } catch (IOException e) {
+                }
             }
-            listener.onLoaded(url, null, false, true);
-            return null;
         }
     }
 
-    private BufferedImage loadFromResource(URL url, OnLoadedListener listener) {
+    private File prepareCacheFile(URL url) {
+        File file = getCacheFile(url);
+
+        if (file.exists()) {
+            addDiskSize(-file.length());
+            file.delete();
+        }
+
+        if (!file.getParentFile().exists()) {
+            file.getParentFile().mkdirs();
+        }
+
+        return file;
+    }
+
+    private void onSavedToCache(File file) {
+        if (diskSize.get() == -1) {
+            diskSize.compareAndSet(-1, getSize(SharingSettings.getImageCacheDirectory()));
+        } else {
+            addDiskSize(file.length());
+        }
+
+        if (diskSize.get() > MAX_DISK_SIZE) {
+            prune();
+        }
+    }
+
+    /**
+     * Keeps the disk size unknown (-1) until it's read from the cache directory.
+     */
+    private void addDiskSize(long delta) {
+        long size;
+        do {
+            size = diskSize.get();
+            if (size == -1) {
+                return;
+            }
+        } while (!diskSize.compareAndSet(size, Math.max(0, size + delta)));
+    }
+
+    /**
+     * Deletes the least recently used files until the cache is below 90% of the budget.
+     */
+    private void prune() {
+        if (!pruning.compareAndSet(false, true)) {
+            return;
+        }
+
         try {
-            BufferedImage image = ImageIO.read(url);
-            saveToCache(url, image, 0);
-            listener.onLoaded(url, image, false, false);
-            return image;
+            List<File> files = new ArrayList<File>();
+            listFiles(SharingSettings.getImageCacheDirectory(), files);
+
+            // snapshot the dates, the loaders keep touching the files while sorting
+            List<CachedFile> cached = new ArrayList<CachedFile>(files.size());
+            long size = 0;
+            for (File f : files) {
+                CachedFile cf = new CachedFile(f);
+                cached.add(cf);
+                size += cf.length;
+            }
+
+            Collections.sort(cached, new Comparator<CachedFile>() {
+                @Override
+                public int compare(CachedFile a, CachedFile b) {
+                    return a.lastModified < b.lastModified ? -1 : (a.lastModified == b.lastModified ? 0 : 1);
+                }
+            });
+
+            long target = MAX_DISK_SIZE * 9 / 10;
+            for (int i = 0; i < cached.size() && size > target; i++) {
+                CachedFile cf = cached.get(i);
+                if (cf.file.delete()) {
+                    size -= cf.length;
+                }
+            }
+
+            diskSize.set(size);
         } catch (Throwable e) {
-            LOG.error("Failed to load image from resource: " + url, e);
-            listener.onLoaded(url, null, false, true);
-            return null;
+            LOG.error("Failed to prune the image cache", e);
+        } finally {
+            pruning.set(false);
         }
     }
 
-    private void loadFromUrl(final URL url, final OnLoadedListener listener) {
-        // TODO: may be I must use BackgroundExecutorService
-        new Thread(new Runnable() {
-            public void run() {
-                try {
-                    BufferedImage image = null;
-
-                    String userAgent = "FrostWire/" + OSUtils.getOS() + "/" + FrostWireUtils.getFrostWireVersion();
-                    HttpFetcher fetcher = new HttpFetcher(url.toURI(), userAgent);
-                    Object[] result = fetcher.fetch(false);
-
-                    if (result == null) {
-                        throw new IOException("HttpFetcher.fetch() got nothing at " + url.toString());
-                    }
-
-                    byte[] data = (byte[]) result[0];
-                    long date = (Long) result[1];
-                    if (data != null) {
-                        image = ImageIO.read(new ByteArrayInputStream(data));
-                        saveToCache(url, image, date);
-                    }
-                    if (listener != null && image != null) {
-                        listener.onLoaded(url, image, false, false);
-                    }
-                } catch (Throwable e) {
-                    LOG.error("Failed to load image from: " + url, e);
-                    listener.onLoaded(url, null, false, true);
+    private static void listFiles(File dir, List<File> files) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File f : children) {
+            if (f.isDirectory()) {
+                listFiles(f, files);
+            } else {
+                files.add(f);
+            }
+        }
+    }
+
+    private static long getSize(File dir) {
+        List<File> files = new ArrayList<File>();
+        listFiles(dir, files);
+
+        long size = 0;
+        for (File f : files) {
+            size += f.length();
+        }
+        return size;
+    }
+
+    private BufferedImage getFromMemory(String key) {
+        synchronized (memory) {
+            return memory.get(key);
+        }
+    }
+
+    private void putInMemory(String key, BufferedImage image) {
+        long size = getSizeInBytes(image);
+
+        if (size > MAX_MEMORY_SIZE / 4) {
+            return; // too big, it would flush everything else
+        }
+
+        synchronized (memory) {
+            BufferedImage old = memory.put(key, image);
+            if (old != null) {
+                memorySize -= getSizeInBytes(old);
+            }
+            memorySize += size;
+
+            if (memorySize > MAX_MEMORY_SIZE) {
+                Iterator<BufferedImage> it = memory.values().iterator();
+                while (memorySize > MAX_MEMORY_SIZE && it.hasNext()) {
+                    memorySize -= getSizeInBytes(it.next());
+                    it.remove();
                 }
             }
-        }).start();
+        }
     }
 
-    private void saveToCache(URL url, BufferedImage image, long date) {
-        try {
-            File file = getCacheFile(url);
+    private static long getSizeInBytes(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
 
-            if (file.exists()) {
-                file.delete();
+    private static void notifyLoaded(OnLoadedListener listener, URL url, BufferedImage image, boolean fromCache, boolean fail) {
+        if (listener != null) {
+            try {
+                listener.onLoaded(url, image, fromCache, fail);
+            } catch (Throwable e) {
+                LOG.error("Error notifying image loaded: " + url, e);
             }
+        }
+    }
 
-            String filename = file.getName();
-            int dotIndex = filename.lastIndexOf('.');
-            String ext = filename.substring(dotIndex + 1);
+    private final class LoadTask implements Runnable {
 
-            String formatName = ImageIO.getImageReadersBySuffix(ext).next().getFormatName();
+        private final URL url;
+        private final String key;
+
+        public LoadTask(URL url, String key) {
+            this.url = url;
+            this.key = key;
+        }
 
-            if (!file.getParentFile().exists()) {
-                file.mkdirs();
+        @Override
+        public void run() {
+            BufferedImage image = null;
+            boolean fromCache = false;
+
+            try {
+                fromCache = isCached(url);
+                image = load(url);
+                if (image != null) {
+                    putInMemory(key, image);
+                }
+            } catch (Throwable e) {
+                LOG.error("Failed to load image from: " + url, e);
+                if (e instanceof OutOfMemoryError) {
+                    e.printStackTrace(); // this is a special condition
+                }
             }
-            ImageIO.write(image, formatName, file);
-            file.setLastModified(date);
-        } catch (Throwable e) {
-            LOG.error("Failed to save image to cache: " + url, e);
+
+            List<OnLoadedListener> listeners;
+            synchronized (loading) {
+                listeners = loading.remove(key);
+            }
+
+            if (listeners != null) {
+                for (OnLoadedListener listener : listeners) {
+                    notifyLoaded(listener, url, image, fromCache, image == null);
+                }
+            }
+        }
+    }
+
+    private static final class CachedFile {
+
+        public final File file;
+        public final long lastModified;
+        public final long length;
+
+        public CachedFile(File file) {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
         }
     }
 
@@ -59,6 +59,14 @@ public final class ShareFilesDB {
     }
 
     public Cursor query(String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        return query(projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * Same as {@link #query(String[], String, String[], String)} with a limit clause,
+     * "count" or "offset,count".
+     */
+    public Cursor query(String[] projection, String selection, String[] selectionArgs, String sortOrder, String limit) {
         SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
 
         qb.setTables(TABLE_NAME);
@@ -75,7 +83,7 @@ public final class ShareFilesDB {
         // Get the database and run the query
         SQLiteDatabase db = databaseHelper.getReadableDatabase();
 
-        Cursor c = qb.query(db, projection, selection, selectionArgs, null, null, orderBy);
+        Cursor c = qb.query(db, projection, selection, selectionArgs, null, null, orderBy, limit);
 
         return c;
     }
@@ -68,6 +68,7 @@ public final class CrawlCacheDB {
 
     private CrawlCacheDB() {
         databaseHelper = new DatabaseHelper(new Context());
+        createDateAddedIndex();
     }
 
     public Cursor query(String[] projection, String selection, String[] selectionArgs, String sortOrder) {
@@ -92,6 +93,19 @@ public final class CrawlCacheDB {
         return c;
     }
 
+    /**
+     * Runs the provided SQL, useful for aggregates not supported by {@link #query(String[], String, String[], String)}.
+     */
+    public Cursor rawQuery(String sql, String[] selectionArgs) {
+        SQLiteDatabase db = databaseHelper.getReadableDatabase();
+
+        return db.rawQueryWithFactory(null, sql, selectionArgs, TABLE_NAME);
+    }
+
+    public static String getTableName() {
+        return TABLE_NAME;
+    }
+
     public long insert(ContentValues initialValues) {
         ContentValues values;
 
@@ -129,6 +143,19 @@ public final class CrawlCacheDB {
         return count;
     }
 
+    /**
+     * Used to evict the oldest rows, created here since databases of the
+     * same version could exist without it.
+     */
+    private void createDateAddedIndex() {
+        try {
+            SQLiteDatabase db = databaseHelper.getWritableDatabase();
+            db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_" + Columns.DATE_ADDED + " ON " + TABLE_NAME + " (" + Columns.DATE_ADDED + ")");
+        } catch (Throwable e) {
+            LOG.warn("Unable to create crawl cache date index", e);
+        }
+    }
+
     public static final class Columns {
 
         private Columns() {
@@ -17,6 +17,11 @@
 
 package com.frostwire.search;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,10 +40,37 @@ public class DatabaseCrawlCache implements CrawlCache {
 
     private static final Logger LOG = LoggerFactory.getLogger(DatabaseCrawlCache.class);
 
-    private CrawlCacheDB db;
+    /**
+     * When the disk budget is exceeded the oldest rows are removed until
+     * the data fits in this fraction of the budget, to avoid evicting on every put.
+     */
+    private static final float EVICTION_LOW_WATERMARK = 0.9f;
+
+    private static final int DELETE_BATCH_SIZE = 100;
+
+    private final CrawlCacheDB db;
+    private final long maxBytes;
+
+    private final AtomicLong numEntries;
+    private final AtomicLong numBytes;
+    private final AtomicBoolean evicting;
+
+    /**
+     * @param maxBytes the disk budget for the cached data, evicting by date added, or <= 0 for no limit.
+     */
+    public DatabaseCrawlCache(long maxBytes) {
+        this.db = CrawlCacheDB.instance();
+        this.maxBytes = maxBytes;
+
+        this.numEntries = new AtomicLong(0);
+        this.numBytes = new AtomicLong(0);
+        this.evicting = new AtomicBoolean(false);
+
+        loadCounters();
+    }
 
     public DatabaseCrawlCache() {
-        db = CrawlCacheDB.instance();
+        this(0);
     }
 
     @Override
@@ -78,10 +110,17 @@ public class DatabaseCrawlCache implements CrawlCache {
                 values.put(Columns.KEY, key);
                 values.put(Columns.DATA, data);
 
-                db.insert(values);
+                if (db.insert(values) != -1) {
+                    numEntries.incrementAndGet();
+                    numBytes.addAndGet(data.length);
+                }
             } catch (Throwable e) {
                 LOG.warn("Error putting value to crawl cache: " + e.getMessage());
             }
+
+            if (maxBytes > 0 && numBytes.get() > maxBytes) {
+                evict();
+            }
         }
     }
 
@@ -91,7 +130,13 @@ public class DatabaseCrawlCache implements CrawlCache {
             String where = Columns.KEY + " = ?";
             String[] whereArgs = new String[] { key };
 
-            db.delete(where, whereArgs);
+            long bytes = sumBytes(where, whereArgs);
+
+            int count = db.delete(where, whereArgs);
+            if (count > 0) {
+                numEntries.addAndGet(-count);
+                numBytes.addAndGet(-bytes);
+            }
         } catch (Throwable e) {
             LOG.warn("Error deleting value from crawl cache: " + e.getMessage());
         }
@@ -101,6 +146,8 @@ public class DatabaseCrawlCache implements CrawlCache {
     public synchronized void clear() {
         try {
             db.delete("", new String[] {});
+            numEntries.set(0);
+            numBytes.set(0);
         } catch (Throwable e) {
             LOG.warn("Error deleting crawl cache: " + e.getMessage());
         }
@@ -108,28 +155,109 @@ public class DatabaseCrawlCache implements CrawlCache {
 
     @Override
     public long size() {
-        long size = 0;
+        return numEntries.get();
+    }
 
+    public long sizeInBytes() {
+        return numBytes.get();
+    }
+
+    private void loadCounters() {
         Cursor c = null;
 
         try {
+            c = db.rawQuery("SELECT COUNT(" + Columns.ID + "), SUM(LENGTH(" + Columns.DATA + ")) FROM " + CrawlCacheDB.getTableName(), new String[] {});
 
-            String[] columns = new String[] { Columns.ID };
-            String where = "";
-            String[] whereArgs = new String[] {};
+            if (c.moveToNext()) {
+                numEntries.set(c.getLong(1));
+                numBytes.set(c.getLong(2));
+            }
+        } catch (Throwable e) {
+            LOG.warn("Failed to count crawl cache entries", e);
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+    }
 
-            c = db.query(columns, where, whereArgs, null);
+    private long sumBytes(String where, String[] whereArgs) {
+        long bytes = 0;
+
+        Cursor c = null;
 
-            size = c.getCount();
+        try {
+            c = db.rawQuery("SELECT SUM(LENGTH(" + Columns.DATA + ")) FROM " + CrawlCacheDB.getTableName() + " WHERE " + where, whereArgs);
 
-        } catch (Exception e) {
-            LOG.warn("Failed to get num of shared files", e);
+            if (c.moveToNext()) {
+                bytes = c.getLong(1);
+            }
         } finally {
             if (c != null) {
                 c.close();
             }
         }
 
-        return size;
+        return bytes;
+    }
+
+    /**
+     * Removes the oldest rows by date added until the data is below the low watermark.
+     * Only one thread evicts at a time, the others keep going.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            long target = (long) (maxBytes * EVICTION_LOW_WATERMARK);
+            long toFree = numBytes.get() - target;
+
+            List<Long> ids = new ArrayList<Long>();
+            long freed = 0;
+
+            Cursor c = null;
+            try {
+                String[] columns = new String[] { Columns.ID, "LENGTH(" + Columns.DATA + ")" };
+                c = db.query(columns, "", new String[] {}, Columns.DATE_ADDED + " ASC");
+
+                while (freed < toFree && c.moveToNext()) {
+                    ids.add(c.getLong(1));
+                    freed += c.getLong(2);
+                }
+            } finally {
+                if (c != null) {
+                    c.close();
+                }
+            }
+
+            for (int i = 0; i < ids.size(); i += DELETE_BATCH_SIZE) {
+                deleteIds(ids.subList(i, Math.min(i + DELETE_BATCH_SIZE, ids.size())));
+            }
+
+            numEntries.addAndGet(-ids.size());
+            numBytes.addAndGet(-freed);
+
+            LOG.debug("Evicted " + ids.size() + " entries (" + freed + " bytes) from crawl cache");
+        } catch (Throwable e) {
+            LOG.warn("Error evicting entries from crawl cache: " + e.getMessage());
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void deleteIds(List<Long> ids) {
+        StringBuilder where = new StringBuilder();
+        String[] whereArgs = new String[ids.size()];
+
+        where.append(Columns.ID).append(" IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            where.append(i == 0 ? "?" : ", ?");
+            whereArgs[i] = String.valueOf(ids.get(i));
+        }
+        where.append(")");
+
+        db.delete(where.toString(), whereArgs);
     }
 }
@@ -18,18 +18,39 @@
 package com.frostwire.search;
 
 import java.io.FileInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.io.IOUtils;
 import org.gudy.azureus2.core3.torrentdownloader.TorrentDownloader;
 import org.gudy.azureus2.core3.torrentdownloader.TorrentDownloaderCallBackInterface;
 import org.gudy.azureus2.core3.torrentdownloader.TorrentDownloaderFactory;
+import org.limewire.concurrent.ExecutorsHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.limegroup.gnutella.settings.SharingSettings;
 
 /**
+ * Resolves magnets with the Vuze torrent downloader, in the background.
+ * <p>
+ * There is at most one resolution per info-hash, requests for a hash already in
+ * progress wait for that one. Only a few DHT lookups run at the same time, the rest
+ * are queued. A queued lookup is dropped if nobody is waiting on it and all its
+ * listeners are stopped, and the oldest one is dropped if the queue is full. Once
+ * started, a resolution is not cancelled when the caller stops waiting, it goes
+ * on for up to {@link #RESOLVE_TIMEOUT} and the late torrent is passed to the
+ * listeners. Hashes that failed are not looked up again for a while.
+ * <p>
+ * All the instances share the same resolutions.
  * 
  * @author gubatron
  * @author aldenml
@@ -37,57 +58,337 @@ import com.limegroup.gnutella.settings.SharingSettings;
  */
 public class VuzeMagnetDownloader implements MagnetDownloader {
 
-    public byte[] download(String magnet, int timeout) {
+    private static final Logger LOG = LoggerFactory.getLogger(VuzeMagnetDownloader.class);
 
-        CountDownLatch signal = new CountDownLatch(1);
+    private static final int MAX_CONCURRENT_LOOKUPS = 4;
+    private static final int MAX_QUEUED_LOOKUPS = 32;
+    private static final long RESOLVE_TIMEOUT = 120000; // 2 minutes
+    private static final long FAILURE_RETRY_DELAY = 600000; // 10 minutes
 
-        String saveDir = SharingSettings.TORRENTS_DIR_SETTING.getValue().getAbsolutePath();
+    private static final Map<String, Resolution> resolutions = new HashMap<String, Resolution>();
+    private static final ArrayDeque<Resolution> queue = new ArrayDeque<Resolution>();
+    private static final Map<String, Long> failures = new HashMap<String, Long>();
+    private static int numLookups = 0;
 
-        TorrentDownloaderListener listener = new TorrentDownloaderListener(signal);
+    /**
+     * Timeouts of the lookups and notifications of the listeners, off the Vuze threads.
+     */
+    private static final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, ExecutorsHelper.daemonThreadFactory("MagnetResolver"));
 
-        TorrentDownloader td = TorrentDownloaderFactory.create(listener, magnet, null, saveDir);
+    static {
+        executor.setRemoveOnCancelPolicy(true);
+    }
 
-        td.start();
+    public byte[] download(String magnet, int timeout, Listener listener) {
+        String hash = PerformersHelper.getInfoHash(magnet);
+        if (hash == null) {
+            hash = magnet;
+        }
+
+        Resolution resolution = resolve(hash, magnet);
+        if (resolution == null) {
+            return null; // failed recently
+        }
 
         try {
-            signal.await(timeout, TimeUnit.MILLISECONDS);
+            resolution.signal.await(timeout, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             // ignore
         }
 
-        if (listener.getData() == null) {
-            td.cancel();
+        return resolution.getData(listener);
+    }
+
+    /**
+     * The resolution of the hash, counting the caller as a waiter until it calls
+     * {@link Resolution#getData(Listener)}.
+     */
+    private static Resolution resolve(String hash, String magnet) {
+        Resolution resolution;
+        List<Resolution> lookups;
+        List<Resolution> dropped = null;
+
+        synchronized (resolutions) {
+            resolution = resolutions.get(hash);
+            if (resolution != null) {
+                resolution.addWaiter();
+                return resolution;
+            }
+
+            Long failed = failures.get(hash);
+            if (failed != null) {
+                if (System.currentTimeMillis() - failed < FAILURE_RETRY_DELAY) {
+                    return null;
+                }
+                failures.remove(hash);
+            }
+
+            resolution = new Resolution(hash, magnet);
+            resolution.addWaiter();
+            resolutions.put(hash, resolution);
+
+            if (queue.size() >= MAX_QUEUED_LOOKUPS) {
+                dropped = pruneQueue();
+            }
+
+            queue.add(resolution);
+            lookups = pollLookups();
+        }
+
+        if (dropped != null) {
+            dropLookups(dropped);
+        }
+        startLookups(lookups);
+
+        return resolution;
+    }
+
+    /**
+     * The queued resolutions that can start now, must be called holding the resolutions lock.
+     * Queued resolutions that nobody wants anymore are dropped on the way.
+     */
+    private static List<Resolution> pollLookups() {
+        List<Resolution> lookups = new ArrayList<Resolution>(1);
+        while (numLookups < MAX_CONCURRENT_LOOKUPS && !queue.isEmpty()) {
+            Resolution resolution = queue.poll();
+            if (resolution.drop()) {
+                resolutions.remove(resolution.hash);
+                LOG.debug("Magnet lookup dropped, no one waiting: " + resolution.magnet);
+            } else {
+                numLookups++;
+                lookups.add(resolution);
+            }
+        }
+        return lookups;
+    }
+
+    /**
+     * Makes room in the full queue, removing the resolutions nobody wants anymore,
+     * or the oldest one if all are still wanted. Must be called holding the
+     * resolutions lock, the removed ones must be passed to {@link #dropLookups(List)}.
+     */
+    private static List<Resolution> pruneQueue() {
+        List<Resolution> dropped = new ArrayList<Resolution>(1);
+        Iterator<Resolution> it = queue.iterator();
+        while (it.hasNext()) {
+            Resolution resolution = it.next();
+            if (resolution.drop()) {
+                it.remove();
+                resolutions.remove(resolution.hash);
+                dropped.add(resolution);
+            }
+        }
+        if (dropped.isEmpty()) {
+            Resolution oldest = queue.poll();
+            resolutions.remove(oldest.hash);
+            dropped.add(oldest);
+        }
+        return dropped;
+    }
+
+    /**
+     * Releases the callers still waiting on dropped resolutions, without marking the
+     * hashes as failed.
+     */
+    private static void dropLookups(List<Resolution> dropped) {
+        for (Resolution resolution : dropped) {
+            LOG.debug("Magnet lookup dropped from the queue: " + resolution.magnet);
+            resolution.cancel();
+        }
+    }
+
+    /**
+     * Starting a lookup goes into Vuze, never call it holding the resolutions lock.
+     */
+    private static void startLookups(List<Resolution> lookups) {
+        for (Resolution resolution : lookups) {
+            resolution.start();
+        }
+    }
+
+    private static void finished(Resolution resolution, byte[] data) {
+        List<Resolution> lookups;
+
+        synchronized (resolutions) {
+            resolutions.remove(resolution.hash);
+            numLookups--;
+
+            if (data == null) {
+                failures.put(resolution.hash, System.currentTimeMillis());
+
+                // keep the failures map bounded, forget the ones that can be retried
+                long now = System.currentTimeMillis();
+                Iterator<Long> it = failures.values().iterator();
+                while (it.hasNext()) {
+                    if (now - it.next() >= FAILURE_RETRY_DELAY) {
+                        it.remove();
+                    }
+                }
+            }
+
+            lookups = pollLookups();
         }
 
-        return listener.getData();
+        startLookups(lookups);
     }
 
-    private final class TorrentDownloaderListener implements TorrentDownloaderCallBackInterface {
+    private static final class Resolution implements TorrentDownloaderCallBackInterface, Runnable {
 
-        private final AtomicBoolean finished = new AtomicBoolean(false);
+        private final String hash;
+        private final String magnet;
         private final CountDownLatch signal;
+        private final List<Listener> listeners;
 
+        private TorrentDownloader td;
+        private ScheduledFuture<?> timeout;
+        private int waiters;
+        private boolean done;
         private byte[] data;
 
-        public TorrentDownloaderListener(CountDownLatch signal) {
-            this.signal = signal;
+        public Resolution(String hash, String magnet) {
+            this.hash = hash;
+            this.magnet = magnet;
+            this.signal = new CountDownLatch(1);
+            this.listeners = new ArrayList<Listener>(1);
+        }
+
+        public void start() {
+            String saveDir = SharingSettings.TORRENTS_DIR_SETTING.getValue().getAbsolutePath();
+
+            try {
+                TorrentDownloader td = TorrentDownloaderFactory.create(this, magnet, null, saveDir);
+                ScheduledFuture<?> timeout = executor.schedule(this, RESOLVE_TIMEOUT, TimeUnit.MILLISECONDS);
+                synchronized (this) {
+                    this.td = td;
+                    this.timeout = timeout;
+                }
+                td.start();
+            } catch (Throwable e) {
+                LOG.warn("Error starting magnet lookup: " + magnet + ", e=" + e.getMessage());
+                complete(null);
+            }
         }
 
-        public byte[] getData() {
+        public synchronized void addWaiter() {
+            waiters++;
+        }
+
+        /**
+         * The data if already resolved, otherwise the listener is notified if that happens later.
+         * The caller is no longer a waiter.
+         */
+        public synchronized byte[] getData(Listener listener) {
+            waiters--;
+            if (!done && listener != null) {
+                listeners.add(listener);
+            }
             return data;
         }
 
-        public void TorrentDownloaderEvent(int state, final TorrentDownloader inf) {
-            if (state == TorrentDownloader.STATE_FINISHED && finished.compareAndSet(false, true)) {
+        /**
+         * Marks a queued resolution as done if nobody is waiting on it and all its
+         * listeners are stopped.
+         * 
+         * @return true if dropped
+         */
+        public synchronized boolean drop() {
+            if (done || waiters > 0) {
+                return false;
+            }
+            for (Listener l : listeners) {
+                if (!l.isStopped()) {
+                    return false;
+                }
+            }
+            done = true;
+            listeners.clear();
+            signal.countDown();
+            return true;
+        }
+
+        /**
+         * Ends a queued resolution that was never started, the waiters get no data.
+         */
+        public void cancel() {
+            synchronized (this) {
+                done = true;
+                listeners.clear();
+            }
+            signal.countDown();
+        }
+
+        /**
+         * Resolution timeout.
+         */
+        @Override
+        public void run() {
+            TorrentDownloader td;
+            synchronized (this) {
+                td = this.td;
+            }
+            if (complete(null)) {
+                LOG.debug("Magnet lookup timed out: " + magnet);
+                td.cancel();
+            }
+        }
+
+        public void TorrentDownloaderEvent(int state, TorrentDownloader inf) {
+            if (state == TorrentDownloader.STATE_FINISHED) {
+                byte[] data = null;
+                FileInputStream in = null;
                 try {
-                    data = IOUtils.toByteArray(new FileInputStream(inf.getFile()));
+                    in = new FileInputStream(inf.getFile());
+                    data = IOUtils.toByteArray(in);
                 } catch (Throwable e) {
-                    // ignore
+                    LOG.warn("Error reading magnet torrent: " + inf.getFile() + ", e=" + e.getMessage());
+                } finally {
+                    IOUtils.closeQuietly(in);
+                }
+                complete(data);
+            } else if (state == TorrentDownloader.STATE_ERROR || state == TorrentDownloader.STATE_CANCELLED) {
+                complete(null);
+            }
+        }
+
+        /**
+         * @return false if already completed
+         */
+        private boolean complete(byte[] data) {
+            final List<Listener> toNotify;
+
+            synchronized (this) {
+                if (done) {
+                    return false;
+                }
+                done = true;
+                this.data = data;
+                if (timeout != null) {
+                    timeout.cancel(false);
                 }
-                signal.countDown();
-            } else if (state == TorrentDownloader.STATE_ERROR) {
-                signal.countDown();
+                toNotify = new ArrayList<Listener>(listeners);
+                listeners.clear();
             }
+
+            signal.countDown();
+            finished(this, data);
+
+            if (data != null && !toNotify.isEmpty()) {
+                final byte[] result = data;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (Listener l : toNotify) {
+                            try {
+                                l.onData(magnet, result);
+                            } catch (Throwable e) {
+                                LOG.warn("Error notifying magnet torrent: " + magnet + ", e=" + e.getMessage());
+                            }
+                        }
+                    }
+                });
+            }
+
+            return true;
         }
     }
 }
@@ -21,6 +21,7 @@ import org.limewire.setting.BooleanSetting;
 import org.limewire.setting.CharArraySetting;
 import org.limewire.setting.FileSetting;
 import org.limewire.setting.IntSetting;
+import org.limewire.setting.LongSetting;
 import org.limewire.setting.StringSetting;
 import org.limewire.util.CommonUtils;
 
@@ -325,6 +326,32 @@ public final class SearchSettings extends LimeProps {
 	public static final StringSetting LAST_MEDIA_TYPE_USED = FACTORY.createStringSetting("LAST_MEDIA_TYPE_USED", MediaType.getAudioMediaType().getMimeType());
 	
 	public static final BooleanSetting SMART_SEARCH_ENABLED = FACTORY.createBooleanSetting("SMART_SEARCH_ENABLED", true);
+
+	/**
+	 * Maximum number of bytes of crawled data (torrents) kept in memory.
+	 */
+	public static final LongSetting CRAWL_CACHE_MEMORY_SIZE = FACTORY.createLongSetting("CRAWL_CACHE_MEMORY_SIZE", 16L * 1024 * 1024);
+
+	/**
+	 * Maximum number of bytes of crawled data stored in the smart search database,
+	 * the oldest entries are evicted first. Zero or less means no limit.
+	 */
+	public static final LongSetting CRAWL_CACHE_DISK_SIZE = FACTORY.createLongSetting("CRAWL_CACHE_DISK_SIZE", 512L * 1024 * 1024);
 	
+	/**
+	 * Number of threads fetching the search pages of the engines.
+	 */
+	public static final IntSetting SEARCH_PERFORM_THREADS = FACTORY.createIntSetting("SEARCH_PERFORM_THREADS", 4);
+
+	/**
+	 * Number of threads crawling the search results (torrents, magnets, etc).
+	 */
+	public static final IntSetting SEARCH_CRAWL_THREADS = FACTORY.createIntSetting("SEARCH_CRAWL_THREADS", 4);
+
+	/**
+	 * Maximum number of tasks of the same engine running at once for each search in each lane, zero or less means no limit.
+	 */
+	public static final IntSetting SEARCH_MAX_TASKS_PER_ENGINE = FACTORY.createIntSetting("SEARCH_MAX_TASKS_PER_ENGINE", 2);
+
     public static final BooleanSetting SHOW_DETAIL_PAGE_AFTER_DOWNLOAD_START = FACTORY.createBooleanSetting("SHOW_DETAIL_PAGE_AFTER_DOWNLOAD_START", false);
 }
@@ -19,17 +19,26 @@
 package com.frostwire.gui;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.limewire.util.FilenameUtils;
+
+import com.frostwire.content.ContentValues;
 import com.frostwire.core.ConfigurationManager;
 import com.frostwire.core.Constants;
 import com.frostwire.core.FileDescriptor;
@@ -38,7 +47,9 @@ import com.frostwire.core.providers.ShareFilesDB.Columns;
 import com.frostwire.database.Cursor;
 import com.frostwire.gui.bittorrent.TorrentUtil;
 import com.frostwire.gui.library.Finger;
+import com.frostwire.gui.library.tags.TagsService;
 import com.frostwire.gui.upnp.UPnPManager;
+import com.limegroup.gnutella.MediaType;
 
 /**
  * @author gubatron
@@ -53,9 +64,21 @@ public final class Librarian {
     public static final int FILE_STATE_SHARING = 1;
     public static final int FILE_STATE_SHARED = 2;
 
-    //private final Set<String> pathSharedSet;
+    private static final long PRUNE_INTERVAL = 10 * 60 * 1000; // 10 minutes
+
+    private static final int SCAN_PREFETCH_SIZE = 100; // files of a folder whose tags are read at once
+
     private final Set<String> pathSharingSet;
-    private final ExecutorService shareFileExec;
+    private final ScheduledExecutorService shareFileExec;
+
+    /**
+     * Shared files by case-folded path, mirrors the shared rows of the share table,
+     * which compares the paths ignoring case. Readers don't lock, writers update it
+     * together with the table under the librarian lock.
+     */
+    private final Map<String, SharedFile> sharedFiles;
+    private final AtomicIntegerArray sharedCounts;
+    private volatile boolean loaded;
 
     private static final Librarian instance = new Librarian();
 
@@ -64,9 +87,10 @@ public final class Librarian {
     }
 
     private Librarian() {
-        //this.pathSharedSet = Collections.synchronizedSet(new HashSet<String>());
         this.pathSharingSet = Collections.synchronizedSet(new HashSet<String>());
-        this.shareFileExec = Executors.newSingleThreadExecutor();
+        this.shareFileExec = Executors.newSingleThreadScheduledExecutor();
+        this.sharedFiles = new ConcurrentHashMap<String, SharedFile>();
+        this.sharedCounts = new AtomicIntegerArray(Constants.FILE_TYPE_TORRENTS + 1);
     }
 
     public Finger finger() {
@@ -106,68 +130,16 @@ public final class Librarian {
         return result;
     }
 
-    /**
-     * 
-     * @param fileType
-     * @param onlyShared - If false, forces getting all files, shared or unshared. 
-     * @return
-     */
     public int getNumSharedFiles(byte fileType) {
-        Cursor c = null;
-
-        int numFiles = 0;
-
-        try {
-            ShareFilesDB db = ShareFilesDB.intance();
-
-            String[] columns = new String[] { Columns.ID, Columns.FILE_PATH, Columns.SHARED };
-            String where = Columns.FILE_TYPE + " = ? AND " + Columns.SHARED + " = ?";
-            String[] whereArgs = new String[] { String.valueOf(fileType), String.valueOf(true) };
-
-            c = db.query(columns, where, whereArgs, null);
-
-            List<FileDescriptor> fds = filteredOutBadRows(c);
+        ensureLoaded();
 
-            numFiles = fds.size();
-
-        } catch (Exception e) {
-            LOG.log(Level.WARNING, "Failed to get num of shared files", e);
-        } finally {
-            if (c != null) {
-                c.close();
-            }
-        }
-
-        return numFiles;
+        return fileType >= 0 && fileType < sharedCounts.length() ? sharedCounts.get(fileType) : 0;
     }
 
     public boolean isFileShared(String filePath) {
-        Cursor c = null;
-
-        boolean isShared = false;
-
-        try {
-            ShareFilesDB db = ShareFilesDB.intance();
-
-            String[] columns = new String[] { Columns.ID, Columns.FILE_PATH, Columns.SHARED };
-            String where = Columns.FILE_PATH + " = ?";
-            String[] whereArgs = new String[] { filePath };
-
-            c = db.query(columns, where, whereArgs, null);
-
-            List<FileDescriptor> fds = filteredOutBadRows(c);
-
-            isShared = fds.size() == 1;
-
-        } catch (Exception e) {
-            LOG.log(Level.WARNING, "Failed to get num of shared files", e);
-        } finally {
-            if (c != null) {
-                c.close();
-            }
-        }
+        ensureLoaded();
 
-        return isShared;
+        return sharedFiles.containsKey(shareKey(filePath));
     }
 
     private List<FileDescriptor> filteredOutBadRows(Cursor c) {
@@ -195,6 +167,16 @@ public final class Librarian {
             fds.add(fd);
         }
 
+        removeMissingFiles(toRemove);
+
+        return fds;
+    }
+
+    private void removeMissingFiles(final Set<String> toRemove) {
+        if (toRemove.isEmpty()) {
+            return;
+        }
+
         shareFileExec.execute(new Runnable() {
             @Override
             public void run() {
@@ -207,8 +189,6 @@ public final class Librarian {
                 }
             }
         });
-
-        return fds;
     }
 
     public List<FileDescriptor> getSharedFiles(byte fileType) {
@@ -240,6 +220,63 @@ public final class Librarian {
         return result;
     }
 
+    /**
+     * Walks the shared files of a type straight from the share table cursor,
+     * without building a list. Rows whose file is gone are skipped and removed
+     * from the table in the background.
+     * 
+     * When paging (offset > 0 or limit > 0) the rows are ordered by id, so new
+     * files only ever show up in later pages, otherwise the newest come first.
+     * 
+     * @param addedSince only rows added (or re-scanned) after this time, in seconds, 0 for all
+     * @param limit maximum number of table rows to read, 0 for no limit
+     * @return the number of table rows read, skipped ones included, so callers can
+     * compute the next offset
+     */
+    public int visitSharedFiles(byte fileType, long addedSince, int offset, int limit, SharedFileVisitor visitor) throws IOException {
+        Cursor c = null;
+
+        Set<String> toRemove = new HashSet<String>();
+        int rows = 0;
+
+        try {
+            ShareFilesDB db = ShareFilesDB.intance();
+
+            String[] columns = new String[] { Columns.ID, Columns.FILE_TYPE, Columns.FILE_PATH, Columns.FILE_SIZE, Columns.MIME, Columns.DATE_ADDED, Columns.DATE_MODIFIED, Columns.SHARED, Columns.TITLE, Columns.ARTIST, Columns.ALBUM, Columns.YEAR };
+            String where = Columns.FILE_TYPE + " = ? AND " + Columns.SHARED + " = ? AND " + Columns.DATE_ADDED + " > ?";
+            String[] whereArgs = new String[] { String.valueOf(fileType), String.valueOf(true), String.valueOf(addedSince) };
+
+            boolean paging = offset > 0 || limit > 0;
+            String orderBy = paging ? Columns.ID : null;
+            String limitClause = paging ? offset + "," + (limit > 0 ? limit : Integer.MAX_VALUE) : null;
+
+            c = db.query(columns, where, whereArgs, orderBy, limitClause);
+
+            int filePathCol = c.getColumnIndex(Columns.FILE_PATH);
+
+            while (c.moveToNext()) {
+                rows++;
+
+                String filePath = c.getString(filePathCol);
+
+                if (!(new File(filePath)).exists()) {
+                    toRemove.add(filePath);
+                    continue;
+                }
+
+                visitor.visit(cursorToFileDescriptor(c));
+            }
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+
+            removeMissingFiles(toRemove);
+        }
+
+        return rows;
+    }
+
     public void scan(File file) {
         scan(file, TorrentUtil.getIgnorableFiles());
     }
@@ -262,13 +299,41 @@ public final class Librarian {
         }
 
         if (file.isDirectory()) {
-            for (File child : file.listFiles()) {
-                if (child.isDirectory() || child.isFile()) {
-                    scan(child);
+            File[] children = file.listFiles();
+
+            for (int from = 0; from < children.length; from += SCAN_PREFETCH_SIZE) {
+                int to = Math.min(children.length, from + SCAN_PREFETCH_SIZE);
+
+                prefetchTags(children, from, to);
+
+                for (int i = from; i < to; i++) {
+                    File child = children[i];
+                    if (child.isDirectory() || child.isFile()) {
+                        scan(child);
+                    }
                 }
             }
         } else if (file.isFile()) {
-            new UniversalScanner().scan(file.getAbsolutePath());
+            scanFile(file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Reads the tags of the audio files in parallel, the scan of each one
+     * then finds them in the cache.
+     */
+    private void prefetchTags(File[] files, int from, int to) {
+        List<File> audio = new ArrayList<File>();
+
+        for (int i = from; i < to; i++) {
+            File f = files[i];
+            if (f.isFile() && MediaType.getAudioMediaType().equals(MediaType.getMediaTypeForExtension(FilenameUtils.getExtension(f.getName())))) {
+                audio.add(f);
+            }
+        }
+
+        if (audio.size() > 1) {
+            TagsService.instance().parse(audio);
         }
     }
 
@@ -286,11 +351,17 @@ public final class Librarian {
         Runnable r = new Runnable() {
             @Override
             public void run() {
-                deleteFromShareTable(filePath);
+                ensureLoaded();
+
+                // reading the tags is slow, only the table and index update is done holding the lock
+                ContentValues values = share ? new UniversalScanner().read(filePath) : null;
+
+                synchronized (Librarian.this) {
+                    deleteFromShareTable(filePath);
 
-                if (share) {
-                    new UniversalScanner().scan(filePath);
-                    //pathSharedSet.add(filePath);
+                    if (values != null) {
+                        insertShared(filePath, values);
+                    }
                 }
 
                 pathSharingSet.remove(filePath);
@@ -304,16 +375,60 @@ public final class Librarian {
         shareFileExec.execute(r);
     }
 
-    private void deleteFromShareTable(String filePath) {
+    private void scanFile(String filePath) {
+        ensureLoaded();
+
+        ContentValues values = new UniversalScanner().read(filePath);
+
+        synchronized (this) {
+            insertShared(filePath, values);
+        }
+    }
+
+    /**
+     * Must be called holding the librarian lock, the row and the index change together.
+     */
+    private void insertShared(String filePath, ContentValues values) {
+        byte fileType = UniversalScanner.insert(values);
+
+        if (fileType != -1) {
+            indexShared(filePath, fileType);
+        }
+    }
+
+    private synchronized void deleteFromShareTable(String filePath) {
+        ensureLoaded();
+
         String where = Columns.FILE_PATH + " = ?";
         String[] whereArgs = new String[] { filePath };
 
         ShareFilesDB db = ShareFilesDB.intance();
 
         db.delete(where, whereArgs);
+
+        indexUnshared(filePath);
     }
-    
-    public void deleteFolderFilesFromShareTable(String folderPath) {
+
+    /**
+     * Unshares the files of the folders in the background, then refreshes the
+     * ping. Runs after the share and unshare requests already made.
+     */
+    public void unshareFolders(final List<String> folderPaths) {
+        shareFileExec.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String folderPath : folderPaths) {
+                    deleteFolderFilesFromShareTable(folderPath);
+                }
+
+                UPnPManager.instance().refreshPing();
+            }
+        });
+    }
+
+    private synchronized void deleteFolderFilesFromShareTable(String folderPath) {
+        ensureLoaded();
+
         String where = Columns.FILE_PATH + " LIKE ?";
         String[] whereArgs = new String[] { folderPath + "%" };
 
@@ -324,6 +439,117 @@ public final class Librarian {
         } catch (Exception e) {
         
         }
+
+        // same as the LIKE, the table ignores case
+        String folderKey = shareKey(folderPath);
+
+        for (String key : new ArrayList<String>(sharedFiles.keySet())) {
+            if (key.startsWith(folderKey)) {
+                indexUnshared(key);
+            }
+        }
+    }
+
+    /**
+     * Loads the paths and types of the shared rows once, the existence of the
+     * files is checked later by the background pruning.
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+
+            Cursor c = null;
+
+            try {
+                ShareFilesDB db = ShareFilesDB.intance();
+
+                String[] columns = new String[] { Columns.FILE_PATH, Columns.FILE_TYPE };
+                String where = Columns.SHARED + " = ?";
+                String[] whereArgs = new String[] { String.valueOf(true) };
+
+                c = db.query(columns, where, whereArgs, null);
+
+                int filePathCol = c.getColumnIndex(Columns.FILE_PATH);
+                int fileTypeCol = c.getColumnIndex(Columns.FILE_TYPE);
+
+                while (c.moveToNext()) {
+                    indexShared(c.getString(filePathCol), c.getByte(fileTypeCol));
+                }
+            } catch (Throwable e) {
+                LOG.log(Level.WARNING, "Failed to load the shared files", e);
+            } finally {
+                if (c != null) {
+                    c.close();
+                }
+            }
+
+            loaded = true;
+
+            shareFileExec.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    pruneMissingFiles();
+                }
+            }, 0, PRUNE_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void indexShared(String filePath, byte fileType) {
+        SharedFile previous = sharedFiles.put(shareKey(filePath), new SharedFile(filePath, fileType));
+
+        if (previous != null) {
+            count(previous.fileType, -1);
+        }
+        count(fileType, 1);
+    }
+
+    private void indexUnshared(String filePath) {
+        SharedFile previous = sharedFiles.remove(shareKey(filePath));
+
+        if (previous != null) {
+            count(previous.fileType, -1);
+        }
+    }
+
+    /**
+     * The path as the share table compares it, ignoring case.
+     */
+    private static String shareKey(String filePath) {
+        return filePath.toLowerCase(Locale.US);
+    }
+
+    private void count(byte fileType, int delta) {
+        if (fileType >= 0 && fileType < sharedCounts.length()) {
+            sharedCounts.addAndGet(fileType, delta);
+        }
+    }
+
+    /**
+     * Removes from the share table the files that don't exist anymore.
+     */
+    private void pruneMissingFiles() {
+        try {
+            boolean pruned = false;
+
+            for (SharedFile sf : new ArrayList<SharedFile>(sharedFiles.values())) {
+                if (!new File(sf.path).exists()) {
+                    deleteFromShareTable(sf.path);
+                    pruned = true;
+                }
+            }
+
+            if (pruned) {
+                UPnPManager.instance().refreshPing();
+            }
+        } catch (Throwable e) {
+            LOG.log(Level.WARNING, "Error pruning no existent files", e);
+        }
     }
 
     private FileDescriptor cursorToFileDescriptor(Cursor c) {
@@ -422,4 +648,20 @@ public final class Librarian {
 
         return result;
     }
+
+    private static final class SharedFile {
+
+        public final String path;
+        public final byte fileType;
+
+        public SharedFile(String path, byte fileType) {
+            this.path = path;
+            this.fileType = fileType;
+        }
+    }
+
+    public interface SharedFileVisitor {
+
+        public void visit(FileDescriptor fd) throws IOException;
+    }
 }
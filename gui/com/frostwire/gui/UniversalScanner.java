@@ -34,7 +34,7 @@ import com.frostwire.core.Constants;
 import com.frostwire.core.providers.ShareFilesDB;
 import com.frostwire.core.providers.ShareFilesDB.Columns;
 import com.frostwire.gui.library.tags.TagsData;
-import com.frostwire.gui.library.tags.TagsReader;
+import com.frostwire.gui.library.tags.TagsService;
 import com.frostwire.util.MimeDetector;
 import com.limegroup.gnutella.MediaType;
 
@@ -50,29 +50,53 @@ public class UniversalScanner {
     public UniversalScanner() {
     }
 
-    public void scan(String filePath) {
+    /**
+     * Scans the file into the share table.
+     * 
+     * @return the file type of the inserted row, -1 if it couldn't be inserted.
+     */
+    public byte scan(String filePath) {
+        return insert(read(filePath));
+    }
+
+    /**
+     * Reads the file and its tags into the values of a shared row, without
+     * touching the share table. This is the slow part of a scan.
+     */
+    public ContentValues read(String filePath) {
         try {
             MediaType mt = MediaType.getMediaTypeForExtension(FilenameUtils.getExtension(filePath));
 
             if (mt == null) {
-                scanDocument(filePath, true);
+                return scanDocument(filePath, true);
             } else if (mt.equals(MediaType.getAudioMediaType())) {
-                scanAudio(filePath, true);
+                return scanAudio(filePath, true);
             } else if (mt.equals(MediaType.getImageMediaType())) {
-                scanPictures(filePath, true);
+                return scanPictures(filePath, true);
             } else if (mt.equals(MediaType.getVideoMediaType())) {
-                scanVideo(filePath, true); // until we integrate mplayer for video and research metadata extraction
+                return scanVideo(filePath, true); // until we integrate mplayer for video and research metadata extraction
             } else {
-                scanDocument(filePath, true);
+                return scanDocument(filePath, true);
             }
 
         } catch (Throwable e) {
-            scanDocument(filePath, true);
             LOG.log(Level.WARNING, "Error scanning file, scanned as document: " + filePath, e);
+            return scanDocument(filePath, true);
         }
     }
 
-    private void scanPictures(String filePath, boolean shared) {
+    /**
+     * Inserts the values returned by {@link #read(String)} into the share table.
+     * 
+     * @return the file type of the inserted row, -1 if it couldn't be inserted.
+     */
+    public static byte insert(ContentValues values) {
+        ShareFilesDB db = ShareFilesDB.intance();
+
+        return db.insert(values) != -1 ? values.getAsByte(Columns.FILE_TYPE) : -1;
+    }
+
+    private ContentValues scanPictures(String filePath, boolean shared) {
         File file = new File(filePath);
 
         ContentValues values = new ContentValues();
@@ -118,9 +142,7 @@ public class UniversalScanner {
             values.put(Columns.YEAR, "");
         }
 
-        ShareFilesDB db = ShareFilesDB.intance();
-
-        db.insert(values);
+        return values;
     }
 
     private void fillCommonValues(ContentValues values, byte fileType, String filePath, File file, String mime, boolean shared) {
@@ -133,7 +155,7 @@ public class UniversalScanner {
         values.put(Columns.SHARED, shared);
     }
 
-    private void scanAudio(String filePath, boolean shared) {
+    private ContentValues scanAudio(String filePath, boolean shared) {
         File file = new File(filePath);
 
         ContentValues values = new ContentValues();
@@ -142,7 +164,7 @@ public class UniversalScanner {
         fillCommonValues(values, Constants.FILE_TYPE_AUDIO, filePath, file, mime, shared);
 
         try {
-            TagsData mt = new TagsReader(file).parse();
+            TagsData mt = TagsService.instance().parse(file);
 
             values.put(Columns.TITLE, mt.getTitle());
             values.put(Columns.ARTIST, mt.getArtist());
@@ -157,21 +179,19 @@ public class UniversalScanner {
             values.put(Columns.YEAR, "");
         }
 
-        ShareFilesDB db = ShareFilesDB.intance();
-
-        db.insert(values);
+        return values;
     }
 
-    private void scanVideo(String filePath, boolean shared) {
+    private ContentValues scanVideo(String filePath, boolean shared) {
         String mime = "video/" + FilenameUtils.getExtension(filePath);
-        scanBasic(Constants.FILE_TYPE_VIDEOS, filePath, mime, shared);
+        return scanBasic(Constants.FILE_TYPE_VIDEOS, filePath, mime, shared);
     }
 
-    private void scanDocument(String filePath, boolean shared) {
-        scanBasic(Constants.FILE_TYPE_DOCUMENTS, filePath, getMimeType(filePath), shared);
+    private ContentValues scanDocument(String filePath, boolean shared) {
+        return scanBasic(Constants.FILE_TYPE_DOCUMENTS, filePath, getMimeType(filePath), shared);
     }
 
-    private void scanBasic(byte fileType, String filePath, String mime, boolean shared) {
+    private ContentValues scanBasic(byte fileType, String filePath, String mime, boolean shared) {
         File file = new File(filePath);
 
         String displayName = FilenameUtils.getBaseName(file.getName());
@@ -185,9 +205,7 @@ public class UniversalScanner {
         values.put(Columns.ALBUM, "");
         values.put(Columns.YEAR, "");
 
-        ShareFilesDB db = ShareFilesDB.intance();
-
-        db.insert(values);
+        return values;
     }
 
     private static String getMimeType(String filePath) {
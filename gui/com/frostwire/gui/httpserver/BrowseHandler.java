@@ -18,7 +18,10 @@
 
 package com.frostwire.gui.httpserver;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.zip.GZIPOutputStream;
@@ -28,10 +31,20 @@ import org.apache.http.client.utils.URLEncodedUtils;
 
 import com.frostwire.core.FileDescriptor;
 import com.frostwire.gui.Librarian;
-import com.frostwire.util.JsonUtils;
+import com.frostwire.gui.Librarian.SharedFileVisitor;
 import com.sun.net.httpserver.HttpExchange;
 
 /**
+ * Lists the shared files of a type as gzipped JSON, <code>{"files":[...]}</code>.
+ * 
+ * Rows are written to the response as they come out of the share table, the
+ * listing is never held in memory. Optional parameters:
+ * <ul>
+ * <li><code>offset</code>, <code>limit</code>: page over the table rows, when the page is
+ * full a <code>"next"</code> field carries the offset of the following page.</li>
+ * <li><code>since</code>: only files added after this time, in seconds (as in <code>dateAdded</code>).</li>
+ * </ul>
+ * 
  * @author gubatron
  * @author aldenml
  *
@@ -40,61 +53,169 @@ class BrowseHandler extends AbstractHandler {
 
     private static final Logger LOG = Logger.getLogger(BrowseHandler.class.getName());
 
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         assertUPnPActive();
 
-        GZIPOutputStream os = null;
+        Writer w = null;
 
         byte type = -1;
+        int offset = 0;
+        int limit = 0;
+        long since = 0;
 
         try {
 
             List<NameValuePair> query = URLEncodedUtils.parse(exchange.getRequestURI(), "UTF-8");
 
-            for (NameValuePair item : query) {
-                if (item.getName().equals("type")) {
-                    type = Byte.parseByte(item.getValue());
+            try {
+                for (NameValuePair item : query) {
+                    if (item.getName().equals("type")) {
+                        type = Byte.parseByte(item.getValue());
+                    }
+                    if (item.getName().equals("offset")) {
+                        offset = Integer.parseInt(item.getValue());
+                    }
+                    if (item.getName().equals("limit")) {
+                        limit = Integer.parseInt(item.getValue());
+                    }
+                    if (item.getName().equals("since")) {
+                        since = Long.parseLong(item.getValue());
+                    }
                 }
+            } catch (NumberFormatException e) {
+                type = -1;
             }
 
-            if (type == -1) {
+            if (type == -1 || offset < 0 || limit < 0) {
                 exchange.sendResponseHeaders(Code.HTTP_BAD_REQUEST, 0);
                 return;
             }
 
-            String response = getResponse(exchange, type);
-
             exchange.getResponseHeaders().set("Content-Encoding", "gzip");
             exchange.getResponseHeaders().set("Content-Type", "text/json; charset=UTF-8");
             exchange.sendResponseHeaders(Code.HTTP_OK, 0);
 
-            os = new GZIPOutputStream(exchange.getResponseBody());
+            w = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(exchange.getResponseBody(), 8192), "UTF-8"), 8192);
+
+            writeResponse(w, type, since, offset, limit);
 
-            os.write(response.getBytes("UTF-8"));
-            os.finish();
+            w.flush();
 
         } catch (IOException e) {
             LOG.warning("Error browsing files type=" + type);
             throw e;
         } finally {
-            if (os != null) {
-                os.close();
+            if (w != null) {
+                w.close();
             }
             exchange.close();
         }
     }
 
-    private String getResponse(HttpExchange exchange, byte fileType) {
-        List<FileDescriptor> fileDescriptors = Librarian.instance().getSharedFiles(fileType);
+    private void writeResponse(final Writer w, byte fileType, long since, int offset, int limit) throws IOException {
+        w.write("{\"files\":[");
 
-        FileDescriptorList list = new FileDescriptorList();
-        list.files = fileDescriptors;
+        int rows = Librarian.instance().visitSharedFiles(fileType, since, offset, limit, new SharedFileVisitor() {
 
-        return JsonUtils.toJson(list);
+            private boolean first = true;
+
+            @Override
+            public void visit(FileDescriptor fd) throws IOException {
+                if (!first) {
+                    w.write(',');
+                }
+                first = false;
+                writeFileDescriptor(w, fd);
+            }
+        });
+
+        w.write(']');
+
+        if (limit > 0 && rows == limit) {
+            w.write(",\"next\":");
+            w.write(String.valueOf(offset + rows));
+        }
+
+        w.write('}');
     }
 
-    static final class FileDescriptorList {
-        public List<FileDescriptor> files;
+    /**
+     * Same fields and names the gson serialization of {@link FileDescriptor} produces,
+     * null values are left out.
+     */
+    private static void writeFileDescriptor(Writer w, FileDescriptor fd) throws IOException {
+        w.write("{\"id\":");
+        w.write(String.valueOf(fd.id));
+        w.write(",\"fileType\":");
+        w.write(String.valueOf(fd.fileType));
+        writeString(w, "filePath", fd.filePath);
+        w.write(",\"fileSize\":");
+        w.write(String.valueOf(fd.fileSize));
+        writeString(w, "mime", fd.mime);
+        w.write(",\"dateAdded\":");
+        w.write(String.valueOf(fd.dateAdded));
+        w.write(",\"dateModified\":");
+        w.write(String.valueOf(fd.dateModified));
+        w.write(",\"shared\":");
+        w.write(String.valueOf(fd.shared));
+        writeString(w, "title", fd.title);
+        writeString(w, "artist", fd.artist);
+        writeString(w, "album", fd.album);
+        writeString(w, "year", fd.year);
+        w.write('}');
+    }
+
+    private static void writeString(Writer w, String name, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        w.write(",\"");
+        w.write(name);
+        w.write("\":\"");
+
+        int start = 0;
+        int n = value.length();
+
+        for (int i = 0; i < n; i++) {
+            char ch = value.charAt(i);
+            if (ch >= 0x20 && ch != '"' && ch != '\\' && ch != '\u2028' && ch != '\u2029') {
+                continue;
+            }
+
+            w.write(value, start, i - start);
+            start = i + 1;
+
+            switch (ch) {
+            case '"':
+                w.write("\\\"");
+                break;
+            case '\\':
+                w.write("\\\\");
+                break;
+            case '\n':
+                w.write("\\n");
+                break;
+            case '\r':
+                w.write("\\r");
+                break;
+            case '\t':
+                w.write("\\t");
+                break;
+            default:
+                w.write("\\u");
+                w.write(HEX[(ch >> 12) & 0xf]);
+                w.write(HEX[(ch >> 8) & 0xf]);
+                w.write(HEX[(ch >> 4) & 0xf]);
+                w.write(HEX[ch & 0xf]);
+                break;
+            }
+        }
+
+        w.write(value, start, n - start);
+        w.write('"');
     }
 }
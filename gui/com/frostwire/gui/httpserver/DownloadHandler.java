@@ -23,7 +23,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,6 +44,14 @@ import com.frostwire.gui.transfers.PeerHttpUpload;
 import com.sun.net.httpserver.HttpExchange;
 
 /**
+ * Serves shared files to peers in the local network. Transfers run on their
+ * own bounded executor, not on the one of the http server, so long uploads
+ * don't hold up the other requests. If all its threads are busy and its queue
+ * is full the request is answered with 503 and Retry-After. File data is moved with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)} in big
+ * chunks and single and multiple byte ranges (RFC 2616, 14.35) are honored,
+ * so clients can resume and seek.
+ * 
  * @author gubatron
  * @author aldenml
  *
@@ -45,23 +60,53 @@ class DownloadHandler extends AbstractHandler {
 
     private static final Logger LOG = Logger.getLogger(DownloadHandler.class.getName());
 
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    /**
+     * Bytes moved per transferTo call, upload accounting and cancel checks
+     * happen once per chunk.
+     */
+    private static final int TRANSFER_CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * A multipart response with more parts than this is more expensive
+     * than the whole file, the Range header is ignored in that case.
+     */
+    private static final int MAX_RANGES = 16;
+
+    private static final String CRLF = "\r\n";
+
+    private static final Random random = new Random();
+
+    private final Executor executor;
+
+    public DownloadHandler(Executor executor) {
+        this.executor = executor;
+    }
+
     @Override
     public void handle(final HttpExchange exchange) throws IOException {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    internalHandler(exchange);
-                } catch (IOException e) {
-                    LOG.log(Level.WARNING, "DownloadHandler async handle error", e);
+        assertUPnPActive();
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        internalHandler(exchange);
+                    } catch (IOException e) {
+                        // already logged, the exchange is closed
+                    } catch (Throwable e) {
+                        LOG.log(Level.WARNING, "Error serving download", e);
+                    }
                 }
-            }
-        }).start();
+            });
+        } catch (RejectedExecutionException e) {
+            sendBusyResponse(exchange);
+        }
     }
-    
-    public void internalHandler(HttpExchange exchange) throws IOException {
-        assertUPnPActive();
 
+    public void internalHandler(HttpExchange exchange) throws IOException {
         OutputStream os = null;
         FileInputStream fis = null;
 
@@ -98,39 +143,67 @@ class DownloadHandler extends AbstractHandler {
                 throw new IOException("There is no such file shared");
             }
 
-            //upload = TransferManager.instance().upload(fd);
-            upload = BTDownloadMediator.instance().upload(fd);
-
-            exchange.getResponseHeaders().add("Content-Type", fd.mime);
-            
             File file = new File(fd.filePath);
-            
-            exchange.sendResponseHeaders(Code.HTTP_OK, file.length());
+            fis = new FileInputStream(file);
+            FileChannel fc = fis.getChannel();
+            long length = fc.size();
 
-            os = exchange.getResponseBody();
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
 
-            fis = new FileInputStream(file);
+            List<ByteRange> ranges = parseRanges(exchange.getRequestHeaders().getFirst("Range"), length);
 
-            byte[] buffer = new byte[4 * 1024];
-            int n;
-            int count = 0;
+            if (ranges != null && ranges.isEmpty()) {
+                exchange.getResponseHeaders().add("Content-Range", "bytes */" + length);
+                exchange.sendResponseHeaders(HTTP_RANGE_NOT_SATISFIABLE, -1);
+                return;
+            }
 
-            while ((n = fis.read(buffer, 0, buffer.length)) != -1) {
-                os.write(buffer, 0, n);
-                upload.addBytesSent(n);
-                
-                if (upload.isCanceled()) {
-                    try {
-                        throw new IOException("Upload cancelled");
-                    } finally {
-                        os.close();
-                    }
+            boolean head = "HEAD".equalsIgnoreCase(exchange.getRequestMethod());
+
+            //upload = TransferManager.instance().upload(fd);
+            upload = head ? null : BTDownloadMediator.instance().upload(fd);
+
+            if (ranges == null) {
+                exchange.getResponseHeaders().add("Content-Type", fd.mime);
+                sendResponseHeaders(exchange, Code.HTTP_OK, length, head);
+                if (!head) {
+                    os = exchange.getResponseBody();
+                    transfer(fc, 0, length, Channels.newChannel(os), upload);
                 }
-                
-                count += n;
-                if (count > 4096) {
-                    count = 0;
-                    Thread.yield();
+            } else if (ranges.size() == 1) {
+                ByteRange r = ranges.get(0);
+                exchange.getResponseHeaders().add("Content-Type", fd.mime);
+                exchange.getResponseHeaders().add("Content-Range", r.contentRange(length));
+                sendResponseHeaders(exchange, Code.HTTP_PARTIAL, r.length(), head);
+                if (!head) {
+                    os = exchange.getResponseBody();
+                    transfer(fc, r.start, r.length(), Channels.newChannel(os), upload);
+                }
+            } else {
+                String boundary = Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
+
+                // the exact body size is known upfront, this avoids chunked encoding
+                List<byte[]> partHeaders = new ArrayList<byte[]>(ranges.size());
+                long bodyLength = 0;
+                for (ByteRange r : ranges) {
+                    byte[] h = (CRLF + "--" + boundary + CRLF + "Content-Type: " + fd.mime + CRLF + "Content-Range: " + r.contentRange(length) + CRLF + CRLF).getBytes("US-ASCII");
+                    partHeaders.add(h);
+                    bodyLength += h.length + r.length();
+                }
+                byte[] trailer = (CRLF + "--" + boundary + "--" + CRLF).getBytes("US-ASCII");
+                bodyLength += trailer.length;
+
+                exchange.getResponseHeaders().add("Content-Type", "multipart/byteranges; boundary=" + boundary);
+                sendResponseHeaders(exchange, Code.HTTP_PARTIAL, bodyLength, head);
+                if (!head) {
+                    os = exchange.getResponseBody();
+                    WritableByteChannel out = Channels.newChannel(os);
+                    for (int i = 0; i < ranges.size(); i++) {
+                        ByteRange r = ranges.get(i);
+                        os.write(partHeaders.get(i));
+                        transfer(fc, r.start, r.length(), out, upload);
+                    }
+                    os.write(trailer);
                 }
             }
 
@@ -153,6 +226,116 @@ class DownloadHandler extends AbstractHandler {
         }
     }
 
+    /**
+     * The http server never writes a Content-Length for HEAD requests, it's added here
+     * so clients can learn the size without fetching the body.
+     */
+    private void sendResponseHeaders(HttpExchange exchange, int code, long length, boolean head) throws IOException {
+        if (head) {
+            exchange.getResponseHeaders().add("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(code, -1);
+        } else {
+            exchange.sendResponseHeaders(code, length);
+        }
+    }
+
+    /**
+     * Moves <code>count</code> bytes from <code>position</code> into the response
+     * channel. The platform can take the zero copy path when the target allows it,
+     * otherwise the JDK copies through its own direct buffers.
+     */
+    private void transfer(FileChannel fc, long position, long count, WritableByteChannel out, PeerHttpUpload upload) throws IOException {
+        long end = position + count;
+
+        while (position < end) {
+            long n = fc.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, end - position), out);
+            if (n <= 0) {
+                throw new IOException("File truncated while uploading");
+            }
+
+            position += n;
+
+            if (upload != null) {
+                upload.addBytesSent((int) n);
+
+                if (upload.isCanceled()) {
+                    throw new IOException("Upload cancelled");
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses a Range request header value against a file of the given length.
+     * 
+     * @return <code>null</code> if the whole file should be served (no header, a syntax
+     * error, an unknown unit or too many ranges), an empty list if no range is
+     * satisfiable, otherwise the ranges in the order they were requested.
+     */
+    static List<ByteRange> parseRanges(String header, long length) {
+        if (header == null) {
+            return null;
+        }
+
+        header = header.trim();
+        if (!header.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<ByteRange>(specs.length);
+
+        try {
+            for (String spec : specs) {
+                spec = spec.trim();
+                int dash = spec.indexOf('-');
+                if (dash == -1) {
+                    return null;
+                }
+
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+
+                long start;
+                long end;
+
+                if (first.length() == 0) {
+                    // suffix range, the last N bytes
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    if (suffix == 0 || length == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffix);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    // open ended, not length - 1 which is below the start of an empty file
+                    end = last.length() == 0 ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    if (start >= length) {
+                        continue;
+                    }
+                    end = Math.min(end, length - 1);
+                }
+
+                ranges.add(new ByteRange(start, end));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return ranges;
+    }
+
     private void close(Closeable c) {
         if (c != null) {
             try {
@@ -163,8 +346,31 @@ class DownloadHandler extends AbstractHandler {
         }
     }
 
-    //    private void sendBusyResponse(HttpExchange exchange) throws IOException {
-    //        exchange.getResponseHeaders().add("Retry-After", "10"); // retry in 10 seconds
-    //        exchange.sendResponseHeaders(Code.HTTP_UNAVAILABLE, 0);
-    //    }
+    private void sendBusyResponse(HttpExchange exchange) throws IOException {
+        try {
+            exchange.getResponseHeaders().add("Retry-After", "10"); // retry in 10 seconds
+            exchange.sendResponseHeaders(Code.HTTP_UNAVAILABLE, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    static final class ByteRange {
+
+        public final long start;
+        public final long end; // inclusive
+
+        public ByteRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long length() {
+            return end - start + 1;
+        }
+
+        public String contentRange(long total) {
+            return "bytes " + start + "-" + end + "/" + total;
+        }
+    }
 }
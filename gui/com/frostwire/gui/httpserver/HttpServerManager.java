@@ -19,9 +19,15 @@
 package com.frostwire.gui.httpserver;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.limewire.concurrent.ExecutorsHelper;
+
 import com.sun.net.httpserver.HttpServer;
 
 /**
@@ -33,12 +39,28 @@ public class HttpServerManager {
 
     private static final Logger LOG = Logger.getLogger(HttpServerManager.class.getName());
 
+    /**
+     * Maximum number of requests served at the same time, any extra request
+     * waits in the pool queue until a worker is free. Downloads only pass
+     * through here on their way to the upload pool.
+     */
+    private static final int MAX_CONCURRENT_REQUESTS = 6;
+
+    /**
+     * Maximum number of files uploaded at the same time, and of downloads
+     * waiting for a free upload thread. Beyond that a download is answered
+     * with 503, so a burst of them can't hold up finger and browse requests.
+     */
+    private static final int MAX_CONCURRENT_UPLOADS = 4;
+    private static final int MAX_QUEUED_UPLOADS = 8;
+
     //private final SessionManager sessionManager;
 
     private HttpServer httpServer;
+    private ExecutorService threadPool;
+    private ExecutorService uploadPool;
 
     public HttpServerManager() {
-        //this.threadPool = Executors.newCachedThreadPool();// ExecutorsHelper.n.newFixedSizeThreadPool(3, "HttpServer");
         //this.sessionManager = new SessionManager();
     }
 
@@ -55,10 +77,17 @@ public class HttpServerManager {
         try {
 
             httpServer = HttpServer.create(new InetSocketAddress(port), 10);
-            
+
+            threadPool = ExecutorsHelper.newFixedSizeThreadPool(MAX_CONCURRENT_REQUESTS, "HttpServer");
+            httpServer.setExecutor(threadPool);
+
+            ThreadPoolExecutor tpe = new ThreadPoolExecutor(MAX_CONCURRENT_UPLOADS, MAX_CONCURRENT_UPLOADS, 5L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(MAX_QUEUED_UPLOADS), ExecutorsHelper.daemonThreadFactory("HttpServer-Upload"));
+            tpe.allowCoreThreadTimeOut(true);
+            uploadPool = tpe;
+
             httpServer.createContext("/finger", new FingerHandler());
             httpServer.createContext("/browse", new BrowseHandler());
-            httpServer.createContext("/download", new DownloadHandler());
+            httpServer.createContext("/download", new DownloadHandler(uploadPool));
             //httpServer.createContext("/dekstop-upload-request", new DesktopUploadRequestHandler(sessionManager));
             //httpServer.createContext("/desktop-upload", new DesktopUploadHandler(sessionManager));
 
@@ -81,5 +110,15 @@ public class HttpServerManager {
         } finally {
             httpServer = null;
         }
+
+        if (threadPool != null) {
+            threadPool.shutdownNow();
+            threadPool = null;
+        }
+
+        if (uploadPool != null) {
+            uploadPool.shutdownNow();
+            uploadPool = null;
+        }
     }
 }
@@ -27,10 +27,11 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.concurrent.Future;
 
 import javax.swing.JPanel;
 
-import com.frostwire.gui.library.tags.TagsReader;
+import com.frostwire.gui.library.tags.ArtworkService;
 import com.limegroup.gnutella.gui.GUIMediator;
 
 /**
@@ -44,7 +45,8 @@ public final class LibraryCoverArt extends JPanel {
     private final Image defaultCoverArt;
 
     private Image coverArtImage;
-    private File file;
+    private volatile File file;
+    private Future<?> pending;
 
     public LibraryCoverArt() {
         background = new BufferedImage(350, 350, BufferedImage.TYPE_INT_ARGB);
@@ -59,34 +61,38 @@ public final class LibraryCoverArt extends JPanel {
     }
 
     /**
-     * Async
+     * Async, the default cover art is shown until the thumbnail is ready.
      * @param file
      */
-    public void setFile(final File file) {
+    public synchronized void setFile(final File file) {
         if (this.file != null && file != null && this.file.equals(file)) {
             return;
         }
         this.file = file;
-        Thread t = new Thread(new Runnable() {
-            public void run() {
-                Image image = retrieveImage(file);
-                if (file != null && file.equals(LibraryCoverArt.this.file)) {
-                    setPrivateImage(image);
+        cancelPending();
+
+        showImage(null);
+
+        if (file != null) {
+            pending = ArtworkService.instance().load(file, new ArtworkService.Listener() {
+                public void onArtwork(final File f, final BufferedImage thumbnail) {
+                    GUIMediator.safeInvokeLater(new Runnable() {
+                        public void run() {
+                            if (f.equals(LibraryCoverArt.this.file)) {
+                                setPrivateImage(thumbnail);
+                            }
+                        }
+                    });
                 }
-            }
-        }, "Cover Art extract");
-        t.setDaemon(true);
-        t.start();
+            });
+        }
     }
 
-    public void setDefault() {
+    public synchronized void setDefault() {
         this.file = null;
-        new Thread(new Runnable() {
-            public void run() {
-                Image image = retrieveImage(file);
-                setPrivateImage(image);
-            }
-        }).start();
+        cancelPending();
+
+        showImage(null);
     }
 
     @Override
@@ -95,18 +101,19 @@ public final class LibraryCoverArt extends JPanel {
         g.drawImage(background, 0, 0, null);
     }
 
-    /**
-     * Synchronous.
-     * @param file
-     * @return
-     */
-    private Image retrieveImage(File file) {
-        if (file == null) {
-            return defaultCoverArt;
+    private void cancelPending() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
         }
-        Image image = new TagsReader(file).getArtwork();
+    }
 
-        return image;
+    private void showImage(final Image image) {
+        GUIMediator.safeInvokeLater(new Runnable() {
+            public void run() {
+                setPrivateImage(image);
+            }
+        });
     }
 
     private void setPrivateImage(Image image) {
@@ -0,0 +1,697 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.library;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.limewire.concurrent.ExecutorsHelper;
+import org.limewire.util.CommonUtils;
+
+import com.limegroup.gnutella.settings.LibrarySettings;
+import com.limegroup.gnutella.settings.SharingSettings;
+
+/**
+ * Index of the files in the library folders, so searching the library
+ * doesn't walk the file system on every keystroke.
+ * <p>
+ * The index is saved to disk and loaded on start, so it's usable right away.
+ * A full scan reconciles it with the file system at start and every few
+ * minutes, in between a WatchService on every indexed folder keeps it
+ * current. The scan also covers what the watcher can't, like folders over
+ * the platform watch limit or overflowed events.
+ * <p>
+ * Names are kept per folder and normalized the same way the search tokens
+ * are. Only non ASCII names keep a normalized copy, ASCII ones are matched
+ * ignoring case.
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public final class LibraryFileIndex {
+
+    private static final Log LOG = LogFactory.getLog(LibraryFileIndex.class);
+
+    private static final int VERSION = 1;
+
+    private static final long RECONCILE_INTERVAL = 10 * 60 * 1000; // 10 minutes
+    private static final long SAVE_INTERVAL = 60 * 1000; // 1 minute
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    private static LibraryFileIndex INSTANCE;
+
+    public synchronized static LibraryFileIndex instance() {
+        if (INSTANCE == null) {
+            INSTANCE = new LibraryFileIndex();
+        }
+        return INSTANCE;
+    }
+
+    private final File file;
+    private final Map<String, Folder> folders;
+    private final Map<WatchKey, Path> keys;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean reconcilePending;
+
+    private volatile Set<File> roots;
+    private volatile Set<File> excluded;
+    private volatile boolean ready;
+
+    // only touched by the executor thread
+    private boolean dirty;
+    private boolean watchLimitReached;
+    private WatchService watcher;
+
+    private LibraryFileIndex() {
+        this.file = new File(CommonUtils.getUserSettingsDir(), "library.idx");
+        this.folders = new ConcurrentHashMap<String, Folder>();
+        this.keys = new ConcurrentHashMap<WatchKey, Path>();
+        this.executor = new ScheduledThreadPoolExecutor(1, ExecutorsHelper.daemonThreadFactory("LibraryFileIndex"));
+        this.reconcilePending = new AtomicBoolean(false);
+        this.roots = Collections.emptySet();
+        this.excluded = Collections.emptySet();
+    }
+
+    /**
+     * Loads the saved index, starts watching and schedules the scans.
+     */
+    public void start() {
+        executor.execute(new Runnable() {
+            public void run() {
+                load();
+                startWatcher();
+            }
+        });
+
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                reconcile();
+            }
+        }, 0, RECONCILE_INTERVAL, TimeUnit.MILLISECONDS);
+
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                if (dirty) {
+                    save();
+                }
+            }
+        }, SAVE_INTERVAL, SAVE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the indexed files under dir whose normalized path contains all
+     * the tokens, or null if the index doesn't cover dir (yet) and the caller
+     * has to walk it.
+     */
+    public List<File> search(File dir, String[] tokens) {
+        if (!isCurrent()) {
+            return null;
+        }
+
+        String prefix = dir.getAbsolutePath();
+        if (!isCovered(prefix)) {
+            return null;
+        }
+
+        List<File> results = new ArrayList<File>();
+        String[] remaining = new String[tokens.length];
+
+        for (Folder folder : folders.values()) {
+            if (!isUnder(folder.path, prefix)) {
+                continue;
+            }
+
+            // tokens in the folder path match all its files
+            int n = 0;
+            for (String token : tokens) {
+                if (!contains(folder.path, folder.normalized, token)) {
+                    remaining[n++] = token;
+                }
+            }
+
+            for (Entry entry : folder.files.values()) {
+                if (matches(folder, entry, remaining, n)) {
+                    results.add(new File(folder.path, entry.name));
+                }
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * True if the file is in the index, meaning it exists and isn't hidden as
+     * of the last change the index saw.
+     */
+    public boolean contains(File f) {
+        Folder folder = folders.get(f.getParent());
+        return ready && folder != null && folder.files.containsKey(f.getName());
+    }
+
+    /**
+     * True if the file is in the index and its normalized path contains all the tokens.
+     */
+    public boolean matches(File f, String[] tokens) {
+        Folder folder = folders.get(f.getParent());
+        Entry entry = folder != null ? folder.files.get(f.getName()) : null;
+        return ready && entry != null && matches(folder, entry, tokens, tokens.length);
+    }
+
+    /**
+     * Normalizes the text the way it's indexed: decomposed, without
+     * diacritics and in lower case.
+     */
+    public static String normalize(String text) {
+        String norm = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        norm = COMBINING_MARKS.matcher(norm).replaceAll("");
+        norm = norm.toLowerCase(Locale.US);
+
+        return norm;
+    }
+
+    /**
+     * The index is only used while it was built with the current folder settings,
+     * otherwise it asks for a scan and the callers walk the folders meanwhile.
+     */
+    private boolean isCurrent() {
+        if (ready && roots.equals(getRoots()) && excluded.equals(LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue())) {
+            return true;
+        }
+
+        requestReconcile();
+        return false;
+    }
+
+    private boolean isCovered(String path) {
+        for (File root : roots) {
+            if (isUnder(path, root.getAbsolutePath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isUnder(String path, String prefix) {
+        if (!path.startsWith(prefix)) {
+            return false;
+        }
+        return path.length() == prefix.length() || prefix.endsWith(File.separator) || path.charAt(prefix.length()) == File.separatorChar;
+    }
+
+    /**
+     * The path is folder + separator + name, so a token without a separator
+     * is either in the folder or in the name.
+     */
+    private static boolean matches(Folder folder, Entry entry, String[] tokens, int length) {
+        for (int i = 0; i < length; i++) {
+            String token = tokens[i];
+            if (contains(entry.name, entry.normalized, token) || contains(folder.path, folder.normalized, token)) {
+                continue;
+            }
+            if (token.indexOf(File.separatorChar) != -1) {
+                String path = folder.path + File.separator + entry.name;
+                if (contains(path, normalizeIfNeeded(path), token)) {
+                    continue;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean contains(String text, String normalized, String token) {
+        if (normalized != null) {
+            return normalized.contains(token);
+        }
+
+        // ASCII text, the normalized form is just the lower case
+        int n = token.length();
+        if (n == 0) {
+            return true;
+        }
+
+        char first = token.charAt(0);
+        char upper = first >= 'a' && first <= 'z' ? (char) (first - ('a' - 'A')) : first;
+        int max = text.length() - n;
+
+        for (int i = 0; i <= max; i++) {
+            char c = text.charAt(i);
+            if (c != first && c != upper) {
+                continue;
+            }
+            int j = 1;
+            while (j < n && toLowerCase(text.charAt(i + j)) == token.charAt(j)) {
+                j++;
+            }
+            if (j == n) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * Returns null for ASCII text, the normalized text otherwise.
+     */
+    private static String normalizeIfNeeded(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return normalize(text);
+            }
+        }
+        return null;
+    }
+
+    private static Set<File> getRoots() {
+        Set<File> dirs = new HashSet<File>(LibrarySettings.DIRECTORIES_TO_INCLUDE.getValue());
+        dirs.add(SharingSettings.TORRENT_DATA_DIR_SETTING.getValue());
+        dirs.add(SharingSettings.TORRENTS_DIR_SETTING.getValue());
+        dirs.removeAll(LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+        dirs.remove(null);
+        return dirs;
+    }
+
+    private void requestReconcile() {
+        if (reconcilePending.compareAndSet(false, true)) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    reconcile();
+                }
+            });
+        }
+    }
+
+    private void reconcile() {
+        reconcilePending.set(false);
+
+        try {
+            long start = System.currentTimeMillis();
+
+            Set<File> newRoots = getRoots();
+            Set<File> newExcluded = new HashSet<File>(LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+
+            Set<String> seen = new HashSet<String>();
+            for (File root : newRoots) {
+                if (root.isDirectory()) {
+                    walk(root.getAbsoluteFile().toPath(), newExcluded, seen);
+                }
+            }
+
+            for (Iterator<String> it = folders.keySet().iterator(); it.hasNext();) {
+                if (!seen.contains(it.next())) {
+                    it.remove();
+                    dirty = true;
+                }
+            }
+
+            for (Iterator<Map.Entry<WatchKey, Path>> it = keys.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<WatchKey, Path> e = it.next();
+                if (!folders.containsKey(e.getValue().toString())) {
+                    e.getKey().cancel();
+                    it.remove();
+                }
+            }
+
+            roots = newRoots;
+            excluded = newExcluded;
+            ready = true;
+
+            if (dirty) {
+                save();
+            }
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Library index reconciled, " + folders.size() + " folders in " + (System.currentTimeMillis() - start) + "ms");
+            }
+        } catch (Throwable e) {
+            LOG.error("Error reconciling the library index", e);
+        }
+    }
+
+    /**
+     * Indexes the folder tree under start, watching every folder and dropping
+     * the files that are gone from the folders it lists completely.
+     */
+    private void walk(final Path start, final Set<File> excludedFolders, final Set<String> seen) throws IOException {
+        final LinkedList<Set<String>> names = new LinkedList<Set<String>>();
+
+        Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(start) && (Files.isHidden(dir) || excludedFolders.contains(dir.toFile()))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                String path = dir.toString();
+                if (seen != null && !seen.add(path)) {
+                    // nested roots
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                if (!folders.containsKey(path)) {
+                    folders.put(path, new Folder(path));
+                    dirty = true;
+                }
+
+                register(dir);
+                names.push(new HashSet<String>());
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile() && !Files.isHidden(path)) {
+                    Folder folder = folders.get(path.getParent().toString());
+                    if (folder != null) {
+                        String name = path.getFileName().toString();
+                        if (folder.put(name, attrs.size(), attrs.lastModifiedTime().toMillis())) {
+                            dirty = true;
+                        }
+                        names.peek().add(name);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path path, IOException e) throws IOException {
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Set<String> visited = names.pop();
+                Folder folder = folders.get(dir.toString());
+                if (e == null && folder != null && folder.files.keySet().retainAll(visited)) {
+                    dirty = true;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void startWatcher() {
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+        } catch (Throwable e) {
+            LOG.warn("Unable to watch the library folders, relying on periodic scans", e);
+            return;
+        }
+
+        ExecutorsHelper.daemonThreadFactory("LibraryFileIndex-Watcher").newThread(new Runnable() {
+            public void run() {
+                watch();
+            }
+        }).start();
+    }
+
+    private void register(Path dir) {
+        if (watcher == null || watchLimitReached) {
+            return;
+        }
+
+        try {
+            keys.put(dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+        } catch (IOException e) {
+            // most likely the inotify watches limit, the periodic scan takes care of the rest
+            watchLimitReached = true;
+            LOG.warn("Unable to watch more library folders (" + keys.size() + " watched)", e);
+        }
+    }
+
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException e) {
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+
+            final Path dir = keys.get(key);
+            final List<WatchEvent<?>> events = key.pollEvents();
+
+            if (!key.reset()) {
+                keys.remove(key);
+            }
+
+            if (dir != null) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        process(dir, events);
+                    }
+                });
+            }
+        }
+    }
+
+    private void process(Path dir, List<WatchEvent<?>> events) {
+        for (WatchEvent<?> event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                requestReconcile();
+                continue;
+            }
+
+            try {
+                update(dir.resolve((Path) event.context()));
+            } catch (Throwable e) {
+                LOG.warn("Error updating the library index for " + event.context(), e);
+            }
+        }
+    }
+
+    private void update(Path path) throws IOException {
+        String key = path.toString();
+        Folder parent = folders.get(path.getParent().toString());
+
+        if (parent == null) {
+            return;
+        }
+
+        if (Files.isDirectory(path)) {
+            if (!folders.containsKey(key) && !Files.isHidden(path) && !excluded.contains(path.toFile())) {
+                walk(path, excluded, null);
+            }
+        } else if (Files.isRegularFile(path)) {
+            if (!Files.isHidden(path)) {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                if (parent.put(path.getFileName().toString(), attrs.size(), attrs.lastModifiedTime().toMillis())) {
+                    dirty = true;
+                }
+            }
+        } else {
+            // gone, a file or a folder tree
+            if (parent.files.remove(path.getFileName().toString()) != null) {
+                dirty = true;
+            }
+            for (Iterator<String> it = folders.keySet().iterator(); it.hasNext();) {
+                if (isUnder(it.next(), key)) {
+                    it.remove();
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            if (in.readInt() != VERSION) {
+                return;
+            }
+
+            Set<File> savedRoots = readFiles(in);
+            Set<File> savedExcluded = readFiles(in);
+
+            int numFolders = in.readInt();
+            for (int i = 0; i < numFolders; i++) {
+                Folder folder = new Folder(in.readUTF());
+                int numFiles = in.readInt();
+                for (int j = 0; j < numFiles; j++) {
+                    folder.put(in.readUTF(), in.readLong(), in.readLong());
+                }
+                folders.put(folder.path, folder);
+            }
+
+            roots = savedRoots;
+            excluded = savedExcluded;
+            ready = true;
+        } catch (Throwable e) {
+            LOG.warn("Error loading the library index, it will be rebuilt", e);
+            folders.clear();
+        } finally {
+            close(in);
+        }
+    }
+
+    private void save() {
+        File tmp = new File(file.getPath() + ".tmp");
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+
+            out.writeInt(VERSION);
+            writeFiles(out, roots);
+            writeFiles(out, excluded);
+
+            List<Folder> list = new ArrayList<Folder>(folders.values());
+            out.writeInt(list.size());
+            for (Folder folder : list) {
+                List<Entry> entries = new ArrayList<Entry>(folder.files.values());
+                out.writeUTF(folder.path);
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    out.writeUTF(entry.name);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.lastModified);
+                }
+            }
+
+            out.close();
+            out = null;
+
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        } catch (Throwable e) {
+            LOG.warn("Error saving the library index", e);
+        } finally {
+            close(out);
+        }
+    }
+
+    private static Set<File> readFiles(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        Set<File> files = new HashSet<File>(n);
+        for (int i = 0; i < n; i++) {
+            files.add(new File(in.readUTF()));
+        }
+        return files;
+    }
+
+    private static void writeFiles(DataOutputStream out, Set<File> files) throws IOException {
+        out.writeInt(files.size());
+        for (File f : files) {
+            out.writeUTF(f.getPath());
+        }
+    }
+
+    private static void close(Closeable c) {
+        try {
+            if (c != null) {
+                c.close();
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static final class Folder {
+
+        public final String path;
+        public final String normalized;
+        public final Map<String, Entry> files;
+
+        public Folder(String path) {
+            this.path = path;
+            this.normalized = normalizeIfNeeded(path);
+            this.files = new ConcurrentHashMap<String, Entry>();
+        }
+
+        public boolean put(String name, long size, long lastModified) {
+            Entry entry = files.get(name);
+            if (entry == null || entry.size != size || entry.lastModified != lastModified) {
+                files.put(name, new Entry(name, size, lastModified));
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class Entry {
+
+        public final String name;
+        public final String normalized;
+        public final long size;
+        public final long lastModified;
+
+        public Entry(String name, long size, long lastModified) {
+            this.name = name;
+            this.normalized = normalizeIfNeeded(name);
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
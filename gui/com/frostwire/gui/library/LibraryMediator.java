@@ -142,6 +142,8 @@ public class LibraryMediator {
         ((DesktopUPnPManager) UPnPManager.instance()).start();
 
         clerk = new DeviceDiscoveryClerk();
+
+        LibraryFileIndex.instance().start();
     }
 
     public DeviceDiscoveryClerk getDeviceDiscoveryClerk() {
@@ -156,7 +158,7 @@ public class LibraryMediator {
         }
     }
 
-    public static Library getLibrary() {
+    public static synchronized Library getLibrary() {
         if (LIBRARY == null) {
             LIBRARY = new Library(LibrarySettings.LIBRARY_DATABASE);
         }
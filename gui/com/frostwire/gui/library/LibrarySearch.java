@@ -27,11 +27,10 @@ import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.io.File;
 import java.io.FileFilter;
-import java.text.Normalizer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Set;
 
 import javax.swing.AbstractAction;
@@ -324,12 +323,18 @@ public class LibrarySearch extends JPanel {
                 Set<File> ignore = TorrentUtil.getIgnorableFiles();
 
                 if (directoryHolder instanceof TorrentDirectoryHolder) {
-                    search(((TorrentDirectoryHolder) directoryHolder).getDirectory(), ignore, LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+                    File dir = ((TorrentDirectoryHolder) directoryHolder).getDirectory();
+                    if (!searchIndex(dir, ignore)) {
+                        search(dir, ignore, LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+                    }
                     return;
                 }
 
                 if (directoryHolder instanceof SavedFilesDirectoryHolder) {
-                    search(((SavedFilesDirectoryHolder) directoryHolder).getDirectory(), ignore, LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+                    File dir = ((SavedFilesDirectoryHolder) directoryHolder).getDirectory();
+                    if (!searchIndex(dir, ignore)) {
+                        search(dir, ignore, LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+                    }
                     return;
                 }
 
@@ -342,7 +347,7 @@ public class LibrarySearch extends JPanel {
 
                     if (dir.equals(LibrarySettings.USER_MUSIC_FOLDER) && directoryHolder instanceof MediaTypeSavedFilesDirectoryHolder && !((MediaTypeSavedFilesDirectoryHolder) directoryHolder).getMediaType().equals(MediaType.getAudioMediaType())) {
                         continue;
-                    } else {
+                    } else if (!searchIndex(dir, Collections.<File> emptySet())) {
                         search(dir, new HashSet<File>(), LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
                     }
                 }
@@ -352,6 +357,59 @@ public class LibrarySearch extends JPanel {
             }
         }
 
+        /**
+         * It looks up _query under haystackDir in the library file index.
+         * 
+         * @param haystackDir
+         * @param excludeFiles - Usually a list of incomplete files.
+         * @return false if the index can't answer yet and haystackDir has to be crawled.
+         */
+        private boolean searchIndex(File haystackDir, Set<File> excludeFiles) {
+            if (canceled) {
+                return true;
+            }
+
+            SearchFileFilter searchFilter = new SearchFileFilter(_query);
+            List<File> files = LibraryFileIndex.instance().search(haystackDir, searchFilter.getTokens());
+            if (files == null) {
+                return false;
+            }
+
+            final List<File> results = new ArrayList<File>(files.size());
+
+            for (File file : files) {
+                if (canceled) {
+                    return true;
+                }
+
+                if (excludeFiles.contains(file)) {
+                    continue;
+                }
+
+                if (directoryHolder instanceof SavedFilesDirectoryHolder || directoryHolder.accept(file)) {
+                    results.add(file);
+                }
+            }
+
+            //Stop search if the user selected another item in the library tree
+            DirectoryHolder currentDirectoryHolder = LibraryMediator.instance().getLibraryExplorer().getSelectedDirectoryHolder();
+            if (!directoryHolder.equals(currentDirectoryHolder)) {
+                return true;
+            }
+
+            GUIMediator.safeInvokeLater(new Runnable() {
+                public void run() {
+                    LibraryMediator.instance().addFilesToLibraryTable(results);
+
+                    if (directoryHolder instanceof SavedFilesDirectoryHolder) {
+                        LibraryFilesTableMediator.instance().resetAudioPlayerFileView();
+                    }
+                }
+            });
+
+            return true;
+        }
+
         /**
          * It searches _query in haystackDir.
          * 
@@ -428,6 +486,7 @@ public class LibrarySearch extends JPanel {
 
             final List<File> results = new ArrayList<File>();
             SearchFileFilter searchFilter = new SearchFileFilter(_query);
+            LibraryFileIndex index = LibraryFileIndex.instance();
 
             for (File file : cache) {
                 if (canceled) {
@@ -442,6 +501,14 @@ public class LibrarySearch extends JPanel {
                 }
                 /////
 
+                // indexed files are known to be visible and are already normalized
+                if (index.contains(file)) {
+                    if (index.matches(file, searchFilter.getTokens())) {
+                        results.add(file);
+                    }
+                    continue;
+                }
+
                 if (file.isHidden()) {
                     continue;
                 }
@@ -465,7 +532,11 @@ public class LibrarySearch extends JPanel {
         private final String[] _tokens;
 
         public SearchFileFilter(String query) {
-            _tokens = StringUtils.removeDoubleSpaces(normalize(query)).split(" ");
+            _tokens = StringUtils.removeDoubleSpaces(LibraryFileIndex.normalize(query)).split(" ");
+        }
+
+        public String[] getTokens() {
+            return _tokens;
         }
 
         public boolean accept(File pathname) {
@@ -483,7 +554,7 @@ public class LibrarySearch extends JPanel {
                 return true;
             }
 
-            String name = normalize(pathname.getAbsolutePath());
+            String name = LibraryFileIndex.normalize(pathname.getAbsolutePath());
 
             for (String token : _tokens) {
                 if (!name.contains(token)) {
@@ -493,14 +564,6 @@ public class LibrarySearch extends JPanel {
 
             return true;
         }
-
-        private String normalize(String token) {
-            String norm = Normalizer.normalize(token, Normalizer.Form.NFKD);
-            norm = norm.replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
-            norm = norm.toLowerCase(Locale.US);
-
-            return norm;
-        }
     }
 
     private final class SearchPlaylistItemsRunnable extends SearchRunnable {
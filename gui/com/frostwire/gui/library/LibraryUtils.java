@@ -40,6 +40,7 @@ import org.limewire.util.FileUtils;
 import org.limewire.util.FilenameUtils;
 import org.limewire.util.StringUtils;
 
+import com.frostwire.alexandria.FileTags;
 import com.frostwire.alexandria.IcyInputStream;
 import com.frostwire.alexandria.InternetRadioStation;
 import com.frostwire.alexandria.Playlist;
@@ -49,7 +50,7 @@ import com.frostwire.alexandria.db.LibraryDatabase;
 import com.frostwire.gui.bittorrent.TorrentUtil;
 import com.frostwire.gui.library.LibraryPlaylistsTableTransferable.Item;
 import com.frostwire.gui.library.tags.TagsData;
-import com.frostwire.gui.library.tags.TagsReader;
+import com.frostwire.gui.library.tags.TagsService;
 import com.frostwire.gui.player.MediaPlayer;
 import com.limegroup.gnutella.gui.GUIMediator;
 import com.limegroup.gnutella.gui.I18n;
@@ -75,46 +76,105 @@ public class LibraryUtils {
 
     private static final ExecutorService executor;
 
+    private static final int PLAYLIST_ITEMS_BATCH_SIZE = 100;
+
     static {
         executor = ExecutorsHelper.newProcessingQueue("LibraryUtils-Executor");
     }
 
-    private static void addPlaylistItem(Playlist playlist, File file, boolean starred) {
-        addPlaylistItem(playlist, file, starred, -1);
-    }
+    /**
+     * Adds the files to the playlist in memory, starting at the given index. Their
+     * tags are read in parallel, one batch at a time, and each batch of items is
+     * saved as soon as it's ready.
+     * 
+     * @return the number of items added
+     */
+    private static int addPlaylistItems(Playlist playlist, List<File> files, boolean starred, int index, List<PlaylistItem> pending) {
+        int count = 0;
 
-    private static void addPlaylistItem(Playlist playlist, File file, boolean starred, int index) {
-        try {
-            LibraryMediator.instance().getLibrarySearch().pushStatus(I18n.tr("Importing") + " " + file.getName());
-            TagsData mt = new TagsReader(file).parse();
-            PlaylistItem item = playlist.newItem(file.getAbsolutePath(), file.getName(), file.length(), FileUtils.getFileExtension(file), mt.getTitle(), mt.getDuration(), mt.getArtist(), mt.getAlbum(), "",// TODO: cover art path
-                    mt.getBitrate(), mt.getComment(), mt.getGenre(), mt.getTrack(), mt.getYear(), starred);
-
-            List<PlaylistItem> items = playlist.getItems();
-            if (index != -1 && index < items.size()) {
-
-                // insert item
-                items.add(index, item);
-
-                // update all sort indexes from insertion point onwards
-                for (int i = index; i < items.size(); i++) {
-                    PlaylistItem cur_item = items.get(i);
-                    cur_item.setSortIndex(i + 1); //set index 1-based
-                    cur_item.save();
-                }
+        for (int from = 0; from < files.size() && !playlist.isDeleted(); from += PLAYLIST_ITEMS_BATCH_SIZE) {
+            List<File> batch = files.subList(from, Math.min(files.size(), from + PLAYLIST_ITEMS_BATCH_SIZE));
+            List<TagsData> tags;
 
-            } else {
-                items.add(item);
-                item.setSortIndex(items.size()); // set sort index to 1-based size
-                item.save();
+            try {
+                LibraryMediator.instance().getLibrarySearch().pushStatus(I18n.tr("Importing") + " " + batch.get(0).getName());
+                tags = TagsService.instance().parse(batch);
+            } finally {
+                LibraryMediator.instance().getLibrarySearch().revertStatus();
             }
 
-            if (isPlaylistSelected(playlist)) {
-                // refresh UI
-                LibraryMediator.instance().getLibraryPlaylists().refreshSelection();
+            for (int i = 0; i < batch.size() && !playlist.isDeleted(); i++) {
+                TagsData mt = tags.get(i);
+                if (mt == null) {
+                    // unreadable for now, the tags are read again when refreshed
+                    mt = new TagsData(0, "", FilenameUtils.getBaseName(batch.get(i).getName()), "", "", "", "", "", "");
+                }
+                addPlaylistItem(playlist, batch.get(i), mt, starred, index != -1 ? index + count : -1, pending);
+                count++;
             }
-        } finally {
-            LibraryMediator.instance().getLibrarySearch().revertStatus();
+        }
+
+        return count;
+    }
+
+    /**
+     * Adds the item to the playlist in memory, it's saved along with the other
+     * pending items once enough of them are collected.
+     */
+    private static void addPlaylistItem(Playlist playlist, File file, TagsData mt, boolean starred, int index, List<PlaylistItem> pending) {
+        PlaylistItem item = playlist.newItem(file.getAbsolutePath(), file.getName(), file.length(), FileUtils.getFileExtension(file), mt.getTitle(), mt.getDuration(), mt.getArtist(), mt.getAlbum(), "",// TODO: cover art path
+                mt.getBitrate(), mt.getComment(), mt.getGenre(), mt.getTrack(), mt.getYear(), starred);
+
+        List<PlaylistItem> items = playlist.getItems();
+        if (index != -1 && index < items.size()) {
+            items.add(index, item);
+        } else {
+            items.add(item);
+        }
+
+        pending.add(item);
+
+        if (pending.size() >= PLAYLIST_ITEMS_BATCH_SIZE) {
+            savePlaylistItems(playlist, pending);
+        }
+    }
+
+    /**
+     * Inserts the pending items and rewrites the sort indexes of the items they
+     * displaced, all in batches.
+     */
+    private static void savePlaylistItems(Playlist playlist, List<PlaylistItem> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<PlaylistItem> items = new ArrayList<PlaylistItem>(playlist.getItems());
+        List<PlaylistItem> shifted = new ArrayList<PlaylistItem>();
+        boolean changed = false;
+
+        for (int i = 0; i < items.size(); i++) {
+            PlaylistItem item = items.get(i);
+            boolean isNew = item.getId() == LibraryDatabase.OBJECT_NOT_SAVED_ID;
+
+            // everything after the first new item moved
+            changed = changed || isNew;
+
+            if (changed) {
+                item.setSortIndex(i + 1); // set index 1-based
+                if (!isNew) {
+                    shifted.add(item);
+                }
+            }
+        }
+
+        playlist.saveItems(pending);
+        playlist.saveSortIndexes(shifted);
+
+        pending.clear();
+
+        if (isPlaylistSelected(playlist)) {
+            // refresh UI
+            LibraryMediator.instance().getLibraryPlaylists().refreshSelection();
         }
     }
 
@@ -436,11 +496,19 @@ public class LibraryUtils {
     }
 
     private static void addToPlaylist(Playlist playlist, List<? extends AbstractLibraryTableDataLine<?>> lines) {
-        for (int i = 0; i < lines.size() && !playlist.isDeleted(); i++) {
-            AbstractLibraryTableDataLine<?> line = lines.get(i);
-            if (MediaPlayer.isPlayableFile(line.getFile())) {
-                LibraryUtils.addPlaylistItem(playlist, line.getFile(), false);
+        List<PlaylistItem> pending = new ArrayList<PlaylistItem>(PLAYLIST_ITEMS_BATCH_SIZE);
+
+        try {
+            List<File> files = new ArrayList<File>(lines.size());
+            for (AbstractLibraryTableDataLine<?> line : lines) {
+                if (MediaPlayer.isPlayableFile(line.getFile())) {
+                    files.add(line.getFile());
+                }
             }
+
+            addPlaylistItems(playlist, files, false, -1, pending);
+        } finally {
+            savePlaylistItems(playlist, pending);
         }
     }
 
@@ -449,17 +517,30 @@ public class LibraryUtils {
     }
 
     private static int addToPlaylist(Playlist playlist, File[] files, boolean starred, int index, Set<File> ignore) {
-        int count = 0;
-        for (int i = 0; i < files.length && !playlist.isDeleted(); i++) {
-            if (MediaPlayer.isPlayableFile(files[i]) && !ignore.contains(files[i])) {
-                LibraryUtils.addPlaylistItem(playlist, files[i], starred, index + count);
-                count++;
-            } else if (files[i].isDirectory()) {
-                count += addToPlaylist(playlist, files[i].listFiles(), starred, index + count, ignore);
-            }
+        List<PlaylistItem> pending = new ArrayList<PlaylistItem>(PLAYLIST_ITEMS_BATCH_SIZE);
+
+        try {
+            List<File> playable = new ArrayList<File>();
+            collectPlayableFiles(files, ignore, playable);
+
+            return addPlaylistItems(playlist, playable, starred, index, pending);
+        } finally {
+            savePlaylistItems(playlist, pending);
         }
+    }
 
-        return count;
+    private static void collectPlayableFiles(File[] files, Set<File> ignore, List<File> result) {
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (MediaPlayer.isPlayableFile(file) && !ignore.contains(file)) {
+                result.add(file);
+            } else if (file.isDirectory()) {
+                collectPlayableFiles(file.listFiles(), ignore, result);
+            }
+        }
     }
 
     private static void addToPlaylist(Playlist playlist, PlaylistItem[] playlistItems) {
@@ -481,7 +562,6 @@ public class LibraryUtils {
                 items.add(index + i, playlistItems[i]);
                 if (starred) {
                     playlistItems[i].setStarred(starred);
-                    playlistItems[i].save();
                 }
             }
             for (int i = 0; i < toRemove.size() && !playlist.isDeleted(); i++) {
@@ -495,14 +575,24 @@ public class LibraryUtils {
             }
 
             // reupdate sort indexes now that the ordering in the list is correct
-            items = playlist.getItems();
+            items = new ArrayList<PlaylistItem>(playlist.getItems());
+            List<PlaylistItem> added = new ArrayList<PlaylistItem>(playlistItems.length);
+            List<PlaylistItem> shifted = new ArrayList<PlaylistItem>(items.size());
             for (int i = 0; i < items.size(); i++) {
                 PlaylistItem item = items.get(i);
                 item.setSortIndex(i + 1); // set index 1-based
-                item.save();
+                if (item.getId() == LibraryDatabase.OBJECT_NOT_SAVED_ID) {
+                    added.add(item);
+                } else {
+                    shifted.add(item);
+                }
             }
 
+            playlist.saveItems(added);
+            playlist.saveSortIndexes(shifted);
+
         } else {
+            List<PlaylistItem> added = new ArrayList<PlaylistItem>(playlistItems.length);
             for (int i = 0; i < playlistItems.length && !playlist.isDeleted(); i++) {
 
                 playlistItems[i].setPlaylist(playlist);
@@ -513,8 +603,10 @@ public class LibraryUtils {
                     playlistItems[i].setStarred(starred);
                 }
 
-                playlistItems[i].save();
+                added.add(playlistItems[i]);
             }
+
+            playlist.saveItems(added);
         }
     }
 
@@ -636,14 +728,30 @@ public class LibraryUtils {
     public static void refreshID3Tags(final Playlist playlist, final List<PlaylistItem> items) {
         executor.execute(new Runnable() {
             public void run() {
-                for (PlaylistItem item : items) {
+                for (int from = 0; from < items.size(); from += PLAYLIST_ITEMS_BATCH_SIZE) {
+                    List<PlaylistItem> batch = items.subList(from, Math.min(items.size(), from + PLAYLIST_ITEMS_BATCH_SIZE));
                     try {
-                        LibraryMediator.instance().getLibrarySearch().pushStatus(I18n.tr("Refreshing") + " " + item.getTrackAlbum() + " - " + item.getTrackTitle());
-                        File file = new File(item.getFilePath());
-                        if (file.exists()) {
-                            TagsData mt = new TagsReader(file).parse();
-                            LibraryMediator.getLibrary().updatePlaylistItemProperties(item.getFilePath(), mt.getTitle(), mt.getArtist(), mt.getAlbum(), mt.getComment(), mt.getGenre(), mt.getTrack(), mt.getYear());
+                        PlaylistItem first = batch.get(0);
+                        LibraryMediator.instance().getLibrarySearch().pushStatus(I18n.tr("Refreshing") + " " + first.getTrackAlbum() + " - " + first.getTrackTitle());
+
+                        List<File> files = new ArrayList<File>(batch.size());
+                        for (PlaylistItem item : batch) {
+                            File file = new File(item.getFilePath());
+                            if (file.exists()) {
+                                files.add(file);
+                            }
+                        }
+
+                        List<TagsData> tags = TagsService.instance().parse(files);
+
+                        List<FileTags> updates = new ArrayList<FileTags>(files.size());
+                        for (int i = 0; i < files.size(); i++) {
+                            if (tags.get(i) != null) {
+                                updates.add(TagsService.toFileTags(files.get(i), tags.get(i)));
+                            }
                         }
+
+                        LibraryMediator.getLibrary().updatePlaylistItemProperties(updates);
                     } catch (Exception e) {
                         // ignore, skip
                     } finally {
@@ -822,8 +930,8 @@ public class LibraryUtils {
         for (int i = 0; i < items.size(); i++) {
             PlaylistItem item = items.get(i);
             item.setSortIndex(i + 1); // set index (1-based)
-            item.save();
         }
+        playlist.saveSortIndexes(items);
 
         // initiate UI refresh
         GUIMediator.safeInvokeLater(new Runnable() {
@@ -89,6 +89,12 @@ abstract class AbstractTagParser implements TagsParser {
         return new TagsData(duration, bitrate, title, artist, album, comment, genre, track, year);
     }
 
+    @Override
+    public BufferedImage getArtwork() {
+        byte[] data = getArtworkData();
+        return data != null ? imageFromData(data) : null;
+    }
+
     protected static BufferedImage imageFromData(byte[] data) {
         BufferedImage image = null;
         try {
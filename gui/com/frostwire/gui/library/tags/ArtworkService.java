@@ -0,0 +1,490 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+ 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.gui.library.tags;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.limewire.concurrent.ExecutorsHelper;
+import org.limewire.util.CommonUtils;
+
+import com.frostwire.gui.library.LibraryMediator;
+
+/**
+ * Thumbnails of the artwork embedded in audio files.
+ * 
+ * The artwork of a file is extracted only once, and its thumbnail is stored by
+ * the hash of the image data, so the tracks of an album that embed the same
+ * image share it. The hash of each file is kept in the library database, the
+ * thumbnails in a bounded folder, and the most recent of both in memory.
+ * 
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public final class ArtworkService {
+
+    private static final Log LOG = LogFactory.getLog(ArtworkService.class);
+
+    /**
+     * The size of the library cover art panel.
+     */
+    public static final int THUMBNAIL_SIZE = 350;
+
+    private static final int MAX_MEMORY_THUMBNAILS = 32;
+    private static final int MAX_MEMORY_FILES = 1000;
+
+    private static final long MAX_DISK_CACHE_SIZE = 32 * 1024 * 1024;
+
+    private static final float JPEG_QUALITY = 0.9f;
+
+    private static final String NO_ARTWORK = "";
+
+    private static final ArtworkService INSTANCE = new ArtworkService();
+
+    private final File folder;
+    private final ExecutorService executor;
+
+    private final Map<String, FileArtwork> files;
+    private final Map<String, BufferedImage> thumbnails;
+
+    // only touched while holding the folder monitor
+    private long folderSize = -1;
+
+    private ArtworkService() {
+        this.folder = new File(CommonUtils.getUserSettingsDir(), "artwork");
+        this.executor = ExecutorsHelper.newProcessingQueue("ArtworkService");
+
+        this.files = new LinkedHashMap<String, FileArtwork>(16, 0.75f, true) {
+            private static final long serialVersionUID = 5135914707367383211L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FileArtwork> eldest) {
+                return size() > MAX_MEMORY_FILES;
+            }
+        };
+        this.thumbnails = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true) {
+            private static final long serialVersionUID = -5766387325787441418L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+                return size() > MAX_MEMORY_THUMBNAILS;
+            }
+        };
+    }
+
+    public static ArtworkService instance() {
+        return INSTANCE;
+    }
+
+    /**
+     * If the thumbnail of the file is in memory, the listener is notified right
+     * away in the calling thread. If not, it's notified by the artwork thread
+     * once the thumbnail is ready.
+     * 
+     * @return the pending task, to cancel it if the thumbnail is no longer
+     *         needed, or null if the listener was already notified
+     */
+    public Future<?> load(final File file, final Listener listener) {
+        FileArtwork artwork;
+
+        synchronized (files) {
+            artwork = files.get(file.getAbsolutePath());
+        }
+
+        if (artwork != null && artwork.isValid(file)) {
+            if (artwork.hash.equals(NO_ARTWORK)) {
+                listener.onArtwork(file, null);
+                return null;
+            }
+
+            BufferedImage thumbnail;
+
+            synchronized (thumbnails) {
+                thumbnail = thumbnails.get(artwork.hash);
+            }
+
+            if (thumbnail != null) {
+                listener.onArtwork(file, thumbnail);
+                return null;
+            }
+        }
+
+        return executor.submit(new Runnable() {
+            public void run() {
+                listener.onArtwork(file, getThumbnail(file));
+            }
+        });
+    }
+
+    /**
+     * Synchronous.
+     * 
+     * @return the thumbnail, or null if the file has no artwork
+     */
+    public BufferedImage getThumbnail(File file) {
+        String path = file.getAbsolutePath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        String hash = getHash(path, size, lastModified);
+        BufferedImage thumbnail = null;
+
+        if (hash != null) {
+            if (hash.equals(NO_ARTWORK)) {
+                return null;
+            }
+
+            thumbnail = getCachedThumbnail(hash);
+        }
+
+        if (thumbnail == null) {
+            // first time, or the thumbnail was removed from the folder
+            byte[] data = new TagsReader(file).getArtworkData();
+
+            hash = NO_ARTWORK;
+
+            if (data != null) {
+                String dataHash = hash(data);
+
+                // another track of the same album could have extracted it
+                thumbnail = getCachedThumbnail(dataHash);
+
+                if (thumbnail == null) {
+                    thumbnail = createThumbnail(data);
+
+                    if (thumbnail != null) {
+                        storeThumbnail(dataHash, thumbnail);
+                    }
+                }
+
+                if (thumbnail != null) {
+                    hash = dataHash;
+                }
+            }
+
+            putHash(path, size, lastModified, hash);
+        }
+
+        return thumbnail;
+    }
+
+    private String getHash(String path, long size, long lastModified) {
+        FileArtwork artwork;
+
+        synchronized (files) {
+            artwork = files.get(path);
+        }
+
+        if (artwork != null && artwork.size == size && artwork.lastModified == lastModified) {
+            return artwork.hash;
+        }
+
+        String hash = null;
+
+        try {
+            hash = LibraryMediator.getLibrary().getArtworkHash(path, size, lastModified);
+        } catch (Throwable e) {
+            LOG.warn("Unable to read artwork hash of file: " + path, e);
+        }
+
+        if (hash != null) {
+            synchronized (files) {
+                files.put(path, new FileArtwork(size, lastModified, hash));
+            }
+        }
+
+        return hash;
+    }
+
+    private void putHash(String path, long size, long lastModified, String hash) {
+        synchronized (files) {
+            files.put(path, new FileArtwork(size, lastModified, hash));
+        }
+
+        try {
+            LibraryMediator.getLibrary().saveArtworkHash(path, size, lastModified, hash);
+        } catch (Throwable e) {
+            LOG.warn("Unable to save artwork hash of file: " + path, e);
+        }
+    }
+
+    private BufferedImage getCachedThumbnail(String hash) {
+        BufferedImage thumbnail;
+
+        synchronized (thumbnails) {
+            thumbnail = thumbnails.get(hash);
+        }
+
+        if (thumbnail == null) {
+            thumbnail = readThumbnail(hash);
+
+            if (thumbnail != null) {
+                synchronized (thumbnails) {
+                    thumbnails.put(hash, thumbnail);
+                }
+            }
+        }
+
+        return thumbnail;
+    }
+
+    private BufferedImage readThumbnail(String hash) {
+        synchronized (folder) {
+            File f = getThumbnailFile(hash, false);
+            if (!f.exists()) {
+                f = getThumbnailFile(hash, true);
+            }
+
+            if (!f.exists()) {
+                return null;
+            }
+
+            try {
+                BufferedImage thumbnail = ImageIO.read(f);
+
+                // the eldest are removed first
+                f.setLastModified(System.currentTimeMillis());
+
+                return thumbnail;
+            } catch (Throwable e) {
+                LOG.warn("Unable to read thumbnail: " + f, e);
+                f.delete();
+                return null;
+            }
+        }
+    }
+
+    private void storeThumbnail(String hash, BufferedImage thumbnail) {
+        synchronized (thumbnails) {
+            thumbnails.put(hash, thumbnail);
+        }
+
+        synchronized (folder) {
+            File f = getThumbnailFile(hash, thumbnail.getColorModel().hasAlpha());
+
+            try {
+                folder.mkdirs();
+
+                if (thumbnail.getColorModel().hasAlpha()) {
+                    ImageIO.write(thumbnail, "png", f);
+                } else {
+                    writeJPEG(thumbnail, f);
+                }
+
+                trimFolder(f.length());
+            } catch (Throwable e) {
+                LOG.warn("Unable to save thumbnail: " + f, e);
+                f.delete();
+            }
+        }
+    }
+
+    private File getThumbnailFile(String hash, boolean alpha) {
+        return new File(folder, hash + (alpha ? ".png" : ".jpg"));
+    }
+
+    /**
+     * Removes the least recently used thumbnails once the folder gets too big.
+     */
+    private void trimFolder(long added) {
+        if (folderSize < 0) {
+            folderSize = 0;
+            File[] list = folder.listFiles();
+            if (list != null) {
+                for (File f : list) {
+                    folderSize += f.length();
+                }
+            }
+        } else {
+            folderSize += added;
+        }
+
+        if (folderSize <= MAX_DISK_CACHE_SIZE) {
+            return;
+        }
+
+        File[] list = folder.listFiles();
+        if (list == null) {
+            return;
+        }
+
+        Arrays.sort(list, new Comparator<File>() {
+            public int compare(File o1, File o2) {
+                long m1 = o1.lastModified();
+                long m2 = o2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+
+        // leave some room, so it doesn't happen on every new thumbnail
+        for (int i = 0; i < list.length && folderSize > MAX_DISK_CACHE_SIZE * 3 / 4; i++) {
+            long length = list[i].length();
+            if (list[i].delete()) {
+                folderSize -= length;
+            }
+        }
+    }
+
+    /**
+     * Decodes the image already scaled down, only every n-th pixel of the big
+     * images is read.
+     */
+    private static BufferedImage createThumbnail(byte[] data) {
+        BufferedImage image = null;
+
+        try {
+            ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data));
+
+            try {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+
+                if (readers.hasNext()) {
+                    ImageReader reader = readers.next();
+
+                    try {
+                        reader.setInput(in, true, true);
+
+                        int step = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / THUMBNAIL_SIZE);
+
+                        ImageReadParam param = reader.getDefaultReadParam();
+                        param.setSourceSubsampling(step, step, 0, 0);
+
+                        image = reader.read(0, param);
+                    } finally {
+                        reader.dispose();
+                    }
+                }
+            } finally {
+                in.close();
+            }
+        } catch (Throwable e) {
+            // CMYK jpegs and the like, see below
+        }
+
+        if (image == null) {
+            image = AbstractTagParser.imageFromData(data);
+        }
+
+        return image != null ? scale(image) : null;
+    }
+
+    private static BufferedImage scale(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean alpha = image.getColorModel().hasAlpha();
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        if (Math.max(width, height) <= THUMBNAIL_SIZE && image.getType() == type) {
+            return image;
+        }
+
+        double factor = Math.min(1.0, THUMBNAIL_SIZE / (double) Math.max(width, height));
+        int w = Math.max(1, (int) Math.round(width * factor));
+        int h = Math.max(1, (int) Math.round(height * factor));
+
+        BufferedImage thumbnail = new BufferedImage(w, h, type);
+
+        Graphics2D g2 = thumbnail.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2.drawImage(image, 0, 0, w, h, null);
+        g2.dispose();
+
+        return thumbnail;
+    }
+
+    private static void writeJPEG(BufferedImage image, File f) throws Exception {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageOutputStream out = ImageIO.createImageOutputStream(f);
+
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+            out.close();
+        }
+    }
+
+    private static String hash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+
+            return sb.toString();
+        } catch (Exception e) {
+            throw new RuntimeException(e); // SHA-1 is always there
+        }
+    }
+
+    public interface Listener {
+
+        /**
+         * @param thumbnail null if the file has no artwork
+         */
+        public void onArtwork(File file, BufferedImage thumbnail);
+    }
+
+    private static final class FileArtwork {
+
+        public final long size;
+        public final long lastModified;
+        public final String hash;
+
+        public FileArtwork(long size, long lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        public boolean isValid(File file) {
+            return size == file.length() && lastModified == file.lastModified();
+        }
+    }
+}
@@ -17,7 +17,6 @@
 
 package com.frostwire.gui.library.tags;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.List;
 
@@ -43,10 +42,10 @@ class FlacParser extends JaudiotaggerParser {
     }
 
     @Override
-    public BufferedImage getArtwork() {
-        BufferedImage image = super.getArtwork();
+    public byte[] getArtworkData() {
+        byte[] data = super.getArtworkData();
 
-        if (image == null) {
+        if (data == null) {
             try {
                 AudioFile audioFile = AudioFileIO.read(file);
                 FlacTag tag = (FlacTag) audioFile.getTag();
@@ -54,8 +53,7 @@ class FlacParser extends JaudiotaggerParser {
                     List<MetadataBlockDataPicture> images = tag.getImages();
                     if (images != null && !images.isEmpty()) {
                         MetadataBlockDataPicture picture = images.get(0);
-                        byte[] data = picture.getImageData();
-                        image = imageFromData(data);
+                        data = picture.getImageData();
                     }
                 }
             } catch (Throwable e) {
@@ -63,6 +61,6 @@ class FlacParser extends JaudiotaggerParser {
             }
         }
 
-        return image;
+        return data;
     }
 }
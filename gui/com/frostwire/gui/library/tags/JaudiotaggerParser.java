@@ -17,7 +17,6 @@
 
 package com.frostwire.gui.library.tags;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
 
 import org.apache.commons.logging.Log;
@@ -80,8 +79,8 @@ class JaudiotaggerParser extends AbstractTagParser {
     }
 
     @Override
-    public BufferedImage getArtwork() {
-        BufferedImage data = null;
+    public byte[] getArtworkData() {
+        byte[] data = null;
 
         try {
             AudioFile audioFile = fileReader != null ? fileReader.read(file) : AudioFileIO.read(file);
@@ -89,8 +88,7 @@ class JaudiotaggerParser extends AbstractTagParser {
             if (tag != null) {
                 Artwork artwork = audioFile.getTag().getFirstArtwork();
                 if (artwork != null) {
-                    byte[] imageData = artwork.getBinaryData();
-                    data = imageFromData(imageData);
+                    data = artwork.getBinaryData();
                 }
             }
         } catch (Exception e) {
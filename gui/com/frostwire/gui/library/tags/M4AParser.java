@@ -17,7 +17,6 @@
 
 package com.frostwire.gui.library.tags;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
 
 import org.apache.commons.logging.Log;
@@ -43,28 +42,27 @@ class M4AParser extends JaudiotaggerParser {
     }
 
     @Override
-    public BufferedImage getArtwork() {
-        BufferedImage image = super.getArtwork();
+    public byte[] getArtworkData() {
+        byte[] data = super.getArtworkData();
 
-        if (image == null) {
+        if (data == null) {
             try {
                 AudioFile audioFile = AudioFileIO.read(file);
                 Mp4Tag mp4tag = (Mp4Tag) audioFile.getTag();
                 if (mp4tag != null) {
                     Mp4TagField artField = mp4tag.getFirstField(Mp4FieldKey.ARTWORK);
                     if (artField != null) {
-                        byte[] data = artField.getRawContentDataOnly();
-                        image = imageFromData(data);
+                        data = artField.getRawContentDataOnly();
                     }
                 }
-                if (image == null) { // one more try
-                    image = MP4Parser.getArtworkFromMP4(file);
+                if (data == null) { // one more try
+                    data = MP4Parser.getArtworkDataFromMP4(file);
                 }
             } catch (Throwable e) {
                 LOG.error("Unable to read cover art from m4a");
             }
         }
 
-        return image;
+        return data;
     }
 }
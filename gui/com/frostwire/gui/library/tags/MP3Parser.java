@@ -17,7 +17,6 @@
 
 package com.frostwire.gui.library.tags;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
 
 import org.apache.commons.logging.Log;
@@ -43,18 +42,17 @@ class MP3Parser extends JaudiotaggerParser {
     }
 
     @Override
-    public BufferedImage getArtwork() {
-        BufferedImage image = super.getArtwork();
+    public byte[] getArtworkData() {
+        byte[] data = super.getArtworkData();
 
-        if (image == null) {
+        if (data == null) {
             try {
                 MP3File mp3 = new MP3File(file.getAbsoluteFile());
                 if (mp3.hasID3v2Tag()) {
                     AbstractID3v2Tag tag = mp3.getID3v2Tag();
                     Artwork artwork = tag.getFirstArtwork();
                     if (artwork != null) {
-                        byte[] data = artwork.getBinaryData();
-                        image = imageFromData(data);
+                        data = artwork.getBinaryData();
                     }
                 }
             } catch (Throwable e) {
@@ -62,7 +60,7 @@ class MP3Parser extends JaudiotaggerParser {
             }
         }
 
-        return image;
+        return data;
     }
 
     protected String getTitle(AudioFile audioFile) {
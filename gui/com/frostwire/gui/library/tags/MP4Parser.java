@@ -17,8 +17,6 @@
 
 package com.frostwire.gui.library.tags;
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
@@ -27,9 +25,6 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.util.List;
 
-import javax.imageio.IIOException;
-import javax.imageio.ImageIO;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -118,12 +113,12 @@ class MP4Parser extends AbstractTagParser {
     }
 
     @Override
-    public BufferedImage getArtwork() {
-        return getArtworkFromMP4(file);
+    public byte[] getArtworkData() {
+        return getArtworkDataFromMP4(file);
     }
 
-    static BufferedImage getArtworkFromMP4(File file) {
-        BufferedImage image = null;
+    static byte[] getArtworkDataFromMP4(File file) {
+        byte[] imageData = null;
 
         try {
             FileInputStream is = new FileInputStream(file);
@@ -147,15 +142,8 @@ class MP4Parser extends AbstractTagParser {
                 AppleDataBox data = (AppleDataBox) Path.getPath(iso.getMovieBox(), "/moov/udta/meta/ilst/covr/data");
                 data.parseDetails();
                 if (data != null) {
-                    byte[] imageData = data.getData();
-                    if ((data.getFlags() & 0xd) == 0xd) { // jpg
-                        image = imageFromData(imageData);
-                    } else if ((data.getFlags() & 0xe) == 0xe) { // png
-                        try {
-                            image = ImageIO.read(new ByteArrayInputStream(imageData, 0, imageData.length));
-                        } catch (IIOException e) {
-                            LOG.warn("Unable to decode png image from data tag");
-                        }
+                    if ((data.getFlags() & 0xd) == 0xd || (data.getFlags() & 0xe) == 0xe) { // jpg or png
+                        imageData = data.getData();
                     }
                 }
             } finally {
@@ -167,7 +155,7 @@ class MP4Parser extends AbstractTagParser {
             //LOG.error("Unable to read cover art from mp4 file: " + file);
         }
 
-        return image;
+        return imageData;
     }
 
     private int getDuration(IsoFile iso) {
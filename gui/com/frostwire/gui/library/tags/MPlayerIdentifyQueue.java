@@ -0,0 +1,178 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+ 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.gui.library.tags;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.limewire.concurrent.ExecutorsHelper;
+
+import com.frostwire.gui.mplayer.MPlayer;
+
+/**
+ * Identifies the files queued by the parser threads with as few mplayer
+ * processes as possible. While one process runs, the files that arrive are
+ * queued, and all of them are identified by the next one.
+ * 
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+final class MPlayerIdentifyQueue {
+
+    private static final Log LOG = LogFactory.getLog(MPlayerIdentifyQueue.class);
+
+    private static final int MAX_BATCH_FILES = 32;
+
+    /**
+     * Keeps the command line well below the shortest OS limit (Windows).
+     */
+    private static final int MAX_BATCH_CHARS = 8192;
+
+    private static final MPlayerIdentifyQueue INSTANCE = new MPlayerIdentifyQueue();
+
+    private final LinkedList<Request> pending;
+    private final ExecutorService executor;
+
+    private boolean draining;
+
+    private MPlayerIdentifyQueue() {
+        this.pending = new LinkedList<Request>();
+        this.executor = ExecutorsHelper.newProcessingQueue("MPlayerIdentifyQueue");
+    }
+
+    public static MPlayerIdentifyQueue instance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Blocks until the file is identified.
+     * 
+     * @return the mplayer properties of the file, empty if they couldn't be read
+     */
+    public Map<String, String> identify(File file) throws InterruptedException {
+        return identify(Arrays.asList(file)).get(0);
+    }
+
+    /**
+     * Queues all the files at once, so they are identified together, and blocks
+     * until all of them are done.
+     * 
+     * @return the mplayer properties of each file at its position, empty if they couldn't be read
+     */
+    public List<Map<String, String>> identify(List<File> files) throws InterruptedException {
+        List<Request> requests = new ArrayList<Request>(files.size());
+
+        for (File file : files) {
+            requests.add(new Request(file.getAbsolutePath()));
+        }
+
+        synchronized (pending) {
+            pending.addAll(requests);
+
+            if (!draining && !pending.isEmpty()) {
+                draining = true;
+                executor.execute(new Runnable() {
+                    public void run() {
+                        drain();
+                    }
+                });
+            }
+        }
+
+        List<Map<String, String>> result = new ArrayList<Map<String, String>>(requests.size());
+
+        for (Request request : requests) {
+            request.done.await();
+            result.add(request.properties != null ? request.properties : new HashMap<String, String>());
+        }
+
+        return result;
+    }
+
+    private void drain() {
+        List<Request> batch;
+
+        while (!(batch = nextBatch()).isEmpty()) {
+            try {
+                List<String> paths = new ArrayList<String>(batch.size());
+                for (Request request : batch) {
+                    paths.add(request.path);
+                }
+
+                List<Map<String, String>> result = MPlayer.getProperties(paths);
+
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).properties = result.get(i);
+                }
+            } catch (Throwable e) {
+                LOG.warn("Unable to identify files with mplayer", e);
+            } finally {
+                for (Request request : batch) {
+                    request.done.countDown();
+                }
+            }
+        }
+    }
+
+    private List<Request> nextBatch() {
+        List<Request> batch = new ArrayList<Request>();
+        int chars = 0;
+
+        synchronized (pending) {
+            while (!pending.isEmpty() && batch.size() < MAX_BATCH_FILES) {
+                Request request = pending.getFirst();
+
+                if (!batch.isEmpty() && chars + request.path.length() > MAX_BATCH_CHARS) {
+                    break;
+                }
+
+                batch.add(pending.removeFirst());
+                chars += request.path.length() + 1;
+            }
+
+            if (batch.isEmpty()) {
+                draining = false;
+            }
+        }
+
+        return batch;
+    }
+
+    private static final class Request {
+
+        public final String path;
+        public final CountDownLatch done;
+
+        public volatile Map<String, String> properties;
+
+        public Request(String path) {
+            this.path = path;
+            this.done = new CountDownLatch(1);
+        }
+    }
+}
@@ -17,15 +17,14 @@
 
 package com.frostwire.gui.library.tags;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import com.frostwire.gui.mplayer.MPlayer;
-
 /**
  * 
  * @author aldenml
@@ -44,39 +43,87 @@ class MPlayerParser extends AbstractTagParser {
         TagsData data = null;
 
         try {
-            MPlayer mplayer = new MPlayer();
-
-            try {
-                Map<String, String> properties = mplayer.getProperties(file.getAbsolutePath());
+            // shares the mplayer process with the files other threads are parsing
+            data = parse(MPlayerIdentifyQueue.instance().identify(file));
+        } catch (Exception e) {
+            LOG.warn("Unable to parse file with mplayer: " + file, e);
+        }
 
-                int duration = parseDuration(properties.get("ID_LENGTH"));
-                String bitrate = parseBitrate(properties.get("ID_AUDIO_BITRATE"));
+        return data;
+    }
 
-                String title = properties.get("Title");
-                String artist = properties.get("Artist");
-                String album = properties.get("Album");
-                String comment = properties.get("Comment");
-                String genre = properties.get("Genre");
-                String track = properties.get("Track");
-                String year = properties.get("Year");
+    /**
+     * Parses all the files with as few mplayer processes as possible.
+     * 
+     * @return the tags of each file at its position, null for the ones that couldn't be parsed
+     */
+    public static List<TagsData> parse(List<File> files) {
+        List<TagsData> result = new ArrayList<TagsData>(files.size());
 
-                data = sanitize(duration, bitrate, title, artist, album, comment, genre, track, year);
+        try {
+            List<Map<String, String>> properties = MPlayerIdentifyQueue.instance().identify(files);
 
-            } finally {
-                mplayer.dispose();
+            for (int i = 0; i < files.size(); i++) {
+                result.add(new MPlayerParser(files.get(i)).parse(properties.get(i)));
             }
         } catch (Exception e) {
-            LOG.warn("Unable to parse file with mplayer: " + file, e);
+            LOG.warn("Unable to parse files with mplayer", e);
         }
 
-        return data;
+        while (result.size() < files.size()) {
+            result.add(null);
+        }
+
+        return result;
     }
 
     @Override
-    public BufferedImage getArtwork() {
+    public byte[] getArtworkData() {
         return null;
     }
 
+    /**
+     * @return null if mplayer failed to identify the file (timeout, error or no output for it)
+     */
+    private TagsData parse(Map<String, String> properties) {
+        if (!isIdentified(properties)) {
+            LOG.warn("Unable to identify file with mplayer: " + file);
+            return null;
+        }
+
+        TagsData data = null;
+
+        try {
+            int duration = parseDuration(properties.get("ID_LENGTH"));
+            String bitrate = parseBitrate(properties.get("ID_AUDIO_BITRATE"));
+
+            String title = properties.get("Title");
+            String artist = properties.get("Artist");
+            String album = properties.get("Album");
+            String comment = properties.get("Comment");
+            String genre = properties.get("Genre");
+            String track = properties.get("Track");
+            String year = properties.get("Year");
+
+            data = sanitize(duration, bitrate, title, artist, album, comment, genre, track, year);
+        } catch (Exception e) {
+            LOG.warn("Unable to parse file with mplayer: " + file, e);
+        }
+
+        return data;
+    }
+
+    private static boolean isIdentified(Map<String, String> properties) {
+        if (properties != null) {
+            for (String key : properties.keySet()) {
+                if (key.startsWith("ID_")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private int parseDuration(String durationInSecs) {
         try {
             return (int) Float.parseFloat(durationInSecs);
@@ -17,7 +17,6 @@
 
 package com.frostwire.gui.library.tags;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
 
 import org.apache.commons.logging.Log;
@@ -41,24 +40,21 @@ class OggParser extends JaudiotaggerParser {
     }
 
     @Override
-    public BufferedImage getArtwork() {
-        BufferedImage image = super.getArtwork();
+    public byte[] getArtworkData() {
+        byte[] data = super.getArtworkData();
 
-        if (image == null) {
+        if (data == null) {
             try {
                 AudioFile audioFile = AudioFileIO.read(file);
                 VorbisCommentTag tag = (VorbisCommentTag) audioFile.getTag();
                 if (tag != null) {
-                    byte[] data = tag.getArtworkBinaryData();
-                    if (data != null) {
-                        image = imageFromData(data);
-                    }
+                    data = tag.getArtworkBinaryData();
                 }
             } catch (Throwable e) {
                 LOG.error("Unable to read cover art from ogg");
             }
         }
 
-        return image;
+        return data;
     }
 }
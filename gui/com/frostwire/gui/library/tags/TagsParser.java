@@ -29,4 +29,11 @@ interface TagsParser {
     public TagsData parse();
 
     public BufferedImage getArtwork();
+
+    /**
+     * The encoded embedded image, without decoding it.
+     * 
+     * @return the image data, or null if there is no artwork
+     */
+    public byte[] getArtworkData();
 }
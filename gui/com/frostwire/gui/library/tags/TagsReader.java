@@ -19,6 +19,7 @@ package com.frostwire.gui.library.tags;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -57,6 +58,24 @@ public class TagsReader {
         return data;
     }
 
+    /**
+     * Same as {@link #parse()}, but stops short of mplayer. The files that need
+     * it are left for {@link MPlayerParser#parse(List)}, to share the process.
+     * 
+     * @return the tags, or null if mplayer is needed
+     */
+    TagsData parseWithoutMPlayer() {
+        TagsParser parser = new TagsParserFactory().getInstance(file);
+
+        if (parser == null || parser instanceof MPlayerParser) {
+            return null;
+        }
+
+        TagsData data = parser.parse();
+
+        return data == null || isEmpty(data) ? null : data;
+    }
+
     public BufferedImage getArtwork() {
         BufferedImage image = null;
 
@@ -70,6 +89,24 @@ public class TagsReader {
         return image;
     }
 
+    /**
+     * The embedded image as it's stored in the file, not decoded.
+     * 
+     * @return the image data, or null if there is no artwork
+     */
+    public byte[] getArtworkData() {
+        byte[] data = null;
+
+        TagsParser parser = new TagsParserFactory().getInstance(file);
+        if (parser != null) {
+            data = parser.getArtworkData();
+        } else {
+            LOG.warn("Unable to create tags parser for file: " + file);
+        }
+
+        return data;
+    }
+
     private boolean isEmpty(TagsData data) {
         return false; // default behavior for now
     }
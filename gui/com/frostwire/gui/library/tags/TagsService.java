@@ -0,0 +1,283 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+ 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.gui.library.tags;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.limewire.concurrent.ExecutorsHelper;
+
+import com.frostwire.alexandria.FileTags;
+import com.frostwire.gui.library.LibraryMediator;
+
+/**
+ * Reads the tags of audio files through a cache, so a file is only parsed
+ * again if its size or modification time changed.
+ * 
+ * The cache is persisted in the library database, the new entries are written
+ * in batches by a background thread. The recent ones are also kept in memory.
+ * 
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public final class TagsService {
+
+    private static final Log LOG = LogFactory.getLog(TagsService.class);
+
+    /**
+     * Parsing is mostly waiting for the disk (or mplayer), a couple of threads
+     * help even on a single core.
+     */
+    private static final int MAX_WORKERS = 4;
+    private static final int MIN_WORKERS = 2;
+
+    private static final int MAX_MEMORY_ENTRIES = 1000;
+
+    private static final TagsService INSTANCE = new TagsService();
+
+    private final ExecutorService workers;
+    private final ExecutorService writer;
+
+    private final Map<String, FileTags> memory;
+    private final List<FileTags> pendingWrites;
+
+    private boolean flushScheduled;
+
+    private TagsService() {
+        int size = Math.max(MIN_WORKERS, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()));
+
+        this.workers = ExecutorsHelper.newFixedSizeThreadPool(size, "TagsService-Worker");
+        this.writer = ExecutorsHelper.newProcessingQueue("TagsService-Writer");
+
+        this.memory = new LinkedHashMap<String, FileTags>(16, 0.75f, true) {
+            private static final long serialVersionUID = -3204416383286548213L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FileTags> eldest) {
+                return size() > MAX_MEMORY_ENTRIES;
+            }
+        };
+        this.pendingWrites = new ArrayList<FileTags>();
+    }
+
+    public static TagsService instance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Reads the tags of the file in the calling thread, unless they are cached.
+     * 
+     * @return the tags, or null if they couldn't be read
+     */
+    public TagsData parse(File file) {
+        String path = file.getAbsolutePath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        FileTags tags = getCached(path, size, lastModified);
+
+        if (tags != null) {
+            return toTagsData(tags);
+        }
+
+        TagsData data = new TagsReader(file).parse();
+
+        if (data != null) {
+            cache(toFileTags(path, size, lastModified, data));
+        }
+
+        return data;
+    }
+
+    /**
+     * Reads the tags of all the files with the worker threads, blocks until
+     * they are done. The files the tags parsers can't handle go to mplayer
+     * together, at the end.
+     * 
+     * @return the tags of each file at its position, null for the ones that couldn't be read
+     */
+    public List<TagsData> parse(List<File> files) {
+        List<Future<TagsData>> futures = new ArrayList<Future<TagsData>>(files.size());
+
+        for (final File file : files) {
+            futures.add(workers.submit(new Callable<TagsData>() {
+                public TagsData call() throws Exception {
+                    return parseWithoutMPlayer(file);
+                }
+            }));
+        }
+
+        List<TagsData> result = new ArrayList<TagsData>(files.size());
+        List<Integer> fallback = new ArrayList<Integer>();
+
+        for (int i = 0; i < futures.size(); i++) {
+            TagsData data = null;
+
+            try {
+                data = futures.get(i).get();
+            } catch (InterruptedException e) {
+                cancel(futures);
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable e) {
+                LOG.warn("Unable to read tags of file: " + files.get(i), e);
+            }
+
+            if (data == null) {
+                fallback.add(i);
+            }
+
+            result.add(data);
+        }
+
+        while (result.size() < files.size()) {
+            result.add(null);
+        }
+
+        if (!fallback.isEmpty() && !Thread.currentThread().isInterrupted()) {
+            List<File> fallbackFiles = new ArrayList<File>(fallback.size());
+            for (int i : fallback) {
+                fallbackFiles.add(files.get(i));
+            }
+
+            List<TagsData> fallbackResult = MPlayerParser.parse(fallbackFiles);
+
+            for (int j = 0; j < fallback.size(); j++) {
+                TagsData data = fallbackResult.get(j);
+
+                if (data != null) {
+                    cache(toFileTags(fallbackFiles.get(j), data));
+                }
+
+                result.set(fallback.get(j), data);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The tags in the form saved in the library database.
+     */
+    public static FileTags toFileTags(File file, TagsData data) {
+        return toFileTags(file.getAbsolutePath(), file.length(), file.lastModified(), data);
+    }
+
+    private static FileTags toFileTags(String path, long size, long lastModified, TagsData data) {
+        return new FileTags(path, size, lastModified, data.getDuration(), data.getBitrate(), data.getTitle(), data.getArtist(), data.getAlbum(), data.getComment(), data.getGenre(), data.getTrack(), data.getYear());
+    }
+
+    private static TagsData toTagsData(FileTags tags) {
+        return new TagsData(tags.getDuration(), tags.getBitrate(), tags.getTitle(), tags.getArtist(), tags.getAlbum(), tags.getComment(), tags.getGenre(), tags.getTrack(), tags.getYear());
+    }
+
+    private TagsData parseWithoutMPlayer(File file) {
+        String path = file.getAbsolutePath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        FileTags tags = getCached(path, size, lastModified);
+
+        if (tags != null) {
+            return toTagsData(tags);
+        }
+
+        TagsData data = new TagsReader(file).parseWithoutMPlayer();
+
+        if (data != null) {
+            cache(toFileTags(path, size, lastModified, data));
+        }
+
+        return data;
+    }
+
+    private FileTags getCached(String path, long size, long lastModified) {
+        FileTags tags;
+
+        synchronized (memory) {
+            tags = memory.get(path);
+        }
+
+        if (tags == null) {
+            try {
+                tags = LibraryMediator.getLibrary().getFileTags(path, size, lastModified);
+            } catch (Throwable e) {
+                LOG.warn("Unable to read cached tags of file: " + path, e);
+            }
+
+            if (tags != null) {
+                synchronized (memory) {
+                    memory.put(path, tags);
+                }
+            }
+        }
+
+        return tags != null && tags.getFileSize() == size && tags.getLastModified() == lastModified ? tags : null;
+    }
+
+    private void cache(FileTags tags) {
+        synchronized (memory) {
+            memory.put(tags.getFilePath(), tags);
+        }
+
+        synchronized (pendingWrites) {
+            pendingWrites.add(tags);
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                // the entries that arrive before it runs are written along
+                writer.execute(new Runnable() {
+                    public void run() {
+                        flush();
+                    }
+                });
+            }
+        }
+    }
+
+    private void flush() {
+        List<FileTags> tags;
+
+        synchronized (pendingWrites) {
+            tags = new ArrayList<FileTags>(pendingWrites);
+            pendingWrites.clear();
+            flushScheduled = false;
+        }
+
+        try {
+            LibraryMediator.getLibrary().saveFileTags(tags);
+        } catch (Throwable e) {
+            LOG.warn("Unable to save cached tags", e);
+        }
+    }
+
+    private static void cancel(List<Future<TagsData>> futures) {
+        for (Future<TagsData> f : futures) {
+            f.cancel(true);
+        }
+    }
+}
@@ -20,6 +20,8 @@ package com.frostwire.gui.mplayer;
 
 import java.awt.Dimension;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -699,31 +701,85 @@ public class MPlayer extends BaseMediaPlayer {
 	@Override
 	public Map<String, String> getProperties(String fileOrUrl) {
 		MPlayerInstance instance = new MPlayerInstance(null);
-		final Map<String, String> properties = new HashMap<String, String>();
-
-		instance.doGetProperties(fileOrUrl,
-				new MPlayerInstance.OutputConsumer() {
-					private String lastKey = null;
-
-					public void consume(String line) {
-						if (line.split("=").length < 2) {
-							return;
-						}						
-						
-						if (line.startsWith("ID_CLIP_INFO_NAME")) {
-							lastKey = line.split("=")[1];
-						} else if (line.startsWith("ID_CLIP_INFO_VALUE")) {
-							
-							if (lastKey != null) {
-								properties.put(lastKey, line.split("=")[1]);
-								lastKey = null;
-							}
-						} else if (line.startsWith("ID_")) {
-							String[] kv = line.split("=");
-							properties.put(kv[0], kv[1]);
-						}
+		PropertiesConsumer consumer = new PropertiesConsumer();
+
+		instance.doGetProperties(fileOrUrl, consumer);
+
+		Map<String, String> properties = consumer.getProperties(Arrays.asList(fileOrUrl)).get(0);
+		return properties != null ? properties : new HashMap<String, String>();
+	}
+
+	/**
+	 * Identifies all the files with a single mplayer process. The properties of
+	 * each file are at its position in the list, null if mplayer didn't get to it.
+	 */
+	public static List<Map<String, String>> getProperties(List<String> filesOrUrls) {
+		MPlayerInstance instance = new MPlayerInstance(null);
+		PropertiesConsumer consumer = new PropertiesConsumer();
+
+		instance.doGetProperties(filesOrUrls, consumer);
+
+		return consumer.getProperties(filesOrUrls);
+	}
+
+	private static final class PropertiesConsumer implements MPlayerInstance.OutputConsumer {
+
+		private final List<Map<String, String>> files = new ArrayList<Map<String, String>>();
+
+		private Map<String, String> properties = null;
+		private String lastKey = null;
+
+		public synchronized void consume(String line) {
+			if (line.split("=").length < 2) {
+				return;
+			}
+
+			if (properties == null || (line.startsWith("ID_FILENAME=") && properties.containsKey("ID_FILENAME"))) {
+				// the output of the next file
+				properties = new HashMap<String, String>();
+				files.add(properties);
+				lastKey = null;
+			}
+
+			if (line.startsWith("ID_CLIP_INFO_NAME")) {
+				lastKey = line.split("=")[1];
+			} else if (line.startsWith("ID_CLIP_INFO_VALUE")) {
+				
+				if (lastKey != null) {
+					properties.put(lastKey, line.split("=")[1]);
+					lastKey = null;
+				}
+			} else if (line.startsWith("ID_")) {
+				String[] kv = line.split("=");
+				properties.put(kv[0], kv[1]);
+			}
+		}
+
+		/**
+		 * Matches the output to the files by name, or by position if the names
+		 * were printed in some other encoding.
+		 */
+		public synchronized List<Map<String, String>> getProperties(List<String> filesOrUrls) {
+			List<Map<String, String>> result = new ArrayList<Map<String, String>>(filesOrUrls.size());
+
+			for (int i = 0; i < filesOrUrls.size(); i++) {
+				Map<String, String> match = null;
+
+				for (Map<String, String> p : files) {
+					if (filesOrUrls.get(i).equals(p.get("ID_FILENAME"))) {
+						match = p;
+						break;
 					}
-				});
-		return properties;
+				}
+
+				if (match == null && files.size() == filesOrUrls.size()) {
+					match = files.get(i);
+				}
+
+				result.add(match);
+			}
+
+			return result;
+		}
 	}
 }
@@ -987,12 +987,22 @@ MPlayerInstance
 	}
 
     public void doGetProperties(String fileOrUrl, final OutputConsumer _outputConsumer) {
+        doGetProperties(Arrays.asList(fileOrUrl), _outputConsumer);
+    }
+
+    /**
+     * Identifies all the files with a single mplayer process, they are opened in
+     * order and the output of each one starts with its ID_FILENAME line.
+     */
+    public void doGetProperties(List<String> filesOrUrls, final OutputConsumer _outputConsumer) {
         final OutputConsumer output_consumer = new OutputConsumer() {
             public void consume(String output) {
                 _outputConsumer.consume(output);
             }
         };
 
+        Process process = null;
+
         try {
             
             final CountDownLatch signal = new CountDownLatch(1);
@@ -1014,7 +1024,7 @@ MPlayerInstance
             cmdList.add("-frames");
             cmdList.add("0");
 
-            cmdList.add(fileOrUrl);
+            cmdList.addAll(filesOrUrls);
 
             String[] cmd = cmdList.toArray(new String[cmdList.size()]);
 
@@ -1022,7 +1032,10 @@ MPlayerInstance
             //printCommand(cmd);
 
             try {
-                InputStream stdOut = Runtime.getRuntime().exec(cmd).getInputStream();
+                // errors go to the same stream, an unread one could block a long batch
+                process = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+
+                InputStream stdOut = process.getInputStream();
 
                 final BufferedReader brStdOut = new BufferedReader(new InputStreamReader(stdOut));
 
@@ -1039,19 +1052,27 @@ MPlayerInstance
                             }
                         } catch (Exception e) {
                             //e.printStackTrace();
+                        } finally {
+                            // no need to wait for the timeout if mplayer died
+                            signal.countDown();
                         }
                     };
                 };
                 stdOutReader.setDaemon(true);
                 stdOutReader.start();
                 
-                signal.await(5, TimeUnit.SECONDS);
+                // a few seconds to start, plus one per file
+                signal.await(4 + filesOrUrls.size(), TimeUnit.SECONDS);
 
             } catch (Throwable e) {
 
                 e.printStackTrace();
             }
         } finally {
+            if (process != null) {
+                // it's done or stuck in some file
+                process.destroy();
+            }
         }
     }
 
@@ -53,7 +53,7 @@ import com.coremedia.iso.boxes.ContainerBox;
 import com.frostwire.alexandria.Playlist;
 import com.frostwire.alexandria.PlaylistItem;
 import com.frostwire.gui.library.LibraryMediator;
-import com.frostwire.gui.library.tags.TagsReader;
+import com.frostwire.gui.library.tags.TagsService;
 import com.frostwire.gui.mplayer.MPlayer;
 import com.frostwire.mplayer.IcyInfoListener;
 import com.frostwire.mplayer.MediaPlaybackState;
@@ -302,7 +302,7 @@ public abstract class MediaPlayer implements RefreshListener, MPlayerUIEventList
 
     private long getDurationFromMP3(File f) {
         try {
-            return new TagsReader(f).parse().getDuration();
+            return TagsService.instance().parse(f).getDuration();
         } catch (Throwable e) {
             return -1;
         }
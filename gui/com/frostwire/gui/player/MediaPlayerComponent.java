@@ -54,7 +54,7 @@ import com.frostwire.gui.bittorrent.SendFileProgressDialog;
 import com.frostwire.gui.library.LibraryMediator;
 import com.frostwire.gui.library.LibraryUtils;
 import com.frostwire.gui.library.tags.TagsData;
-import com.frostwire.gui.library.tags.TagsReader;
+import com.frostwire.gui.library.tags.TagsService;
 import com.frostwire.gui.theme.ThemeMediator;
 import com.frostwire.mplayer.MediaPlaybackState;
 import com.frostwire.util.StringUtils;
@@ -1076,8 +1076,7 @@ public final class MediaPlayerComponent implements MediaPlayerListener, RefreshL
         String comment = "";
         File fileToParse = currentMedia.getFile();
         if (fileToParse != null && fileToParse.isFile() && fileToParse.exists() && fileToParse.getAbsolutePath().toLowerCase().endsWith(".mp3")) {
-            TagsReader reader = new TagsReader(fileToParse);
-            TagsData tagData = reader.parse();
+            TagsData tagData = TagsService.instance().parse(fileToParse);
             if (tagData != null && !StringUtils.isNullOrEmpty(tagData.getComment())) {
                 comment = tagData.getComment();
             }
@@ -1090,8 +1089,7 @@ public final class MediaPlayerComponent implements MediaPlayerListener, RefreshL
         if (currentMedia.getFile() != null) {
             File fileToParse = currentMedia.getFile();
             if (fileToParse.isFile() && fileToParse.exists() && fileToParse.getAbsolutePath().toLowerCase().endsWith(".mp3")) {
-                TagsReader reader = new TagsReader(fileToParse);
-                TagsData tagData = reader.parse();
+                TagsData tagData = TagsService.instance().parse(fileToParse);
                 if (tagData != null && !StringUtils.isNullOrEmpty(tagData.getComment())) {
                     artist = tagData.getArtist();
                 }
@@ -50,7 +50,7 @@ public class PeerHttpUpload implements UploadTransfer {
     private final FileDescriptor fd;
     private final Date dateCreated;
 
-    private int status;
+    private volatile int status;
     public long bytesSent;
     public long averageSpeed; // in bytes
 
@@ -22,7 +22,6 @@ import com.frostwire.gui.library.AddLibraryDirectoryAction;
 import com.frostwire.gui.library.LibraryMediator;
 import com.frostwire.gui.library.RecursiveLibraryDirectoryPanel;
 import com.frostwire.gui.library.RemoveLibraryDirectoryAction;
-import com.frostwire.gui.upnp.UPnPManager;
 import com.limegroup.gnutella.gui.I18n;
 import com.limegroup.gnutella.settings.LibrarySettings;
 import com.limegroup.gnutella.settings.SharingSettings;
@@ -171,21 +170,23 @@ public final class LibraryFoldersPaneItem extends AbstractPaneItem {
 	
 	
 	/** If folders have been removed from the Library, let's make sure
-	 * no files in those folders remain shared on the Wi-Fi network.*/
+	 * no files in those folders remain shared on the Wi-Fi network.
+	 * The table is updated in the background, not on the EDT.*/
 	private void updateSharedTable() {
 	    Set<File> initialCopy = new HashSet<File>(initialFoldersToInclude);
 	    initialCopy.removeAll(LibrarySettings.DIRECTORIES_TO_INCLUDE.getValue());
 	    initialCopy.addAll(LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
 	    
+	    List<String> foldersToUnshare = new ArrayList<String>(initialCopy.size());
 	    for (File folderToUnshare : initialCopy) {
 	        if (SharingSettings.TORRENT_DATA_DIR_SETTING.getValue().equals(folderToUnshare)) {
 	            continue;
 	        }
 	        System.out.println("Deleting from share table: " + folderToUnshare.getAbsolutePath());
-	        Librarian.instance().deleteFolderFilesFromShareTable(folderToUnshare.getAbsolutePath());
+	        foldersToUnshare.add(folderToUnshare.getAbsolutePath());
 	    }
 	    
-	    UPnPManager.instance().refreshPing();
+	    Librarian.instance().unshareFolders(foldersToUnshare);
     }
 
     public boolean isDirty() {
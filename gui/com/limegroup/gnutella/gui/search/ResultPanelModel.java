@@ -16,6 +16,7 @@
 package com.limegroup.gnutella.gui.search;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.limegroup.gnutella.gui.tables.AbstractTableMediator;
@@ -147,6 +148,18 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
         return addedAt;
     }
 
+    /**
+     * Maintains the indexes HashMap for a batch of lines.
+     */
+    protected int insertAll(List<SearchResultDataLine> lines, boolean sorted) {
+        int first = super.insertAll(lines, sorted);
+        if (first != -1) {
+            _numResults += lines.size();
+            remapIndexes(first);
+        }
+        return first;
+    }
+
     /**
      * Gets the row this DataLine is at.
      */
@@ -28,6 +28,7 @@ import java.awt.event.ActionListener;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.AbstractButton;
@@ -101,7 +102,21 @@ final class SchemaBox extends JPanel {
         NamedMediaType nmt = NamedMediaType.getFromExtension(sr.getExtension());
         if (nmt != null && buttonsMap.containsKey(nmt)) {
             JToggleButton button = buttonsMap.get(nmt);
-            incrementText(button, nmt);
+            incrementText(button, nmt, 1);
+        }
+    }
+
+    public void updateCounters(List<? extends UISearchResult> results) {
+        Map<NamedMediaType, Integer> counts = new HashMap<NamedMediaType, Integer>();
+        for (UISearchResult sr : results) {
+            NamedMediaType nmt = NamedMediaType.getFromExtension(sr.getExtension());
+            if (nmt != null && buttonsMap.containsKey(nmt)) {
+                Integer count = counts.get(nmt);
+                counts.put(nmt, count != null ? count + 1 : 1);
+            }
+        }
+        for (Map.Entry<NamedMediaType, Integer> entry : counts.entrySet()) {
+            incrementText(buttonsMap.get(entry.getKey()), entry.getKey(), entry.getValue());
         }
     }
     
@@ -113,7 +128,7 @@ final class SchemaBox extends JPanel {
         }
     }
 
-    private void incrementText(JToggleButton button, NamedMediaType nmt) {
+    private void incrementText(JToggleButton button, NamedMediaType nmt, int delta) {
         String text = button.getText();
         int n = 0;
         try { // only justified situation of using try-catch for logic flow, since regex is slower
@@ -121,7 +136,7 @@ final class SchemaBox extends JPanel {
         } catch (Throwable e) {
             // no an integer
         }
-        String incrementedCounterValue = String.valueOf(n + 1);
+        String incrementedCounterValue = String.valueOf(n + delta);
         button.setText(incrementedCounterValue);
         button.setToolTipText(String.format(tooltipPlaceHolders.get(nmt), incrementedCounterValue));
     }
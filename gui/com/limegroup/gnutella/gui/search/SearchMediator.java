@@ -15,20 +15,24 @@
 
 package com.limegroup.gnutella.gui.search;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.io.File;
 import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.JComponent;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -40,15 +44,18 @@ import org.slf4j.LoggerFactory;
 import com.frostwire.gui.filters.SearchFilter;
 import com.frostwire.gui.filters.SearchFilterFactory;
 import com.frostwire.gui.filters.SearchFilterFactoryImpl;
+import com.frostwire.search.CrawlCache;
 import com.frostwire.search.CrawlPagedWebSearchPerformer;
 import com.frostwire.search.CrawledSearchResult;
 import com.frostwire.search.DatabaseCrawlCache;
 import com.frostwire.search.FileSearchResult;
+import com.frostwire.search.MemoryCrawlCache;
 import com.frostwire.search.SearchManager;
 import com.frostwire.search.SearchManagerImpl;
 import com.frostwire.search.SearchManagerListener;
 import com.frostwire.search.SearchPerformer;
 import com.frostwire.search.SearchResult;
+import com.frostwire.search.TieredCrawlCache;
 import com.frostwire.search.VuzeMagnetDownloader;
 import com.frostwire.search.archiveorg.ArchiveorgCrawledSearchResult;
 import com.frostwire.search.torrent.TorrentSearchResult;
@@ -107,10 +114,22 @@ public final class SearchMediator {
 
     static final String ARCHIVEORG_DETAILS_STRING = I18n.tr("View in Archive.org");
 
-    private static final int SEARCH_MANAGER_NUM_THREADS = 6;
+    /**
+     * How often the accumulated results are handed to the result tables.
+     */
+    private static final int RESULTS_DRAIN_INTERVAL = 150;
 
     private final SearchManager manager;
 
+    private final PendingResults pendingResults;
+
+    /**
+     * The tabs of the finished searches, by search token. Crawls still resolving in
+     * the background (magnets) deliver their results here, until the tab is closed
+     * or reused for another search.
+     */
+    private final Map<Long, SearchResultMediator> finishedPanels;
+
     /**
      * This instance handles the display of all search results.
      * TODO: Changed to package-protected for testing to add special results
@@ -146,14 +165,19 @@ public final class SearchMediator {
         });
 
         try {
-            CrawlPagedWebSearchPerformer.setCache(new DatabaseCrawlCache());
+            CrawlCache memoryCache = new MemoryCrawlCache(SearchSettings.CRAWL_CACHE_MEMORY_SIZE.getValue());
+            CrawlCache diskCache = new DatabaseCrawlCache(SearchSettings.CRAWL_CACHE_DISK_SIZE.getValue());
+            CrawlPagedWebSearchPerformer.setCache(new TieredCrawlCache(memoryCache, diskCache));
         } catch (Throwable t) {
             LOG.error("could not set database crawl cache", t);
         }
 
         CrawlPagedWebSearchPerformer.setMagnetDownloader(new VuzeMagnetDownloader());
 
-        this.manager = new SearchManagerImpl(SEARCH_MANAGER_NUM_THREADS);
+        this.pendingResults = new PendingResults();
+        this.finishedPanels = new ConcurrentHashMap<Long, SearchResultMediator>();
+
+        this.manager = new SearchManagerImpl(SearchSettings.SEARCH_PERFORM_THREADS.getValue(), SearchSettings.SEARCH_CRAWL_THREADS.getValue(), SearchSettings.SEARCH_MAX_TASKS_PER_ENGINE.getValue());
         this.manager.registerListener(new ManagerListener());
     }
 
@@ -173,6 +197,7 @@ public final class SearchMediator {
         }
 
         stopSearch(rp.getToken());
+        forgetFinishedSearches(rp);
 
         long token = newSearchToken();
 
@@ -260,20 +285,20 @@ public final class SearchMediator {
         }
     }
 
-    private List<SearchResult> filter(SearchPerformer performer, List<SearchResult> results, List<String> searchTokens) {
+    private List<SearchResult> filter(SearchPerformer performer, List<SearchResult> results, SearchTokenMatcher matcher) {
         List<SearchResult> list;
 
-        if (searchTokens == null || searchTokens.isEmpty()) {
+        if (matcher == null || matcher.isEmpty()) {
             list = Collections.emptyList();
         } else {
-            list = filter(results, searchTokens);
+            list = filter(results, matcher);
         }
 
         return list;
     }
 
-    private List<SearchResult> filter(List<? extends SearchResult> results, List<String> searchTokens) {
-        List<SearchResult> list = new LinkedList<SearchResult>();
+    private List<SearchResult> filter(List<? extends SearchResult> results, SearchTokenMatcher matcher) {
+        List<SearchResult> list = new ArrayList<SearchResult>(results.size());
 
         try {
             for (SearchResult sr : results) {
@@ -281,7 +306,7 @@ public final class SearchMediator {
                     // special case for youtube
                     if (sr instanceof YouTubeCrawledSearchResult) {
                         list.add(sr);
-                    } else if (filter(new LinkedList<String>(searchTokens), sr)) {
+                    } else if (filter(matcher, sr)) {
                         list.add(sr);
                     }
                 } else {
@@ -296,30 +321,18 @@ public final class SearchMediator {
         return list;
     }
 
-    private boolean filter(List<String> tokens, SearchResult sr) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(sr.getDisplayName());
+    private boolean filter(SearchTokenMatcher matcher, SearchResult sr) {
+        String parentName = null;
         if (sr instanceof CrawledSearchResult) {
-            sb.append(((CrawledSearchResult) sr).getParent().getDisplayName());
+            parentName = ((CrawledSearchResult) sr).getParent().getDisplayName();
         }
 
+        String filename = null;
         if (sr instanceof FileSearchResult) {
-            sb.append(((FileSearchResult) sr).getFilename());
-        }
-
-        String str = sanitize(sb.toString());
-        str = normalize(str);
-
-        Iterator<String> it = tokens.iterator();
-        while (it.hasNext()) {
-            String token = it.next();
-            if (str.contains(token)) {
-                it.remove();
-            }
+            filename = ((FileSearchResult) sr).getFilename();
         }
 
-        return tokens.isEmpty();
+        return matcher.matches(sr.getDisplayName(), parentName, filename);
     }
 
     private static String stripHtml(String str) {
@@ -481,6 +494,7 @@ public final class SearchMediator {
      */
     static void searchKilled(SearchResultMediator panel) {
         instance().stopSearch(panel.getToken());
+        instance().forgetFinishedSearches(panel);
         panel.cleanup();
 
         ApplicationHeader header = GUIMediator.instance().getMainFrame().getApplicationHeader();
@@ -495,6 +509,26 @@ public final class SearchMediator {
         manager.stop();
     }
 
+    /**
+     * Stops the background crawls of the finished searches of the panel, their
+     * results have nowhere to go.
+     */
+    private void forgetFinishedSearches(SearchResultMediator rp) {
+        for (Map.Entry<Long, SearchResultMediator> e : finishedPanels.entrySet()) {
+            if (e.getValue() == rp && finishedPanels.remove(e.getKey(), rp)) {
+                stopSearch(e.getKey());
+            }
+        }
+    }
+
+    /**
+     * The panel receiving the results of the search, running or finished.
+     */
+    private SearchResultMediator getResultPanel(long token) {
+        SearchResultMediator rp = getResultPanelForGUID(token);
+        return rp != null ? rp : finishedPanels.get(token);
+    }
+
     /**
      * Returns the <tt>ResultPanel</tt> for the specified GUID.
      * 
@@ -531,10 +565,119 @@ public final class SearchMediator {
         return SEARCH_FILTER_FACTORY;
     }
 
-    private void onFinished(long token) {
-        SearchResultMediator rp = getResultPanelForGUID(token);
-        updateSearchIcon(token, false);
-        rp.setToken(0); // to identify that the search is stopped (needs refactor)
+    private void onFinished(final long token) {
+        GUIMediator.safeInvokeLater(new Runnable() {
+            public void run() {
+                // the last results of the search go in before it's marked as stopped
+                pendingResults.drain();
+
+                SearchResultMediator rp = getResultPanelForGUID(token);
+                if (rp != null) {
+                    finishedPanels.put(token, rp);
+                    rp.updateSearchIcon(false);
+                    rp.setToken(0); // to identify that the search is stopped (needs refactor)
+                }
+            }
+        });
+    }
+
+    /**
+     * Collects the results of all the searches from the search threads without
+     * blocking them, and hands them to the result tables from the EDT at most once
+     * every {@link #RESULTS_DRAIN_INTERVAL} milliseconds, one bulk add per search.
+     */
+    private static final class PendingResults {
+
+        private final Map<Long, Batch> batches;
+        private final Timer timer;
+
+        public PendingResults() {
+            this.batches = new LinkedHashMap<Long, Batch>();
+            this.timer = new Timer(RESULTS_DRAIN_INTERVAL, new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    drain();
+                }
+            });
+            this.timer.setRepeats(false);
+        }
+
+        public void add(long token, SearchResultMediator rp, List<UISearchResult> results) {
+            boolean start;
+
+            synchronized (batches) {
+                start = batches.isEmpty();
+
+                Batch batch = batches.get(token);
+                if (batch == null || batch.rp != rp) {
+                    batch = new Batch(token, rp);
+                    batches.put(token, batch);
+                }
+                batch.results.addAll(results);
+            }
+
+            if (start) {
+                timer.start(); // safe from any thread
+            }
+        }
+
+        /**
+         * Must be called from the EDT.
+         */
+        public void drain() {
+            List<Batch> drained;
+
+            synchronized (batches) {
+                if (batches.isEmpty()) {
+                    return;
+                }
+                drained = new ArrayList<Batch>(batches.values());
+                batches.clear();
+            }
+
+            try {
+                SearchFilter filter = getSearchFilterFactory().createFilter();
+
+                for (Batch batch : drained) {
+                    SearchResultMediator rp = batch.rp;
+
+                    // tab closed, or a new search in the same panel
+                    if (instance().getResultPanel(batch.token) != rp) {
+                        continue;
+                    }
+
+                    List<UISearchResult> allowed = new ArrayList<UISearchResult>(batch.results.size());
+                    for (UISearchResult sr : batch.results) {
+                        if (filter.allow(sr)) {
+                            allowed.add(sr);
+                        }
+                    }
+
+                    if (!allowed.isEmpty()) {
+                        if (rp.matches(batch.token)) {
+                            getSearchResultDisplayer().addQueryResults(batch.token, allowed, rp);
+                        } else {
+                            getSearchResultDisplayer().addLateQueryResults(allowed, rp);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        private static final class Batch {
+
+            public final long token;
+            public final SearchResultMediator rp;
+            public final List<UISearchResult> results;
+
+            public Batch(long token, SearchResultMediator rp) {
+                this.token = token;
+                this.rp = rp;
+                this.results = new ArrayList<UISearchResult>();
+            }
+        }
     }
 
     private final class ManagerListener implements SearchManagerListener {
@@ -545,35 +688,26 @@ public final class SearchMediator {
                 //System.out.println("Received results: " + performer.getToken() + " \t- " + results.size());
 
                 final long token = performer.getToken();
-                final SearchResultMediator rp = getResultPanelForGUID(token);
+                final SearchResultMediator rp = getResultPanel(token);
+
+                if (rp == null) {
+                    return;
+                }
 
                 @SuppressWarnings("unchecked")
-                List<SearchResult> filtered = filter(performer, (List<SearchResult>) results, rp.getSearchTokens());
+                List<SearchResult> filtered = filter(performer, (List<SearchResult>) results, rp.getSearchTokenMatcher());
 
-                if (rp != null && !rp.isStopped() && filtered != null && !filtered.isEmpty()) {
+                if (filtered != null && !filtered.isEmpty()) {
 
                     SearchEngine se = SearchEngine.getSearchEngineByName(filtered.get(0).getSource());
                     if (se == null) {
                         return;
                     }
 
-                    final List<UISearchResult> uiResults = convertResults(filtered, se, rp.getQuery());
-
-                    GUIMediator.safeInvokeAndWait(new Runnable() {
-                        public void run() {
-                            try {
-                                SearchFilter filter = getSearchFilterFactory().createFilter();
-                                for (UISearchResult sr : uiResults) {
-                                    if (filter.allow(sr)) {
-                                        getSearchResultDisplayer().addQueryResult(token, sr, rp);
-                                    }
-                                }
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        }
+                    List<UISearchResult> uiResults = convertResults(filtered, se, rp.getQuery());
 
-                    });
+                    // never wait for the EDT here, the search threads keep going
+                    pendingResults.add(token, rp, uiResults);
                 }
             }
         }
@@ -334,34 +334,45 @@ public final class SearchResultDisplayer implements RefreshListener {
 
     /**
      * If i rp is no longer the i'th panel of this, returns silently. Otherwise
-     * adds line to rp under the given group. Updates the count on the tab in
-     * this and restarts the spinning lime.
+     * adds the lines to rp under the given group. Updates the count on the tab in
+     * this once for all of them.
      * 
      * @requires this is called from Swing thread, group is null or similar to
      *           line and already in rp
      * @modifies this
      */
-    void addQueryResult(long token, UISearchResult line, SearchResultMediator rp) {
+    void addQueryResults(long token, List<UISearchResult> lines, SearchResultMediator rp) {
         if (rp.isStopped()) {
             return;
         }
 
-        //Actually add the line.   Must obtain rp's monitor first.
         if (!rp.matches(token))//GUID of rp!=replyGuid
             throw new IllegalArgumentException("guids don't match");
 
-        rp.add(line);
+        addResults(lines, rp);
+    }
 
-        int resultPanelIndex = -1;
-        // Search for the ResultPanel to verify it exists.
-        resultPanelIndex = entries.indexOf(rp);
+    /**
+     * Adds the results that arrive after the search of the panel finished, usually
+     * from crawls that completed in the background.
+     */
+    void addLateQueryResults(List<UISearchResult> lines, SearchResultMediator rp) {
+        if (entries.indexOf(rp) == -1) {
+            return;
+        }
+
+        addResults(lines, rp);
+    }
+
+    private void addResults(List<UISearchResult> lines, SearchResultMediator rp) {
+        rp.addAll(lines);
+
+        int resultPanelIndex = entries.indexOf(rp);
 
         // If we couldn't find it, silently exit.
         if (resultPanelIndex == -1)
             return;
 
-        //Update index on tab.  Don't forget to add 1 since line hasn't
-        //actually been added!
         tabbedPane.setTitleAt(resultPanelIndex, titleOf(rp));
     }
 
@@ -103,6 +103,8 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
 
     private final List<String> searchTokens;
 
+    private final SearchTokenMatcher searchTokenMatcher;
+
     /**
      * The CompositeFilter for this ResultPanel.
      */
@@ -149,6 +151,7 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
         FILTER = null;
         this.token = 0;
         this.searchTokens = null;
+        this.searchTokenMatcher = null;
         setButtonEnabled(SearchButtons.TORRENT_DETAILS_BUTTON_INDEX, false);
         // disable dnd for overlay panel
         TABLE.setDragEnabled(false);
@@ -168,6 +171,7 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
         SEARCH_INFO = info;
         this.token = token;
         this.searchTokens = searchTokens;
+        this.searchTokenMatcher = searchTokens != null ? new SearchTokenMatcher(searchTokens) : null;
         setupRealTable();
         resetFilters();
     }
@@ -859,6 +863,10 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
         return searchTokens;
     }
 
+    SearchTokenMatcher getSearchTokenMatcher() {
+        return searchTokenMatcher;
+    }
+
     public void updateFiltersPanel() {
         schemaBox.applyFilters();
         searchOptionsPanel.updateFiltersPanel();
@@ -876,4 +884,11 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
 
         schemaBox.updateCounters(o);
     }
+
+    @Override
+    public void addAll(List<? extends UISearchResult> results) {
+        super.addAll(results);
+
+        schemaBox.updateCounters(results);
+    }
 }
\ No newline at end of file
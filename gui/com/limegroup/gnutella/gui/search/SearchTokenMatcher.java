@@ -0,0 +1,232 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.limegroup.gnutella.gui.search;
+
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Checks that a result name contains all the search tokens, cleaning it the
+ * same way the tokens were cleaned when the search started: html tags and
+ * entities out, separators and domain suffixes to spaces, diacritics out and
+ * lower case.
+ * <p>
+ * Built once per search and shared by all the search threads. The cleaning
+ * runs in a single pass over a per thread buffer, the common all ASCII case
+ * doesn't allocate.
+ * 
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+final class SearchTokenMatcher {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    private static final String SEPARATORS = "\\/%_;-.()[]\n\r\u00D0&~{}*@^'=!,\u00A1|#\u00C0\u00C1";
+
+    private static final String[] REPLACED_WORDS = { ".torrent", "www.", ".com", ".net" };
+
+    private static final ThreadLocal<Buffer> BUFFERS = new ThreadLocal<Buffer>() {
+        @Override
+        protected Buffer initialValue() {
+            return new Buffer();
+        }
+    };
+
+    private final char[][] tokens;
+
+    public SearchTokenMatcher(List<String> tokens) {
+        this.tokens = new char[tokens.size()][];
+        for (int i = 0; i < this.tokens.length; i++) {
+            this.tokens[i] = tokens.get(i).toCharArray();
+        }
+    }
+
+    public boolean isEmpty() {
+        return tokens.length == 0;
+    }
+
+    /**
+     * Returns true if the concatenation of the non null parts contains every token.
+     */
+    public boolean matches(String part1, String part2, String part3) {
+        Buffer buffer = BUFFERS.get();
+
+        buffer.clear();
+        buffer.append(part1);
+        buffer.append(part2);
+        buffer.append(part3);
+
+        buffer.strip('<', '>');
+        buffer.strip('&', ';');
+        buffer.replaceSeparators();
+        buffer.normalize();
+
+        for (char[] token : tokens) {
+            if (!buffer.contains(token)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static final class Buffer {
+
+        private char[] chars = new char[256];
+        private int length;
+
+        public void clear() {
+            length = 0;
+        }
+
+        public void append(String s) {
+            if (s == null) {
+                return;
+            }
+
+            int n = s.length();
+            ensureCapacity(length + n);
+            s.getChars(0, n, chars, length);
+            length += n;
+        }
+
+        /**
+         * Removes the spans from open to the next close, like the "open.*?close" regex.
+         */
+        public void strip(char open, char close) {
+            int w = 0;
+            int i = 0;
+
+            while (i < length) {
+                char c = chars[i];
+
+                if (c == open) {
+                    int j = i + 1;
+                    while (j < length && chars[j] != close && !isLineTerminator(chars[j])) {
+                        j++;
+                    }
+                    if (j < length && chars[j] == close) {
+                        i = j + 1;
+                        continue;
+                    }
+                }
+
+                chars[w++] = c;
+                i++;
+            }
+
+            length = w;
+        }
+
+        public void replaceSeparators() {
+            int w = 0;
+            int i = 0;
+
+            outer: while (i < length) {
+                for (String word : REPLACED_WORDS) {
+                    if (regionMatches(i, word)) {
+                        chars[w++] = ' ';
+                        i += word.length();
+                        continue outer;
+                    }
+                }
+
+                char c = chars[i++];
+                chars[w++] = SEPARATORS.indexOf(c) != -1 ? ' ' : c;
+            }
+
+            length = w;
+        }
+
+        public void normalize() {
+            boolean ascii = true;
+
+            for (int i = 0; i < length; i++) {
+                char c = chars[i];
+                if (c >= 0x80) {
+                    ascii = false;
+                    break;
+                }
+                if (c >= 'A' && c <= 'Z') {
+                    chars[i] = (char) (c + ('a' - 'A'));
+                }
+            }
+
+            if (!ascii) {
+                String s = Normalizer.normalize(new String(chars, 0, length), Normalizer.Form.NFKD);
+                s = COMBINING_MARKS.matcher(s).replaceAll("");
+                s = s.toLowerCase(Locale.US);
+
+                length = 0;
+                append(s);
+            }
+        }
+
+        public boolean contains(char[] token) {
+            int n = token.length;
+            if (n == 0) {
+                return true;
+            }
+
+            char first = token[0];
+            int max = length - n;
+
+            for (int i = 0; i <= max; i++) {
+                if (chars[i] != first) {
+                    continue;
+                }
+                int j = 1;
+                while (j < n && chars[i + j] == token[j]) {
+                    j++;
+                }
+                if (j == n) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private boolean regionMatches(int offset, String word) {
+            int n = word.length();
+            if (offset + n > length) {
+                return false;
+            }
+            for (int i = 0; i < n; i++) {
+                if (chars[offset + i] != word.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > chars.length) {
+                char[] newChars = new char[Math.max(capacity, chars.length * 2)];
+                System.arraycopy(chars, 0, newChars, 0, length);
+                chars = newChars;
+            }
+        }
+    }
+}
@@ -16,9 +16,7 @@
 package com.limegroup.gnutella.gui.search;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import com.frostwire.gui.filters.TableLineFilter;
 import com.limegroup.gnutella.settings.SearchSettings;
@@ -96,6 +94,30 @@ public class TableRowFilteredModel extends ResultPanelModel {
         return -1;
     }
 
+    /**
+     * Determines which lines of the batch should be added, in one pass.
+     */
+    protected int insertAll(List<SearchResultDataLine> lines, boolean sorted) {
+        List<SearchResultDataLine> allowed = new ArrayList<SearchResultDataLine>(lines.size());
+
+        for (SearchResultDataLine tl : lines) {
+            boolean isNotJunk = junkFilter.allow(tl);
+
+            if (isNotJunk || !SearchSettings.hideJunk()) {
+                if (allow(tl)) {
+                    allowed.add(tl);
+                } else {
+                    HIDDEN.add(tl);
+                    _numResults += 1;
+                }
+            } else {
+                _numResults += 1;
+            }
+        }
+
+        return super.insertAll(allowed, sorted);
+    }
+
     /**
      * Intercepts to clear the hidden map.
      */
@@ -139,53 +161,19 @@ public class TableRowFilteredModel extends ResultPanelModel {
     }
 
     /**
-     * Rebuilds the internal map to denote a new filter.
+     * Rebuilds the visible lines to denote a new filter.
+     * 
+     * The shown and hidden lines go through the filters again as a
+     * single batch instead of one add at a time. The shown ones are
+     * already in order, so sorting the batch mostly costs the hidden ones.
      */
     private void rebuild() {
-        List<SearchResultDataLine> existing = new ArrayList<SearchResultDataLine>(_list);
-        List<SearchResultDataLine> hidden = new ArrayList<SearchResultDataLine>(HIDDEN);
+        List<SearchResultDataLine> lines = new ArrayList<SearchResultDataLine>(_list.size() + HIDDEN.size());
+        lines.addAll(_list);
+        lines.addAll(HIDDEN);
         simpleClear();
 
-        // For stuff in _list, we can just re-add the DataLines as-is.
-        if (isSorted()) {
-            for (int i = 0; i < existing.size(); i++) {
-                addSorted(existing.get(i));
-            }
-        } else {
-            for (int i = 0; i < existing.size(); i++) {
-                add(existing.get(i));
-            }
-        }
-
-        // Merge the hidden TableLines
-        Map<String, SearchResultDataLine> mergeMap = new HashMap<String, SearchResultDataLine>();
-        for (int i = 0; i < hidden.size(); i++) {
-            SearchResultDataLine tl = hidden.get(i);
-            //SearchResult sr = tl.getInitializeObject();
-            //String urn = sr.getHash();
-
-            if (isSorted()) {
-                addSorted(tl);
-            } else {
-                add(tl);
-            }
-
-            //            TableLine tableLine = mergeMap.get(urn);
-            //            if (tableLine == null) {
-            //                mergeMap.put(urn, tl); // re-use TableLines
-            //            } else {
-            //                tableLine.addNewResult(sr, METADATA);
-            //            }
-        }
-
-        // And add them
-        if (isSorted()) {
-            for (SearchResultDataLine line : mergeMap.values())
-                addSorted(line);
-        } else {
-            for (SearchResultDataLine line : mergeMap.values())
-                add(line);
-        }
+        insertAll(lines, isSorted());
     }
 
     public int getFilteredResults() {
@@ -24,8 +24,10 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -529,6 +531,45 @@ public abstract class AbstractTableMediator<T extends DataLineModel<E, I>, E ext
         fixSelection(addedAt, inView);
     }
 
+    /**
+     * Adds new DataLines initialized by the objects with a single
+     * table event, sorted like add(Object) would, and keeps the
+     * rows that were selected before selected.
+     */
+    public void addAll(List<? extends I> objects) {
+        if (objects.isEmpty()) {
+            return;
+        }
+
+        if (TABLE.isEditing()) {
+            CellEditor editor = TABLE.getCellEditor();
+            editor.cancelCellEditing();
+        }
+
+        boolean inView = TABLE.isSelectionVisible();
+        int[] rows = TABLE.getSelectedRows();
+        List<E> selected = new ArrayList<E>(rows.length);
+        for (int row : rows) {
+            selected.add(DATA_MODEL.get(row));
+        }
+
+        DATA_MODEL.addAll(objects, SETTINGS.REAL_TIME_SORT.getValue() && DATA_MODEL.isSorted());
+
+        if (!selected.isEmpty()) {
+            TABLE.clearSelection();
+            for (E line : selected) {
+                int row = DATA_MODEL.getRow(line);
+                if (row != -1) {
+                    TABLE.addRowSelectionInterval(row, row);
+                }
+            }
+            int row = TABLE.getSelectedRow();
+            if (inView && row != -1) {
+                TABLE.ensureRowVisible(row);
+            }
+        }
+    }
+
     /**
      * Forces the object to be added unsorted.
      */
@@ -340,6 +340,85 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
         return add(dl, getSortedPosition(dl));
     }
 
+    /**
+     * Adds DataLines initialized by the objects with a single table event.
+     *
+     * Uses getNewDataLine(Object) and addAllLines(List, boolean).
+     */
+    public void addAll(List<? extends E> objects, boolean sorted) {
+        List<T> dls = new ArrayList<T>(objects.size());
+        for (E o : objects) {
+            T dl = getNewDataLine(o);
+            if (dl != null)
+                dls.add(dl);
+        }
+        addAllLines(dls, sorted);
+    }
+
+    /**
+     * Adds the DataLines and fires a single event: rows inserted if
+     * they all ended up at the end of the list, data changed otherwise.
+     */
+    public void addAllLines(List<T> dls, boolean sorted) {
+        int size = _list.size();
+        int first = insertAll(dls, sorted);
+        if (first == -1)
+            return;
+
+        if (first == size)
+            fireTableRowsInserted(first, _list.size() - 1);
+        else
+            fireTableDataChanged();
+    }
+
+    /**
+     * Puts the DataLines in the list without firing any event and returns
+     * the first row that changed, or -1 if nothing was added.
+     *
+     * If not sorted the lines are appended. If sorted they are sorted
+     * among themselves and merged with the (already sorted) list in one
+     * pass, which is O(n + k log k) instead of the O(n * k) of shifting
+     * the list for every addSorted(DataLine).
+     *
+     * Extending classes that maintain state in add(DataLine, int) should
+     * override this too.
+     */
+    protected int insertAll(List<T> dls, boolean sorted) {
+        if (dls.isEmpty())
+            return -1;
+
+        int size = _list.size();
+        if (!sorted) {
+            _list.addAll(dls);
+            return size;
+        }
+
+        List<T> batch = new ArrayList<T>(dls);
+        Collections.sort(batch, this);
+
+        int first = getSortedPosition(batch.get(0));
+        if (first == size) {
+            _list.addAll(batch);
+            return first;
+        }
+
+        List<T> merged = new ArrayList<T>(size + batch.size());
+        merged.addAll(_list.subList(0, first));
+        int i = first;
+        int j = 0;
+        while (i < size && j < batch.size()) {
+            if (compare(batch.get(j), _list.get(i)) < 0)
+                merged.add(batch.get(j++));
+            else
+                merged.add(_list.get(i++));
+        }
+        merged.addAll(_list.subList(i, size));
+        merged.addAll(batch.subList(j, batch.size()));
+        _list = merged;
+
+        return first;
+    }
+
     //Implements the DataLineModel interface.
     public T get(int row) {
         if(row == -1)
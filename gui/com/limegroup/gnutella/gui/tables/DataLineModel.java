@@ -2,6 +2,7 @@
 package com.limegroup.gnutella.gui.tables;
 
 import java.util.Comparator;
+import java.util.List;
 
 import javax.swing.table.TableModel;
 
@@ -76,6 +77,14 @@ public interface DataLineModel<T extends DataLine<E>, E> extends Comparator<T>,
      */
     public int addSorted(E o);
 
+    /**
+     * Adds new DataLines to the info, initialized by the objects,
+     * firing a single table event.
+     * If sorted, each DataLine goes to whatever row will keep the
+     * info sorted, otherwise they're appended at the end.
+     */
+    public void addAll(List<? extends E> objects, boolean sorted);
+
     /**
      * Adds a new DataLine to the info.
      * Return the row it was added at.
@@ -0,0 +1,110 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.httpserver;
+
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.frostwire.gui.httpserver.DownloadHandler.ByteRange;
+
+/**
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class DownloadHandlerTest extends TestCase {
+
+    public DownloadHandlerTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(DownloadHandlerTest.class);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public void testSingleRanges() {
+        assertRanges("bytes=0-99", 1000, 0, 99);
+        assertRanges("bytes=500-", 1000, 500, 999);
+        assertRanges("bytes=-100", 1000, 900, 999);
+        assertRanges("bytes=999-999", 1000, 999, 999);
+    }
+
+    public void testRangesAreClampedToTheFile() {
+        assertRanges("bytes=900-5000", 1000, 900, 999);
+        assertRanges("bytes=-5000", 1000, 0, 999);
+    }
+
+    public void testMultipleRangesKeepTheirOrder() {
+        assertRanges("bytes=500-599, 0-9 ,-1", 1000, 500, 599, 0, 9, 999, 999);
+    }
+
+    public void testUnitAndSpacesAreLenient() {
+        assertRanges("  BYTES=0-1 ", 1000, 0, 1);
+        assertRanges("bytes= 2 - 3", 1000, 2, 3);
+    }
+
+    public void testUnsatisfiableRangesAreDropped() {
+        assertRanges("bytes=1000-1100", 1000);
+        assertRanges("bytes=-0", 1000);
+        assertRanges("bytes=0-", 0);
+        assertRanges("bytes=-10", 0);
+        assertRanges("bytes=2000-,0-0", 1000, 0, 0);
+    }
+
+    public void testTheWholeFileIsServedOnInvalidHeaders() {
+        String[] invalid = { null, "", "bytes", "items=0-1", "bytes=", "bytes=5", "bytes=5-3", "bytes=a-b", "bytes=-", "bytes=--5", "bytes=0-1,x", "bytes=1-2-3" };
+
+        for (String header : invalid) {
+            assertNull(header, DownloadHandler.parseRanges(header, 1000));
+        }
+    }
+
+    public void testTooManyRangesServeTheWholeFile() {
+        StringBuilder sb = new StringBuilder("bytes=0-0");
+        for (int i = 1; i < 16; i++) {
+            sb.append(",").append(i).append("-").append(i);
+        }
+        assertEquals(16, DownloadHandler.parseRanges(sb.toString(), 1000).size());
+
+        sb.append(",16-16");
+        assertNull(DownloadHandler.parseRanges(sb.toString(), 1000));
+    }
+
+    /**
+     * @param bounds start and end of every expected range
+     */
+    private static void assertRanges(String header, long length, long... bounds) {
+        List<ByteRange> ranges = DownloadHandler.parseRanges(header, length);
+
+        assertNotNull(header, ranges);
+        assertEquals(header, bounds.length / 2, ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            assertEquals(header, bounds[2 * i], ranges.get(i).start);
+            assertEquals(header, bounds[2 * i + 1], ranges.get(i).end);
+        }
+    }
+}
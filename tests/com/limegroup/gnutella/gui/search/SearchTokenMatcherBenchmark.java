@@ -0,0 +1,130 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.limegroup.gnutella.gui.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Time to filter typical result names with the {@link SearchTokenMatcher} against the
+ * regex filter it replaced in SearchMediator.
+ * <p>
+ * Every pass filters the same names with both, the first pass is the warm-up and the
+ * answers of the two must agree. -Dnames sets the names per pass, 20000 by default, and
+ * -Dpasses the number of passes.
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class SearchTokenMatcherBenchmark {
+
+    private static final String[] WORDS = { "ubuntu", "linux", "desktop", "amd64", "iso", "frostwire", "music", "live", "album", "mp3", "320kbps", "Beyoncé", "Sigur", "Rós", "www.example.com", "[HD]", "(2012)", "feat.", "remix", "&amp;", "<b>", "</b>" };
+
+    public static void main(String[] args) {
+        int size = Integer.getInteger("names", 20000);
+        int passes = Integer.getInteger("passes", 3);
+
+        List<String> tokens = Arrays.asList("ubuntu", "desktop");
+        SearchTokenMatcher matcher = new SearchTokenMatcher(tokens);
+        String[][] names = newNames(size);
+
+        for (int pass = 0; pass < passes; pass++) {
+            int matched = 0;
+            long t0 = System.nanoTime();
+            for (String[] name : names) {
+                if (matcher.matches(name[0], name[1], name[2])) {
+                    matched++;
+                }
+            }
+            long t1 = System.nanoTime();
+            int regexMatched = 0;
+            for (String[] name : names) {
+                if (regexMatches(tokens, name[0], name[1], name[2])) {
+                    regexMatched++;
+                }
+            }
+            long t2 = System.nanoTime();
+
+            if (matched != regexMatched) {
+                throw new IllegalStateException("Matchers disagree: " + matched + " != " + regexMatched);
+            }
+            if (pass > 0) {
+                System.out.printf("names=%d matched=%d  matcher %6.2f ms  regex %6.2f ms%n", names.length, matched, (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+            }
+        }
+    }
+
+    /**
+     * The filter of SearchMediator before the {@link SearchTokenMatcher}, except that null
+     * parts are skipped instead of appended as "null".
+     */
+    static boolean regexMatches(List<String> tokens, String part1, String part2, String part3) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : new String[] { part1, part2, part3 }) {
+            if (part != null) {
+                sb.append(part);
+            }
+        }
+
+        String str = sb.toString();
+        str = str.replaceAll("\\<.*?>", "");
+        str = str.replaceAll("\\&.*?\\;", "");
+        str = str.replaceAll("\\.torrent|www\\.|\\.com|\\.net|[\\\\\\/%_;\\-\\.\\(\\)\\[\\]\\n\\rÐ&~{}\\*@\\^'=!,¡|#ÀÁ]", " ");
+        str = Normalizer.normalize(str, Normalizer.Form.NFKD);
+        str = str.replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
+        str = str.toLowerCase(Locale.US);
+
+        List<String> left = new ArrayList<String>(tokens);
+        for (int i = left.size() - 1; i >= 0; i--) {
+            if (str.contains(left.get(i))) {
+                left.remove(i);
+            }
+        }
+
+        return left.isEmpty();
+    }
+
+    /**
+     * Display name, parent name and file name of crawled results, the parent and file
+     * name are missing now and then.
+     */
+    static String[][] newNames(int size) {
+        Random rnd = new Random(1);
+        String[][] names = new String[size][];
+        for (int i = 0; i < size; i++) {
+            names[i] = new String[] { newName(rnd, ' '), rnd.nextInt(4) == 0 ? null : newName(rnd, ' '), rnd.nextInt(3) == 0 ? null : newName(rnd, '_') + ".torrent" };
+        }
+        return names;
+    }
+
+    private static String newName(Random rnd, char separator) {
+        StringBuilder sb = new StringBuilder();
+        int n = 3 + rnd.nextInt(6);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                sb.append(separator);
+            }
+            String word = WORDS[rnd.nextInt(WORDS.length)];
+            sb.append(rnd.nextBoolean() ? word : word.toUpperCase(Locale.US));
+        }
+        return sb.toString();
+    }
+}
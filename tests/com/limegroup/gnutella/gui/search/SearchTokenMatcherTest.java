@@ -0,0 +1,111 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.limegroup.gnutella.gui.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class SearchTokenMatcherTest extends TestCase {
+
+    public SearchTokenMatcherTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SearchTokenMatcherTest.class);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public void testMatchesOnlyWhenEveryTokenIsFound() {
+        SearchTokenMatcher matcher = matcher("ubuntu", "desktop");
+
+        assertTrue(matcher.matches("Ubuntu 12.04 Desktop", null, null));
+        assertFalse(matcher.matches("Ubuntu 12.04 Server", null, null));
+    }
+
+    public void testLooksInEveryPartAndSkipsNullParts() {
+        SearchTokenMatcher matcher = matcher("ubuntu", "desktop", "iso");
+
+        assertTrue(matcher.matches("ubuntu", "desktop", "amd64.iso"));
+        assertTrue(matcher.matches(null, "ubuntu desktop", "iso"));
+        assertFalse(matcher.matches("ubuntu", null, "desktop"));
+
+        assertFalse(matcher("null").matches("ubuntu", null, null));
+    }
+
+    public void testStripsHtmlTagsAndEntities() {
+        assertTrue(matcher("ubuntu").matches("<b>ubu</b>ntu", null, null));
+        assertTrue(matcher("rockroll").matches("rock&amp;roll", null, null));
+        assertFalse(matcher("amp").matches("rock &amp; roll", null, null));
+
+        // an open tag without its end is left as is
+        assertTrue(matcher("b").matches("a <b", null, null));
+    }
+
+    public void testReplacesSeparatorsAndDomainWords() {
+        // search tokens never have spaces, these ones only show where the spaces are
+        assertTrue(matcher("ubuntu desktop").matches("ubuntu_desktop", null, null));
+        assertTrue(matcher("ubuntu desktop").matches("ubuntu.desktop", null, null));
+        assertTrue(matcher("a b c d").matches("a(b-c_d", null, null));
+
+        assertFalse(matcher("torrent").matches("ubuntu.torrent", null, null));
+        assertFalse(matcher("www").matches("www.ubuntu.com", null, null));
+        assertFalse(matcher("com").matches("www.ubuntu.com", null, null));
+        assertFalse(matcher("net").matches("ubuntu.net", null, null));
+        assertTrue(matcher("net").matches("ubuntu net", null, null));
+    }
+
+    public void testIgnoresCaseAndDiacritics() {
+        assertTrue(matcher("beyonce").matches("BEYONCÉ", null, null));
+        assertTrue(matcher("sigur", "ros").matches("Sigur Rós", null, null));
+        assertTrue(matcher("ubuntu").matches("UbUnTu", null, null));
+    }
+
+    public void testEmptyTokens() {
+        SearchTokenMatcher matcher = new SearchTokenMatcher(Collections.<String> emptyList());
+
+        assertTrue(matcher.isEmpty());
+        assertTrue(matcher.matches("anything", null, null));
+        assertFalse(matcher("x").isEmpty());
+    }
+
+    public void testAgreesWithTheRegexFilter() {
+        List<String> tokens = Arrays.asList("ubuntu", "desktop");
+        SearchTokenMatcher matcher = new SearchTokenMatcher(tokens);
+
+        for (String[] name : SearchTokenMatcherBenchmark.newNames(5000)) {
+            assertEquals(Arrays.toString(name), SearchTokenMatcherBenchmark.regexMatches(tokens, name[0], name[1], name[2]), matcher.matches(name[0], name[1], name[2]));
+        }
+    }
+
+    private static SearchTokenMatcher matcher(String... tokens) {
+        return new SearchTokenMatcher(Arrays.asList(tokens));
+    }
+}
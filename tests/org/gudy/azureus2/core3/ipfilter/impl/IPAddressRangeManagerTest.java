@@ -0,0 +1,151 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gudy.azureus2.core3.ipfilter.impl;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.gudy.azureus2.core3.ipfilter.impl.IpFilterBenchmark.Range;
+
+/**
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class IPAddressRangeManagerTest extends TestCase {
+
+    private IPAddressRangeManager manager;
+
+    public IPAddressRangeManagerTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(IPAddressRangeManagerTest.class);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        manager = new IPAddressRangeManager();
+    }
+
+    public void testNoRanges() {
+        assertNull(manager.isInRange("1.2.3.4"));
+        assertNull(manager.isInRange(0x01020304L));
+    }
+
+    public void testRangeBoundsAreInclusive() {
+        Range range = add(100, 200);
+        manager.rebuild();
+
+        assertNull(manager.isInRange(99L));
+        assertSame(range, manager.isInRange(100L));
+        assertSame(range, manager.isInRange(150L));
+        assertSame(range, manager.isInRange(200L));
+        assertNull(manager.isInRange(201L));
+    }
+
+    public void testOverlappingAndCoveredRanges() {
+        Range a = add(10, 20);
+        Range b = add(15, 30);
+        Range outer = add(100, 200);
+        add(120, 130);
+        add(100, 150);
+        manager.rebuild();
+
+        assertSame(a, manager.isInRange(12L));
+        assertSame(a, manager.isInRange(17L));
+        assertSame(b, manager.isInRange(25L));
+
+        // the ranges inside another one are dropped from the table
+        assertEquals(3, manager.table.ranges.length);
+        assertSame(outer, manager.isInRange(125L));
+        assertSame(outer, manager.isInRange(100L));
+
+        assertEquals(21 + 101, manager.table.total_span);
+    }
+
+    public void testAddressesAboveTheSignBit() {
+        Range low = add(0, 0);
+        Range high = add(0x80000000, 0x80000010);
+        Range top = add(0xfffffff0, 0xffffffff);
+        manager.rebuild();
+
+        assertSame(low, manager.isInRange("0.0.0.0"));
+        assertNull(manager.isInRange("127.255.255.255"));
+        assertSame(high, manager.isInRange("128.0.0.0"));
+        assertSame(high, manager.isInRange("128.0.0.16"));
+        assertNull(manager.isInRange("128.0.0.17"));
+        assertSame(top, manager.isInRange("255.255.255.255"));
+    }
+
+    public void testInvalidRangesAreIgnored() {
+        add(200, 100);
+        manager.rebuild();
+
+        assertNull(manager.isInRange(150L));
+        assertEquals(0, manager.table.ranges.length);
+    }
+
+    public void testRemoveRange() {
+        Range a = add(10, 20);
+        Range b = add(15, 30);
+        manager.rebuild();
+
+        manager.removeRange(b);
+        manager.rebuild();
+
+        assertSame(a, manager.isInRange(20L));
+        assertNull(manager.isInRange(25L));
+    }
+
+    public void testAgreesWithABruteForceScan() {
+        Random rnd = new Random(7);
+        Range[] ranges = IpFilterBenchmark.newRanges(rnd, 5000);
+        for (Range range : ranges) {
+            manager.addRange(range);
+        }
+        manager.rebuild();
+
+        for (int i = 0; i < 20000; i++) {
+            // half of them near the ranges, so that there are hits
+            long address = (i % 2 == 0 ? rnd.nextInt() : rnd.nextInt(0x10000000)) & 0xffffffffL;
+            Object found = manager.isInRange(address);
+            if (found == null) {
+                assertNull(IpFilterBenchmark.bruteForce(ranges, address));
+            } else {
+                Range range = (Range) found;
+                assertTrue(range.getStartIpLong() <= address && address <= range.getEndIpLong());
+            }
+        }
+    }
+
+    private Range add(int start, int end) {
+        Range range = new Range(start, end);
+        manager.addRange(range);
+        return range;
+    }
+}
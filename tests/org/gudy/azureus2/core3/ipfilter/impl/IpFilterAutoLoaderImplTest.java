@@ -0,0 +1,95 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gudy.azureus2.core3.ipfilter.impl;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class IpFilterAutoLoaderImplTest extends TestCase {
+
+    /**
+     * The pattern the P2P lines were matched with before parseP2PLine.
+     */
+    private static final Pattern P2P_LINE = Pattern.compile("^(.*):([0-9\\.]+)[^0-9]+([0-9\\.]+).*");
+
+    public IpFilterAutoLoaderImplTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(IpFilterAutoLoaderImplTest.class);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public void testParsesP2PLines() {
+        assertP2P("Some org:1.2.3.4-1.2.3.255", "Some org", "1.2.3.4", "1.2.3.255");
+        assertP2P("Some org:1.2.3.4 - 1.2.3.255", "Some org", "1.2.3.4", "1.2.3.255");
+        assertP2P(":0.0.0.0-0.0.0.1", "", "0.0.0.0", "0.0.0.1");
+        assertP2P("trailing:1.2.3.4-1.2.3.5 # comment", "trailing", "1.2.3.4", "1.2.3.5");
+    }
+
+    public void testTheLastUsableColonEndsTheDescription() {
+        assertP2P("a:b:c:1.2.3.4-1.2.3.5", "a:b:c", "1.2.3.4", "1.2.3.5");
+        assertP2P("http://x.org:1.2.3.4-1.2.3.5", "http://x.org", "1.2.3.4", "1.2.3.5");
+        // a colon after the addresses doesn't start them
+        assertP2P("org:1.2.3.4-1.2.3.5:", "org", "1.2.3.4", "1.2.3.5");
+    }
+
+    public void testRejectsLinesNotInP2PFormat() {
+        String[] sections = new String[3];
+
+        assertFalse(IpFilterAutoLoaderImpl.parseP2PLine("", sections));
+        assertFalse(IpFilterAutoLoaderImpl.parseP2PLine("# comment", sections));
+        assertFalse(IpFilterAutoLoaderImpl.parseP2PLine("1.2.3.4 - 1.2.3.5 , 100 , desc", sections));
+        assertFalse(IpFilterAutoLoaderImpl.parseP2PLine("org:1.2.3.4", sections));
+        assertFalse(IpFilterAutoLoaderImpl.parseP2PLine("org:1.2.3.4-", sections));
+        assertFalse(IpFilterAutoLoaderImpl.parseP2PLine("org:-1.2.3.4", sections));
+    }
+
+    public void testAgreesWithTheRegexOnWellFormedLines() {
+        String[] lines = { "Level 1 org:10.0.0.0-10.255.255.255", "x:y:1.1.1.1 -  2.2.2.2", "a, b; c:127.0.0.1-127.0.0.1", "desc with spaces:4.4.4.4 to 5.5.5.5 extra", "::1.2.3.4-1.2.3.4" };
+
+        for (String line : lines) {
+            Matcher m = P2P_LINE.matcher(line);
+            assertTrue(line, m.find());
+            assertP2P(line, m.group(1), m.group(2), m.group(3));
+        }
+    }
+
+    private static void assertP2P(String line, String description, String startIp, String endIp) {
+        String[] sections = new String[3];
+
+        assertTrue(line, IpFilterAutoLoaderImpl.parseP2PLine(line, sections));
+        assertEquals(description, sections[0]);
+        assertEquals(startIp, sections[1]);
+        assertEquals(endIp, sections[2]);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gudy.azureus2.core3.ipfilter.impl;
+
+import java.util.Random;
+
+import org.gudy.azureus2.core3.ipfilter.IpRange;
+import org.gudy.azureus2.core3.tracker.protocol.PRHelpers;
+
+/**
+ * Lookups per second of the {@link IPAddressRangeManager} over random blocklist
+ * ranges, plus the rebuild time and the cost of parsing P2P blocklist lines.
+ * <p>
+ * A sample of the lookups is checked against a brute force scan of the ranges.
+ * -Dranges sets the number of ranges, 1000000 by default, -Dlookups the lookups per
+ * pass and -Dpasses the passes, the first one is the warm-up.
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class IpFilterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int size = Integer.getInteger("ranges", 1000000);
+        int lookups = Integer.getInteger("lookups", 5000000);
+        int passes = Integer.getInteger("passes", 3);
+
+        Random rnd = new Random(1);
+        Range[] ranges = newRanges(rnd, size);
+
+        IPAddressRangeManager manager = new IPAddressRangeManager();
+        for (Range range : ranges) {
+            manager.addRange(range);
+        }
+
+        long t0 = System.nanoTime();
+        manager.rebuild();
+        System.out.printf("ranges=%d  rebuild %6.0f ms  table %d ranges%n", size, (System.nanoTime() - t0) / 1e6, manager.table.ranges.length);
+
+        int[] addresses = new int[lookups];
+        for (int i = 0; i < lookups; i++) {
+            // most ranges are in the low 256M addresses, look there too
+            addresses[i] = i % 2 == 0 ? rnd.nextInt() : rnd.nextInt(0x10000000);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            long address = addresses[i] & 0xffffffffL;
+            if ((manager.isInRange(address) != null) != (bruteForce(ranges, address) != null)) {
+                throw new IllegalStateException("Wrong answer for " + PRHelpers.intToAddress(addresses[i]));
+            }
+        }
+
+        for (int pass = 0; pass < passes; pass++) {
+            int hits = 0;
+            t0 = System.nanoTime();
+            for (int address : addresses) {
+                if (manager.isInRange(address & 0xffffffffL) != null) {
+                    hits++;
+                }
+            }
+            long ns = System.nanoTime() - t0;
+            if (pass > 0) {
+                System.out.printf("lookups=%d hits=%d  %6.0f ms  %5.1f M lookups/s%n", lookups, hits, ns / 1e6, lookups * 1e3 / ns);
+            }
+        }
+
+        String[] lines = new String[100000];
+        for (int i = 0; i < lines.length; i++) {
+            int start = rnd.nextInt();
+            lines[i] = "Some: organization, " + i + ":" + PRHelpers.intToAddress(start) + "-" + PRHelpers.intToAddress(start + rnd.nextInt(255));
+        }
+        String[] sections = new String[3];
+        for (int pass = 0; pass < passes; pass++) {
+            long sum = 0;
+            t0 = System.nanoTime();
+            for (String line : lines) {
+                if (IpFilterAutoLoaderImpl.parseP2PLine(line, sections)) {
+                    sum += PRHelpers.addressToInt(sections[1]) + PRHelpers.addressToInt(sections[2]);
+                }
+            }
+            long ns = System.nanoTime() - t0;
+            if (pass > 0) {
+                System.out.printf("p2p lines=%d  %6.1f ms  (%d)%n", lines.length, ns / 1e6, sum & 0xff);
+            }
+        }
+    }
+
+    /**
+     * Ranges of up to 255 addresses below 0x0fffffff, like the main of
+     * {@link IPAddressRangeManager}, so that they overlap often.
+     */
+    static Range[] newRanges(Random rnd, int size) {
+        Range[] ranges = new Range[size];
+        for (int i = 0; i < size; i++) {
+            int start = rnd.nextInt(0x0fffffff);
+            ranges[i] = new Range(start, start + rnd.nextInt(255));
+        }
+        return ranges;
+    }
+
+    static IpRange bruteForce(Range[] ranges, long address) {
+        for (Range range : ranges) {
+            if (range.getStartIpLong() <= address && address <= range.getEndIpLong()) {
+                return range;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A bare range, {@link IpRangeImpl} registers itself with the IpFilterImpl singleton.
+     */
+    static final class Range implements IpRange {
+
+        private final int start;
+        private final int end;
+
+        Range(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getDescription() {
+            return null;
+        }
+
+        public void setDescription(String str) {
+        }
+
+        public boolean isValid() {
+            return true;
+        }
+
+        public boolean isSessionOnly() {
+            return true;
+        }
+
+        public String getStartIp() {
+            return PRHelpers.intToAddress(start);
+        }
+
+        public void setStartIp(String str) {
+        }
+
+        public String getEndIp() {
+            return PRHelpers.intToAddress(end);
+        }
+
+        public void setEndIp(String str) {
+        }
+
+        public void setSessionOnly(boolean sessionOnly) {
+        }
+
+        public boolean isInRange(String ipAddress) {
+            return false;
+        }
+
+        public void checkValid() {
+        }
+
+        public int compareStartIpTo(IpRange other) {
+            return 0;
+        }
+
+        public int compareEndIpTo(IpRange other) {
+            return 0;
+        }
+
+        public int compareDescription(IpRange other) {
+            return 0;
+        }
+
+        public long getEndIpLong() {
+            return end & 0xffffffffL;
+        }
+
+        public long getStartIpLong() {
+            return start & 0xffffffffL;
+        }
+
+        public boolean getAddedToRangeList() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return getStartIp() + "-" + getEndIp();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gudy.azureus2.core3.torrent.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.gudy.azureus2.core3.torrent.TOTorrent;
+import org.gudy.azureus2.core3.torrent.TOTorrentFactory;
+import org.gudy.azureus2.core3.torrent.TOTorrentFile;
+import org.gudy.azureus2.core3.util.ConcurrentHasher;
+
+/**
+ * Throughput of the {@link TOTorrentFileHasher} creating a torrent out of a folder of
+ * random files, and a check of every piece hash against a plain SHA-1 of the data.
+ * <p>
+ * The hasher uses the ConcurrentHasher only when more than one processor is available,
+ * run it with -XX:ActiveProcessorCount=1 and with the real count to compare the inline
+ * and the concurrent paths. The files are written once, so the passes after the first
+ * read from a warm page cache. -Dfiles, -Dmb (total size) and -Dpiece (KB) set the data,
+ * 16 files, 1024 MB and 1024 KB by default, -Dpasses the number of passes.
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class TOTorrentFileHasherBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int files = Integer.getInteger("files", 16);
+        long mb = Integer.getInteger("mb", 1024);
+        long pieceLength = Integer.getInteger("piece", 1024) * 1024L;
+        int passes = Integer.getInteger("passes", 3);
+
+        File dir = new File(System.getProperty("java.io.tmpdir"), "TOTorrentFileHasherBenchmark");
+        try {
+            writeFiles(dir, files, mb * 1024 * 1024 / files);
+
+            System.out.println("processors=" + Runtime.getRuntime().availableProcessors() + " concurrent=" + ConcurrentHasher.concurrentHashingAvailable() + " files=" + files + " size=" + mb + " MB piece=" + pieceLength / 1024 + " KB");
+
+            for (int pass = 0; pass < passes; pass++) {
+                long t0 = System.nanoTime();
+                TOTorrent torrent = TOTorrentFactory.createFromFileOrDirWithFixedPieceLength(dir, new URL("http://localhost/announce"), pieceLength).create();
+                long ns = System.nanoTime() - t0;
+
+                if (pass == 0) {
+                    check(dir, torrent, (int) pieceLength);
+                }
+                System.out.printf("pass %d  %7.1f MB/s  %5d pieces%n", pass, mb * 1e9 / ns, torrent.getPieces().length);
+            }
+        } finally {
+            delete(dir);
+        }
+
+        System.exit(0);
+    }
+
+    /**
+     * Hashes the files one piece at a time in the order of the torrent and compares.
+     */
+    private static void check(File dir, TOTorrent torrent, int pieceLength) throws Exception {
+        byte[][] pieces = torrent.getPieces();
+        MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+        byte[] buffer = new byte[64 * 1024];
+        long inPiece = 0;
+        int piece = 0;
+
+        for (TOTorrentFile tf : torrent.getFiles()) {
+            InputStream is = new FileInputStream(new File(dir, tf.getRelativePath()));
+            try {
+                int n;
+                while ((n = is.read(buffer, 0, (int) Math.min(buffer.length, pieceLength - inPiece))) > 0) {
+                    sha1.update(buffer, 0, n);
+                    inPiece += n;
+                    if (inPiece == pieceLength) {
+                        checkPiece(pieces, piece++, sha1.digest());
+                        inPiece = 0;
+                    }
+                }
+            } finally {
+                is.close();
+            }
+        }
+
+        if (inPiece > 0) {
+            checkPiece(pieces, piece++, sha1.digest());
+        }
+        if (piece != pieces.length) {
+            throw new IllegalStateException("Expected " + piece + " pieces, got " + pieces.length);
+        }
+    }
+
+    private static void checkPiece(byte[][] pieces, int piece, byte[] digest) {
+        if (piece >= pieces.length || !Arrays.equals(pieces[piece], digest)) {
+            throw new IllegalStateException("Wrong hash for piece " + piece);
+        }
+    }
+
+    private static void writeFiles(File dir, int files, long size) throws IOException {
+        delete(dir);
+        dir.mkdirs();
+
+        Random rnd = new Random(1);
+        byte[] buffer = new byte[1024 * 1024];
+        for (int i = 0; i < files; i++) {
+            // sizes off the piece boundaries, so that pieces span files
+            long left = size - rnd.nextInt(1 + (int) Math.min(size / 2, 100000));
+            OutputStream os = new FileOutputStream(new File(dir, "file" + i + ".bin"));
+            try {
+                while (left > 0) {
+                    rnd.nextBytes(buffer);
+                    int n = (int) Math.min(buffer.length, left);
+                    os.write(buffer, 0, n);
+                    left -= n;
+                }
+            } finally {
+                os.close();
+            }
+        }
+    }
+
+    private static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
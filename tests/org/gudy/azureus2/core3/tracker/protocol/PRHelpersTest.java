@@ -0,0 +1,74 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011, 2012, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gudy.azureus2.core3.tracker.protocol;
+
+import java.net.InetAddress;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ *
+ * @author gubatron
+ * @author aldenml
+ *
+ */
+public class PRHelpersTest extends TestCase {
+
+    public PRHelpersTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(PRHelpersTest.class);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public void testParseIPv4() {
+        assertEquals(0L, PRHelpers.parseIPv4("0.0.0.0"));
+        assertEquals(0x01020304L, PRHelpers.parseIPv4("1.2.3.4"));
+        assertEquals(0xc0a8010aL, PRHelpers.parseIPv4("192.168.1.10"));
+        assertEquals(0xffffffffL, PRHelpers.parseIPv4("255.255.255.255"));
+        assertEquals(0x0a000001L, PRHelpers.parseIPv4("010.0.0.001"));
+    }
+
+    public void testParseIPv4RejectsAnythingElse() {
+        String[] invalid = { "", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1.2.3.256", "1..2.3", ".1.2.3", "1.2.3.", "1.2.3.4 ", " 1.2.3.4", "0001.2.3.4", "a.b.c.d", "localhost", "::1", "-1.2.3.4" };
+
+        for (String address : invalid) {
+            assertEquals(address, -1L, PRHelpers.parseIPv4(address));
+        }
+    }
+
+    public void testAddressToIntMatchesTheResolver() throws Exception {
+        Random rnd = new Random(3);
+
+        for (int i = 0; i < 1000; i++) {
+            int value = rnd.nextInt();
+            String address = PRHelpers.intToAddress(value);
+
+            assertEquals(value, PRHelpers.addressToInt(address));
+            assertEquals(PRHelpers.addressToInt(InetAddress.getByName(address)), PRHelpers.addressToInt(address));
+        }
+    }
+}